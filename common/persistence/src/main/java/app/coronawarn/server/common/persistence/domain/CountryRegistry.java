@@ -0,0 +1,110 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App
+ * ---
+ * Copyright (C) 2020 SAP SE and all other contributors
+ * All modifications are copyright (c) 2020 Devside SRL.
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.server.common.persistence.domain;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Registry of the countries participating in the federation, which assigns each country code a bit position, so that
+ * a set of countries can be represented as a {@code long} bitmask (see {@link DiagnosisKey#getVisitedCountriesMask()}).
+ * Country codes which are not registered have no bit and are not represented in a mask.
+ */
+public final class CountryRegistry {
+
+  /**
+   * The registered ISO 3166 alpha-2 country codes. The index of a code is its bit position; new codes must be
+   * appended, and the list must not grow beyond {@link Long#SIZE} codes.
+   */
+  private static final List<String> COUNTRIES = List.of(
+      "AT", "BE", "BG", "CH", "CY", "CZ", "DE", "DK", "EE", "ES", "FI", "FR", "GB", "GR", "HR", "HU",
+      "IE", "IS", "IT", "LI", "LT", "LU", "LV", "MT", "NL", "NO", "PL", "PT", "RO", "SE", "SI", "SK");
+
+  private static final Map<String, Integer> BIT_POSITIONS = new HashMap<>();
+
+  static {
+    for (int bitPosition = 0; bitPosition < COUNTRIES.size(); bitPosition++) {
+      BIT_POSITIONS.put(COUNTRIES.get(bitPosition), bitPosition);
+    }
+  }
+
+  private CountryRegistry() {
+  }
+
+  public static boolean isRegistered(String country) {
+    return BIT_POSITIONS.containsKey(country);
+  }
+
+  /**
+   * Returns the mask of the given country.
+   *
+   * @param country the ISO 3166 alpha-2 country code
+   * @return the mask with only the bit of the country set, or {@code 0} if the country is not registered
+   */
+  public static long maskOf(String country) {
+    Integer bitPosition = BIT_POSITIONS.get(country);
+    return bitPosition == null ? 0L : 1L << bitPosition;
+  }
+
+  /**
+   * Returns the mask of the given countries, e.g. as decoded from a {@code varchar(2)[]} column.
+   *
+   * @param countries the ISO 3166 alpha-2 country codes
+   * @return the mask with the bits of all registered countries set
+   */
+  public static long maskOf(Collection<String> countries) {
+    long mask = 0L;
+    for (String country : countries) {
+      mask |= maskOf(country);
+    }
+    return mask;
+  }
+
+  /**
+   * Returns the country of the given bit position.
+   *
+   * @param bitPosition the bit position, e.g. as returned by {@link Long#numberOfTrailingZeros(long)}
+   * @return the ISO 3166 alpha-2 country code
+   * @throws IndexOutOfBoundsException if no country is registered for the bit position
+   */
+  public static String countryOf(int bitPosition) {
+    return COUNTRIES.get(bitPosition);
+  }
+
+  /**
+   * Returns the countries of the given mask, in the order of their bit positions.
+   *
+   * @param mask the mask of registered countries
+   * @return the ISO 3166 alpha-2 country codes
+   */
+  public static Set<String> countriesOf(long mask) {
+    Set<String> countries = new LinkedHashSet<>();
+    for (long remaining = mask; remaining != 0; remaining &= remaining - 1) {
+      countries.add(countryOf(Long.numberOfTrailingZeros(remaining)));
+    }
+    return countries;
+  }
+}
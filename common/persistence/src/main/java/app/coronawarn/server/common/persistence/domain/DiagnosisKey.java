@@ -24,11 +24,14 @@ package app.coronawarn.server.common.persistence.domain;
 import static java.time.ZoneOffset.UTC;
 
 import app.coronawarn.server.common.persistence.domain.DiagnosisKeyBuilders.Builder;
+import app.coronawarn.server.common.persistence.domain.validation.CountryValidator;
 import app.coronawarn.server.common.persistence.domain.validation.ValidCountries;
 import app.coronawarn.server.common.persistence.domain.validation.ValidCountry;
 import app.coronawarn.server.common.persistence.domain.validation.ValidRollingStartIntervalNumber;
 import app.coronawarn.server.common.persistence.domain.validation.ValidSubmissionTimestamp;
+import app.coronawarn.server.common.persistence.domain.validation.ValidSubmissionTimestampValidator;
 import app.coronawarn.server.common.protocols.external.exposurenotification.ReportType;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
@@ -42,6 +45,7 @@ import javax.validation.Validator;
 import javax.validation.constraints.Size;
 import org.hibernate.validator.constraints.Range;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
 
 /**
  * A key generated for advertising over a window of time.
@@ -110,6 +114,9 @@ public class DiagnosisKey {
   @ValidCountries
   private final Set<String> visitedCountries;
 
+  @Transient
+  private final long visitedCountriesMask;
+
   private final ReportType reportType;
 
   @Range(min = MIN_DAYS_SINCE_ONSET_OF_SYMPTOMS, max = MAX_DAYS_SINCE_ONSET_OF_SYMPTOMS,
@@ -140,6 +147,7 @@ public class DiagnosisKey {
     this.consentToFederation = consentToFederation;
     this.originCountry = originCountry;
     this.visitedCountries = visitedCountries == null ? new HashSet<>() : visitedCountries;
+    this.visitedCountriesMask = CountryRegistry.maskOf(this.visitedCountries);
     this.reportType = reportType;
     // Workaround to avoid exception on loading old DiagnosisKeys after migration to EFGS
     this.daysSinceOnsetOfSymptoms = daysSinceOnsetOfSymptoms == null ? 0 : daysSinceOnsetOfSymptoms;
@@ -184,6 +192,17 @@ public class DiagnosisKey {
     return rollingPeriod;
   }
 
+  /**
+   * Returns a number describing when a key expires, i.e. the end of its rolling period. It is equal to
+   * {@code rollingStartIntervalNumber + rollingPeriod} and is persisted along with the key, so that expired keys can
+   * be selected by range.
+   *
+   * @return expiryIntervalNumber
+   */
+  public int getExpiryIntervalNumber() {
+    return rollingStartIntervalNumber + rollingPeriod;
+  }
+
   /**
    * Returns the risk of transmission associated with the person this key came from.
    *
@@ -268,6 +287,16 @@ public class DiagnosisKey {
     return visitedCountries;
   }
 
+  /**
+   * Returns the visited countries as a bitmask of the {@link CountryRegistry}. Countries which are not registered are
+   * not contained in the mask.
+   *
+   * @return the mask of the visited countries
+   */
+  public long getVisitedCountriesMask() {
+    return visitedCountriesMask;
+  }
+
   public ReportType getReportType() {
     return reportType;
   }
@@ -312,6 +341,30 @@ public class DiagnosisKey {
     return VALIDATOR.validate(this);
   }
 
+  /**
+   * Checks the same constraints as {@link #validate()}, but without the reflection overhead of Bean Validation. This
+   * is meant for the keys read back from the database, which are checked once per key and distribution or upload run.
+   *
+   * @return {@code true} if {@link #validate()} would not report any constraint violations.
+   */
+  public boolean isValid() {
+    long currentEpochSecond = Instant.now().getEpochSecond();
+    return (keyData == null || keyData.length == KEY_DATA_LENGTH)
+        && rollingStartIntervalNumber > 0
+        && rollingStartIntervalNumber <= Math.toIntExact(currentEpochSecond / 600L)
+        && isInRange(rollingPeriod, MIN_ROLLING_PERIOD, MAX_ROLLING_PERIOD)
+        && isInRange(transmissionRiskLevel, MIN_TRANSMISSION_RISK_LEVEL, MAX_TRANSMISSION_RISK_LEVEL)
+        && submissionTimestamp >= 0L
+        && submissionTimestamp <= currentEpochSecond / ValidSubmissionTimestampValidator.SECONDS_PER_HOUR
+        && CountryValidator.isValidCountryCode(originCountry)
+        && CountryValidator.isValidCountryCodes(visitedCountries)
+        && isInRange(daysSinceOnsetOfSymptoms, MIN_DAYS_SINCE_ONSET_OF_SYMPTOMS, MAX_DAYS_SINCE_ONSET_OF_SYMPTOMS);
+  }
+
+  private static boolean isInRange(int value, int min, int max) {
+    return value >= min && value <= max;
+  }
+
 
   /**
    * The signature data contained in this diagnosis key that we will use to generate an AC.
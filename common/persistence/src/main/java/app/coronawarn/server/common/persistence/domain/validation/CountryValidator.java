@@ -1,12 +1,11 @@
 package app.coronawarn.server.common.persistence.domain.validation;
 
-import java.util.List;
 import java.util.Locale;
 import java.util.Set;
 
 public class CountryValidator {
 
-  private static final List<String> ISO_COUNTRIES = List.of(Locale.getISOCountries());
+  private static final Set<String> ISO_COUNTRIES = Set.of(Locale.getISOCountries());
 
   private CountryValidator() {
   }
@@ -23,6 +23,8 @@ package app.coronawarn.server.common.persistence.repository;
 
 import app.coronawarn.server.common.persistence.domain.authorizationcode.AuthorizationCode;
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import org.springframework.data.jdbc.repository.query.Modifying;
 import org.springframework.data.jdbc.repository.query.Query;
@@ -59,6 +61,41 @@ public interface AuthorizationCodeRepository extends PagingAndSortingRepository<
   @Query("DELETE FROM authorization_code WHERE mobile_test_id = :mobile_test_id")
   Integer deleteAuthorizationCodeForMobileTestId(@Param("mobile_test_id") String mobileTestId);
 
+  /**
+   * Deletes the authorization codes with any of the specified signatures. Other authorization codes of the same mobile
+   * test ids, e.g. for other dates of infectiousness, are kept.
+   *
+   * @param signatures the signatures of the authorization codes to delete.
+   * @return the number of deleted authorization codes.
+   */
+  @Modifying
+  @Query("DELETE FROM authorization_code WHERE signature IN (:signatures)")
+  Integer deleteAuthorizationCodesBySignatures(@Param("signatures") Collection<String> signatures);
+
+  /**
+   * Returns up to {@code limit} authorization codes with a signature greater than the specified one, ordered by their
+   * signature. Passing the signature of the last authorization code of a page returns the next page.
+   *
+   * @param signature the signature after which the page starts, an empty string for the first page.
+   * @param limit     the maximum number of authorization codes to return.
+   * @return the page of authorization codes.
+   */
+  @Query("SELECT * FROM authorization_code WHERE signature > :signature ORDER BY signature LIMIT :limit")
+  List<AuthorizationCode> findPageAfterSignature(@Param("signature") String signature, @Param("limit") int limit);
+
+  /**
+   * Returns the authorization codes for any of the specified mobile test ids and the specified date of infectiousness.
+   *
+   * @param mobileTestIds         the mobile test ids of the authorization codes.
+   * @param datePatientInfectious the date the patient was infectious.
+   * @return the matching authorization codes.
+   */
+  @Query("SELECT * FROM authorization_code WHERE mobile_test_id IN (:mobile_test_ids) "
+      + "AND date_patient_infectious = :date_patient_infectious")
+  List<AuthorizationCode> findByMobileTestIdsAndDatePatientInfectious(
+      @Param("mobile_test_ids") Collection<String> mobileTestIds,
+      @Param("date_patient_infectious") LocalDate datePatientInfectious);
+
   Optional<AuthorizationCode> findByMobileTestIdAndDatePatientInfectious(
       String mobileTestId, LocalDate datePatientInfectious);
 }
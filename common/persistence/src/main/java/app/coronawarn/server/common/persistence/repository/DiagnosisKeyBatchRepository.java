@@ -0,0 +1,72 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App
+ * ---
+ * Copyright (C) 2020 SAP SE and all other contributors
+ * All modifications are copyright (c) 2020 Devside SRL.
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.server.common.persistence.repository;
+
+import app.coronawarn.server.common.persistence.domain.DiagnosisKey;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Repository fragment for bulk operations on the {@code diagnosis_key} table, which cannot be expressed with derived
+ * or annotated Spring Data JDBC queries.
+ */
+public interface DiagnosisKeyBatchRepository {
+
+  /**
+   * The maximum number of diagnosis keys which can be passed to {@link #saveAllDoNothingOnConflict(List)} at once, as
+   * the bind parameters of all keys have to fit into a single statement.
+   */
+  int MAX_KEYS_PER_INSERT = DiagnosisKeyBatchRepositoryImpl.MAX_KEYS_PER_INSERT;
+
+  /**
+   * Attempts to write all specified diagnosis keys into the database using a single multi-row insert statement. Keys
+   * whose key data already exists in the database, regardless of its submission timestamp, (or earlier in the given
+   * list) are not inserted.
+   *
+   * @param diagnosisKeys The diagnosis keys to insert. Must not be empty and must not contain more than {@link
+   *                      #MAX_KEYS_PER_INSERT} keys.
+   * @return The number of rows that were actually inserted.
+   */
+  int saveAllDoNothingOnConflict(List<DiagnosisKey> diagnosisKeys);
+
+  /**
+   * Returns all verified diagnosis keys with a submission timestamp not older than the specified one, sorted by their
+   * submission timestamp, as a lazily populated stream. Only the columns needed for distribution are read, so the
+   * mobile test ids, the dates and the result channel of the returned keys are not populated. Rows are fetched from a
+   * database cursor in chunks of {@code persistence.fetch-size} rows, so only the current chunk is held in memory. The
+   * stream holds on to a database connection and must therefore be consumed inside a transaction and closed
+   * afterwards.
+   *
+   * @param submissionTimestamp The submission timestamp (hours since epoch) of the oldest keys to return.
+   * @return A stream of the verified diagnosis keys to distribute.
+   */
+  Stream<DiagnosisKey> streamVerifiedSubmittedSinceOrderBySubmissionTimestamp(long submissionTimestamp);
+
+  /**
+   * Marks all diagnosis keys with the specified key data as verified, using one set-based update statement per 1000
+   * keys.
+   *
+   * @param keyData The key data of the diagnosis keys to mark as verified.
+   * @return The number of rows that were updated.
+   */
+  int updateVerified(List<byte[]> keyData);
+}
@@ -0,0 +1,205 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App
+ * ---
+ * Copyright (C) 2020 SAP SE and all other contributors
+ * All modifications are copyright (c) 2020 Devside SRL.
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.server.common.persistence.repository;
+
+import app.coronawarn.server.common.persistence.domain.DiagnosisKey;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.jdbc.core.convert.EntityRowMapper;
+import org.springframework.data.jdbc.core.convert.JdbcConverter;
+import org.springframework.data.relational.core.mapping.RelationalMappingContext;
+import org.springframework.data.relational.core.mapping.RelationalPersistentEntity;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.RowMapper;
+
+/**
+ * Default implementation of {@link DiagnosisKeyBatchRepository}, which is picked up by Spring Data as a fragment of
+ * the {@link DiagnosisKeyRepository}.
+ */
+class DiagnosisKeyBatchRepositoryImpl implements DiagnosisKeyBatchRepository {
+
+  private static final String INSERTED_COLUMNS = "(key_data, rolling_start_interval_number, rolling_period, "
+      + "submission_timestamp, transmission_risk_level, origin_country, visited_countries, report_type, "
+      + "days_since_onset_of_symptoms, consent_to_federation, mobile_test_id, mobile_test_id2, "
+      + "date_patient_infectious, date_test_communicated, result_channel, verified, expiry_interval_number)";
+  private static final String INSERT_STATEMENT = "WITH new_keys " + INSERTED_COLUMNS + " AS (VALUES ";
+  /**
+   * Each inserted diagnosis key binds one parameter per inserted column.
+   */
+  private static final int PARAMETERS_PER_KEY = INSERTED_COLUMNS.split(",").length;
+  private static final String VALUES_ROW = "(" + String.join(", ", Collections.nCopies(PARAMETERS_PER_KEY, "?")) + ")";
+  /**
+   * PostgreSQL accepts at most 32767 bind parameters per statement.
+   */
+  static final int MAX_KEYS_PER_INSERT = Short.MAX_VALUE / PARAMETERS_PER_KEY;
+  /**
+   * The key data is only unique per submission timestamp within the partitioned diagnosis key table, so the key data
+   * and rolling start interval number are registered in the diagnosis_key_data table first, and only the keys which
+   * were not registered yet are inserted. Concurrent statements registering the same key wait for each other, so that
+   * exactly one of them inserts the key. Key data registered with another rolling start interval number within the same
+   * submission hour conflicts with the stored key and is skipped as well.
+   */
+  private static final String REGISTERED_KEYS_CLAUSE = "), registered_keys AS ("
+      + "INSERT INTO diagnosis_key_data (key_data, rolling_start_interval_number) "
+      + "SELECT key_data, rolling_start_interval_number FROM new_keys ON CONFLICT DO NOTHING "
+      + "RETURNING key_data, rolling_start_interval_number) "
+      + "INSERT INTO diagnosis_key " + INSERTED_COLUMNS + " SELECT * FROM new_keys "
+      + "WHERE (key_data, rolling_start_interval_number) IN (SELECT * FROM registered_keys) ON CONFLICT DO NOTHING";
+  private static final String SELECT_VERIFIED_ORDERED_STATEMENT = "SELECT "
+      + "key_data, rolling_start_interval_number, rolling_period, submission_timestamp, transmission_risk_level, "
+      + "origin_country, visited_countries, report_type, days_since_onset_of_symptoms, consent_to_federation, "
+      + "verified, NULL AS mobile_test_id, NULL AS mobile_test_id2, NULL AS date_patient_infectious, "
+      + "NULL AS date_test_communicated, 0 AS result_channel "
+      + "FROM diagnosis_key WHERE verified = TRUE AND submission_timestamp >= ? ORDER BY submission_timestamp ASC";
+
+  private static final String UPDATE_VERIFIED_STATEMENT = "UPDATE diagnosis_key SET verified = TRUE WHERE key_data IN ";
+  private static final int MAX_KEYS_PER_UPDATE = 1000;
+
+  private final JdbcOperations jdbcOperations;
+  private final RowMapper<DiagnosisKey> rowMapper;
+  private final int fetchSize;
+
+  @SuppressWarnings("unchecked")
+  DiagnosisKeyBatchRepositoryImpl(JdbcOperations jdbcOperations, RelationalMappingContext mappingContext,
+      JdbcConverter converter, @Value("${persistence.fetch-size:1000}") int fetchSize) {
+    this.jdbcOperations = jdbcOperations;
+    this.rowMapper = new EntityRowMapper<>(
+        (RelationalPersistentEntity<DiagnosisKey>) mappingContext.getRequiredPersistentEntity(DiagnosisKey.class),
+        converter);
+    this.fetchSize = fetchSize;
+  }
+
+  @Override
+  public int saveAllDoNothingOnConflict(List<DiagnosisKey> diagnosisKeys) {
+    if (diagnosisKeys.isEmpty()) {
+      return 0;
+    }
+    Collection<DiagnosisKey> distinctDiagnosisKeys = distinctByKeyData(diagnosisKeys);
+    return jdbcOperations.update(connection -> {
+      PreparedStatement statement = connection.prepareStatement(buildInsertStatement(distinctDiagnosisKeys.size()));
+      int parameterIndex = 1;
+      for (DiagnosisKey diagnosisKey : distinctDiagnosisKeys) {
+        parameterIndex = bindDiagnosisKey(connection, statement, parameterIndex, diagnosisKey);
+      }
+      return statement;
+    });
+  }
+
+  @Override
+  public Stream<DiagnosisKey> streamVerifiedSubmittedSinceOrderBySubmissionTimestamp(long submissionTimestamp) {
+    return jdbcOperations.queryForStream(connection -> {
+      PreparedStatement statement = connection.prepareStatement(SELECT_VERIFIED_ORDERED_STATEMENT,
+          ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+      statement.setLong(1, submissionTimestamp);
+      statement.setFetchSize(fetchSize);
+      return statement;
+    }, rowMapper);
+  }
+
+  @Override
+  public int updateVerified(List<byte[]> keyData) {
+    int numberOfUpdatedKeys = 0;
+    for (int from = 0; from < keyData.size(); from += MAX_KEYS_PER_UPDATE) {
+      List<byte[]> chunk = keyData.subList(from, Math.min(from + MAX_KEYS_PER_UPDATE, keyData.size()));
+      numberOfUpdatedKeys += jdbcOperations.update(connection -> {
+        PreparedStatement statement = connection.prepareStatement(buildUpdateVerifiedStatement(chunk.size()));
+        int parameterIndex = 1;
+        for (byte[] data : chunk) {
+          statement.setBytes(parameterIndex++, data);
+        }
+        return statement;
+      });
+    }
+    return numberOfUpdatedKeys;
+  }
+
+  /**
+   * Returns the first diagnosis key for each key data. The registry of key data returns each registered key data only
+   * once per statement, so later duplicates within the same statement are left out in advance.
+   */
+  private static Collection<DiagnosisKey> distinctByKeyData(List<DiagnosisKey> diagnosisKeys) {
+    Map<ByteBuffer, DiagnosisKey> distinctDiagnosisKeys = new LinkedHashMap<>();
+    for (DiagnosisKey diagnosisKey : diagnosisKeys) {
+      distinctDiagnosisKeys.putIfAbsent(ByteBuffer.wrap(diagnosisKey.getKeyData()), diagnosisKey);
+    }
+    return distinctDiagnosisKeys.values();
+  }
+
+  private static String buildUpdateVerifiedStatement(int numberOfKeys) {
+    StringBuilder sql = new StringBuilder(UPDATE_VERIFIED_STATEMENT.length() + numberOfKeys * 3 + 1);
+    sql.append(UPDATE_VERIFIED_STATEMENT).append('(');
+    for (int key = 0; key < numberOfKeys; key++) {
+      if (key > 0) {
+        sql.append(", ");
+      }
+      sql.append('?');
+    }
+    return sql.append(')').toString();
+  }
+
+  private static String buildInsertStatement(int numberOfRows) {
+    StringBuilder sql = new StringBuilder(INSERT_STATEMENT.length() + numberOfRows * (VALUES_ROW.length() + 1)
+        + REGISTERED_KEYS_CLAUSE.length());
+    sql.append(INSERT_STATEMENT);
+    for (int row = 0; row < numberOfRows; row++) {
+      if (row > 0) {
+        sql.append(',');
+      }
+      sql.append(VALUES_ROW);
+    }
+    return sql.append(REGISTERED_KEYS_CLAUSE).toString();
+  }
+
+  private static int bindDiagnosisKey(Connection connection, PreparedStatement statement, int firstParameterIndex,
+      DiagnosisKey diagnosisKey) throws SQLException {
+    int index = firstParameterIndex;
+    statement.setBytes(index++, diagnosisKey.getKeyData());
+    statement.setInt(index++, diagnosisKey.getRollingStartIntervalNumber());
+    statement.setInt(index++, diagnosisKey.getRollingPeriod());
+    statement.setLong(index++, diagnosisKey.getSubmissionTimestamp());
+    statement.setInt(index++, diagnosisKey.getTransmissionRiskLevel());
+    statement.setString(index++, diagnosisKey.getOriginCountry());
+    statement.setArray(index++,
+        connection.createArrayOf("varchar", diagnosisKey.getVisitedCountries().toArray(new String[0])));
+    statement.setString(index++, diagnosisKey.getReportType().name());
+    statement.setInt(index++, diagnosisKey.getDaysSinceOnsetOfSymptoms());
+    statement.setBoolean(index++, diagnosisKey.isConsentToFederation());
+    statement.setString(index++, diagnosisKey.getMobileTestId());
+    statement.setString(index++, diagnosisKey.getMobileTestId2());
+    statement.setObject(index++, diagnosisKey.getDatePatientInfectious());
+    statement.setObject(index++, diagnosisKey.getDateTestCommunicated());
+    statement.setInt(index++, diagnosisKey.getResultChannel());
+    statement.setBoolean(index++, diagnosisKey.isVerified());
+    statement.setInt(index++, diagnosisKey.getExpiryIntervalNumber());
+    return index;
+  }
+}
@@ -23,6 +23,7 @@ package app.coronawarn.server.common.persistence.repository;
 
 import app.coronawarn.server.common.persistence.domain.DiagnosisKey;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import org.springframework.data.jdbc.repository.query.Modifying;
 import org.springframework.data.jdbc.repository.query.Query;
@@ -31,39 +32,81 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
-public interface DiagnosisKeyRepository extends PagingAndSortingRepository<DiagnosisKey, Long> {
-
+public interface DiagnosisKeyRepository extends PagingAndSortingRepository<DiagnosisKey, Long>,
+    DiagnosisKeyBatchRepository {
 
   List<DiagnosisKey> findByVerified(Boolean verified);
 
-  @Query("SELECT * FROM diagnosis_key WHERE (mobile_test_id =:mobileTestId OR mobile_test_id2 =:mobileTestId) "
-      + "AND date_patient_infectious=:datePatientInfectious AND verified=:verified")
-  List<DiagnosisKey> findByMobileTestIdOrMobileTestId2AndDatePatientInfectiousAndVerified(
+  /**
+   * Returns the unverified diagnosis keys whose mobile test id or second mobile test id matches the specified one. Both
+   * mobile test ids are looked up separately, so that each lookup can use its own index, and keys matching the first
+   * one are left out of the second lookup, so that no key is returned twice. Keys without a first mobile test id are
+   * still found by their second one. The verification status is part of the statement rather than a parameter, as the
+   * indexes only cover unverified keys and could not be used for a generic plan of a bound status.
+   *
+   * @param mobileTestId          The mobile test id.
+   * @param datePatientInfectious The date the patient was infectious.
+   * @return The matching unverified diagnosis keys.
+   */
+  @Query("SELECT * FROM diagnosis_key WHERE mobile_test_id = :mobileTestId "
+      + "AND date_patient_infectious = :datePatientInfectious AND verified = FALSE "
+      + "UNION ALL "
+      + "SELECT * FROM diagnosis_key WHERE mobile_test_id2 = :mobileTestId "
+      + "AND mobile_test_id IS DISTINCT FROM :mobileTestId "
+      + "AND date_patient_infectious = :datePatientInfectious AND verified = FALSE")
+  List<DiagnosisKey> findUnverifiedByMobileTestIdOrMobileTestId2AndDatePatientInfectious(
       @Param("mobileTestId") String mobileTestId,
-      @Param("datePatientInfectious") LocalDate datePatientInfectious,
-      @Param("verified") boolean verified);
+      @Param("datePatientInfectious") LocalDate datePatientInfectious);
 
   /**
-   * Counts all entries that have a submission timestamp older than the specified one.
+   * Returns all unverified diagnosis keys which belong to one of the authorization codes with the specified signatures,
+   * i.e. whose mobile test id or second mobile test id and date of infectiousness match those of the authorization
+   * code. Each key is returned once, even if it matches several authorization codes.
    *
-   * @param submissionTimestamp The submission timestamp up to which entries will be expired.
-   * @return The number of expired keys.
+   * @param signatures The signatures of the authorization codes.
+   * @return The unverified diagnosis keys of these authorization codes.
    */
-  @Query("SELECT COUNT(*) FROM diagnosis_key WHERE submission_timestamp<:threshold")
-  int countOlderThan(@Param("threshold") long submissionTimestamp);
+  @Query("SELECT * FROM diagnosis_key WHERE verified = FALSE AND (mobile_test_id, date_patient_infectious) IN "
+      + "(SELECT mobile_test_id, date_patient_infectious FROM authorization_code WHERE signature IN (:signatures)) "
+      + "UNION ALL "
+      + "SELECT * FROM diagnosis_key WHERE verified = FALSE AND (mobile_test_id2, date_patient_infectious) IN "
+      + "(SELECT mobile_test_id, date_patient_infectious FROM authorization_code WHERE signature IN (:signatures)) "
+      + "AND NOT EXISTS (SELECT 1 FROM authorization_code WHERE signature IN (:signatures) "
+      + "AND authorization_code.mobile_test_id = diagnosis_key.mobile_test_id "
+      + "AND authorization_code.date_patient_infectious = diagnosis_key.date_patient_infectious)")
+  List<DiagnosisKey> findUnverifiedByAuthorizationCodeSignatures(@Param("signatures") Collection<String> signatures);
 
   /**
-   * Deletes all entries that have a submission timestamp older than the specified one.
+   * Removes all entries that have a submission timestamp older than the specified one from the diagnosis key and the
+   * federation upload key table, and the registered key data of all keys with a rolling start interval number older
+   * than the specified one. Daily partitions which only hold such entries are dropped as a whole, the remaining
+   * entries are deleted.
    *
-   * @param submissionTimestamp The submission timestamp up to which entries will be deleted.
+   * @param submissionTimestamp        The submission timestamp up to which entries will be removed.
+   * @param rollingStartIntervalNumber The rolling start interval number up to which key data will be unregistered.
+   * @return The number of removed diagnosis keys.
    */
-  @Modifying
-  @Query("DELETE FROM diagnosis_key WHERE submission_timestamp<:threshold")
-  void deleteOlderThan(@Param("threshold") long submissionTimestamp);
+  @Query("SELECT apply_key_retention(:threshold, :keyDataThreshold)")
+  int dropOlderThan(@Param("threshold") long submissionTimestamp,
+      @Param("keyDataThreshold") long rollingStartIntervalNumber);
+
+  /**
+   * Creates the missing daily partitions of the diagnosis key and the federation upload key table and of the key data
+   * registry for the specified days (UTC) and for all days with entries in the default partitions, which are moved to
+   * the new partitions. Days whose table is in use by other transactions are skipped.
+   *
+   * @param firstDay The first day to create partitions for.
+   * @param lastDay  The last day to create partitions for.
+   * @return The number of created partitions.
+   */
+  @Query("SELECT create_key_partitions(CAST(:firstDay AS date), CAST(:lastDay AS date))")
+  int createPartitions(@Param("firstDay") LocalDate firstDay, @Param("lastDay") LocalDate lastDay);
 
   /**
    * Attempts to write the specified diagnosis key information into the database. If a row with the specified key data
-   * already exists, no data is inserted.
+   * and rolling start interval number already exists, regardless of its submission timestamp, or a row with the
+   * specified key data and submission timestamp, no data is inserted. The key is registered before it is inserted, so
+   * that only one of several concurrent attempts to write it inserts it.
    *
    * @param keyData                    The key data of the diagnosis key.
    * @param rollingStartIntervalNumber The rolling start interval number of the diagnosis key.
@@ -78,15 +121,24 @@ public interface DiagnosisKeyRepository extends PagingAndSortingRepository<Diagn
    *
    */
   @Modifying
-  @Query("INSERT INTO diagnosis_key "
+  @Query("WITH new_key (key_data, rolling_start_interval_number, rolling_period, submission_timestamp, "
+      + "transmission_risk_level, origin_country, visited_countries, report_type, days_since_onset_of_symptoms, "
+      + "consent_to_federation, mobile_test_id, mobile_test_id2, date_patient_infectious, date_test_communicated, "
+      + "result_channel, verified, expiry_interval_number) "
+      + "AS (VALUES (:keyData, :rollingStartIntervalNumber, :rollingPeriod, :submissionTimestamp, "
+      + ":transmissionRisk, :origin_country, :visited_countries, :report_type, :days_since_onset_of_symptoms, "
+      + ":consent_to_federation, :mobileTestId, :mobileTestId2 , CAST(:datePatientInfectious AS date), "
+      + "CAST(:dateTestCommunicated AS date), :resultChannel, :verified, "
+      + ":rollingStartIntervalNumber + :rollingPeriod)), "
+      + "registered_key AS (INSERT INTO diagnosis_key_data (key_data, rolling_start_interval_number) "
+      + "SELECT key_data, rolling_start_interval_number FROM new_key ON CONFLICT DO NOTHING "
+      + "RETURNING key_data, rolling_start_interval_number) "
+      + "INSERT INTO diagnosis_key "
       + "(key_data, rolling_start_interval_number, rolling_period, submission_timestamp, transmission_risk_level, "
       + "origin_country, visited_countries, report_type, days_since_onset_of_symptoms, consent_to_federation, "
       + "mobile_test_id, mobile_test_id2, date_patient_infectious, date_test_communicated, result_channel, "
-      + "verified) "
-      + "VALUES (:keyData, :rollingStartIntervalNumber, :rollingPeriod, :submissionTimestamp, :transmissionRisk, "
-      + ":origin_country, :visited_countries, :report_type, :days_since_onset_of_symptoms, :consent_to_federation, "
-      + ":mobileTestId, :mobileTestId2 , :datePatientInfectious, :dateTestCommunicated, :resultChannel, "
-      + " :verified) "
+      + "verified, expiry_interval_number) "
+      + "SELECT * FROM new_key WHERE (key_data, rolling_start_interval_number) IN (SELECT * FROM registered_key) "
       + "ON CONFLICT DO NOTHING")
   boolean saveDoNothingOnConflict(
       @Param("keyData") byte[] keyData,
@@ -18,6 +18,21 @@ public interface FederationUploadKeyRepository
   @Query("SELECT * FROM federation_upload_key WHERE (batch_tag is null or batch_tag = '')")
   List<FederationUploadKey> findAllUploadableKeys();
 
+  /**
+   * Returns all keys that have not been uploaded yet and are expired long enough to be shared, as determined by
+   * {@link app.coronawarn.server.common.persistence.service.common.KeySharingPoliciesChecker
+   * #getExpiryIntervalNumberThreshold}.
+   *
+   * @param expiryIntervalNumber The exclusive upper bound for the expiry interval number of the keys.
+   * @param submissionTimestamp  The inclusive upper bound for the submission timestamp of the keys.
+   * @return The uploadable keys that can be shared.
+   */
+  @Query("SELECT * FROM federation_upload_key WHERE (batch_tag is null or batch_tag = '') "
+      + "AND expiry_interval_number < :expiryIntervalNumber AND submission_timestamp <= :submissionTimestamp")
+  List<FederationUploadKey> findAllUploadableKeysExpiredBefore(
+      @Param("expiryIntervalNumber") int expiryIntervalNumber,
+      @Param("submissionTimestamp") long submissionTimestamp);
+
   @Modifying
   @Query("update federation_upload_key set batch_tag = :batchTag where key_data = :keyData")
   void updateBatchTag(@Param("keyData") byte[] keyData, @Param("batchTag") String batchTag);
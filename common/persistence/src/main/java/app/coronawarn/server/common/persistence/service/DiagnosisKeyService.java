@@ -23,19 +23,27 @@ package app.coronawarn.server.common.persistence.service;
 
 import static app.coronawarn.server.common.persistence.domain.validation.ValidSubmissionTimestampValidator.SECONDS_PER_HOUR;
 import static java.time.ZoneOffset.UTC;
+import static java.util.concurrent.TimeUnit.MINUTES;
 import static org.springframework.data.util.StreamUtils.createStreamFromIterator;
 
 import app.coronawarn.server.common.persistence.domain.DiagnosisKey;
+import app.coronawarn.server.common.persistence.repository.DiagnosisKeyBatchRepository;
 import app.coronawarn.server.common.persistence.repository.DiagnosisKeyRepository;
 import app.coronawarn.server.common.persistence.service.common.ValidDiagnosisKeyFilter;
 import io.micrometer.core.annotation.Timed;
 import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.domain.Sort.Direction;
 import org.springframework.stereotype.Component;
@@ -44,19 +52,50 @@ import org.springframework.transaction.annotation.Transactional;
 @Component
 public class DiagnosisKeyService {
 
+  /**
+   * The default maximum number of diagnosis keys written with a single insert statement, which keeps a full batch well
+   * below {@link DiagnosisKeyBatchRepository#MAX_KEYS_PER_INSERT}.
+   */
+  public static final int DEFAULT_INSERT_BATCH_SIZE = 1000;
+
+  /**
+   * The number of upcoming days for which daily partitions are created in advance, so that new keys are not stored in
+   * the default partitions if the partitions are not created daily.
+   */
+  private static final int PARTITIONS_CREATED_IN_ADVANCE_DAYS = 7;
+
   private static final Logger logger = LoggerFactory.getLogger(DiagnosisKeyService.class);
   private final DiagnosisKeyRepository keyRepository;
   private final ValidDiagnosisKeyFilter validationFilter;
+  private final int insertBatchSize;
 
-  public DiagnosisKeyService(DiagnosisKeyRepository keyRepository, ValidDiagnosisKeyFilter filter) {
+  /**
+   * Creates a new {@link DiagnosisKeyService}.
+   *
+   * @param keyRepository   The repository used to access the diagnosis key table.
+   * @param filter          The filter applied to diagnosis keys read from the database.
+   * @param insertBatchSize The maximum number of diagnosis keys written with a single insert statement.
+   * @throws IllegalArgumentException if {@code insertBatchSize} is not positive or exceeds
+   *                                  {@link DiagnosisKeyBatchRepository#MAX_KEYS_PER_INSERT}.
+   */
+  public DiagnosisKeyService(DiagnosisKeyRepository keyRepository, ValidDiagnosisKeyFilter filter,
+      @Value("${persistence.insert-batch-size:" + DEFAULT_INSERT_BATCH_SIZE + "}") int insertBatchSize) {
+    if (insertBatchSize <= 0) {
+      throw new IllegalArgumentException("Insert batch size must be greater than 0.");
+    }
+    if (insertBatchSize > DiagnosisKeyBatchRepository.MAX_KEYS_PER_INSERT) {
+      throw new IllegalArgumentException("Insert batch size must not be greater than "
+          + DiagnosisKeyBatchRepository.MAX_KEYS_PER_INSERT + ".");
+    }
     this.keyRepository = keyRepository;
     this.validationFilter = filter;
+    this.insertBatchSize = insertBatchSize;
   }
 
   /**
    * Persists the specified collection of {@link DiagnosisKey} instances and returns the number of inserted diagnosis
    * keys. If the key data of a particular diagnosis key already exists in the database, this diagnosis key is not
-   * persisted.
+   * persisted. The keys are written in chunks of at most {@code persistence.insert-batch-size} rows per statement.
    *
    * @param diagnosisKeys must not contain {@literal null}.
    * @return Number of successfully inserted diagnosis keys.
@@ -65,31 +104,13 @@ public class DiagnosisKeyService {
   @Timed
   @Transactional
   public int saveDiagnosisKeys(Collection<DiagnosisKey> diagnosisKeys) {
-
+    List<DiagnosisKey> diagnosisKeysToInsert = new ArrayList<>(diagnosisKeys);
     int numberOfInsertedKeys = 0;
 
-    for (DiagnosisKey diagnosisKey : diagnosisKeys) {
-      boolean keyInsertedSuccessfully = keyRepository.saveDoNothingOnConflict(
-          diagnosisKey.getKeyData(),
-          diagnosisKey.getRollingStartIntervalNumber(),
-          diagnosisKey.getRollingPeriod(),
-          diagnosisKey.getSubmissionTimestamp(),
-          diagnosisKey.getTransmissionRiskLevel(),
-          diagnosisKey.getMobileTestId(),
-          diagnosisKey.getMobileTestId2(),
-          diagnosisKey.getDatePatientInfectious(),
-          diagnosisKey.getDateTestCommunicated(),
-          diagnosisKey.getResultChannel(),
-          diagnosisKey.getOriginCountry(),
-          diagnosisKey.getVisitedCountries().toArray(new String[0]),
-          diagnosisKey.getReportType().name(),
-          diagnosisKey.getDaysSinceOnsetOfSymptoms(),
-          diagnosisKey.isConsentToFederation(),
-          diagnosisKey.isVerified());
-
-      if (keyInsertedSuccessfully) {
-        numberOfInsertedKeys++;
-      }
+    for (int fromIndex = 0; fromIndex < diagnosisKeysToInsert.size(); fromIndex += insertBatchSize) {
+      int toIndex = Math.min(fromIndex + insertBatchSize, diagnosisKeysToInsert.size());
+      numberOfInsertedKeys += keyRepository.saveAllDoNothingOnConflict(
+          diagnosisKeysToInsert.subList(fromIndex, toIndex));
     }
 
     int conflictingKeys = diagnosisKeys.size() - numberOfInsertedKeys;
@@ -112,26 +133,96 @@ public class DiagnosisKeyService {
     return validationFilter.filter(diagnosisKeys);
   }
 
+  /**
+   * Passes all valid persisted diagnosis keys within the retention period, sorted by their submission timestamp, to the
+   * given consumer one at a time. In contrast to {@link #getDiagnosisKeys()}, the keys are read from a database cursor
+   * and never collected into an intermediate list, so the memory used by this method does not grow with the size of
+   * the table. Unverified keys and keys older than the retention period are already skipped by the database, and only
+   * the attributes needed for distribution are populated (see
+   * {@link DiagnosisKeyRepository#streamVerifiedSubmittedSinceOrderBySubmissionTimestamp(long)}).
+   *
+   * @param daysToRetain         the number of days until which diagnosis keys are retained.
+   * @param now                  the point in time the retention period ends, so that callers running on a pinned
+   *                             clock (e.g. the shards of a distribution run) read the same keys.
+   * @param diagnosisKeyConsumer The consumer receiving each valid diagnosis key.
+   * @throws IllegalArgumentException if {@code daysToRetain} is negative.
+   */
+  @Transactional(readOnly = true)
+  public void forEachDiagnosisKey(int daysToRetain, Instant now, Consumer<DiagnosisKey> diagnosisKeyConsumer) {
+    AtomicInteger numberOfKeys = new AtomicInteger();
+    AtomicInteger numberOfValidKeys = new AtomicInteger();
+
+    try (Stream<DiagnosisKey> diagnosisKeys = keyRepository.streamVerifiedSubmittedSinceOrderBySubmissionTimestamp(
+        getRetentionThreshold(daysToRetain, now))) {
+      diagnosisKeys
+          .peek(diagnosisKey -> numberOfKeys.incrementAndGet())
+          .filter(validationFilter::isDiagnosisKeyValid)
+          .peek(diagnosisKey -> numberOfValidKeys.incrementAndGet())
+          .forEach(diagnosisKeyConsumer);
+    }
+
+    logger.info("Retrieved {} diagnosis key(s). Discarded {} diagnosis key(s) from the result as invalid.",
+        numberOfKeys.get(), numberOfKeys.get() - numberOfValidKeys.get());
+  }
+
   /**
    * Deletes all diagnosis key entries which have a submission timestamp that is older than the specified number of
-   * days.
+   * days, together with the corresponding federation upload key entries and the registered key data of expired keys.
+   * Daily partitions which only hold such entries are dropped instead of being deleted row by row. The missing daily
+   * partitions are created first (see {@link #createKeyPartitions()}).
    *
    * @param daysToRetain the number of days until which diagnosis keys will be retained.
    * @throws IllegalArgumentException if {@code daysToRetain} is negative.
    */
   @Transactional
   public void applyRetentionPolicy(int daysToRetain) {
+    Instant now = Instant.now();
+    long threshold = getRetentionThreshold(daysToRetain, now);
+    createKeyPartitions();
+
+    int numberOfDeletions = keyRepository.dropOlderThan(threshold, getKeyDataRetentionThreshold(daysToRetain, now));
+    logger.info("Deleted {} diagnosis key(s) with a submission timestamp older than {} day(s) ago.",
+        numberOfDeletions, daysToRetain);
+  }
+
+  /**
+   * Creates the missing daily partitions of the key tables and of the key data registry from today until
+   * {@value #PARTITIONS_CREATED_IN_ADVANCE_DAYS} days ahead, and for all days with entries in the default partitions,
+   * which are moved to the created partitions. Days whose tables are in use by other transactions are skipped and left
+   * to the next call.
+   */
+  @Transactional
+  public void createKeyPartitions() {
+    LocalDate today = LocalDate.now(UTC);
+    int numberOfCreatedPartitions = keyRepository.createPartitions(today,
+        today.plusDays(PARTITIONS_CREATED_IN_ADVANCE_DAYS));
+    logger.info("Created {} daily key partition(s).", numberOfCreatedPartitions);
+  }
+
+  /**
+   * Returns the submission timestamp (hours since epoch) of the oldest diagnosis keys within the retention period
+   * ending at the given point in time.
+   */
+  private static long getRetentionThreshold(int daysToRetain, Instant now) {
     if (daysToRetain < 0) {
       throw new IllegalArgumentException("Number of days to retain must be greater or equal to 0.");
     }
-
-    long threshold = LocalDateTime
-        .ofInstant(Instant.now(), UTC)
+    return LocalDateTime
+        .ofInstant(now, UTC)
         .minusDays(daysToRetain)
         .toEpochSecond(UTC) / SECONDS_PER_HOUR;
-    int numberOfDeletions = keyRepository.countOlderThan(threshold);
-    logger.info("Deleting {} diagnosis key(s) with a submission timestamp older than {} day(s) ago.",
-        numberOfDeletions, daysToRetain);
-    keyRepository.deleteOlderThan(threshold);
+  }
+
+  /**
+   * Returns the rolling start interval number of the oldest diagnosis keys whose key data is still registered. Keys are
+   * only accepted within the retention period after their rolling start (see
+   * {@link DiagnosisKey#isYoungerThanRetentionThreshold(int)}) and deleted once the retention period after their
+   * submission has passed, so their key data is kept for twice the retention period.
+   */
+  private static long getKeyDataRetentionThreshold(int daysToRetain, Instant now) {
+    return LocalDateTime
+        .ofInstant(now, UTC)
+        .minusDays(2L * daysToRetain)
+        .toEpochSecond(UTC) / MINUTES.toSeconds(DiagnosisKey.ROLLING_PERIOD_MINUTES_INTERVAL);
   }
 }
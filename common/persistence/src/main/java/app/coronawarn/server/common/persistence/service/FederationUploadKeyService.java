@@ -45,7 +45,8 @@ public class FederationUploadKeyService {
    * service. Readiness of keys means:
    * Consent is given by the user (this should always be the case for keys in this table,
    * but a safety check is performed anyway
-   * Key is expired conforming to the given policy
+   * Key is expired conforming to the given policy (pre-selected by the database on the persisted expiry interval
+   * number)
    *
    * @param policy the ExpirationPolicy
    * @param daysToRetain number of days to retain
@@ -58,13 +59,17 @@ public class FederationUploadKeyService {
     AtomicInteger keysPickedAfterSharePolicy = new AtomicInteger();
     AtomicInteger keysPickedAfterRetentionPolicy = new AtomicInteger();
 
-    var listOfKeys = createStreamFromIterator(keyRepository.findAllUploadableKeys().iterator())
+    LocalDateTime timeToShare = LocalDateTime.now(UTC);
+    long hourToShare = timeToShare.toEpochSecond(UTC) / KeySharingPoliciesChecker.ONE_HOUR_INTERVAL_SECONDS;
+    var uploadableKeys = keyRepository.findAllUploadableKeysExpiredBefore(
+        sharingPoliciesChecker.getExpiryIntervalNumberThreshold(policy, timeToShare), hourToShare);
+    var listOfKeys = createStreamFromIterator(uploadableKeys.iterator())
         .peek(k -> keysPicked.addAndGet(1))
         .filter(DiagnosisKey::isConsentToFederation)
         .peek(k -> keysPickedAfterConsent.addAndGet(1))
         .filter(validationFilter::isDiagnosisKeyValid)
         .peek(k -> keysPickedAfterValidity.addAndGet(1))
-        .filter(key -> sharingPoliciesChecker.canShareKeyAtTime(key, policy, LocalDateTime.now(UTC)))
+        .filter(key -> sharingPoliciesChecker.canShareKeyAtHour(key, policy, hourToShare))
         .peek(k -> keysPickedAfterSharePolicy.addAndGet(1))
         .filter(key -> key.isYoungerThanRetentionThreshold(daysToRetain))
         .peek(k -> keysPickedAfterRetentionPolicy.addAndGet(1))
@@ -6,12 +6,9 @@ package app.coronawarn.server.common.persistence.service.common;
 import static java.time.ZoneOffset.UTC;
 
 import app.coronawarn.server.common.persistence.domain.DiagnosisKey;
-import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
-import java.util.Map;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Function;
 import org.springframework.stereotype.Component;
 
 
@@ -35,11 +32,6 @@ public class KeySharingPoliciesChecker {
   public static final long TEN_MINUTES_INTERVAL_SECONDS = TimeUnit.MINUTES
       .toSeconds(DiagnosisKey.ROLLING_PERIOD_MINUTES_INTERVAL);
 
-  private static final Map<ChronoUnit, Function<Duration, Long>> TIME_CONVERTERS
-      = Map.of(ChronoUnit.SECONDS, Duration::toSeconds,
-      ChronoUnit.MINUTES, Duration::toMinutes,
-      ChronoUnit.HOURS, Duration::toHours);
-
   /**
    * Returns true if the given diagnosis key can be shared at the given time taking into account
    * the expiration policy.
@@ -50,8 +42,20 @@ public class KeySharingPoliciesChecker {
    * @return boolean value which is true if the timeToShare is after or equal to the earliest time to share
    */
   public boolean canShareKeyAtTime(DiagnosisKey key, ExpirationPolicy policy, LocalDateTime timeToShare) {
-    LocalDateTime earliestTimeToShare = getEarliestTimeForSharingKey(key, policy);
-    return timeToShare.isAfter(earliestTimeToShare) || timeToShare.isEqual(earliestTimeToShare);
+    return canShareKeyAtHour(key, policy, Math.floorDiv(timeToShare.toEpochSecond(UTC), ONE_HOUR_INTERVAL_SECONDS));
+  }
+
+  /**
+   * Returns true if the given diagnosis key can be shared at the given hour taking into account the expiration
+   * policy. Equivalent to {@link #canShareKeyAtTime}, but does not allocate any objects.
+   *
+   * @param key the {@link DiagnosisKey}
+   * @param policy when the key expires {@link ExpirationPolicy}
+   * @param hourToShare when the key is shared, as hours since epoch
+   * @return boolean value which is true if the hourToShare is after or equal to the earliest hour to share
+   */
+  public boolean canShareKeyAtHour(DiagnosisKey key, ExpirationPolicy policy, long hourToShare) {
+    return hourToShare >= getEarliestHourForSharingKey(key, policy);
   }
 
   /**
@@ -63,35 +67,61 @@ public class KeySharingPoliciesChecker {
    * @return {@link LocalDateTime} at which the specified {@link DiagnosisKey} can be shared.
    */
   public LocalDateTime getEarliestTimeForSharingKey(DiagnosisKey diagnosisKey, ExpirationPolicy policy) {
-    LocalDateTime submissionDateTime = getSubmissionDateTime(diagnosisKey);
-    LocalDateTime expiryDateTime = getRollingPeriodExpiryTime(diagnosisKey);
-    long timeBetweenExpiryAndSubmission = TIME_CONVERTERS.get(policy.getTimeUnit())
-        .apply(Duration.between(expiryDateTime, submissionDateTime));
-    if (timeBetweenExpiryAndSubmission <= policy.getExpirationTime()) {
-      // truncatedTo floors the value, so we need to add an hour to the DISTRIBUTION_PADDING to compensate that.
-      return expiryDateTime.plusMinutes(policy.getExpirationTime() + 60).truncatedTo(ChronoUnit.HOURS);
-    } else {
-      return submissionDateTime;
-    }
+    return LocalDateTime.ofEpochSecond(
+        getEarliestHourForSharingKey(diagnosisKey, policy) * ONE_HOUR_INTERVAL_SECONDS, 0, UTC);
   }
 
   /**
-   * Returns the end of the rolling time window that a {@link DiagnosisKey} was active for as a {@link LocalDateTime}.
-   * The ".plusDays(1L)" is used as there can be now diagnosis keys with rollingPeriod set to less than 1 day.
+   * Calculates the earliest hour at which the specified {@link DiagnosisKey} can be shared with external systems, while
+   * respecting the expiry policy and the submission timestamp. Equivalent to {@link #getEarliestTimeForSharingKey},
+   * but does not allocate any objects.
    *
    * @param diagnosisKey key {@link DiagnosisKey}
-   * @return when the period expires {@link LocalDateTime}
+   * @param policy when the key expires {@link ExpirationPolicy}
+   * @return hours since epoch at which the specified {@link DiagnosisKey} can be shared.
    */
-  private LocalDateTime getRollingPeriodExpiryTime(DiagnosisKey diagnosisKey) {
-    return LocalDateTime
-        .ofEpochSecond(diagnosisKey.getRollingStartIntervalNumber() * TEN_MINUTES_INTERVAL_SECONDS, 0, UTC)
-        .plusMinutes(diagnosisKey.getRollingPeriod() * DiagnosisKey.ROLLING_PERIOD_MINUTES_INTERVAL);
+  public long getEarliestHourForSharingKey(DiagnosisKey diagnosisKey, ExpirationPolicy policy) {
+    return getEarliestHourForSharingKey(diagnosisKey.getSubmissionTimestamp() * ONE_HOUR_INTERVAL_SECONDS,
+        diagnosisKey.getExpiryIntervalNumber() * TEN_MINUTES_INTERVAL_SECONDS, policy);
   }
 
   /**
-   * Returns the submission timestamp of a {@link DiagnosisKey} as a {@link LocalDateTime}.
+   * Calculates the earliest hour at which a key with the given submission and rolling period expiry time can be shared
+   * with external systems, while respecting the expiry policy.
+   *
+   * @param submissionEpochSecond when the key was submitted, as seconds since epoch
+   * @param expiryEpochSecond when the rolling period of the key ends, as seconds since epoch
+   * @param policy when the key expires {@link ExpirationPolicy}
+   * @return hours since epoch at which the key can be shared.
+   */
+  public long getEarliestHourForSharingKey(long submissionEpochSecond, long expiryEpochSecond,
+      ExpirationPolicy policy) {
+    long timeBetweenExpiryAndSubmission =
+        (submissionEpochSecond - expiryEpochSecond) / policy.getTimeUnit().getDuration().getSeconds();
+    if (timeBetweenExpiryAndSubmission <= policy.getExpirationTime()) {
+      // flooring to the hour, so we need to add an hour to the DISTRIBUTION_PADDING to compensate that.
+      long distributionPaddingSeconds = TimeUnit.MINUTES.toSeconds(policy.getExpirationTime() + 60);
+      return Math.floorDiv(expiryEpochSecond + distributionPaddingSeconds, ONE_HOUR_INTERVAL_SECONDS);
+    } else {
+      return Math.floorDiv(submissionEpochSecond, ONE_HOUR_INTERVAL_SECONDS);
+    }
+  }
+
+  /**
+   * Returns the exclusive upper bound for the {@link DiagnosisKey#getExpiryIntervalNumber() expiry interval number} of
+   * keys which are expired long enough to be shared at the given time. A key can be shared at {@code timeToShare} if,
+   * and only if, its expiry interval number is below this threshold and its submission timestamp is not after the hour
+   * of {@code timeToShare}. In contrast to {@link #canShareKeyAtTime}, this condition can be evaluated by the database
+   * on the persisted expiry interval number. Like {@link #getEarliestTimeForSharingKey}, which adds the expiration time
+   * as minutes, this assumes a policy given in {@link ChronoUnit#MINUTES}.
+   *
+   * @param policy when the key expires {@link ExpirationPolicy}
+   * @param timeToShare when the key is shared {@link LocalDateTime}
+   * @return the smallest expiry interval number of keys which cannot be shared yet
    */
-  private LocalDateTime getSubmissionDateTime(DiagnosisKey diagnosisKey) {
-    return LocalDateTime.ofEpochSecond(diagnosisKey.getSubmissionTimestamp() * ONE_HOUR_INTERVAL_SECONDS, 0, UTC);
+  public int getExpiryIntervalNumberThreshold(ExpirationPolicy policy, LocalDateTime timeToShare) {
+    long policySeconds = policy.getTimeUnit().getDuration().multipliedBy(policy.getExpirationTime()).getSeconds();
+    long hourToShareSeconds = timeToShare.truncatedTo(ChronoUnit.HOURS).toEpochSecond(UTC);
+    return (int) -Math.floorDiv(policySeconds - hourToShareSeconds, TEN_MINUTES_INTERVAL_SECONDS);
   }
 }
@@ -10,6 +10,7 @@ import java.util.stream.Collectors;
 import javax.validation.ConstraintViolation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 @Component
@@ -17,6 +18,19 @@ public class ValidDiagnosisKeyFilter {
 
   private static final Logger logger = LoggerFactory.getLogger(ValidDiagnosisKeyFilter.class);
 
+  private final boolean reflectionFreeValidation;
+
+  /**
+   * Creates a new {@link ValidDiagnosisKeyFilter}.
+   *
+   * @param reflectionFreeValidation whether keys are checked with {@link DiagnosisKey#isValid()} first, so that Bean
+   *                                 Validation only runs for keys which turn out to be invalid
+   */
+  public ValidDiagnosisKeyFilter(
+      @Value("${persistence.reflection-free-validation:true}") boolean reflectionFreeValidation) {
+    this.reflectionFreeValidation = reflectionFreeValidation;
+  }
+
   /**
    * Rerturns a subset of diagnosis keys from the given list which have
    * passed the default entity validation.
@@ -42,6 +56,16 @@ public class ValidDiagnosisKeyFilter {
    * @return boolean value to indicate if the DiagnosisKey is valid
    */
   public boolean isDiagnosisKeyValid(DiagnosisKey diagnosisKey) {
+    boolean isValid = (reflectionFreeValidation && diagnosisKey.isValid()) || hasNoConstraintViolations(diagnosisKey);
+
+    if (!diagnosisKey.isVerified()) {
+      isValid = false;
+    }
+
+    return isValid;
+  }
+
+  private boolean hasNoConstraintViolations(DiagnosisKey diagnosisKey) {
     Collection<ConstraintViolation<DiagnosisKey>> violations = diagnosisKey.validate();
     boolean isValid = violations.isEmpty();
 
@@ -50,11 +74,6 @@ public class ValidDiagnosisKeyFilter {
           violations.stream().map(ConstraintViolation::getMessage).collect(Collectors.toList());
       logger.warn("Validation failed for diagnosis key from database. Violations: {}", violationMessages);
     }
-
-    if (!diagnosisKey.isVerified()) {
-      isValid = false;
-    }
-
     return isValid;
   }
 
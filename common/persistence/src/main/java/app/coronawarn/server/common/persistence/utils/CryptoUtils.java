@@ -23,6 +23,7 @@ package app.coronawarn.server.common.persistence.utils;
 
 
 import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
 import java.security.Security;
 import java.security.Signature;
 import java.util.Base64;
@@ -37,6 +38,17 @@ public class CryptoUtils {
 
   public static final String TEXT = "TEST REQUEST";
 
+  /**
+   * Signature instances are not thread-safe, but can be reinitialized for every verification, so each thread keeps one.
+   */
+  private static final ThreadLocal<Signature> SIGNATURES = ThreadLocal.withInitial(() -> {
+    try {
+      return Signature.getInstance(SIGNATURE_ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  });
+
   /**
    * Creates an instance of the CryptoUtils.
    * Perform tasks like:
@@ -73,9 +85,22 @@ public class CryptoUtils {
    * @throws Exception in case something goes wrong.
    */
   public static boolean verifySignature(String publicKey, String data, String signatureAsHex) throws Exception {
+    return verifySignature(PemUtils.getPublicKeyFromString(publicKey), data, signatureAsHex);
+  }
+
+  /**
+   * Verifies the signature using the given, already parsed public key, the data and the signature.
+   *
+   * @param publicKey      the public key to verify the signature with
+   * @param data           the data where the signature was applied on
+   * @param signatureAsHex the signature in hex format
+   * @return boolean indicating if signature was valid or not.
+   * @throws Exception in case something goes wrong.
+   */
+  public static boolean verifySignature(PublicKey publicKey, String data, String signatureAsHex) throws Exception {
     byte[] signatureBytes = parseHexBinary(signatureAsHex);
-    Signature signature = Signature.getInstance(SIGNATURE_ALGORITHM);
-    signature.initVerify(PemUtils.getPublicKeyFromString(publicKey));
+    Signature signature = SIGNATURES.get();
+    signature.initVerify(publicKey);
     signature.update(data.getBytes());
     return signature.verify(signatureBytes);
   }
@@ -0,0 +1,13 @@
+-- The end of the rolling period (rolling_start_interval_number + rolling_period, in 10 minute intervals since epoch)
+-- is written once at insert time, so that keys which are expired long enough to be shared can be selected by range.
+
+ALTER TABLE diagnosis_key ADD COLUMN expiry_interval_number integer;
+UPDATE diagnosis_key SET expiry_interval_number = rolling_start_interval_number + rolling_period;
+ALTER TABLE diagnosis_key ALTER COLUMN expiry_interval_number SET NOT NULL;
+
+ALTER TABLE federation_upload_key ADD COLUMN expiry_interval_number integer;
+UPDATE federation_upload_key SET expiry_interval_number = rolling_start_interval_number + rolling_period;
+ALTER TABLE federation_upload_key ALTER COLUMN expiry_interval_number SET NOT NULL;
+
+CREATE INDEX federation_upload_key_pending_expiry_idx ON federation_upload_key (expiry_interval_number)
+    WHERE batch_tag IS NULL OR batch_tag = '';
@@ -0,0 +1,4 @@
+-- Distribution only reads verified keys within the retention window, ordered by their submission timestamp.
+
+CREATE INDEX diagnosis_key_verified_submission_timestamp_idx ON diagnosis_key (submission_timestamp)
+    WHERE verified = TRUE;
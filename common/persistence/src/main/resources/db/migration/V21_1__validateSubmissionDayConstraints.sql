@@ -0,0 +1,5 @@
+-- Validating the constraints added in V21 scans the key tables, but only takes a SHARE UPDATE EXCLUSIVE lock, so keys
+-- can still be inserted and read meanwhile.
+
+ALTER TABLE diagnosis_key VALIDATE CONSTRAINT diagnosis_key_submission_timestamp_check;
+ALTER TABLE federation_upload_key VALIDATE CONSTRAINT federation_upload_key_submission_timestamp_check;
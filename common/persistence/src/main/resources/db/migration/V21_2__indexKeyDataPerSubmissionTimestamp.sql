@@ -0,0 +1,9 @@
+-- The primary key of a partitioned table has to include the partition key, so the tables which become the first
+-- partitions in V21_3 need a unique index on the key data and the submission timestamp. It is built concurrently, so
+-- that keys can still be inserted meanwhile. Flyway runs this migration outside of a transaction, as indexes can only be
+-- built concurrently outside of a transaction.
+
+CREATE UNIQUE INDEX CONCURRENTLY diagnosis_key_key_data_submission_timestamp_idx
+    ON diagnosis_key (key_data, submission_timestamp);
+CREATE UNIQUE INDEX CONCURRENTLY federation_upload_key_key_data_submission_timestamp_idx
+    ON federation_upload_key (key_data, submission_timestamp);
@@ -0,0 +1,140 @@
+-- diagnosis_key and federation_upload_key are range partitioned by submission day (24 submission hours since epoch per
+-- partition, UTC), so that the retention policy drops whole days instead of deleting and vacuuming row by row.
+-- Partitions are named <table>_pYYYYMMDD. Rows for which no daily partition exists yet are stored in <table>_default
+-- and moved to their daily partition once it is created. Days which are already covered by another partition are
+-- skipped.
+
+CREATE OR REPLACE FUNCTION create_key_partitions(first_day date, last_day date)
+RETURNS integer AS $$
+DECLARE
+    parent_table text;
+    partition_day date;
+    partition_table text;
+    lower_bound bigint;
+    upper_bound bigint;
+    created_partitions integer := 0;
+BEGIN
+    FOREACH parent_table IN ARRAY ARRAY['diagnosis_key', 'federation_upload_key'] LOOP
+        partition_day := first_day;
+        WHILE partition_day <= last_day LOOP
+            partition_table := parent_table || '_p' || to_char(partition_day, 'YYYYMMDD');
+            IF to_regclass(partition_table) IS NULL THEN
+                lower_bound := (partition_day - DATE '1970-01-01') * 24;
+                upper_bound := lower_bound + 24;
+                BEGIN
+                    EXECUTE format('CREATE TABLE %I (LIKE %I INCLUDING DEFAULTS INCLUDING CONSTRAINTS)',
+                        partition_table, parent_table);
+                    EXECUTE format('WITH moved AS (DELETE FROM %I WHERE submission_timestamp >= %s '
+                        'AND submission_timestamp < %s RETURNING *) INSERT INTO %I SELECT * FROM moved',
+                        parent_table || '_default', lower_bound, upper_bound, partition_table);
+                    EXECUTE format('ALTER TABLE %I ATTACH PARTITION %I FOR VALUES FROM (%s) TO (%s)',
+                        parent_table, partition_table, lower_bound, upper_bound);
+                    created_partitions := created_partitions + 1;
+                EXCEPTION WHEN invalid_object_definition THEN
+                    RAISE NOTICE 'Submission day % of % is already covered by another partition.',
+                        partition_day, parent_table;
+                END;
+            END IF;
+            partition_day := partition_day + 1;
+        END LOOP;
+    END LOOP;
+    RETURN created_partitions;
+END;
+$$
+LANGUAGE plpgsql;
+
+-- Daily partitions which only hold rows older than the threshold are detached and dropped. The remaining older rows,
+-- i.e. those of the day the threshold falls into and those in the default partition, are deleted.
+
+CREATE OR REPLACE FUNCTION apply_key_retention(threshold bigint)
+RETURNS integer AS $$
+DECLARE
+    parent_table text;
+    partition_table text;
+    dropped_partitions integer := 0;
+BEGIN
+    FOREACH parent_table IN ARRAY ARRAY['diagnosis_key', 'federation_upload_key'] LOOP
+        FOR partition_table IN
+            SELECT child.relname
+            FROM pg_inherits
+            JOIN pg_class child ON child.oid = pg_inherits.inhrelid
+            WHERE pg_inherits.inhparent = parent_table::regclass
+              AND child.relname ~ ('^' || parent_table || '_p[0-9]{8}$')
+        LOOP
+            IF (to_date(right(partition_table, 8), 'YYYYMMDD') - DATE '1970-01-01' + 1) * 24 <= threshold THEN
+                EXECUTE format('ALTER TABLE %I DETACH PARTITION %I', parent_table, partition_table);
+                EXECUTE format('DROP TABLE %I', partition_table);
+                dropped_partitions := dropped_partitions + 1;
+            END IF;
+        END LOOP;
+        EXECUTE format('DELETE FROM %I WHERE submission_timestamp < %s', parent_table, threshold);
+    END LOOP;
+    RETURN dropped_partitions;
+END;
+$$
+LANGUAGE plpgsql;
+
+-- Existing tables cannot be turned into partitioned tables in place. Instead, each table is renamed to the daily
+-- partition of the last submission day covered by the constraint validated in V21_1, and attached to a new partitioned
+-- table for all submission timestamps below that bound. As the constraint proves that all rows are within these bounds,
+-- attaching does not scan the table, and no row is copied. Only the catalog changes are done while the ACCESS EXCLUSIVE
+-- lock is held. The retention policy drops this partition once all of its submission days have expired, and deletes
+-- its expired rows one by one until then. Tables without any rows, i.e. those of new databases, are dropped instead.
+--
+-- The former primary key on the key data alone is replaced by the unique index built in V21_2, as every unique index
+-- of a partitioned table has to include the partition key. The row-level triggers of the former tables are dropped, the
+-- triggers of the partitioned tables are created in V22 and V23.
+
+CREATE FUNCTION partition_key_table(parent_table text, secondary_index text)
+RETURNS void AS $$
+DECLARE
+    bound_constraint text := parent_table || '_submission_timestamp_check';
+    upper_bound bigint;
+    partition_table text;
+    row_trigger text;
+    has_rows boolean;
+BEGIN
+    SELECT substring(pg_get_constraintdef(oid) FROM '[0-9]+')::bigint INTO upper_bound
+    FROM pg_constraint
+    WHERE conrelid = parent_table::regclass AND conname = bound_constraint;
+    partition_table := parent_table || '_p'
+        || to_char(DATE '1970-01-01' + (upper_bound / 24)::integer - 1, 'YYYYMMDD');
+    EXECUTE format('SELECT EXISTS (SELECT 1 FROM %I)', parent_table) INTO has_rows;
+
+    FOR row_trigger IN
+        SELECT tgname FROM pg_trigger WHERE tgrelid = parent_table::regclass AND NOT tgisinternal
+    LOOP
+        EXECUTE format('DROP TRIGGER %I ON %I', row_trigger, parent_table);
+    END LOOP;
+    EXECUTE format('ALTER TABLE %I DROP CONSTRAINT %I', parent_table, parent_table || '_pkey');
+    EXECUTE format('ALTER TABLE %I RENAME TO %I', parent_table, partition_table);
+
+    EXECUTE format('CREATE TABLE %I (LIKE %I INCLUDING DEFAULTS, PRIMARY KEY (key_data, submission_timestamp)) '
+        'PARTITION BY RANGE (submission_timestamp)', parent_table, partition_table);
+    EXECUTE format('CREATE TABLE %I PARTITION OF %I DEFAULT', parent_table || '_default', parent_table);
+
+    IF has_rows THEN
+        EXECUTE format('ALTER TABLE %I ADD CONSTRAINT %I PRIMARY KEY USING INDEX %I',
+            partition_table, partition_table || '_pkey', parent_table || '_key_data_submission_timestamp_idx');
+        EXECUTE format('ALTER INDEX %I RENAME TO %I',
+            secondary_index, partition_table || substring(secondary_index FROM length(parent_table) + 1));
+        EXECUTE format('ALTER TABLE %I ATTACH PARTITION %I FOR VALUES FROM (MINVALUE) TO (%s)',
+            parent_table, partition_table, upper_bound);
+        EXECUTE format('ALTER TABLE %I DROP CONSTRAINT %I', partition_table, bound_constraint);
+    ELSE
+        EXECUTE format('DROP TABLE %I', partition_table);
+    END IF;
+END;
+$$
+LANGUAGE plpgsql;
+
+SELECT partition_key_table('diagnosis_key', 'diagnosis_key_verified_submission_timestamp_idx');
+SELECT partition_key_table('federation_upload_key', 'federation_upload_key_pending_expiry_idx');
+DROP FUNCTION partition_key_table(text, text);
+
+CREATE INDEX diagnosis_key_verified_submission_timestamp_idx ON diagnosis_key (submission_timestamp)
+    WHERE verified = TRUE;
+CREATE INDEX federation_upload_key_pending_expiry_idx ON federation_upload_key (expiry_interval_number)
+    WHERE batch_tag IS NULL OR batch_tag = '';
+
+SELECT create_key_partitions((now() AT TIME ZONE 'UTC')::date, (now() AT TIME ZONE 'UTC')::date + 7);
@@ -0,0 +1,18 @@
+-- diagnosis_key and federation_upload_key are partitioned by submission day in V21_3. Their rows are not copied for
+-- this, the existing tables are attached as the first partition of the new partitioned tables instead. This partition
+-- covers all submission timestamps until the end of the day after the migration (UTC). Attaching a table as partition
+-- only holds its ACCESS EXCLUSIVE lock for a moment if a validated constraint already proves that all of its rows are
+-- within the bounds of the partition, so the upper bound is added as a constraint here and validated in V21_1 while
+-- keys are still inserted. The constraint is not checked against the existing rows yet, so adding it does not scan the
+-- tables.
+
+DO $$
+DECLARE
+    upper_bound bigint := ((now() AT TIME ZONE 'UTC')::date + 2 - DATE '1970-01-01') * 24;
+BEGIN
+    EXECUTE format('ALTER TABLE diagnosis_key ADD CONSTRAINT diagnosis_key_submission_timestamp_check '
+        'CHECK (submission_timestamp < %s) NOT VALID', upper_bound);
+    EXECUTE format('ALTER TABLE federation_upload_key ADD CONSTRAINT federation_upload_key_submission_timestamp_check '
+        'CHECK (submission_timestamp < %s) NOT VALID', upper_bound);
+END;
+$$;
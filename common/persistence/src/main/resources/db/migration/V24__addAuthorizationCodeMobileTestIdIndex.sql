@@ -0,0 +1,4 @@
+-- Submissions look up the authorization codes received for their mobile test ids, and verified authorization codes
+-- are deleted by mobile test id.
+
+CREATE INDEX authorization_code_mobile_test_id_idx ON authorization_code (mobile_test_id, date_patient_infectious);
@@ -0,0 +1,7 @@
+-- Unverified keys are looked up by either of their mobile test ids and their date of infectiousness when they are
+-- matched with authorization codes. Verified keys are never looked up this way, so they are left out of the indexes.
+
+CREATE INDEX diagnosis_key_unverified_mobile_test_id_idx ON diagnosis_key (mobile_test_id, date_patient_infectious)
+    WHERE verified = FALSE;
+CREATE INDEX diagnosis_key_unverified_mobile_test_id2_idx ON diagnosis_key (mobile_test_id2, date_patient_infectious)
+    WHERE verified = FALSE;
@@ -0,0 +1,180 @@
+-- The key data of a diagnosis key has to be unique across all submission days, as keys downloaded or submitted again
+-- in a later hour must not be stored twice. The partitioned diagnosis_key table can only enforce uniqueness per
+-- submission timestamp, so the key data of all stored keys is registered in the diagnosis_key_data table instead. Keys
+-- are inserted with a single statement which registers their key data first, skipping data which is already
+-- registered, and then only inserts the keys whose data it registered. As concurrent registrations of the same key
+-- data wait for each other, each key data is inserted once without failing any statement. Deleted keys are
+-- unregistered by a statement-level trigger.
+--
+-- The registry is range partitioned by the day the keys started (144 rolling intervals since epoch per partition,
+-- UTC), so that the retention policy drops the key data of expired days as a whole, like the keys themselves. Its
+-- partitions are named diagnosis_key_data_pYYYYMMDD, and key data of days without a partition is stored in
+-- diagnosis_key_data_default. As the rolling start interval number is part of the primary key, a key is identified by
+-- its key data together with the interval it started in. The partitions for the days the keys stored so far started in
+-- are created before their key data is registered.
+
+DELETE FROM diagnosis_key duplicate USING diagnosis_key original
+WHERE duplicate.key_data = original.key_data AND duplicate.submission_timestamp > original.submission_timestamp;
+
+DELETE FROM federation_upload_key duplicate USING federation_upload_key original
+WHERE duplicate.key_data = original.key_data AND duplicate.submission_timestamp > original.submission_timestamp;
+
+CREATE TABLE diagnosis_key_data (
+    key_data bytea NOT NULL,
+    rolling_start_interval_number integer NOT NULL,
+    PRIMARY KEY (key_data, rolling_start_interval_number)
+) PARTITION BY RANGE (rolling_start_interval_number);
+CREATE TABLE diagnosis_key_data_default PARTITION OF diagnosis_key_data DEFAULT;
+
+CREATE OR REPLACE FUNCTION unregister_diagnosis_key_data()
+RETURNS TRIGGER AS $$
+BEGIN
+    IF current_setting('cwa.key_retention', true) = 'on' THEN
+        RETURN NULL;
+    END IF;
+    DELETE FROM diagnosis_key_data
+    WHERE (key_data, rolling_start_interval_number) IN
+        (SELECT key_data, rolling_start_interval_number FROM deleted_keys);
+    RETURN NULL;
+END;
+$$
+LANGUAGE plpgsql;
+
+CREATE TRIGGER unregister_diagnosis_key_data_trigger
+    AFTER DELETE ON diagnosis_key
+    REFERENCING OLD TABLE AS deleted_keys
+    FOR EACH STATEMENT EXECUTE PROCEDURE unregister_diagnosis_key_data();
+
+-- Daily partitions of the registry are created together with those of the key tables. Besides the given days, the
+-- partitions of all days with rows in the default partitions are created, so that these rows are moved to their daily
+-- partition and dropped with it. Partitions are not only created by the distribution service, but also by the services
+-- inserting keys, which may insert rows for the created day into the default partition while it is created. So the
+-- partitioned table is locked before the rows of the day are moved from its default partition, which blocks inserts
+-- until the partition is attached. Days whose table is not locked within the lock timeout, e.g. while keys are read for
+-- a distribution run, and days whose partition another transaction created meanwhile are skipped and left to the next
+-- call. The tables are locked in the order keys are inserted into them, so that inserting keys does not deadlock with
+-- creating partitions.
+
+CREATE OR REPLACE FUNCTION create_key_partitions(first_day date, last_day date)
+RETURNS integer AS $$
+DECLARE
+    parent_table text;
+    partition_column text;
+    units_per_day integer;
+    partition_day date;
+    partition_table text;
+    lower_bound bigint;
+    upper_bound bigint;
+    created_partitions integer := 0;
+BEGIN
+    FOR parent_table, partition_column, units_per_day IN
+        VALUES ('diagnosis_key_data', 'rolling_start_interval_number', 144),
+               ('diagnosis_key', 'submission_timestamp', 24),
+               ('federation_upload_key', 'submission_timestamp', 24)
+    LOOP
+        FOR partition_day IN EXECUTE format('SELECT generate_series($1::timestamp, $2, ''1 day'')::date UNION '
+            'SELECT DATE ''1970-01-01'' + (%I / %s)::integer FROM %I ORDER BY 1',
+            partition_column, units_per_day, parent_table || '_default') USING first_day, last_day
+        LOOP
+            partition_table := parent_table || '_p' || to_char(partition_day, 'YYYYMMDD');
+            IF to_regclass(partition_table) IS NULL THEN
+                lower_bound := (partition_day - DATE '1970-01-01') * units_per_day;
+                upper_bound := lower_bound + units_per_day;
+                BEGIN
+                    EXECUTE format('LOCK TABLE %I IN ACCESS EXCLUSIVE MODE', parent_table);
+                    EXECUTE format('CREATE TABLE %I (LIKE %I INCLUDING DEFAULTS INCLUDING CONSTRAINTS)',
+                        partition_table, parent_table);
+                    EXECUTE format('WITH moved AS (DELETE FROM %I WHERE %I >= %s AND %I < %s RETURNING *) '
+                        'INSERT INTO %I SELECT * FROM moved', parent_table || '_default', partition_column,
+                        lower_bound, partition_column, upper_bound, partition_table);
+                    EXECUTE format('ALTER TABLE %I ATTACH PARTITION %I FOR VALUES FROM (%s) TO (%s)',
+                        parent_table, partition_table, lower_bound, upper_bound);
+                    created_partitions := created_partitions + 1;
+                EXCEPTION
+                    WHEN invalid_object_definition OR duplicate_table THEN
+                        RAISE NOTICE 'Day % of % is already covered by another partition.', partition_day, parent_table;
+                    WHEN lock_not_available THEN
+                        RAISE NOTICE 'Day % of % is skipped, as the table is in use.', partition_day, parent_table;
+                END;
+            END IF;
+        END LOOP;
+    END LOOP;
+    RETURN created_partitions;
+END;
+$$
+LANGUAGE plpgsql
+SET lock_timeout TO '2s';
+
+-- Dropped partitions do not fire the deletion trigger, so the retention policy removes the expired key data from the
+-- registry itself, by dropping the daily partitions of the registry which only hold key data of keys started before
+-- the given rolling start interval number, and deleting such key data from the default partition of the registry. Like
+-- when keys are inserted, the registry is locked before the key tables. The trigger skips the keys the retention policy
+-- deletes row by row, as joining them with every partition of the registry costs more than deleting them. Their key
+-- data stays registered until it expires, so that expired keys are not inserted again meanwhile. The number of removed
+-- diagnosis keys is returned instead of the number of dropped partitions.
+
+DROP FUNCTION apply_key_retention(bigint);
+
+CREATE FUNCTION apply_key_retention(threshold bigint, key_data_threshold bigint)
+RETURNS integer AS $$
+DECLARE
+    parent_table text;
+    partition_table text;
+    removed_rows integer;
+    removed_keys integer := 0;
+BEGIN
+    PERFORM set_config('cwa.key_retention', 'on', true);
+    FOR partition_table IN
+        SELECT child.relname
+        FROM pg_inherits
+        JOIN pg_class child ON child.oid = pg_inherits.inhrelid
+        WHERE pg_inherits.inhparent = 'diagnosis_key_data'::regclass
+          AND child.relname ~ '^diagnosis_key_data_p[0-9]{8}$'
+    LOOP
+        IF (to_date(right(partition_table, 8), 'YYYYMMDD') - DATE '1970-01-01' + 1) * 144 <= key_data_threshold THEN
+            EXECUTE format('ALTER TABLE diagnosis_key_data DETACH PARTITION %I', partition_table);
+            EXECUTE format('DROP TABLE %I', partition_table);
+        END IF;
+    END LOOP;
+    DELETE FROM diagnosis_key_data_default WHERE rolling_start_interval_number < key_data_threshold;
+
+    FOREACH parent_table IN ARRAY ARRAY['diagnosis_key', 'federation_upload_key'] LOOP
+        FOR partition_table IN
+            SELECT child.relname
+            FROM pg_inherits
+            JOIN pg_class child ON child.oid = pg_inherits.inhrelid
+            WHERE pg_inherits.inhparent = parent_table::regclass
+              AND child.relname ~ ('^' || parent_table || '_p[0-9]{8}$')
+        LOOP
+            IF (to_date(right(partition_table, 8), 'YYYYMMDD') - DATE '1970-01-01' + 1) * 24 <= threshold THEN
+                EXECUTE format('ALTER TABLE %I DETACH PARTITION %I', parent_table, partition_table);
+                IF parent_table = 'diagnosis_key' THEN
+                    EXECUTE format('SELECT count(*) FROM %I', partition_table) INTO removed_rows;
+                    removed_keys := removed_keys + removed_rows;
+                END IF;
+                EXECUTE format('DROP TABLE %I', partition_table);
+            END IF;
+        END LOOP;
+        EXECUTE format('DELETE FROM %I WHERE submission_timestamp < %s', parent_table, threshold);
+        IF parent_table = 'diagnosis_key' THEN
+            GET DIAGNOSTICS removed_rows = ROW_COUNT;
+            removed_keys := removed_keys + removed_rows;
+        END IF;
+    END LOOP;
+
+    PERFORM set_config('cwa.key_retention', 'off', true);
+    RETURN removed_keys;
+END;
+$$
+LANGUAGE plpgsql;
+
+-- The registry gets a partition for each day the stored keys started in. The key tables already have partitions for
+-- all of these days.
+
+SELECT create_key_partitions(
+    coalesce(DATE '1970-01-01' + min(rolling_start_interval_number) / 144, (now() AT TIME ZONE 'UTC')::date),
+    (now() AT TIME ZONE 'UTC')::date + 7)
+FROM diagnosis_key;
+
+INSERT INTO diagnosis_key_data (key_data, rolling_start_interval_number)
+SELECT key_data, rolling_start_interval_number FROM diagnosis_key;
@@ -0,0 +1,18 @@
+-- The upload key table gained the expiry_interval_number column after batch_tag, so the mirrored row is
+-- inserted with an explicit column list instead of relying on the column order.
+
+CREATE OR REPLACE FUNCTION mirror_uploadable_keys()
+RETURNS TRIGGER AS $$
+BEGIN
+    IF ( NEW.CONSENT_TO_FEDERATION = TRUE ) THEN
+        INSERT INTO federation_upload_key (key_data, rolling_period, rolling_start_interval_number,
+            submission_timestamp, transmission_risk_level, consent_to_federation, origin_country, visited_countries,
+            report_type, days_since_onset_of_symptoms, expiry_interval_number)
+        VALUES (NEW.key_data, NEW.rolling_period, NEW.rolling_start_interval_number, NEW.submission_timestamp,
+            NEW.transmission_risk_level, NEW.consent_to_federation, NEW.origin_country, NEW.visited_countries,
+            NEW.report_type, NEW.days_since_onset_of_symptoms, NEW.expiry_interval_number);
+    END IF;
+    RETURN NEW;
+END;
+$$
+LANGUAGE plpgsql;
@@ -0,0 +1,30 @@
+-- The partitioned key tables created in V21 replaced the original tables, whose privileges and triggers were dropped
+-- with them. Privileges granted on the partitioned tables also apply to rows accessed through them.
+
+GRANT SELECT, DELETE ON TABLE diagnosis_key TO "cwa_distribution";
+GRANT SELECT, INSERT, UPDATE, DELETE ON TABLE diagnosis_key TO "cwa_submission";
+GRANT INSERT ON TABLE diagnosis_key TO "cwa_federation_download";
+
+GRANT SELECT, DELETE ON TABLE federation_upload_key TO "cwa_distribution";
+GRANT INSERT ON TABLE federation_upload_key TO "cwa_submission";
+GRANT SELECT, UPDATE, DELETE ON TABLE federation_upload_key TO "cwa_federation_upload";
+
+-- Only the replication of uploadable keys is still done by a trigger. Expired upload keys are removed together with
+-- the diagnosis keys by apply_key_retention, so the per-row deletion trigger is not recreated.
+
+CREATE TRIGGER mirror_uploadable_keys_trigger
+    AFTER INSERT ON diagnosis_key
+    FOR EACH ROW EXECUTE PROCEDURE mirror_uploadable_keys();
+
+DROP FUNCTION remove_expired_uploadable_keys();
+
+-- Partitions can only be created and dropped by the owner of the partitioned tables, so the partition maintenance
+-- functions run with the privileges of their owner.
+
+ALTER FUNCTION create_key_partitions(date, date) SECURITY DEFINER;
+ALTER FUNCTION apply_key_retention(bigint) SECURITY DEFINER;
+
+REVOKE EXECUTE ON FUNCTION create_key_partitions(date, date) FROM PUBLIC;
+REVOKE EXECUTE ON FUNCTION apply_key_retention(bigint) FROM PUBLIC;
+GRANT EXECUTE ON FUNCTION create_key_partitions(date, date) TO "cwa_distribution";
+GRANT EXECUTE ON FUNCTION apply_key_retention(bigint) TO "cwa_distribution";
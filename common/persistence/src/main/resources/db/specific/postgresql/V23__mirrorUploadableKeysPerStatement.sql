@@ -0,0 +1,26 @@
+-- Uploadable keys are replicated once per insert statement from the transition table of inserted diagnosis keys,
+-- instead of once per inserted row. Batched submissions are thus mirrored with a single set-based insert, and keys
+-- without consent to federation no longer execute any trigger code of their own.
+
+DROP TRIGGER mirror_uploadable_keys_trigger ON diagnosis_key;
+
+CREATE OR REPLACE FUNCTION mirror_uploadable_keys()
+RETURNS TRIGGER AS $$
+BEGIN
+    INSERT INTO federation_upload_key (key_data, rolling_period, rolling_start_interval_number,
+        submission_timestamp, transmission_risk_level, consent_to_federation, origin_country, visited_countries,
+        report_type, days_since_onset_of_symptoms, expiry_interval_number)
+    SELECT key_data, rolling_period, rolling_start_interval_number, submission_timestamp, transmission_risk_level,
+        consent_to_federation, origin_country, visited_countries, report_type, days_since_onset_of_symptoms,
+        expiry_interval_number
+    FROM inserted_keys
+    WHERE consent_to_federation = TRUE;
+    RETURN NULL;
+END;
+$$
+LANGUAGE plpgsql;
+
+CREATE TRIGGER mirror_uploadable_keys_trigger
+    AFTER INSERT ON diagnosis_key
+    REFERENCING NEW TABLE AS inserted_keys
+    FOR EACH STATEMENT EXECUTE PROCEDURE mirror_uploadable_keys();
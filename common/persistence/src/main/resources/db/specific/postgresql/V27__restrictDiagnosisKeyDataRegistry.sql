@@ -0,0 +1,17 @@
+-- The services inserting keys register their key data in the registry created in V26 first, and read the registered
+-- key data back. Deleted keys are unregistered by the trigger on diagnosis_key and by the retention policy, which run
+-- with the privileges of their owner.
+
+GRANT SELECT, INSERT ON TABLE diagnosis_key_data TO "cwa_submission";
+GRANT SELECT, INSERT ON TABLE diagnosis_key_data TO "cwa_federation_download";
+
+ALTER FUNCTION unregister_diagnosis_key_data() SECURITY DEFINER;
+
+-- Replacing create_key_partitions in V26 reset it to run with the privileges of the caller, and apply_key_retention
+-- was created anew with an additional threshold for the registered key data.
+
+ALTER FUNCTION create_key_partitions(date, date) SECURITY DEFINER;
+ALTER FUNCTION apply_key_retention(bigint, bigint) SECURITY DEFINER;
+
+REVOKE EXECUTE ON FUNCTION apply_key_retention(bigint, bigint) FROM PUBLIC;
+GRANT EXECUTE ON FUNCTION apply_key_retention(bigint, bigint) TO "cwa_distribution";
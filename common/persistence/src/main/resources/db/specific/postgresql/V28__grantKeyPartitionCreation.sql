@@ -0,0 +1,5 @@
+-- The services inserting keys create the daily partitions of the key tables themselves, so that keys are not stored in
+-- the default partitions while the distribution service does not run.
+
+GRANT EXECUTE ON FUNCTION create_key_partitions(date, date) TO "cwa_submission";
+GRANT EXECUTE ON FUNCTION create_key_partitions(date, date) TO "cwa_federation_download";
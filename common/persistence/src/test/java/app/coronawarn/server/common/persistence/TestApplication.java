@@ -40,7 +40,7 @@ import org.springframework.context.annotation.Configuration;
 public class TestApplication {
   @Bean
   ValidDiagnosisKeyFilter validKeysFilter() {
-    return new ValidDiagnosisKeyFilter();
+    return new ValidDiagnosisKeyFilter(true);
   }
 
   @Bean
@@ -50,7 +50,7 @@ public class TestApplication {
 
   @Bean
   DiagnosisKeyService createDiagnosisKeyService(DiagnosisKeyRepository keyRepository) {
-    return new DiagnosisKeyService(keyRepository, validKeysFilter());
+    return new DiagnosisKeyService(keyRepository, validKeysFilter(), DiagnosisKeyService.DEFAULT_INSERT_BATCH_SIZE);
   }
 
   @Bean
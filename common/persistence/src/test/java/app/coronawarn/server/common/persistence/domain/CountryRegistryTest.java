@@ -0,0 +1,59 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App
+ * ---
+ * Copyright (C) 2020 SAP SE and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.server.common.persistence.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class CountryRegistryTest {
+
+  @Test
+  void testRegisteredCountriesHaveDistinctBits() {
+    long be = CountryRegistry.maskOf("BE");
+    long de = CountryRegistry.maskOf("DE");
+
+    assertThat(Long.bitCount(be)).isEqualTo(1);
+    assertThat(Long.bitCount(de)).isEqualTo(1);
+    assertThat(be & de).isZero();
+    assertThat(CountryRegistry.maskOf(List.of("BE", "DE"))).isEqualTo(be | de);
+  }
+
+  @Test
+  void testUnregisteredCountriesAreNotContainedInMask() {
+    assertThat(CountryRegistry.isRegistered("TR")).isFalse();
+    assertThat(CountryRegistry.maskOf("TR")).isZero();
+    assertThat(CountryRegistry.maskOf(List.of("TR", "FR"))).isEqualTo(CountryRegistry.maskOf("FR"));
+  }
+
+  @Test
+  void testMaskIsDecodedToCountries() {
+    Set<String> countries = Set.of("AT", "FR", "SK", "IE");
+
+    assertThat(CountryRegistry.countriesOf(CountryRegistry.maskOf(countries))).containsExactly("AT", "FR", "IE", "SK");
+    assertThat(CountryRegistry.countriesOf(0L)).isEmpty();
+    assertThat(CountryRegistry.countryOf(Long.numberOfTrailingZeros(CountryRegistry.maskOf("NL")))).isEqualTo("NL");
+    assertThatExceptionOfType(IndexOutOfBoundsException.class).isThrownBy(() -> CountryRegistry.countryOf(63));
+  }
+}
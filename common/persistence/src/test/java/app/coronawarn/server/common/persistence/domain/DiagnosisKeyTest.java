@@ -92,6 +92,11 @@ class DiagnosisKeyTest {
     assertThat(diagnosisKey.getSubmissionTimestamp()).isEqualTo(expSubmissionTimestamp);
   }
 
+  @Test
+  void testVisitedCountriesMaskGetter() {
+    assertThat(diagnosisKey.getVisitedCountriesMask()).isEqualTo(CountryRegistry.maskOf("BE"));
+  }
+
   @Test
   void testIsYoungerThanRetentionThreshold() {
     int fiveDaysAgo = (int) (LocalDateTime
@@ -136,4 +141,31 @@ class DiagnosisKeyTest {
     assertThatIllegalArgumentException()
         .isThrownBy(() -> diagnosisKey.isYoungerThanRetentionThreshold(daysToRetain));
   }
+
+  @Test
+  void testIsValidReturnsSameVerdictAsBeanValidation() {
+    int now = (int) (LocalDateTime.now(UTC).toEpochSecond(UTC) / 600);
+    long nowHours = now / 6;
+    for (byte[] keyData : new byte[][]{expKeyData, new byte[15], new byte[17], null}) {
+      for (int rollingStartIntervalNumber : new int[]{-1, 0, 1, now, now + 1000}) {
+        for (int rollingPeriod : new int[]{-1, 0, 144, 145}) {
+          for (int transmissionRiskLevel : new int[]{0, 1, 8, 9}) {
+            for (long submissionTimestamp : new long[]{-1L, 0L, nowHours, nowHours + 1000}) {
+              for (String originCountry : new String[]{"BE", "XX"}) {
+                for (Set<String> visitedCountries : Set.of(Set.<String>of(), Set.of("BE", "DE"), Set.of("BE", "XX"))) {
+                  for (int daysSinceOnsetOfSymptoms : new int[]{-15, -14, 4000, 4001}) {
+                    DiagnosisKey key = new DiagnosisKey(keyData, rollingStartIntervalNumber, rollingPeriod,
+                        transmissionRiskLevel, submissionTimestamp, mobileTestId, mobileTestId2, datePatientInfectious,
+                        dateTestCommunicated, resultChannel, false, originCountry, visitedCountries, reportType,
+                        daysSinceOnsetOfSymptoms, verified);
+                    assertThat(key.isValid()).as(key.toString()).isEqualTo(key.validate().isEmpty());
+                  }
+                }
+              }
+            }
+          }
+        }
+      }
+    }
+  }
 }
@@ -0,0 +1,105 @@
+package app.coronawarn.server.common.persistence.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import app.coronawarn.server.common.persistence.domain.authorizationcode.AuthorizationCode;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.jdbc.DataJdbcTest;
+import org.springframework.data.jdbc.repository.query.Query;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+@DataJdbcTest
+class AuthorizationCodeRepositoryTest {
+
+  private static final String mobileTestId1 = "111111111111111";
+  private static final String mobileTestId2 = "222222222222222";
+  private static final String mobileTestId3 = "333333333333333";
+  private static final LocalDate date1 = LocalDate.parse("2020-08-15");
+  private static final LocalDate date2 = LocalDate.parse("2020-08-16");
+
+  @Autowired
+  private AuthorizationCodeRepository authorizationCodeRepository;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @AfterEach
+  void tearDown() {
+    authorizationCodeRepository.deleteAll();
+  }
+
+  @Test
+  void testFindsAuthorizationCodesOfAnyMobileTestIdForDate() {
+    authorizationCodeRepository.saveDoNothingOnConflict("a", mobileTestId1, date1, date1);
+    authorizationCodeRepository.saveDoNothingOnConflict("b", mobileTestId2, date1, date1);
+    authorizationCodeRepository.saveDoNothingOnConflict("c", mobileTestId3, date1, date1);
+    authorizationCodeRepository.saveDoNothingOnConflict("d", mobileTestId2, date2, date2);
+
+    assertThat(getSignatures(authorizationCodeRepository.findByMobileTestIdsAndDatePatientInfectious(
+        List.of(mobileTestId1, mobileTestId2), date1))).containsExactlyInAnyOrder("a", "b");
+  }
+
+  @Test
+  void testFindsNoAuthorizationCodesForOtherDate() {
+    authorizationCodeRepository.saveDoNothingOnConflict("a", mobileTestId1, date1, date1);
+
+    assertThat(authorizationCodeRepository.findByMobileTestIdsAndDatePatientInfectious(List.of(mobileTestId1), date2))
+        .isEmpty();
+  }
+
+  @Test
+  void testReturnsPagesOrderedBySignature() {
+    authorizationCodeRepository.saveDoNothingOnConflict("c", mobileTestId3, date1, date1);
+    authorizationCodeRepository.saveDoNothingOnConflict("a", mobileTestId1, date1, date1);
+    authorizationCodeRepository.saveDoNothingOnConflict("b", mobileTestId2, date1, date1);
+
+    assertThat(getSignatures(authorizationCodeRepository.findPageAfterSignature("", 2)))
+        .containsExactly("a", "b");
+    assertThat(getSignatures(authorizationCodeRepository.findPageAfterSignature("b", 2)))
+        .containsExactly("c");
+    assertThat(authorizationCodeRepository.findPageAfterSignature("c", 2)).isEmpty();
+  }
+
+  @Test
+  void testDeletesOnlyAuthorizationCodesWithGivenSignatures() {
+    authorizationCodeRepository.saveDoNothingOnConflict("a", mobileTestId1, date1, date1);
+    authorizationCodeRepository.saveDoNothingOnConflict("b", mobileTestId1, date2, date2);
+    authorizationCodeRepository.saveDoNothingOnConflict("c", mobileTestId2, date1, date1);
+    authorizationCodeRepository.saveDoNothingOnConflict("d", mobileTestId3, date1, date1);
+
+    assertThat(authorizationCodeRepository.deleteAuthorizationCodesBySignatures(List.of("a", "c"))).isEqualTo(2);
+    assertThat(getSignatures(authorizationCodeRepository.findPageAfterSignature("", 10)))
+        .containsExactly("b", "d");
+  }
+
+  @Test
+  void testLookupByMobileTestIdsUsesIndex() throws NoSuchMethodException {
+    jdbcTemplate.update("INSERT INTO authorization_code "
+        + "(signature, mobile_test_id, date_patient_infectious, date_test_communicated) "
+        + "SELECT 'signature' || i, lpad(i::text, 15, '0'), ?, ? FROM generate_series(1, 20000) AS i", date1, date1);
+    jdbcTemplate.execute("ANALYZE authorization_code");
+    String query = AuthorizationCodeRepository.class
+        .getMethod("findByMobileTestIdsAndDatePatientInfectious", Collection.class, LocalDate.class)
+        .getAnnotation(Query.class).value();
+
+    String plan = String.join("\n", new NamedParameterJdbcTemplate(jdbcTemplate).queryForList("EXPLAIN " + query,
+        Map.of("mobile_test_ids", List.of(mobileTestId1, mobileTestId2), "date_patient_infectious", date1),
+        String.class));
+
+    assertThat(plan).as(plan)
+        .doesNotContain("Seq Scan on authorization_code")
+        .contains("authorization_code_mobile_test_id_idx");
+  }
+
+  private static List<String> getSignatures(List<AuthorizationCode> authorizationCodes) {
+    return authorizationCodes.stream().map(AuthorizationCode::getSignature).collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,198 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App
+ * ---
+ * Copyright (C) 2020 SAP SE and all other contributors
+ * All modifications are copyright (c) 2020 Devside SRL.
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.server.common.persistence.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import app.coronawarn.server.common.persistence.domain.DiagnosisKey;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.jdbc.DataJdbcTest;
+import org.springframework.data.jdbc.repository.query.Query;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+/**
+ * Verifies that diagnosis keys are looked up by their mobile test ids through the partial indexes on unverified keys
+ * instead of scanning the diagnosis key table. The table is seeded with {@value #NUMBER_OF_SUBMISSIONS} submissions of
+ * {@value #KEYS_PER_SUBMISSION} keys each, half of which are verified.
+ */
+@DataJdbcTest
+class DiagnosisKeyRepositoryTest {
+
+  private static final int NUMBER_OF_SUBMISSIONS = 2_000;
+  private static final int KEYS_PER_SUBMISSION = 10;
+  private static final LocalDate DATE_PATIENT_INFECTIOUS = LocalDate.parse("2020-10-01");
+
+  /**
+   * The keys are submitted long before the daily partitions created by the migrations, so they are all stored in the
+   * default partition.
+   */
+  private static final String SEEDED_PARTITION = "diagnosis_key_default";
+
+  /**
+   * Submission {@code n} uses the mobile test ids {@code n} and {@code 1000000 + n}, except for the last one which uses
+   * the same mobile test id twice. Odd submissions are unverified.
+   */
+  private static final String SEED_STATEMENT = "INSERT INTO diagnosis_key (key_data, rolling_period, "
+      + "rolling_start_interval_number, submission_timestamp, transmission_risk_level, consent_to_federation, "
+      + "origin_country, visited_countries, report_type, days_since_onset_of_symptoms, expiry_interval_number, "
+      + "mobile_test_id, mobile_test_id2, date_patient_infectious, date_test_communicated, result_channel, verified) "
+      + "SELECT decode(lpad(to_hex(i), 32, '0'), 'hex'), 144, 2668032, 444720, 1, FALSE, 'BE', '{BE}', "
+      + "'CONFIRMED_TEST', 0, 2668176, lpad((i / ?)::text, 15, '0'), "
+      + "lpad((CASE WHEN i / ? = ? - 1 THEN i / ? ELSE 1000000 + i / ? END)::text, 15, '0'), ?, ?, 1, "
+      + "(i / ?) % 2 = 0 "
+      + "FROM generate_series(0, ? - 1) AS i";
+
+  @Autowired
+  private DiagnosisKeyRepository diagnosisKeyRepository;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @BeforeEach
+  void setUp() {
+    jdbcTemplate.update(SEED_STATEMENT, KEYS_PER_SUBMISSION, KEYS_PER_SUBMISSION, NUMBER_OF_SUBMISSIONS,
+        KEYS_PER_SUBMISSION, KEYS_PER_SUBMISSION, DATE_PATIENT_INFECTIOUS, DATE_PATIENT_INFECTIOUS,
+        KEYS_PER_SUBMISSION, NUMBER_OF_SUBMISSIONS * KEYS_PER_SUBMISSION);
+    jdbcTemplate.update("INSERT INTO authorization_code "
+            + "(signature, mobile_test_id, date_patient_infectious, date_test_communicated) VALUES (?, ?, ?, ?)",
+        "signature", mobileTestId(1_000_001), DATE_PATIENT_INFECTIOUS, DATE_PATIENT_INFECTIOUS);
+    jdbcTemplate.execute("ANALYZE diagnosis_key");
+    jdbcTemplate.execute("ANALYZE authorization_code");
+  }
+
+  @Test
+  void testFindsUnverifiedKeysByEitherMobileTestId() {
+    assertThat(diagnosisKeyRepository.findUnverifiedByMobileTestIdOrMobileTestId2AndDatePatientInfectious(
+        mobileTestId(1), DATE_PATIENT_INFECTIOUS)).hasSize(KEYS_PER_SUBMISSION);
+    assertThat(diagnosisKeyRepository.findUnverifiedByMobileTestIdOrMobileTestId2AndDatePatientInfectious(
+        mobileTestId(1_000_001), DATE_PATIENT_INFECTIOUS)).hasSize(KEYS_PER_SUBMISSION);
+    assertThat(diagnosisKeyRepository.findUnverifiedByMobileTestIdOrMobileTestId2AndDatePatientInfectious(
+        mobileTestId(2), DATE_PATIENT_INFECTIOUS)).isEmpty();
+  }
+
+  @Test
+  void testReturnsKeysWithIdenticalMobileTestIdsOnce() {
+    assertThat(diagnosisKeyRepository.findUnverifiedByMobileTestIdOrMobileTestId2AndDatePatientInfectious(
+        mobileTestId(NUMBER_OF_SUBMISSIONS - 1), DATE_PATIENT_INFECTIOUS))
+        .extracting(DiagnosisKey::getKeyData)
+        .hasSize(KEYS_PER_SUBMISSION)
+        .doesNotHaveDuplicates();
+  }
+
+  @Test
+  void testFindsUnverifiedKeysByAuthorizationCodeSignatures() {
+    assertThat(diagnosisKeyRepository.findUnverifiedByAuthorizationCodeSignatures(List.of("signature")))
+        .extracting(DiagnosisKey::getMobileTestId2)
+        .hasSize(KEYS_PER_SUBMISSION)
+        .containsOnly(mobileTestId(1_000_001));
+  }
+
+  @Test
+  void testFindsKeysWithoutFirstMobileTestIdBySecondOne() {
+    jdbcTemplate.execute("ALTER TABLE diagnosis_key ALTER COLUMN mobile_test_id DROP NOT NULL");
+    jdbcTemplate.update("INSERT INTO diagnosis_key (key_data, rolling_period, rolling_start_interval_number, "
+            + "submission_timestamp, transmission_risk_level, origin_country, visited_countries, report_type, "
+            + "days_since_onset_of_symptoms, expiry_interval_number, mobile_test_id, mobile_test_id2, "
+            + "date_patient_infectious, date_test_communicated, result_channel) "
+            + "VALUES (decode(repeat('ff', 16), 'hex'), 144, 2668032, 444720, 1, 'BE', '{BE}', 'CONFIRMED_TEST', 0, "
+            + "2668176, NULL, ?, ?, ?, 1)",
+        mobileTestId(1_000_001), DATE_PATIENT_INFECTIOUS, DATE_PATIENT_INFECTIOUS);
+
+    assertThat(diagnosisKeyRepository.findUnverifiedByMobileTestIdOrMobileTestId2AndDatePatientInfectious(
+        mobileTestId(1_000_001), DATE_PATIENT_INFECTIOUS)).hasSize(KEYS_PER_SUBMISSION + 1);
+    assertThat(diagnosisKeyRepository.findUnverifiedByAuthorizationCodeSignatures(List.of("signature")))
+        .hasSize(KEYS_PER_SUBMISSION + 1);
+  }
+
+  @Test
+  void testUpdatesVerifiedForAllKeysAcrossStatements() {
+    List<byte[]> keyData = jdbcTemplate.queryForList(
+        "SELECT key_data FROM diagnosis_key WHERE verified = FALSE", byte[].class);
+    assertThat(keyData).hasSize(NUMBER_OF_SUBMISSIONS * KEYS_PER_SUBMISSION / 2);
+
+    assertThat(diagnosisKeyRepository.updateVerified(keyData)).isEqualTo(keyData.size());
+    assertThat(countUnverifiedKeys()).isZero();
+  }
+
+  @Test
+  void testUpdatesVerifiedOnlyForGivenKeys() {
+    List<byte[]> keyData = jdbcTemplate.queryForList(
+        "SELECT key_data FROM diagnosis_key WHERE mobile_test_id = ?", byte[].class, mobileTestId(1));
+
+    assertThat(diagnosisKeyRepository.updateVerified(keyData)).isEqualTo(KEYS_PER_SUBMISSION);
+    assertThat(diagnosisKeyRepository.findUnverifiedByMobileTestIdOrMobileTestId2AndDatePatientInfectious(
+        mobileTestId(1), DATE_PATIENT_INFECTIOUS)).isEmpty();
+    assertThat(countUnverifiedKeys()).isEqualTo((NUMBER_OF_SUBMISSIONS / 2 - 1) * KEYS_PER_SUBMISSION);
+  }
+
+  @Test
+  void testLookupByMobileTestIdUsesIndexes() throws NoSuchMethodException {
+    String query = getQuery("findUnverifiedByMobileTestIdOrMobileTestId2AndDatePatientInfectious",
+        String.class, LocalDate.class);
+
+    assertUsesIndexes(explain(query, Map.of("mobileTestId", mobileTestId(1),
+        "datePatientInfectious", DATE_PATIENT_INFECTIOUS)));
+  }
+
+  @Test
+  void testLookupByAuthorizationCodeSignaturesUsesIndexes() throws NoSuchMethodException {
+    String query = getQuery("findUnverifiedByAuthorizationCodeSignatures", Collection.class);
+
+    assertUsesIndexes(explain(query, Map.of("signatures", List.of("signature"))));
+  }
+
+  /**
+   * Asserts that both lookups of the query scan the partition holding the seeded keys through an index.
+   */
+  private static void assertUsesIndexes(String plan) {
+    assertThat(plan).doesNotContain("Seq Scan on " + SEEDED_PARTITION);
+    assertThat(Pattern.compile("Index Scan .*on " + SEEDED_PARTITION).matcher(plan).results().count())
+        .as(plan)
+        .isEqualTo(2);
+  }
+
+  private String explain(String query, Map<String, Object> parameters) {
+    List<String> plan = new NamedParameterJdbcTemplate(jdbcTemplate)
+        .queryForList("EXPLAIN " + query, parameters, String.class);
+    return String.join("\n", plan);
+  }
+
+  private int countUnverifiedKeys() {
+    return jdbcTemplate.queryForObject("SELECT count(*) FROM diagnosis_key WHERE verified = FALSE", Integer.class);
+  }
+
+  private static String getQuery(String methodName, Class<?>... parameterTypes) throws NoSuchMethodException {
+    return DiagnosisKeyRepository.class.getMethod(methodName, parameterTypes).getAnnotation(Query.class).value();
+  }
+
+  private static String mobileTestId(int number) {
+    return String.format("%015d", number);
+  }
+}
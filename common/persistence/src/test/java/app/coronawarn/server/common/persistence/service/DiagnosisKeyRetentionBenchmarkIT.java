@@ -0,0 +1,150 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App
+ * ---
+ * Copyright (C) 2020 SAP SE and all other contributors
+ * All modifications are copyright (c) 2020 Devside SRL.
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.server.common.persistence.service;
+
+import static java.time.ZoneOffset.UTC;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import app.coronawarn.server.common.persistence.repository.DiagnosisKeyRepository;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.jdbc.DataJdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Compares the duration of the partition based retention policy against deleting the expired diagnosis keys row by row
+ * from unpartitioned copies of the key tables, with a trigger deleting the corresponding federation upload key for each
+ * of them, as before the key tables were partitioned. The keys are spread evenly over the last {@value #DAYS_OF_KEYS}
+ * days, of which all but {@value #DAYS_TO_RETAIN} days expire. Each key started up to {@value #DAYS_TO_RETAIN} days
+ * before its submission, and each of these days has its partitions. Every statement is committed on its own, like in
+ * the services. Not part of the regular test run; execute explicitly with logging enabled, e.g.
+ * {@code mvn -Dtest=DiagnosisKeyRetentionBenchmarkIT -Dlogging.level.app.coronawarn=info test}.
+ */
+@DataJdbcTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class DiagnosisKeyRetentionBenchmarkIT {
+
+  private static final Logger logger = LoggerFactory.getLogger(DiagnosisKeyRetentionBenchmarkIT.class);
+
+  private static final int DAYS_OF_KEYS = 21;
+  private static final int DAYS_TO_RETAIN = 14;
+
+  private static final String INSERT_KEYS_STATEMENT = "INSERT INTO diagnosis_key (key_data, rolling_period, "
+      + "rolling_start_interval_number, submission_timestamp, transmission_risk_level, consent_to_federation, "
+      + "origin_country, visited_countries, report_type, days_since_onset_of_symptoms, expiry_interval_number, "
+      + "mobile_test_id, date_patient_infectious, date_test_communicated, result_channel, verified) "
+      + "SELECT decode(lpad(to_hex(i), 32, '0'), 'hex'), 144, submission_timestamp / 24 * 144 - i % ? * 144, "
+      + "submission_timestamp, 1, i % 2 = 0, 'BE', '{BE}', 'CONFIRMED_TEST', 0, "
+      + "(submission_timestamp / 24 + 1) * 144 - i % ? * 144, '123456789012345', CURRENT_DATE, CURRENT_DATE, 1, TRUE "
+      + "FROM generate_series(1, ?) AS i, LATERAL (SELECT ? + i % (24 * ?) AS submission_timestamp) AS submission";
+
+  private static final String REGISTER_KEYS_STATEMENT = "INSERT INTO diagnosis_key_data (key_data, "
+      + "rolling_start_interval_number) SELECT key_data, rolling_start_interval_number FROM diagnosis_key";
+
+  /**
+   * The key tables and the per-row trigger which removed the upload keys of deleted diagnosis keys before the key
+   * tables were partitioned.
+   */
+  private static final String CREATE_UNPARTITIONED_TABLES = "CREATE TABLE unpartitioned_diagnosis_key "
+      + "(LIKE diagnosis_key INCLUDING DEFAULTS, PRIMARY KEY (key_data)); "
+      + "CREATE INDEX unpartitioned_diagnosis_key_verified_submission_timestamp_idx "
+      + "ON unpartitioned_diagnosis_key (submission_timestamp) WHERE verified = TRUE; "
+      + "CREATE TABLE unpartitioned_federation_upload_key "
+      + "(LIKE federation_upload_key INCLUDING DEFAULTS, PRIMARY KEY (key_data)); "
+      + "CREATE INDEX unpartitioned_federation_upload_key_pending_expiry_idx "
+      + "ON unpartitioned_federation_upload_key (expiry_interval_number) WHERE batch_tag IS NULL OR batch_tag = ''; "
+      + "INSERT INTO unpartitioned_diagnosis_key SELECT * FROM diagnosis_key; "
+      + "INSERT INTO unpartitioned_federation_upload_key SELECT * FROM federation_upload_key; "
+      + "CREATE FUNCTION remove_unpartitioned_upload_key() RETURNS TRIGGER AS $$ BEGIN "
+      + "DELETE FROM unpartitioned_federation_upload_key WHERE key_data = OLD.key_data; RETURN OLD; END; $$ "
+      + "LANGUAGE plpgsql; "
+      + "CREATE TRIGGER remove_unpartitioned_upload_key_trigger AFTER DELETE ON unpartitioned_diagnosis_key "
+      + "FOR EACH ROW EXECUTE PROCEDURE remove_unpartitioned_upload_key(); "
+      + "ANALYZE unpartitioned_diagnosis_key; ANALYZE unpartitioned_federation_upload_key";
+
+  private static final String DROP_UNPARTITIONED_TABLES = "DROP TABLE IF EXISTS unpartitioned_diagnosis_key, "
+      + "unpartitioned_federation_upload_key; DROP FUNCTION IF EXISTS remove_unpartitioned_upload_key()";
+
+  @Autowired
+  private DiagnosisKeyService diagnosisKeyService;
+
+  @Autowired
+  private DiagnosisKeyRepository diagnosisKeyRepository;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @AfterEach
+  public void tearDown() {
+    jdbcTemplate.execute(DROP_UNPARTITIONED_TABLES);
+    jdbcTemplate.execute("TRUNCATE diagnosis_key, federation_upload_key, diagnosis_key_data");
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {1_000_000, 10_000_000})
+  void compareRowByRowAndPartitionedRetention(int numberOfKeys) {
+    insertKeys(numberOfKeys);
+    jdbcTemplate.execute(CREATE_UNPARTITIONED_TABLES);
+
+    long rowByRowMillis = measure(() -> jdbcTemplate.update(
+        "DELETE FROM unpartitioned_diagnosis_key WHERE submission_timestamp < ?", getThreshold()));
+    assertThat(count("unpartitioned_diagnosis_key")).isLessThan(numberOfKeys);
+    long partitionedMillis = measure(() -> diagnosisKeyService.applyRetentionPolicy(DAYS_TO_RETAIN));
+    assertThat(count("diagnosis_key")).isEqualTo(count("unpartitioned_diagnosis_key"));
+    assertThat(count("federation_upload_key")).isEqualTo(count("unpartitioned_federation_upload_key"));
+
+    logger.info("Applying the retention policy to {} diagnosis keys took {} ms row by row on unpartitioned tables "
+        + "and {} ms on partitioned tables.", numberOfKeys, rowByRowMillis, partitionedMillis);
+  }
+
+  private static long measure(Runnable retention) {
+    long start = System.nanoTime();
+    retention.run();
+    return (System.nanoTime() - start) / 1_000_000;
+  }
+
+  private void insertKeys(int numberOfKeys) {
+    LocalDate today = LocalDate.now(UTC);
+    diagnosisKeyRepository.createPartitions(today.minusDays(DAYS_OF_KEYS + DAYS_TO_RETAIN), today);
+    long firstSubmissionTimestamp = today.minusDays(DAYS_OF_KEYS).toEpochDay() * 24;
+    jdbcTemplate.update(INSERT_KEYS_STATEMENT, DAYS_TO_RETAIN + 1, DAYS_TO_RETAIN + 1, numberOfKeys,
+        firstSubmissionTimestamp, DAYS_OF_KEYS);
+    jdbcTemplate.update(REGISTER_KEYS_STATEMENT);
+    jdbcTemplate.execute("ANALYZE diagnosis_key; ANALYZE federation_upload_key; ANALYZE diagnosis_key_data");
+  }
+
+  private int count(String table) {
+    return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Integer.class);
+  }
+
+  private static long getThreshold() {
+    return OffsetDateTime.now(UTC).minusDays(DAYS_TO_RETAIN).toEpochSecond() / 3600;
+  }
+}
@@ -0,0 +1,103 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App
+ * ---
+ * Copyright (C) 2020 SAP SE and all other contributors
+ * All modifications are copyright (c) 2020 Devside SRL.
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.server.common.persistence.service;
+
+import static app.coronawarn.server.common.persistence.service.DiagnosisKeyServiceTestHelper.buildVerifiedDiagnosisKeyForSubmissionTimestamp;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import app.coronawarn.server.common.persistence.domain.DiagnosisKey;
+import app.coronawarn.server.common.persistence.repository.DiagnosisKeyRepository;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToIntFunction;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.jdbc.DataJdbcTest;
+
+/**
+ * Compares the duration of the batched diagnosis key insert against the former row-by-row insert loop. Not part of the
+ * regular test run; execute explicitly with logging enabled, e.g.
+ * {@code mvn -Dtest=DiagnosisKeyServiceBenchmarkIT -Dlogging.level.app.coronawarn=info test}.
+ */
+@DataJdbcTest
+class DiagnosisKeyServiceBenchmarkIT {
+
+  private static final Logger logger = LoggerFactory.getLogger(DiagnosisKeyServiceBenchmarkIT.class);
+
+  @Autowired
+  private DiagnosisKeyService diagnosisKeyService;
+
+  @Autowired
+  private DiagnosisKeyRepository diagnosisKeyRepository;
+
+  @AfterEach
+  public void tearDown() {
+    diagnosisKeyRepository.deleteAll();
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {1_000, 10_000, 100_000})
+  void compareRowByRowAndBatchedInsert(int numberOfKeys) {
+    long rowByRowMillis = measure(generateKeys(numberOfKeys), this::saveRowByRow);
+    diagnosisKeyRepository.deleteAll();
+    long batchedMillis = measure(generateKeys(numberOfKeys), diagnosisKeyService::saveDiagnosisKeys);
+
+    logger.info("Inserting {} diagnosis keys took {} ms row by row and {} ms batched.",
+        numberOfKeys, rowByRowMillis, batchedMillis);
+  }
+
+  private static long measure(List<DiagnosisKey> keys, ToIntFunction<List<DiagnosisKey>> insert) {
+    long start = System.nanoTime();
+    int insertedKeys = insert.applyAsInt(keys);
+    long durationMillis = (System.nanoTime() - start) / 1_000_000;
+    assertThat(insertedKeys).isEqualTo(keys.size());
+    return durationMillis;
+  }
+
+  private int saveRowByRow(List<DiagnosisKey> keys) {
+    int insertedKeys = 0;
+    for (DiagnosisKey key : keys) {
+      boolean inserted = diagnosisKeyRepository.saveDoNothingOnConflict(key.getKeyData(),
+          key.getRollingStartIntervalNumber(), key.getRollingPeriod(), key.getSubmissionTimestamp(),
+          key.getTransmissionRiskLevel(), key.getMobileTestId(), key.getMobileTestId2(),
+          key.getDatePatientInfectious(), key.getDateTestCommunicated(), key.getResultChannel(),
+          key.getOriginCountry(), key.getVisitedCountries().toArray(new String[0]), key.getReportType().name(),
+          key.getDaysSinceOnsetOfSymptoms(), key.isConsentToFederation(), key.isVerified());
+      if (inserted) {
+        insertedKeys++;
+      }
+    }
+    return insertedKeys;
+  }
+
+  private static List<DiagnosisKey> generateKeys(int numberOfKeys) {
+    List<DiagnosisKey> keys = new ArrayList<>(numberOfKeys);
+    for (int i = 0; i < numberOfKeys; i++) {
+      keys.add(buildVerifiedDiagnosisKeyForSubmissionTimestamp(1L));
+    }
+    return keys;
+  }
+}
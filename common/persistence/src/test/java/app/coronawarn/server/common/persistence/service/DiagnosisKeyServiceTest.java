@@ -27,6 +27,7 @@ import static app.coronawarn.server.common.persistence.service.DiagnosisKeyServi
 import static app.coronawarn.server.common.persistence.service.DiagnosisKeyServiceTestHelper.buildUnverifiedDiagnosisKeyForSubmissionTimestamp;
 import static app.coronawarn.server.common.persistence.service.DiagnosisKeyServiceTestHelper.buildVerifiedDiagnosisKeyForSubmissionTimestamp;
 import static java.time.ZoneOffset.UTC;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatCode;
 import static org.assertj.core.api.Assertions.catchThrowable;
@@ -34,14 +35,20 @@ import static org.assertj.core.util.Lists.list;
 
 import app.coronawarn.server.common.persistence.domain.DiagnosisKey;
 import app.coronawarn.server.common.persistence.exception.InvalidDiagnosisKeyException;
+import app.coronawarn.server.common.persistence.repository.DiagnosisKeyBatchRepository;
 import app.coronawarn.server.common.persistence.repository.DiagnosisKeyRepository;
 import app.coronawarn.server.common.protocols.external.exposurenotification.ReportType;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.assertj.core.util.Lists;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Disabled;
@@ -51,6 +58,11 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.data.jdbc.DataJdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @DataJdbcTest
 class DiagnosisKeyServiceTest {
@@ -61,6 +73,12 @@ class DiagnosisKeyServiceTest {
   @Autowired
   private DiagnosisKeyRepository diagnosisKeyRepository;
 
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
   @AfterEach
   public void tearDown() {
     diagnosisKeyRepository.deleteAll();
@@ -111,6 +129,48 @@ class DiagnosisKeyServiceTest {
     assertDiagnosisKeysEqual(expKeys, actKeys);
   }
 
+  @Test
+  void testForEachDiagnosisKeyPassesVerifiedKeysSortedBySubmissionTimestamp() {
+    var expKeys = new ArrayList<>(List.of(
+        buildVerifiedDiagnosisKeyForSubmissionTimestamp(3L),
+        buildVerifiedDiagnosisKeyForSubmissionTimestamp(1L)));
+    diagnosisKeyService.saveDiagnosisKeys(expKeys);
+    diagnosisKeyService.saveDiagnosisKeys(List.of(buildUnverifiedDiagnosisKeyForSubmissionTimestamp(2L)));
+
+    var actKeys = new ArrayList<DiagnosisKey>();
+    diagnosisKeyService.forEachDiagnosisKey(Integer.MAX_VALUE, Instant.now(), actKeys::add);
+
+    Collections.reverse(expKeys);
+    assertDiagnosisKeysEqual(expKeys, actKeys);
+  }
+
+  @Test
+  void testForEachDiagnosisKeySkipsKeysOutsideRetentionPeriod() {
+    diagnosisKeyService.saveDiagnosisKeys(List.of(buildVerifiedDiagnosisKeyForSubmissionTimestamp(1L)));
+
+    var actKeys = new ArrayList<DiagnosisKey>();
+    diagnosisKeyService.forEachDiagnosisKey(14, Instant.now(), actKeys::add);
+
+    assertThat(actKeys).isEmpty();
+  }
+
+  @Test
+  void testForEachDiagnosisKeyComputesRetentionPeriodFromGivenTime() {
+    long submissionTimestamp = 1000L;
+    var expKeys = List.of(buildVerifiedDiagnosisKeyForSubmissionTimestamp(submissionTimestamp));
+    diagnosisKeyService.saveDiagnosisKeys(expKeys);
+    Instant submissionTime = Instant.ofEpochSecond(submissionTimestamp * 3600);
+
+    var actKeys = new ArrayList<DiagnosisKey>();
+    diagnosisKeyService.forEachDiagnosisKey(14, submissionTime.plus(14, ChronoUnit.DAYS), actKeys::add);
+    assertDiagnosisKeysEqual(expKeys, actKeys);
+
+    actKeys.clear();
+    diagnosisKeyService.forEachDiagnosisKey(14, submissionTime.plus(14, ChronoUnit.DAYS).plus(1, ChronoUnit.HOURS),
+        actKeys::add);
+    assertThat(actKeys).isEmpty();
+  }
+
   @DisplayName("Assert a positive retention period is accepted.")
   @ValueSource(ints = {0, 1, Integer.MAX_VALUE})
   @ParameterizedTest
@@ -156,6 +216,124 @@ class DiagnosisKeyServiceTest {
     assertThat(actKeys).isEmpty();
   }
 
+  @Test
+  void testApplyRetentionPolicyForDroppedPartition() {
+    OffsetDateTime submissionTime = OffsetDateTime.now(UTC).minusDays(3L);
+    var keys = list(buildDiagnosisKeyForDateTime(submissionTime));
+    LocalDate submissionDay = submissionTime.toLocalDate();
+
+    diagnosisKeyService.saveDiagnosisKeys(keys);
+    diagnosisKeyRepository.createPartitions(submissionDay, submissionDay);
+    diagnosisKeyService.applyRetentionPolicy(1);
+
+    assertThat(diagnosisKeyService.getDiagnosisKeys()).isEmpty();
+    assertThat(diagnosisKeyService.saveDiagnosisKeys(keys)).isEqualTo(1);
+  }
+
+  @Test
+  void testApplyRetentionPolicyKeepsKeyDataOfKeysStartedWithinTwiceTheRetentionPeriod() {
+    OffsetDateTime submissionTime = OffsetDateTime.now(UTC).minusDays(3L);
+    var keys = list(buildDiagnosisKeyForDateTime(submissionTime));
+    LocalDate submissionDay = submissionTime.toLocalDate();
+
+    diagnosisKeyService.saveDiagnosisKeys(keys);
+    diagnosisKeyRepository.createPartitions(submissionDay, submissionDay);
+    diagnosisKeyService.applyRetentionPolicy(2);
+
+    assertThat(diagnosisKeyService.getDiagnosisKeys()).isEmpty();
+    assertThat(diagnosisKeyService.saveDiagnosisKeys(keys)).isZero();
+  }
+
+  @Test
+  void shouldMoveKeysStoredInDefaultPartitionToCreatedPartition() {
+    OffsetDateTime submissionTime = OffsetDateTime.now(UTC).minusDays(20L);
+    String partition = "diagnosis_key_p" + submissionTime.toLocalDate().toString().replace("-", "");
+    diagnosisKeyService.saveDiagnosisKeys(list(buildDiagnosisKeyForDateTime(submissionTime)));
+
+    diagnosisKeyService.createKeyPartitions();
+
+    assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + partition, Integer.class)).isEqualTo(1);
+    assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM diagnosis_key_default", Integer.class)).isZero();
+  }
+
+  @Test
+  void shouldNotInsertKeyResubmittedInLaterHour() {
+    var key = buildDiagnosisKeyForSubmissionTimestamp(1L);
+    var resubmittedKey = withSubmissionTimestamp(key, 2L);
+
+    assertThat(diagnosisKeyService.saveDiagnosisKeys(List.of(key))).isEqualTo(1);
+    assertThat(diagnosisKeyService.saveDiagnosisKeys(List.of(resubmittedKey))).isZero();
+    assertThat(diagnosisKeyRepository.saveDoNothingOnConflict(resubmittedKey.getKeyData(),
+        resubmittedKey.getRollingStartIntervalNumber(), resubmittedKey.getRollingPeriod(),
+        resubmittedKey.getSubmissionTimestamp(), resubmittedKey.getTransmissionRiskLevel(),
+        resubmittedKey.getMobileTestId(), resubmittedKey.getMobileTestId2(),
+        resubmittedKey.getDatePatientInfectious(), resubmittedKey.getDateTestCommunicated(),
+        resubmittedKey.getResultChannel(), resubmittedKey.getOriginCountry(),
+        resubmittedKey.getVisitedCountries().toArray(new String[0]), resubmittedKey.getReportType().name(),
+        resubmittedKey.getDaysSinceOnsetOfSymptoms(), resubmittedKey.isConsentToFederation(),
+        resubmittedKey.isVerified())).isFalse();
+    assertDiagnosisKeysEqual(List.of(key), diagnosisKeyService.getDiagnosisKeys());
+  }
+
+  @Test
+  void shouldNotInsertKeyResubmittedInLaterHourOfSameBatch() {
+    var key = buildDiagnosisKeyForSubmissionTimestamp(1L);
+
+    assertThat(diagnosisKeyService.saveDiagnosisKeys(List.of(key, withSubmissionTimestamp(key, 2L)))).isEqualTo(1);
+    assertDiagnosisKeysEqual(List.of(key), diagnosisKeyService.getDiagnosisKeys());
+  }
+
+  @Test
+  void shouldNotInsertKeyDataResubmittedWithOtherRollingStartIntervalNumberInSameHour() {
+    var key = buildDiagnosisKeyForSubmissionTimestamp(1L);
+
+    assertThat(diagnosisKeyService.saveDiagnosisKeys(List.of(key))).isEqualTo(1);
+    assertThat(diagnosisKeyService.saveDiagnosisKeys(
+        List.of(copyOf(key, key.getRollingStartIntervalNumber() + 144, 1L)))).isZero();
+    assertDiagnosisKeysEqual(List.of(key), diagnosisKeyService.getDiagnosisKeys());
+  }
+
+  @Test
+  void shouldNotInsertKeyDataTwiceWithinSameHourOfSameBatch() {
+    var key = buildDiagnosisKeyForSubmissionTimestamp(1L);
+    var keys = List.of(key, copyOf(key, key.getRollingStartIntervalNumber() + 144, 1L));
+
+    assertThat(diagnosisKeyService.saveDiagnosisKeys(keys)).isEqualTo(1);
+    assertThat(diagnosisKeyService.getDiagnosisKeys()).hasSize(1);
+  }
+
+  @Test
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
+  void shouldInsertKeySubmittedConcurrentlyOnlyOnce() throws Exception {
+    var key = buildDiagnosisKeyForSubmissionTimestamp(1L);
+    var resubmittedKey = withSubmissionTimestamp(key, 2L);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Integer> concurrentSubmission = new TransactionTemplate(transactionManager).execute(status -> {
+        assertThat(diagnosisKeyService.saveDiagnosisKeys(List.of(key))).isEqualTo(1);
+        Future<Integer> submission = executor.submit(
+            () -> diagnosisKeyService.saveDiagnosisKeys(List.of(resubmittedKey)));
+        awaitBlockedStatement();
+        return submission;
+      });
+
+      assertThat(concurrentSubmission.get(10, SECONDS)).isZero();
+      assertDiagnosisKeysEqual(List.of(key), diagnosisKeyService.getDiagnosisKeys());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void shouldInsertKeyAgainAfterItHasBeenDeleted() {
+    var keys = List.of(buildDiagnosisKeyForSubmissionTimestamp(1L));
+
+    diagnosisKeyService.saveDiagnosisKeys(keys);
+    diagnosisKeyRepository.deleteAll();
+
+    assertThat(diagnosisKeyService.saveDiagnosisKeys(keys)).isEqualTo(1);
+  }
+
   @Test
   @Disabled //TOOD: figure out why
   void testNoPersistOnValidationError() {
@@ -231,4 +409,70 @@ class DiagnosisKeyServiceTest {
 
     assertThat(actNumberOfInsertedRows).isEqualTo(2);
   }
+
+  @Test
+  void testReturnedNumberOfInsertedKeysSpanningMultipleBatches() {
+    int numberOfKeys = 2 * DiagnosisKeyService.DEFAULT_INSERT_BATCH_SIZE + 1;
+    var keys = new ArrayList<DiagnosisKey>();
+    for (int i = 0; i < numberOfKeys; i++) {
+      keys.add(buildVerifiedDiagnosisKeyForSubmissionTimestamp(1L));
+    }
+
+    int actNumberOfInsertedRows = diagnosisKeyService.saveDiagnosisKeys(keys);
+    int actNumberOfReinsertedRows = diagnosisKeyService.saveDiagnosisKeys(keys.subList(0, 10));
+
+    assertThat(actNumberOfInsertedRows).isEqualTo(numberOfKeys);
+    assertThat(actNumberOfReinsertedRows).isZero();
+    assertThat(diagnosisKeyService.getDiagnosisKeys()).hasSize(numberOfKeys);
+  }
+
+  @Test
+  void testInsertsLargestBatchWithSingleStatement() {
+    var keys = new ArrayList<DiagnosisKey>();
+    for (int i = 0; i < DiagnosisKeyBatchRepository.MAX_KEYS_PER_INSERT; i++) {
+      keys.add(buildVerifiedDiagnosisKeyForSubmissionTimestamp(1L));
+    }
+
+    assertThat(diagnosisKeyRepository.saveAllDoNothingOnConflict(keys)).isEqualTo(keys.size());
+  }
+
+  @Test
+  void testRejectsInsertBatchSizeExceedingStatementLimit() {
+    assertThat(catchThrowable(() -> new DiagnosisKeyService(diagnosisKeyRepository, null,
+        DiagnosisKeyBatchRepository.MAX_KEYS_PER_INSERT + 1)))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  /**
+   * Waits until a statement of another transaction waits for a lock held by the current transaction.
+   */
+  private void awaitBlockedStatement() {
+    long deadline = System.currentTimeMillis() + SECONDS.toMillis(10);
+    while (!jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM pg_locks WHERE NOT granted)", Boolean.class)) {
+      assertThat(System.currentTimeMillis()).as("time waited for a blocked statement").isLessThan(deadline);
+      Thread.onSpinWait();
+    }
+  }
+
+  private static DiagnosisKey withSubmissionTimestamp(DiagnosisKey diagnosisKey, long submissionTimestamp) {
+    return copyOf(diagnosisKey, diagnosisKey.getRollingStartIntervalNumber(), submissionTimestamp);
+  }
+
+  private static DiagnosisKey copyOf(DiagnosisKey diagnosisKey, int rollingStartIntervalNumber,
+      long submissionTimestamp) {
+    return DiagnosisKey.builder()
+        .withKeyData(diagnosisKey.getKeyData())
+        .withRollingStartIntervalNumber(rollingStartIntervalNumber)
+        .withTransmissionRiskLevel(diagnosisKey.getTransmissionRiskLevel())
+        .withSubmissionTimestamp(submissionTimestamp)
+        .withMobileTestId(diagnosisKey.getMobileTestId())
+        .withDatePatientInfectious(diagnosisKey.getDatePatientInfectious())
+        .withDateTestCommunicated(diagnosisKey.getDateTestCommunicated())
+        .withResultChannel(diagnosisKey.getResultChannel())
+        .withCountryCode(diagnosisKey.getOriginCountry())
+        .withVisitedCountries(diagnosisKey.getVisitedCountries())
+        .withReportType(diagnosisKey.getReportType())
+        .withVerified(diagnosisKey.isVerified())
+        .build();
+  }
 }
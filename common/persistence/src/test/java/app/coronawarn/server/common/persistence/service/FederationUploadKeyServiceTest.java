@@ -5,6 +5,8 @@ package app.coronawarn.server.common.persistence.service;
 import static app.coronawarn.server.common.persistence.service.DiagnosisKeyServiceTestHelper.assertDiagnosisKeysEqual;
 import static app.coronawarn.server.common.persistence.service.DiagnosisKeyServiceTestHelper.buildDiagnosisKeyForSubmissionTimestamp;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.anyLong;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -57,8 +59,8 @@ class FederationUploadKeyServiceTest {
         FederationUploadKey.from(buildDiagnosisKeyForSubmissionTimestamp(1000L, true)),
         FederationUploadKey.from(buildDiagnosisKeyForSubmissionTimestamp(2000L, false)));
 
-    when(uploadKeyRepository.findAllUploadableKeys()).thenReturn(testKeys);
-    when(keySharingPoliciesChecker.canShareKeyAtTime(any(), any(), any())).thenReturn(true);
+    when(uploadKeyRepository.findAllUploadableKeysExpiredBefore(anyInt(), anyLong())).thenReturn(testKeys);
+    when(keySharingPoliciesChecker.canShareKeyAtHour(any(), any(), anyLong())).thenReturn(true);
 
     var actKeys = uploadKeyService.getPendingUploadKeys(ExpirationPolicy.of(0, ChronoUnit.MINUTES), Integer.MAX_VALUE);
     Assertions.assertThat(actKeys).hasSize(1);
@@ -71,9 +73,9 @@ class FederationUploadKeyServiceTest {
     FederationUploadKey key2 = FederationUploadKey.from(buildDiagnosisKeyForSubmissionTimestamp(2000L, false));
     var testKeys = List.of(key1, key2);
 
-    when(uploadKeyRepository.findAllUploadableKeys()).thenReturn(testKeys);
-    when(keySharingPoliciesChecker.canShareKeyAtTime(eq(key1), any(), any())).thenReturn(true);
-    when(keySharingPoliciesChecker.canShareKeyAtTime(eq(key2), any(), any())).thenReturn(false);
+    when(uploadKeyRepository.findAllUploadableKeysExpiredBefore(anyInt(), anyLong())).thenReturn(testKeys);
+    when(keySharingPoliciesChecker.canShareKeyAtHour(eq(key1), any(), anyLong())).thenReturn(true);
+    when(keySharingPoliciesChecker.canShareKeyAtHour(eq(key2), any(), anyLong())).thenReturn(false);
 
     var actKeys = uploadKeyService.getPendingUploadKeys(ExpirationPolicy.of(120, ChronoUnit.MINUTES), Integer.MAX_VALUE);
     Assertions.assertThat(actKeys).hasSize(1);
@@ -98,8 +100,8 @@ class FederationUploadKeyServiceTest {
     FederationUploadKey oldKey = FederationUploadKey.from(buildDiagnosisKeyForSubmissionTimestamp(
         toSubmissionTimestamp(today.minusDays(1)), toRollingInterval(today.minusDays(15)), true));
     var testKeys = List.of(recentKey, oldKey);
-    when(uploadKeyRepository.findAllUploadableKeys()).thenReturn(testKeys);
-    when(keySharingPoliciesChecker.canShareKeyAtTime(any(), any(), any())).thenReturn(true);
+    when(uploadKeyRepository.findAllUploadableKeysExpiredBefore(anyInt(), anyLong())).thenReturn(testKeys);
+    when(keySharingPoliciesChecker.canShareKeyAtHour(any(), any(), anyLong())).thenReturn(true);
 
     var actKeys = uploadKeyService.getPendingUploadKeys(ExpirationPolicy.of(0, ChronoUnit.MINUTES), DAYS_TO_RETAIN);
     Assertions.assertThat(actKeys)
@@ -3,20 +3,28 @@
 package app.coronawarn.server.common.persistence.service.common;
 
 import static app.coronawarn.server.common.persistence.service.DiagnosisKeyServiceTestHelper.getKeySubmittedHoursAfterMidnightExpiration;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
+import java.util.function.Function;
 import java.util.stream.Stream;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
 import app.coronawarn.server.common.persistence.domain.DiagnosisKey;
+import app.coronawarn.server.common.protocols.external.exposurenotification.ReportType;
 
 class DiagnosisKeyExpirationCheckerTest {
 
@@ -35,6 +43,76 @@ class DiagnosisKeyExpirationCheckerTest {
     assertTrue(sharingPoliciesChecker.canShareKeyAtTime(key, expirationPolicy, shareTime));
   }
 
+  @Test
+  void expiryIntervalNumberThresholdIsEquivalentToCanShareKeyAtTime() {
+    LocalDateTime midnight = LocalDateTime.of(LocalDate.now(ZoneOffset.UTC).minusDays(3), LocalTime.MIDNIGHT);
+    int rollingStartOfToday = Math.toIntExact(midnight.toEpochSecond(ZoneOffset.UTC) / 600L);
+    long submissionTimestampOfToday = midnight.toEpochSecond(ZoneOffset.UTC) / 3600L;
+    List<ExpirationPolicy> policies = List.of(ExpirationPolicy.of(0, ChronoUnit.MINUTES),
+        ExpirationPolicy.of(90, ChronoUnit.MINUTES), ExpirationPolicy.of(120, ChronoUnit.MINUTES),
+        ExpirationPolicy.of(125, ChronoUnit.MINUTES), ExpirationPolicy.of(1439, ChronoUnit.MINUTES));
+
+    for (ExpirationPolicy policy : policies) {
+      for (int shareMinute = 0; shareMinute < 4 * 60; shareMinute += 25) {
+        LocalDateTime shareTime = midnight.plusDays(1).plusMinutes(shareMinute);
+        int threshold = sharingPoliciesChecker.getExpiryIntervalNumberThreshold(policy, shareTime);
+        long latestSubmissionTimestamp = shareTime.toEpochSecond(ZoneOffset.UTC) / 3600L;
+        for (int rollingPeriod = 120; rollingPeriod <= 144; rollingPeriod++) {
+          for (int submissionOffset = 18; submissionOffset < 30; submissionOffset++) {
+            DiagnosisKey key = DiagnosisKey.builder()
+                .withKeyData(new byte[16])
+                .withRollingStartIntervalNumber(rollingStartOfToday)
+                .withTransmissionRiskLevel(2)
+                .withRollingPeriod(rollingPeriod)
+                .withSubmissionTimestamp(submissionTimestampOfToday + submissionOffset)
+                .withCountryCode("BE")
+                .withVisitedCountries(Set.of("BE"))
+                .withReportType(ReportType.CONFIRMED_TEST)
+                .build();
+            boolean expectedCanShare = sharingPoliciesChecker.canShareKeyAtTime(key, policy, shareTime);
+            assertEquals(expectedCanShare, key.getExpiryIntervalNumber() < threshold
+                && key.getSubmissionTimestamp() <= latestSubmissionTimestamp);
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  void earliestHourForSharingKeyIsEquivalentToLocalDateTimeCalculation() {
+    long startOfDay = LocalDate.now(ZoneOffset.UTC).minusDays(3).toEpochSecond(LocalTime.MIDNIGHT, ZoneOffset.UTC);
+    List<ExpirationPolicy> policies = List.of(ExpirationPolicy.of(0, ChronoUnit.MINUTES),
+        ExpirationPolicy.of(120, ChronoUnit.MINUTES), ExpirationPolicy.of(125, ChronoUnit.MINUTES),
+        ExpirationPolicy.of(2, ChronoUnit.HOURS), ExpirationPolicy.of(4000, ChronoUnit.SECONDS));
+
+    for (ExpirationPolicy policy : policies) {
+      for (long expiry = startOfDay; expiry < startOfDay + 6 * 3600; expiry += 600) {
+        for (long submission = startOfDay - 3600; submission < startOfDay + 10 * 3600; submission += 3600) {
+          long earliestHour = sharingPoliciesChecker.getEarliestHourForSharingKey(submission, expiry, policy);
+          assertEquals(getEarliestTimeForSharingKey(submission, expiry, policy),
+              LocalDateTime.ofEpochSecond(earliestHour * 3600, 0, ZoneOffset.UTC));
+        }
+      }
+    }
+  }
+
+  /**
+   * The {@link LocalDateTime} based calculation that {@link KeySharingPoliciesChecker} used to perform.
+   */
+  private static LocalDateTime getEarliestTimeForSharingKey(long submission, long expiry, ExpirationPolicy policy) {
+    LocalDateTime submissionDateTime = LocalDateTime.ofEpochSecond(submission, 0, ZoneOffset.UTC);
+    LocalDateTime expiryDateTime = LocalDateTime.ofEpochSecond(expiry, 0, ZoneOffset.UTC);
+    Map<ChronoUnit, Function<Duration, Long>> timeConverters = Map.of(ChronoUnit.SECONDS, Duration::toSeconds,
+        ChronoUnit.MINUTES, Duration::toMinutes, ChronoUnit.HOURS, Duration::toHours);
+    long timeBetweenExpiryAndSubmission = timeConverters.get(policy.getTimeUnit())
+        .apply(Duration.between(expiryDateTime, submissionDateTime));
+    if (timeBetweenExpiryAndSubmission <= policy.getExpirationTime()) {
+      return expiryDateTime.plusMinutes(policy.getExpirationTime() + 60).truncatedTo(ChronoUnit.HOURS);
+    } else {
+      return submissionDateTime;
+    }
+  }
+
   private static Stream<Arguments> expiredKeysDataset() {
     LocalDateTime midnight = LocalDateTime.of(LocalDate.now(ZoneOffset.UTC), LocalTime.MIDNIGHT);
     return Stream.of(
@@ -0,0 +1,123 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App
+ * ---
+ * Copyright (C) 2020 SAP SE and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+
+package app.coronawarn.server.common.persistence.service.common;
+
+import static app.coronawarn.server.common.persistence.service.DiagnosisKeyServiceTestHelper.getKeySubmittedHoursAfterMidnightExpiration;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import app.coronawarn.server.common.persistence.domain.DiagnosisKey;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * Compares the duration and the allocated memory of the former {@link LocalDateTime} based calculation of the earliest
+ * time for sharing a key with the epoch arithmetic of {@link KeySharingPoliciesChecker#getEarliestHourForSharingKey}.
+ * Not part of the regular test run; execute explicitly with logging enabled, e.g.
+ * {@code mvn -Dtest=KeySharingPoliciesCheckerBenchmarkIT -Dlogging.level.app.coronawarn=info test}.
+ */
+@SpringBootTest(classes = KeySharingPoliciesChecker.class)
+class KeySharingPoliciesCheckerBenchmarkIT {
+
+  private static final Logger logger = LoggerFactory.getLogger(KeySharingPoliciesCheckerBenchmarkIT.class);
+
+  private static final int NUMBER_OF_KEYS = 100_000;
+  private static final int PASSES_PER_ITERATION = 20;
+  private static final int ITERATIONS = 5;
+  private static final ExpirationPolicy POLICY = ExpirationPolicy.of(120, ChronoUnit.MINUTES);
+  private static final Map<ChronoUnit, Function<Duration, Long>> TIME_CONVERTERS = Map.of(
+      ChronoUnit.SECONDS, Duration::toSeconds, ChronoUnit.MINUTES, Duration::toMinutes,
+      ChronoUnit.HOURS, Duration::toHours);
+
+  @Autowired
+  private KeySharingPoliciesChecker sharingPoliciesChecker;
+
+  @Test
+  void benchmarkEarliestTimeForSharingKey() {
+    List<DiagnosisKey> diagnosisKeys = new ArrayList<>(NUMBER_OF_KEYS);
+    for (int i = 0; i < NUMBER_OF_KEYS; i++) {
+      diagnosisKeys.add(getKeySubmittedHoursAfterMidnightExpiration(i % 6));
+    }
+
+    for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+      long localDateTimeChecksum = measure("LocalDateTime", iteration, diagnosisKeys,
+          diagnosisKey -> getEarliestTimeForSharingKey(diagnosisKey).toEpochSecond(ZoneOffset.UTC) / 3600);
+      long epochChecksum = measure("Epoch arithmetic", iteration, diagnosisKeys,
+          diagnosisKey -> sharingPoliciesChecker.getEarliestHourForSharingKey(diagnosisKey, POLICY));
+      assertThat(epochChecksum).isEqualTo(localDateTimeChecksum);
+    }
+  }
+
+  private long measure(String path, int iteration, List<DiagnosisKey> diagnosisKeys,
+      ToLongFunction<DiagnosisKey> earliestHour) {
+    long allocatedBytesBefore = getAllocatedBytes();
+    long start = System.nanoTime();
+    long checksum = 0;
+    for (int pass = 0; pass < PASSES_PER_ITERATION; pass++) {
+      for (DiagnosisKey diagnosisKey : diagnosisKeys) {
+        checksum += earliestHour.applyAsLong(diagnosisKey);
+      }
+    }
+    long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    long allocatedBytes = getAllocatedBytes() - allocatedBytesBefore;
+    long calls = (long) PASSES_PER_ITERATION * diagnosisKeys.size();
+    logger.info("Iteration {}: {} calculation for {} keys took {} ms and allocated {} bytes per key.",
+        iteration, path, calls, durationMillis, String.format("%.1f", (double) allocatedBytes / calls));
+    return checksum;
+  }
+
+  private static long getAllocatedBytes() {
+    return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+        .getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  /**
+   * The {@link LocalDateTime} based calculation that {@link KeySharingPoliciesChecker} used to perform.
+   */
+  private static LocalDateTime getEarliestTimeForSharingKey(DiagnosisKey diagnosisKey) {
+    LocalDateTime submissionDateTime = LocalDateTime.ofEpochSecond(
+        diagnosisKey.getSubmissionTimestamp() * KeySharingPoliciesChecker.ONE_HOUR_INTERVAL_SECONDS, 0, ZoneOffset.UTC);
+    LocalDateTime expiryDateTime = LocalDateTime.ofEpochSecond(
+        diagnosisKey.getRollingStartIntervalNumber() * KeySharingPoliciesChecker.TEN_MINUTES_INTERVAL_SECONDS, 0,
+        ZoneOffset.UTC).plusMinutes(diagnosisKey.getRollingPeriod() * DiagnosisKey.ROLLING_PERIOD_MINUTES_INTERVAL);
+    long timeBetweenExpiryAndSubmission = TIME_CONVERTERS.get(POLICY.getTimeUnit())
+        .apply(Duration.between(expiryDateTime, submissionDateTime));
+    if (timeBetweenExpiryAndSubmission <= POLICY.getExpirationTime()) {
+      return expiryDateTime.plusMinutes(POLICY.getExpirationTime() + 60).truncatedTo(ChronoUnit.HOURS);
+    } else {
+      return submissionDateTime;
+    }
+  }
+}
@@ -2,7 +2,6 @@
 
 package app.coronawarn.server.services.distribution.assembly.component;
 
-import app.coronawarn.server.common.persistence.domain.DiagnosisKey;
 import app.coronawarn.server.common.persistence.service.DiagnosisKeyService;
 import app.coronawarn.server.services.distribution.assembly.diagnosiskeys.DiagnosisKeyBundler;
 import app.coronawarn.server.services.distribution.assembly.diagnosiskeys.structure.directory.DiagnosisKeysDirectory;
@@ -11,7 +10,8 @@ import app.coronawarn.server.services.distribution.assembly.structure.directory.
 import app.coronawarn.server.services.distribution.assembly.structure.util.TimeUtils;
 import app.coronawarn.server.services.distribution.assembly.transformation.EnfParameterAdapter;
 import app.coronawarn.server.services.distribution.config.DistributionServiceConfig;
-import java.util.Collection;
+import app.coronawarn.server.services.distribution.objectstore.DiagnosisKeyBundleFingerprintStore;
+import app.coronawarn.server.services.distribution.objectstore.PublishedDiagnosisKeyArchiveStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
@@ -30,18 +30,23 @@ public class DiagnosisKeysStructureProvider {
   private final CryptoProvider cryptoProvider;
   private final DistributionServiceConfig distributionServiceConfig;
   private final EnfParameterAdapter enfParameterEncoder;
+  private final DiagnosisKeyBundleFingerprintStore fingerprintStore;
+  private final PublishedDiagnosisKeyArchiveStore publishedArchiveStore;
 
   /**
    * Creates a new DiagnosisKeysStructureProvider.
    */
   DiagnosisKeysStructureProvider(DiagnosisKeyService diagnosisKeyService, CryptoProvider cryptoProvider,
       DistributionServiceConfig distributionServiceConfig, DiagnosisKeyBundler diagnosisKeyBundler,
-      EnfParameterAdapter enfParameterEncoder) {
+      EnfParameterAdapter enfParameterEncoder, DiagnosisKeyBundleFingerprintStore fingerprintStore,
+      PublishedDiagnosisKeyArchiveStore publishedArchiveStore) {
     this.diagnosisKeyService = diagnosisKeyService;
     this.cryptoProvider = cryptoProvider;
     this.distributionServiceConfig = distributionServiceConfig;
     this.diagnosisKeyBundler = diagnosisKeyBundler;
     this.enfParameterEncoder = enfParameterEncoder;
+    this.fingerprintStore = fingerprintStore;
+    this.publishedArchiveStore = publishedArchiveStore;
   }
 
   /**
@@ -51,8 +56,12 @@ public class DiagnosisKeysStructureProvider {
    */
   public Directory<WritableOnDisk> getDiagnosisKeys() {
     logger.debug("Querying diagnosis keys from the database...");
-    Collection<DiagnosisKey> diagnosisKeys = diagnosisKeyService.getDiagnosisKeys();
-    diagnosisKeyBundler.setDiagnosisKeys(enfParameterEncoder.adaptKeys(diagnosisKeys), TimeUtils.getCurrentUtcHour());
-    return new DiagnosisKeysDirectory(diagnosisKeyBundler, cryptoProvider, distributionServiceConfig);
+    diagnosisKeyBundler.beginBundling(TimeUtils.getCurrentUtcHour());
+    diagnosisKeyService.forEachDiagnosisKey(distributionServiceConfig.getRetentionDays(), TimeUtils.getNow(),
+        diagnosisKey -> diagnosisKeyBundler.addDiagnosisKey(enfParameterEncoder.adaptKey(diagnosisKey)));
+    diagnosisKeyBundler.completeBundling();
+    diagnosisKeyBundler.setPublishedArchives(publishedArchiveStore.load());
+    return new DiagnosisKeysDirectory(diagnosisKeyBundler, cryptoProvider, distributionServiceConfig,
+        fingerprintStore.load());
   }
 }
@@ -0,0 +1,160 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App
+ * ---
+ * Copyright (C) 2020 SAP SE and all other contributors
+ * All modifications are copyright (c) 2020 Devside SRL.
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.server.services.distribution.assembly.diagnosiskeys;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.bouncycastle.util.encoders.Hex;
+
+/**
+ * Fingerprints of the diagnosis key bundles (per country and hour or date) of the previous and the current
+ * distribution run. A bundle whose fingerprint did not change since the previous run does not need to be assembled
+ * again, because its archive has already been published and key archives are never overwritten on the object store
+ * (see {@link app.coronawarn.server.services.distribution.objectstore.publish.PublishedFileSet}).
+ * <br>
+ * The fingerprint covers all key attributes contained in the export file and does not depend on the order of the
+ * keys, as the keys are sorted for the export anyway.
+ */
+public class DiagnosisKeyBundleFingerprints {
+
+  private static final String LINE_SEPARATOR = "\n";
+  private static final String FIELD_SEPARATOR = "\t";
+
+  private final boolean enabled;
+  private final Map<String, String> previousFingerprints;
+  private final Map<String, String> currentFingerprints = new ConcurrentHashMap<>();
+
+  private DiagnosisKeyBundleFingerprints(boolean enabled, Map<String, String> previousFingerprints) {
+    this.enabled = enabled;
+    this.previousFingerprints = previousFingerprints;
+  }
+
+  /**
+   * Returns fingerprints, which never report a bundle as unchanged, so that all bundles are assembled.
+   *
+   * @return disabled fingerprints
+   */
+  public static DiagnosisKeyBundleFingerprints disabled() {
+    return new DiagnosisKeyBundleFingerprints(false, Collections.emptyMap());
+  }
+
+  /**
+   * Returns fingerprints without previous state, so that all bundles are assembled once and fingerprinted.
+   *
+   * @return empty fingerprints
+   */
+  public static DiagnosisKeyBundleFingerprints empty() {
+    return new DiagnosisKeyBundleFingerprints(true, Collections.emptyMap());
+  }
+
+  /**
+   * Parses the fingerprints persisted by a previous run. Malformed lines are ignored, which causes the respective
+   * bundles to be assembled again.
+   *
+   * @param content the fingerprints as created by {@link #toBytes()}
+   * @return the fingerprints with the given previous state
+   */
+  public static DiagnosisKeyBundleFingerprints parse(byte[] content) {
+    Map<String, String> previousFingerprints = new HashMap<>();
+    for (String line : new String(content, StandardCharsets.UTF_8).split(LINE_SEPARATOR)) {
+      String[] fields = line.split(FIELD_SEPARATOR);
+      if (fields.length == 2) {
+        previousFingerprints.put(fields[0], fields[1]);
+      }
+    }
+    return new DiagnosisKeyBundleFingerprints(true, previousFingerprints);
+  }
+
+  /**
+   * Records the fingerprint of the given bundle for the current run and checks whether it is the same as in the
+   * previous run.
+   *
+   * @param country       the country of the bundle
+   * @param bundleTime    the date or hour of the bundle
+   * @param diagnosisKeys the diagnosis keys of the bundle
+   * @return {@code true} if the bundle has not changed since the previous run and does not need to be assembled
+   */
+  public boolean isUnchanged(String country, Object bundleTime, DistributableKeyBatch diagnosisKeys) {
+    if (!enabled) {
+      return false;
+    }
+    String bundleId = country + "/" + bundleTime;
+    String fingerprint = fingerprint(diagnosisKeys);
+    currentFingerprints.put(bundleId, fingerprint);
+    return fingerprint.equals(previousFingerprints.get(bundleId));
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Serializes the fingerprints of the current run.
+   *
+   * @return the content to persist
+   */
+  public byte[] toBytes() {
+    return currentFingerprints.entrySet().stream()
+        .sorted(Map.Entry.comparingByKey())
+        .map(entry -> entry.getKey() + FIELD_SEPARATOR + entry.getValue() + LINE_SEPARATOR)
+        .collect(Collectors.joining())
+        .getBytes(StandardCharsets.UTF_8);
+  }
+
+  static String fingerprint(DistributableKeyBatch diagnosisKeys) {
+    MessageDigest bundleDigest = sha256();
+    IntStream.range(0, diagnosisKeys.size())
+        .mapToObj(index -> fingerprint(diagnosisKeys, index))
+        .sorted()
+        .forEach(keyFingerprint -> bundleDigest.update(keyFingerprint.getBytes(StandardCharsets.US_ASCII)));
+    return Hex.toHexString(bundleDigest.digest());
+  }
+
+  private static String fingerprint(DistributableKeyBatch diagnosisKeys, int index) {
+    MessageDigest keyDigest = sha256();
+    keyDigest.update(diagnosisKeys.getKeyData(index));
+    keyDigest.update(ByteBuffer.allocate(5 * Integer.BYTES)
+        .putInt(diagnosisKeys.getRollingStartIntervalNumber(index))
+        .putInt(diagnosisKeys.getRollingPeriod(index))
+        .putInt(diagnosisKeys.getTransmissionRiskLevel(index))
+        .putInt(diagnosisKeys.getReportType(index).getNumber())
+        .putInt(diagnosisKeys.getDaysSinceOnsetOfSymptoms(index))
+        .array());
+    return Hex.toHexString(keyDigest.digest());
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not supported.", e);
+    }
+  }
+}
@@ -24,6 +24,7 @@ import static java.time.ZoneOffset.UTC;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.emptySet;
 
+import app.coronawarn.server.common.persistence.domain.CountryRegistry;
 import app.coronawarn.server.common.persistence.domain.DiagnosisKey;
 import app.coronawarn.server.services.distribution.config.DistributionServiceConfig;
 import java.time.LocalDate;
@@ -31,12 +32,16 @@ import java.time.LocalDateTime;
 import java.time.temporal.Temporal;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
@@ -65,6 +70,8 @@ public abstract class DiagnosisKeyBundler {
   protected final List<String> supportedCountries;
   private final String euPackageName;
   private final String originCountry;
+  private final long supportedCountriesMask;
+  private final long originCountryMask;
   /**
    * The hour at which the distribution runs. This field is needed to prevent the run from distributing any keys that
    * have already been submitted but may only be distributed in the future (e.g. because they are not expired yet).
@@ -73,15 +80,34 @@ public abstract class DiagnosisKeyBundler {
 
   /**
    * A map containing diagnosis keys, grouped by country and mapped by the LocalDateTime on which they may be
-   * distributed.
+   * distributed. The hours of each country are sorted, so that the keys of a date can be looked up as a range.
    */
-  protected final Map<String, Map<LocalDateTime, List<DiagnosisKey>>> distributableDiagnosisKeys = new HashMap<>();
+  protected final Map<String, NavigableMap<LocalDateTime, List<DiagnosisKey>>> distributableDiagnosisKeys =
+      new HashMap<>();
+
+  /**
+   * The number of distributable diagnosis keys per country and date, computed once the bundling is complete.
+   */
+  private final Map<String, NavigableMap<LocalDate, Integer>> numberOfDistributableDiagnosisKeysPerDate =
+      new HashMap<>();
 
   /**
    * A map containing diagnosis keys, grouped by country code.
    */
   protected Map<String, List<DiagnosisKey>> groupedDiagnosisKeys = new HashMap<>();
 
+  /**
+   * The diagnosis keys, which have been mapped to more than one country. Only these keys may occur more than once in
+   * an hour of the EUR package and need to be deduplicated. The keys are compared by identity, as each key is added
+   * to the bundler once.
+   */
+  private final Set<DiagnosisKey> diagnosisKeysOfMultipleCountries = Collections.newSetFromMap(new IdentityHashMap<>());
+
+  /**
+   * The archives which may be indexed, in addition to the dates and hours with distributable diagnosis keys.
+   */
+  private PublishedDiagnosisKeyArchives publishedArchives = PublishedDiagnosisKeyArchives.all();
+
   /**
    * Constructs a DiagnosisKeyBundler based on the specified service configuration.
    *
@@ -94,6 +120,18 @@ public abstract class DiagnosisKeyBundler {
     this.maxNumberOfKeysPerBundle = distributionServiceConfig.getMaximumNumberOfKeysPerBundle();
     this.euPackageName = distributionServiceConfig.getEuPackageName();
     this.originCountry = distributionServiceConfig.getApi().getOriginCountry();
+    this.supportedCountriesMask = CountryRegistry.maskOf(supportedCountries);
+    this.originCountryMask = CountryRegistry.maskOf(originCountry);
+  }
+
+  /**
+   * Restricts the dates and hours with distributable diagnosis keys to those whose archives have been published, e.g.
+   * by the workers of a sharded distribution run.
+   *
+   * @param publishedArchives The archives which may be indexed.
+   */
+  public void setPublishedArchives(PublishedDiagnosisKeyArchives publishedArchives) {
+    this.publishedArchives = publishedArchives;
   }
 
   /**
@@ -104,8 +142,43 @@ public abstract class DiagnosisKeyBundler {
    * @param distributionTime The {@link LocalDateTime} at which the distribution runs.
    */
   public void setDiagnosisKeys(Collection<DiagnosisKey> diagnosisKeys, LocalDateTime distributionTime) {
+    this.beginBundling(distributionTime);
+    diagnosisKeys.forEach(this::addDiagnosisKey);
+    this.completeBundling();
+  }
+
+  /**
+   * Discards all {@link DiagnosisKey DiagnosisKeys} contained by this {@link DiagnosisKeyBundler} and sets the time at
+   * which the distribution runs. Keys are then added one at a time through {@link #addDiagnosisKey}, which allows
+   * callers to stream keys into the bundler without materializing them as a collection first. The bundling must be
+   * finished with a call to {@link #completeBundling}.
+   *
+   * @param distributionTime The {@link LocalDateTime} at which the distribution runs.
+   */
+  public void beginBundling(LocalDateTime distributionTime) {
     this.distributionTime = distributionTime;
-    this.createDiagnosisKeyDistributionMap(diagnosisKeys);
+    this.initializeMappings();
+  }
+
+  /**
+   * Assigns the specified {@link DiagnosisKey} to the buckets of all countries it shall be distributed to.
+   *
+   * @param diagnosisKey The {@link DiagnosisKey} to add.
+   */
+  public void addDiagnosisKey(DiagnosisKey diagnosisKey) {
+    this.addKeyToMap(diagnosisKey, groupedDiagnosisKeys);
+  }
+
+  /**
+   * Calls {@link DiagnosisKeyBundler#createDiagnosisKeyDistributionMap} for all {@link DiagnosisKey DiagnosisKeys}
+   * added since the last call to {@link #beginBundling}. Afterwards, only the distributable keys are retained, so that
+   * keys held back by the policies can be garbage collected.
+   */
+  public void completeBundling() {
+    this.createDiagnosisKeyDistributionMap();
+    this.countDistributableDiagnosisKeysPerDate();
+    this.groupedDiagnosisKeys.clear();
+    this.diagnosisKeysOfMultipleCountries.clear();
   }
 
   /**
@@ -132,12 +205,10 @@ public abstract class DiagnosisKeyBundler {
   }
 
   /**
-   * Initializes the internal {@code distributableDiagnosisKeys} map, which should contain all diagnosis keys, grouped
-   * by the LocalDateTime on which they may be distributed.
-   *
-   * @param diagnosisKeys collection of DiagnosisKey entries
+   * Initializes the internal {@code distributableDiagnosisKeys} map from the {@code groupedDiagnosisKeys} map, so that
+   * it contains all diagnosis keys, grouped by the LocalDateTime on which they may be distributed.
    */
-  protected abstract void createDiagnosisKeyDistributionMap(Collection<DiagnosisKey> diagnosisKeys);
+  protected abstract void createDiagnosisKeyDistributionMap();
 
   /**
    * Returns a set of all {@link LocalDate dates} on which {@link DiagnosisKey diagnosis keys} shall be distributed
@@ -148,16 +219,18 @@ public abstract class DiagnosisKeyBundler {
    */
   public Set<LocalDate> getDatesWithDistributableDiagnosisKeys(String country) {
     if (isCountrySupported(country)) {
-      return this.distributableDiagnosisKeys.get(country).keySet().stream()
-          .map(LocalDateTime::toLocalDate)
-          .filter(date -> numberOfKeysForDateBelowMaximum(date, country))
-          .collect(Collectors.toSet());
+      return getNumberOfDistributableDiagnosisKeysPerDate(country).entrySet().stream()
+          .filter(numberOfKeysForDate -> numberOfKeysBelowMaximum(numberOfKeysForDate.getValue(),
+              numberOfKeysForDate.getKey()))
+          .map(Map.Entry::getKey)
+          .filter(date -> publishedArchives.includesDate(country, date))
+          .collect(Collectors.toCollection(TreeSet::new));
     }
     return emptySet();
   }
 
   public boolean numberOfKeysForDateBelowMaximum(LocalDate date, String country) {
-    return numberOfKeysBelowMaximum(getDiagnosisKeysForDate(date, country).size(), date);
+    return numberOfKeysBelowMaximum(getNumberOfDistributableDiagnosisKeysPerDate(country).getOrDefault(date, 0), date);
   }
 
   /**
@@ -169,14 +242,11 @@ public abstract class DiagnosisKeyBundler {
    * @return Set of LocalDateTime entries for specified Country at specified time
    */
   public Set<LocalDateTime> getHoursWithDistributableDiagnosisKeys(LocalDate currentDate, String country) {
-    return this.distributableDiagnosisKeys.get(country).keySet().stream()
-        .filter(dateTime -> dateTime.toLocalDate().equals(currentDate))
-        .filter(dateTime -> numberOfKeysForHourBelowMaximum(dateTime, country))
-        .collect(Collectors.toSet());
-  }
-
-  private boolean numberOfKeysForHourBelowMaximum(LocalDateTime hour, String country) {
-    return numberOfKeysBelowMaximum(getDiagnosisKeysForHour(hour, country).size(), hour);
+    return getDistributableDiagnosisKeysForDate(currentDate, country).entrySet().stream()
+        .filter(hour -> numberOfKeysBelowMaximum(hour.getValue().size(), hour.getKey()))
+        .map(Map.Entry::getKey)
+        .filter(hour -> publishedArchives.includesHour(country, hour))
+        .collect(Collectors.toCollection(TreeSet::new));
   }
 
   private boolean numberOfKeysBelowMaximum(int numberOfKeys, Temporal time) {
@@ -207,15 +277,55 @@ public abstract class DiagnosisKeyBundler {
    */
   public List<DiagnosisKey> getDiagnosisKeysForDate(LocalDate date, String country) {
     if (isCountrySupported(country)) {
-      return this.distributableDiagnosisKeys.get(country).keySet().stream()
-          .filter(dateTime -> dateTime.toLocalDate().equals(date))
-          .map(dateTime -> getDiagnosisKeysForHour(dateTime, country))
-          .flatMap(List::stream)
-          .collect(Collectors.toList());
+      List<DiagnosisKey> diagnosisKeys = new ArrayList<>(
+          getNumberOfDistributableDiagnosisKeysPerDate(country).getOrDefault(date, 0));
+      getDistributableDiagnosisKeysForDate(date, country).values().forEach(diagnosisKeys::addAll);
+      return diagnosisKeys;
     }
     return emptyList();
   }
 
+  /**
+   * Returns all diagnosis keys that should be distributed on a specific date for a specific country, in the compact
+   * representation used to assemble the export file.
+   *
+   * @param date    date to search
+   * @param country Country to search
+   * @return batch of the diagnosis keys matching the specified date and specified Country
+   */
+  public DistributableKeyBatch getDistributableKeyBatchForDate(LocalDate date, String country) {
+    if (isCountrySupported(country)) {
+      DistributableKeyBatch.Builder batch = DistributableKeyBatch.builder(
+          getNumberOfDistributableDiagnosisKeysPerDate(country).getOrDefault(date, 0));
+      getDistributableDiagnosisKeysForDate(date, country).values().forEach(batch::addAll);
+      return batch.build();
+    }
+    return DistributableKeyBatch.empty();
+  }
+
+  /**
+   * Returns a view of the hours of the specified date and their distributable diagnosis keys.
+   */
+  private NavigableMap<LocalDateTime, List<DiagnosisKey>> getDistributableDiagnosisKeysForDate(LocalDate date,
+      String country) {
+    return this.distributableDiagnosisKeys.getOrDefault(country, Collections.emptyNavigableMap())
+        .subMap(date.atStartOfDay(), true, date.plusDays(1).atStartOfDay(), false);
+  }
+
+  private NavigableMap<LocalDate, Integer> getNumberOfDistributableDiagnosisKeysPerDate(String country) {
+    return this.numberOfDistributableDiagnosisKeysPerDate.getOrDefault(country, Collections.emptyNavigableMap());
+  }
+
+  private void countDistributableDiagnosisKeysPerDate() {
+    this.numberOfDistributableDiagnosisKeysPerDate.clear();
+    this.distributableDiagnosisKeys.forEach((country, diagnosisKeysPerHour) -> {
+      NavigableMap<LocalDate, Integer> numberOfKeysPerDate = new TreeMap<>();
+      diagnosisKeysPerHour.forEach((hour, diagnosisKeys) ->
+          numberOfKeysPerDate.merge(hour.toLocalDate(), diagnosisKeys.size(), Integer::sum));
+      this.numberOfDistributableDiagnosisKeysPerDate.put(country, numberOfKeysPerDate);
+    });
+  }
+
   /**
    * Returns all diagnosis keys that should be distributed in a specific hour for a specific country.
    *
@@ -232,6 +342,18 @@ public abstract class DiagnosisKeyBundler {
     return emptyList();
   }
 
+  /**
+   * Returns all diagnosis keys that should be distributed in a specific hour for a specific country, in the compact
+   * representation used to assemble the export file.
+   *
+   * @param hour    hour to search
+   * @param country Country to search
+   * @return batch of the diagnosis keys matching the specified hour and specified Country
+   */
+  public DistributableKeyBatch getDistributableKeyBatchForHour(LocalDateTime hour, String country) {
+    return DistributableKeyBatch.of(getDiagnosisKeysForHour(hour, country));
+  }
+
   private boolean isCountrySupported(String country) {
     if (!supportedCountries.contains(country) && !country.equals(euPackageName)) {
       logger.warn("The country {} received is not included in the list of supported countries", country);
@@ -246,85 +368,74 @@ public abstract class DiagnosisKeyBundler {
     if (key.getVisitedCountries().isEmpty()) {
       keysByCountry.get(this.originCountry).add(key);
     } else {
-      key.getVisitedCountries().stream()
-          .filter(supportedCountries::contains)
-          .forEach(visitedCountry -> {
-            if (isKeyOriginAndVisitedCountryNotEqualToOriginCountry(key, visitedCountry)) {
-              return;
-            }
-            if (isEfgsKeyWithOriginInVisitedCountriesAndNotVisitedCountry(key, visitedCountry)) {
-              return;
-            }
-            keysByCountry.get(visitedCountry).add(key);
-          });
+      long targetCountries = key.getVisitedCountriesMask() & supportedCountriesMask;
+      if (isDistributedToOriginCountryOnly(key)) {
+        targetCountries &= originCountryMask;
+      }
+      if (Long.bitCount(targetCountries) > 1) {
+        diagnosisKeysOfMultipleCountries.add(key);
+      }
+      for (; targetCountries != 0; targetCountries &= targetCountries - 1) {
+        keysByCountry.get(CountryRegistry.countryOf(Long.numberOfTrailingZeros(targetCountries))).add(key);
+      }
     }
   }
 
   /**
-   *  Check if the origin country of the key equals the distribution configuration originCountry
-   *  and the current visited country is not equal to the configuration originCountry. This ensures that origin country
-   *  keys are only being mapped to their respective origin country bucket. Therefore, we ensure that the policies
-   *  for the origin country keys are applied and they don't get distributed in the EUR package.
+   * Checks if the key may only be mapped to the configuration originCountry bucket (if it is visited at all).
+   * <ul>
+   *   <li>Keys with the configuration originCountry as origin country are only mapped to their origin country bucket.
+   *   Therefore, we ensure that the policies for the origin country keys are applied and they don't get distributed in
+   *   the EUR package.</li>
+   *   <li>EFGS keys of other countries, which contain the configuration originCountry in their visited countries, will
+   *   only be distributed if the respective originCountry bucket meets all policies and is able to be distributed.
+   *   Therefore, we ensure that the keys are not distributed twice and that the packages are in sync for the
+   *   configuration originCountry package and the EUR package.</li>
+   * </ul>
+   *
    * @param key Diagnosis key
-   * @param visitedCountry Single entry of visitedCountries list.
-   * @return <code>true</code> if originCountry equals the originCountry of the given key and is not part of the visited
-   *        country list.
+   * @return <code>true</code> if the key must not be mapped to any other visited country
    */
-  private boolean isKeyOriginAndVisitedCountryNotEqualToOriginCountry(DiagnosisKey key, String visitedCountry) {
-    return key.getOriginCountry().equals(originCountry) && !visitedCountry.equals(originCountry);
+  private boolean isDistributedToOriginCountryOnly(DiagnosisKey key) {
+    return (key.getVisitedCountriesMask() & originCountryMask) != 0 || key.getOriginCountry().equals(originCountry);
   }
 
   /**
-   *  Check if the origin country of the key does not equal the distribution configuration originCountry,
-   *  the current visited country is not equal to the configuration originCountry and the list of visited countries
-   *  contain the configuration originCountry. This ensures that the EFGS keys of other supported countries which
-   *  contain the configuration originCountry in their visited country list will only be distributed if the
-   *  respective originCountry bucket meets all policies and is able to be distributed. Therefore,
-   *  we ensure that the keys are not distributed twice and that the packages are in sync for the configuration
-   *  originCountry package and the EUR package.
-   * @param key Diagnosis key
-   * @param visitedCountry Single entry of visitedCountries list.
-   * @return <code>true</code> or <code>false</code>
+   * Adds the EUR package, which contains the distributable diagnosis keys of all countries per hour. The hours are
+   * assembled one after another, and only keys of multiple countries are checked for duplicates.
    */
-  private boolean isEfgsKeyWithOriginInVisitedCountriesAndNotVisitedCountry(DiagnosisKey key, String visitedCountry) {
-    return !key.getOriginCountry().equals(originCountry) && !visitedCountry.equals(originCountry)
-        && key.getVisitedCountries().contains(originCountry);
-  }
-
-  protected Map<String, List<DiagnosisKey>> mapDiagnosisKeysPerVisitedCountries(
-      Collection<DiagnosisKey> diagnosisKeys) {
-    initializeMappings();
-
-    diagnosisKeys
-        .forEach(diagnosisKey -> this.addKeyToMap(diagnosisKey, groupedDiagnosisKeys));
-    return groupedDiagnosisKeys;
-  }
-
   protected void populateEuPackageWithDistributableDiagnosisKeys() {
-    Map<LocalDateTime, Set<DiagnosisKey>> euPackage = new HashMap<>();
-
-    distributableDiagnosisKeys
-        .forEach((country, diagnosisKeyMap) -> diagnosisKeyMap.forEach((distributionDateTime, diagnosisKeys) -> {
-          Set<DiagnosisKey> currentHourDiagnosisKeys = Optional
-              .ofNullable(euPackage.get(distributionDateTime))
-              .orElse(new HashSet<>());
-          currentHourDiagnosisKeys.addAll(diagnosisKeys);
-          euPackage.put(distributionDateTime, currentHourDiagnosisKeys);
-        }));
-
-    Map<LocalDateTime, List<DiagnosisKey>> euPackageList = new HashMap<>();
-    euPackage.forEach((distributionDateTime, diagnosisKeys) ->
-        euPackageList.put(distributionDateTime, new ArrayList<>(diagnosisKeys)));
-    distributableDiagnosisKeys.put(euPackageName, euPackageList);
+    NavigableMap<LocalDateTime, List<DiagnosisKey>> euPackage = new TreeMap<>();
+    Set<LocalDateTime> distributionDateTimes = new TreeSet<>();
+    distributableDiagnosisKeys.values().forEach(diagnosisKeysPerHour ->
+        distributionDateTimes.addAll(diagnosisKeysPerHour.keySet()));
+
+    Set<DiagnosisKey> addedDiagnosisKeysOfMultipleCountries = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (LocalDateTime distributionDateTime : distributionDateTimes) {
+      List<DiagnosisKey> euDiagnosisKeys = new ArrayList<>();
+      addedDiagnosisKeysOfMultipleCountries.clear();
+      distributableDiagnosisKeys.values().forEach(diagnosisKeysPerHour -> {
+        for (DiagnosisKey diagnosisKey : diagnosisKeysPerHour.getOrDefault(distributionDateTime, emptyList())) {
+          if (!diagnosisKeysOfMultipleCountries.contains(diagnosisKey)
+              || addedDiagnosisKeysOfMultipleCountries.add(diagnosisKey)) {
+            euDiagnosisKeys.add(diagnosisKey);
+          }
+        }
+      });
+      euPackage.put(distributionDateTime, euDiagnosisKeys);
+    }
+    distributableDiagnosisKeys.put(euPackageName, euPackage);
   }
 
   private void initializeMappings() {
     groupedDiagnosisKeys.clear();
     distributableDiagnosisKeys.clear();
+    numberOfDistributableDiagnosisKeysPerDate.clear();
+    diagnosisKeysOfMultipleCountries.clear();
 
     supportedCountries.forEach(supportedCountry -> {
       groupedDiagnosisKeys.put(supportedCountry, new ArrayList<>());
-      this.distributableDiagnosisKeys.put(supportedCountry, new HashMap<>());
+      this.distributableDiagnosisKeys.put(supportedCountry, new TreeMap<>());
     });
   }
 }
@@ -0,0 +1,309 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App
+ * ---
+ * Copyright (C) 2020 SAP SE and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+
+package app.coronawarn.server.services.distribution.assembly.diagnosiskeys;
+
+import app.coronawarn.server.common.persistence.domain.DiagnosisKey;
+import app.coronawarn.server.common.protocols.external.exposurenotification.ReportType;
+import app.coronawarn.server.common.protocols.external.exposurenotification.TemporaryExposureKey;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.stream.IntStream;
+
+/**
+ * A compact, read-only representation of the diagnosis keys of a bundle, which holds only the attributes needed for
+ * the distribution. The attributes are stored column by column in primitive arrays (about 30 bytes per key), instead
+ * of one {@link DiagnosisKey} object with its dates, strings and sets per key.
+ */
+public final class DistributableKeyBatch {
+
+  private static final int KEY_DATA_LENGTH = DiagnosisKey.KEY_DATA_LENGTH;
+  private static final DistributableKeyBatch EMPTY = builder(0).build();
+
+  private final int size;
+  private final byte[] keyData;
+  private final int[] rollingStartIntervalNumbers;
+  private final byte[] rollingPeriods;
+  private final byte[] transmissionRiskLevels;
+  private final byte[] reportTypes;
+  private final short[] daysSinceOnsetOfSymptoms;
+  private final int[] submissionTimestamps;
+
+  private DistributableKeyBatch(int size, byte[] keyData, int[] rollingStartIntervalNumbers, byte[] rollingPeriods,
+      byte[] transmissionRiskLevels, byte[] reportTypes, short[] daysSinceOnsetOfSymptoms,
+      int[] submissionTimestamps) {
+    this.size = size;
+    this.keyData = keyData;
+    this.rollingStartIntervalNumbers = rollingStartIntervalNumbers;
+    this.rollingPeriods = rollingPeriods;
+    this.transmissionRiskLevels = transmissionRiskLevels;
+    this.reportTypes = reportTypes;
+    this.daysSinceOnsetOfSymptoms = daysSinceOnsetOfSymptoms;
+    this.submissionTimestamps = submissionTimestamps;
+  }
+
+  public static DistributableKeyBatch empty() {
+    return EMPTY;
+  }
+
+  /**
+   * Creates a batch containing the given diagnosis keys, in their iteration order.
+   *
+   * @param diagnosisKeys the diagnosis keys to add
+   * @return a new batch
+   */
+  public static DistributableKeyBatch of(Collection<DiagnosisKey> diagnosisKeys) {
+    return builder(diagnosisKeys.size()).addAll(diagnosisKeys).build();
+  }
+
+  public static Builder builder(int expectedSize) {
+    return new Builder(expectedSize);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Returns a read-only view of the key data of the key at the given index.
+   *
+   * @param index the index of the key
+   * @return the 16 bytes of key data
+   */
+  public ByteBuffer getKeyData(int index) {
+    return ByteBuffer.wrap(keyData, keyDataOffset(index), KEY_DATA_LENGTH).slice().asReadOnlyBuffer();
+  }
+
+  public int getRollingStartIntervalNumber(int index) {
+    return rollingStartIntervalNumbers[checkIndex(index)];
+  }
+
+  public int getRollingPeriod(int index) {
+    return Byte.toUnsignedInt(rollingPeriods[checkIndex(index)]);
+  }
+
+  public int getTransmissionRiskLevel(int index) {
+    return transmissionRiskLevels[checkIndex(index)];
+  }
+
+  public ReportType getReportType(int index) {
+    return ReportType.forNumber(reportTypes[checkIndex(index)]);
+  }
+
+  public int getDaysSinceOnsetOfSymptoms(int index) {
+    return daysSinceOnsetOfSymptoms[checkIndex(index)];
+  }
+
+  /**
+   * Returns the submission timestamp of the key at the given index, in hours since epoch.
+   *
+   * @param index the index of the key
+   * @return the submission timestamp
+   */
+  public long getSubmissionTimestamp(int index) {
+    return submissionTimestamps[checkIndex(index)];
+  }
+
+  /**
+   * Returns a copy of this batch, in which the keys are sorted by their unsigned key data, as required for the
+   * export.
+   *
+   * @return the sorted batch
+   */
+  public DistributableKeyBatch sortedByKeyData() {
+    int[] order = IntStream.range(0, size).boxed()
+        .sorted((first, second) -> Arrays.compareUnsigned(
+            keyData, keyDataOffset(first), keyDataOffset(first) + KEY_DATA_LENGTH,
+            keyData, keyDataOffset(second), keyDataOffset(second) + KEY_DATA_LENGTH))
+        .mapToInt(Integer::intValue)
+        .toArray();
+    Builder sorted = builder(size);
+    for (int index : order) {
+      sorted.copy(this, index);
+    }
+    return sorted.build();
+  }
+
+  /**
+   * Writes each key as a {@link TemporaryExposureKey} message with the given field number. The result is the same
+   * as writing the respective {@link TemporaryExposureKey} messages, without creating them.
+   *
+   * @param outputStream the stream to write to
+   * @param fieldNumber  the field number of the repeated key field
+   * @throws IOException if the keys could not be written
+   */
+  public void writeTemporaryExposureKeys(CodedOutputStream outputStream, int fieldNumber) throws IOException {
+    for (int index = 0; index < size; index++) {
+      outputStream.writeTag(fieldNumber, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+      outputStream.writeUInt32NoTag(computeTemporaryExposureKeySize(index));
+      outputStream.writeByteArray(TemporaryExposureKey.KEY_DATA_FIELD_NUMBER,
+          keyData, keyDataOffset(index), KEY_DATA_LENGTH);
+      outputStream.writeInt32(TemporaryExposureKey.TRANSMISSION_RISK_LEVEL_FIELD_NUMBER,
+          getTransmissionRiskLevel(index));
+      outputStream.writeInt32(TemporaryExposureKey.ROLLING_START_INTERVAL_NUMBER_FIELD_NUMBER,
+          getRollingStartIntervalNumber(index));
+      outputStream.writeInt32(TemporaryExposureKey.ROLLING_PERIOD_FIELD_NUMBER, getRollingPeriod(index));
+      outputStream.writeEnum(TemporaryExposureKey.REPORT_TYPE_FIELD_NUMBER, reportTypes[index]);
+      outputStream.writeSInt32(TemporaryExposureKey.DAYS_SINCE_ONSET_OF_SYMPTOMS_FIELD_NUMBER,
+          getDaysSinceOnsetOfSymptoms(index));
+    }
+  }
+
+  private int computeTemporaryExposureKeySize(int index) {
+    return CodedOutputStream.computeTagSize(TemporaryExposureKey.KEY_DATA_FIELD_NUMBER)
+        + CodedOutputStream.computeUInt32SizeNoTag(KEY_DATA_LENGTH) + KEY_DATA_LENGTH
+        + CodedOutputStream.computeInt32Size(TemporaryExposureKey.TRANSMISSION_RISK_LEVEL_FIELD_NUMBER,
+            getTransmissionRiskLevel(index))
+        + CodedOutputStream.computeInt32Size(TemporaryExposureKey.ROLLING_START_INTERVAL_NUMBER_FIELD_NUMBER,
+            getRollingStartIntervalNumber(index))
+        + CodedOutputStream.computeInt32Size(TemporaryExposureKey.ROLLING_PERIOD_FIELD_NUMBER,
+            getRollingPeriod(index))
+        + CodedOutputStream.computeEnumSize(TemporaryExposureKey.REPORT_TYPE_FIELD_NUMBER, reportTypes[index])
+        + CodedOutputStream.computeSInt32Size(TemporaryExposureKey.DAYS_SINCE_ONSET_OF_SYMPTOMS_FIELD_NUMBER,
+            getDaysSinceOnsetOfSymptoms(index));
+  }
+
+  private int keyDataOffset(int index) {
+    return checkIndex(index) * KEY_DATA_LENGTH;
+  }
+
+  private int checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index " + index + " is out of bounds for batch of size " + size + ".");
+    }
+    return index;
+  }
+
+  /**
+   * Appends keys to a {@link DistributableKeyBatch}. The columns grow as needed and are trimmed on {@link #build()}.
+   */
+  public static final class Builder {
+
+    private int size;
+    private byte[] keyData;
+    private int[] rollingStartIntervalNumbers;
+    private byte[] rollingPeriods;
+    private byte[] transmissionRiskLevels;
+    private byte[] reportTypes;
+    private short[] daysSinceOnsetOfSymptoms;
+    private int[] submissionTimestamps;
+
+    private Builder(int expectedSize) {
+      int capacity = Math.max(expectedSize, 0);
+      keyData = new byte[capacity * KEY_DATA_LENGTH];
+      rollingStartIntervalNumbers = new int[capacity];
+      rollingPeriods = new byte[capacity];
+      transmissionRiskLevels = new byte[capacity];
+      reportTypes = new byte[capacity];
+      daysSinceOnsetOfSymptoms = new short[capacity];
+      submissionTimestamps = new int[capacity];
+    }
+
+    /**
+     * Appends the distributed attributes of the given diagnosis key.
+     *
+     * @param diagnosisKey the diagnosis key to add
+     * @return this builder
+     */
+    public Builder add(DiagnosisKey diagnosisKey) {
+      ensureCapacity();
+      System.arraycopy(diagnosisKey.getKeyData(), 0, keyData, size * KEY_DATA_LENGTH, KEY_DATA_LENGTH);
+      rollingStartIntervalNumbers[size] = diagnosisKey.getRollingStartIntervalNumber();
+      rollingPeriods[size] = (byte) diagnosisKey.getRollingPeriod();
+      transmissionRiskLevels[size] = (byte) diagnosisKey.getTransmissionRiskLevel();
+      reportTypes[size] = (byte) diagnosisKey.getReportType().getNumber();
+      daysSinceOnsetOfSymptoms[size] = (short) diagnosisKey.getDaysSinceOnsetOfSymptoms();
+      submissionTimestamps[size] = Math.toIntExact(diagnosisKey.getSubmissionTimestamp());
+      size++;
+      return this;
+    }
+
+    public Builder addAll(Collection<DiagnosisKey> diagnosisKeys) {
+      diagnosisKeys.forEach(this::add);
+      return this;
+    }
+
+    /**
+     * Appends all keys of the given batch.
+     *
+     * @param batch the batch to add
+     * @return this builder
+     */
+    public Builder addAll(DistributableKeyBatch batch) {
+      for (int index = 0; index < batch.size; index++) {
+        copy(batch, index);
+      }
+      return this;
+    }
+
+    /**
+     * Creates the batch. The builder must not be used afterwards.
+     *
+     * @return the batch containing all added keys
+     */
+    public DistributableKeyBatch build() {
+      return new DistributableKeyBatch(size,
+          Arrays.copyOf(keyData, size * KEY_DATA_LENGTH),
+          Arrays.copyOf(rollingStartIntervalNumbers, size),
+          Arrays.copyOf(rollingPeriods, size),
+          Arrays.copyOf(transmissionRiskLevels, size),
+          Arrays.copyOf(reportTypes, size),
+          Arrays.copyOf(daysSinceOnsetOfSymptoms, size),
+          Arrays.copyOf(submissionTimestamps, size));
+    }
+
+    private void copy(DistributableKeyBatch batch, int index) {
+      ensureCapacity();
+      System.arraycopy(batch.keyData, batch.keyDataOffset(index), keyData, size * KEY_DATA_LENGTH, KEY_DATA_LENGTH);
+      rollingStartIntervalNumbers[size] = batch.rollingStartIntervalNumbers[index];
+      rollingPeriods[size] = batch.rollingPeriods[index];
+      transmissionRiskLevels[size] = batch.transmissionRiskLevels[index];
+      reportTypes[size] = batch.reportTypes[index];
+      daysSinceOnsetOfSymptoms[size] = batch.daysSinceOnsetOfSymptoms[index];
+      submissionTimestamps[size] = batch.submissionTimestamps[index];
+      size++;
+    }
+
+    private void ensureCapacity() {
+      if (size == rollingStartIntervalNumbers.length) {
+        grow(Math.max(16, size * 2));
+      }
+    }
+
+    private void grow(int capacity) {
+      keyData = Arrays.copyOf(keyData, capacity * KEY_DATA_LENGTH);
+      rollingStartIntervalNumbers = Arrays.copyOf(rollingStartIntervalNumbers, capacity);
+      rollingPeriods = Arrays.copyOf(rollingPeriods, capacity);
+      transmissionRiskLevels = Arrays.copyOf(transmissionRiskLevels, capacity);
+      reportTypes = Arrays.copyOf(reportTypes, capacity);
+      daysSinceOnsetOfSymptoms = Arrays.copyOf(daysSinceOnsetOfSymptoms, capacity);
+      submissionTimestamps = Arrays.copyOf(submissionTimestamps, capacity);
+    }
+  }
+}
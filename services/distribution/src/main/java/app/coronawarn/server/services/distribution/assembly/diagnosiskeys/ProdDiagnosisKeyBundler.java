@@ -20,7 +20,8 @@
 
 package app.coronawarn.server.services.distribution.assembly.diagnosiskeys;
 
-import static java.util.Collections.emptyList;
+import static app.coronawarn.server.common.persistence.service.common.KeySharingPoliciesChecker.ONE_HOUR_INTERVAL_SECONDS;
+import static java.time.ZoneOffset.UTC;
 import static java.util.stream.Collectors.groupingBy;
 
 import app.coronawarn.server.common.persistence.domain.DiagnosisKey;
@@ -30,13 +31,8 @@ import app.coronawarn.server.services.distribution.config.DistributionServiceCon
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Optional;
-import java.util.stream.LongStream;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 
@@ -53,6 +49,7 @@ public class ProdDiagnosisKeyBundler extends DiagnosisKeyBundler {
   private KeySharingPoliciesChecker sharingPoliciesChecker;
   private String originCountry;
   private boolean applyPoliciesForAllCountries;
+  private ExpirationPolicy expirationPolicy;
 
   /**
    * Creates a new {@link ProdDiagnosisKeyBundler}.
@@ -66,6 +63,7 @@ public class ProdDiagnosisKeyBundler extends DiagnosisKeyBundler {
     this.sharingPoliciesChecker = sharingPoliciesChecker;
     this.originCountry = distributionServiceConfig.getApi().getOriginCountry();
     this.applyPoliciesForAllCountries = distributionServiceConfig.getApplyPoliciesForAllCountries();
+    this.expirationPolicy = ExpirationPolicy.of(expiryPolicyMinutes, ChronoUnit.MINUTES);
   }
 
   /**
@@ -73,8 +71,8 @@ public class ProdDiagnosisKeyBundler extends DiagnosisKeyBundler {
    * and by the date on which they may be distributed, while respecting the expiry and shifting policies.
    */
   @Override
-  protected void createDiagnosisKeyDistributionMap(Collection<DiagnosisKey> diagnosisKeys) {
-    mapDiagnosisKeysPerVisitedCountries(diagnosisKeys).keySet().forEach(country -> {
+  protected void createDiagnosisKeyDistributionMap() {
+    groupedDiagnosisKeys.keySet().forEach(country -> {
       if (!country.equals(originCountry) && !applyPoliciesForAllCountries) {
         populateDistributableDiagnosisKeysWithoutPolicies(country);
       } else {
@@ -85,34 +83,51 @@ public class ProdDiagnosisKeyBundler extends DiagnosisKeyBundler {
   }
 
   private void populateDistributableDiagnosisKeysWithPolicies(String country) {
+    List<DiagnosisKey> diagnosisKeys = groupedDiagnosisKeys.get(country);
+    if (diagnosisKeys.isEmpty()) {
+      return;
+    }
 
-    Map<LocalDateTime, List<DiagnosisKey>> distributableDiagnosisKeysGroupedByExpiryPolicy = new HashMap<>(
-        groupedDiagnosisKeys.get(country).stream().collect(groupingBy(this::getDistributionDateTimeByExpiryPolicy)));
-
-    if (distributableDiagnosisKeysGroupedByExpiryPolicy.isEmpty()) {
+    long[] distributionHours = new long[diagnosisKeys.size()];
+    long earliestDistributableHour = Long.MAX_VALUE;
+    for (int i = 0; i < distributionHours.length; i++) {
+      distributionHours[i] = getDistributionHourByExpiryPolicy(diagnosisKeys.get(i));
+      earliestDistributableHour = Math.min(earliestDistributableHour, distributionHours[i]);
+    }
+    long latestDistributableHour = distributionTime.toEpochSecond(UTC) / ONE_HOUR_INTERVAL_SECONDS;
+    if (earliestDistributableHour >= latestDistributableHour) {
       return;
     }
 
-    LocalDateTime earliestDistributableTimestamp =
-        getEarliestDistributableTimestamp(distributableDiagnosisKeysGroupedByExpiryPolicy).orElseThrow();
-    LocalDateTime latestDistributableTimestamp = distributionTime;
+    List<List<DiagnosisKey>> distributableDiagnosisKeysPerHour = new ArrayList<>(
+        Collections.nCopies((int) (latestDistributableHour - earliestDistributableHour), null));
+    for (int i = 0; i < distributionHours.length; i++) {
+      if (distributionHours[i] < latestDistributableHour) {
+        int hourIndex = (int) (distributionHours[i] - earliestDistributableHour);
+        if (distributableDiagnosisKeysPerHour.get(hourIndex) == null) {
+          distributableDiagnosisKeysPerHour.set(hourIndex, new ArrayList<>());
+        }
+        distributableDiagnosisKeysPerHour.get(hourIndex).add(diagnosisKeys.get(i));
+      }
+    }
 
+    LocalDateTime earliestDistributableTimestamp =
+        LocalDateTime.ofEpochSecond(earliestDistributableHour * ONE_HOUR_INTERVAL_SECONDS, 0, UTC);
     List<DiagnosisKey> diagnosisKeyAccumulator = new ArrayList<>();
-    LongStream.range(0, earliestDistributableTimestamp.until(latestDistributableTimestamp, ChronoUnit.HOURS))
-        .forEach(hourCounter -> {
-          LocalDateTime currentHour = earliestDistributableTimestamp.plusHours(hourCounter);
-          Collection<DiagnosisKey> currentHourDiagnosisKeys = Optional
-              .ofNullable(distributableDiagnosisKeysGroupedByExpiryPolicy.get(currentHour))
-              .orElse(emptyList());
-          diagnosisKeyAccumulator.addAll(currentHourDiagnosisKeys);
-          if (diagnosisKeyAccumulator.size() >= minNumberOfKeysPerBundle) {
-            distributableDiagnosisKeys.get(country).put(currentHour, new ArrayList<>(diagnosisKeyAccumulator));
-            diagnosisKeyAccumulator.clear();
-          } else {
-            // placeholder list is needed to be able to generate empty file - see issue #650
-            distributableDiagnosisKeys.get(country).put(currentHour, Collections.emptyList());
-          }
-        });
+    for (int hourIndex = 0; hourIndex < distributableDiagnosisKeysPerHour.size(); hourIndex++) {
+      LocalDateTime currentHour = earliestDistributableTimestamp.plusHours(hourIndex);
+      List<DiagnosisKey> currentHourDiagnosisKeys = distributableDiagnosisKeysPerHour.get(hourIndex);
+      if (currentHourDiagnosisKeys != null) {
+        diagnosisKeyAccumulator.addAll(currentHourDiagnosisKeys);
+      }
+      if (diagnosisKeyAccumulator.size() >= minNumberOfKeysPerBundle) {
+        distributableDiagnosisKeys.get(country).put(currentHour, new ArrayList<>(diagnosisKeyAccumulator));
+        diagnosisKeyAccumulator.clear();
+      } else {
+        // placeholder list is needed to be able to generate empty file - see issue #650
+        distributableDiagnosisKeys.get(country).put(currentHour, Collections.emptyList());
+      }
+    }
   }
 
   private void populateDistributableDiagnosisKeysWithoutPolicies(String country) {
@@ -121,20 +136,14 @@ public class ProdDiagnosisKeyBundler extends DiagnosisKeyBundler {
         .collect(groupingBy(this::getSubmissionDateTime)));
   }
 
-  private static Optional<LocalDateTime> getEarliestDistributableTimestamp(
-      Map<LocalDateTime, List<DiagnosisKey>> distributableDiagnosisKeys) {
-    return distributableDiagnosisKeys.keySet().stream().min(LocalDateTime::compareTo);
-  }
-
   /**
-   * Calculates the earliest point in time at which the specified {@link DiagnosisKey} can be distributed, while
-   * respecting the expiry policy and the submission timestamp. Before keys are allowed to be distributed, they must be
-   * expired for a configured amount of time.
+   * Calculates the earliest hour at which the specified {@link DiagnosisKey} can be distributed, while respecting the
+   * expiry policy and the submission timestamp. Before keys are allowed to be distributed, they must be expired for a
+   * configured amount of time.
    *
-   * @return {@link LocalDateTime} at which the specified {@link DiagnosisKey} can be distributed.
+   * @return the hours since epoch at which the specified {@link DiagnosisKey} can be distributed.
    */
-  private LocalDateTime getDistributionDateTimeByExpiryPolicy(DiagnosisKey diagnosisKey) {
-    return sharingPoliciesChecker.getEarliestTimeForSharingKey(diagnosisKey,
-        ExpirationPolicy.of(expiryPolicyMinutes, ChronoUnit.MINUTES));
+  private long getDistributionHourByExpiryPolicy(DiagnosisKey diagnosisKey) {
+    return sharingPoliciesChecker.getEarliestHourForSharingKey(diagnosisKey, expirationPolicy);
   }
 }
@@ -0,0 +1,115 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App
+ * ---
+ * Copyright (C) 2020 SAP SE and all other contributors
+ * All modifications are copyright (c) 2020 Devside SRL.
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.server.services.distribution.assembly.diagnosiskeys;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The diagnosis key archives (per country and date or hour) which are available on the object store. The coordinator
+ * of a sharded distribution run only indexes these archives, so that its indexes never refer to an archive which a
+ * worker did not publish, regardless of the diagnosis keys the coordinator reads from the database.
+ */
+public class PublishedDiagnosisKeyArchives {
+
+  private final boolean restricted;
+  private final Set<String> dateArchives;
+  private final Set<String> hourArchives;
+
+  private PublishedDiagnosisKeyArchives(boolean restricted, Set<String> dateArchives, Set<String> hourArchives) {
+    this.restricted = restricted;
+    this.dateArchives = dateArchives;
+    this.hourArchives = hourArchives;
+  }
+
+  /**
+   * Returns an instance which includes every archive, for processes which publish the archives they index.
+   *
+   * @return an unrestricted instance
+   */
+  public static PublishedDiagnosisKeyArchives all() {
+    return new PublishedDiagnosisKeyArchives(false, Set.of(), Set.of());
+  }
+
+  /**
+   * Returns an instance which only includes the archives among the given object names. Object names which do not
+   * denote a diagnosis key archive are ignored.
+   *
+   * @param objectNames    The names of the objects on the object store.
+   * @param countryPrefix  The prefix of all country directories, e.g. <code>version/v1/diagnosis-keys/country/</code>.
+   * @param datePath       The name of the date directories.
+   * @param hourPath       The name of the hour directories.
+   * @return the published archives
+   */
+  public static PublishedDiagnosisKeyArchives of(Collection<String> objectNames, String countryPrefix,
+      String datePath, String hourPath) {
+    Pattern archivePattern = Pattern.compile(Pattern.quote(countryPrefix) + "([^/]+)/" + Pattern.quote(datePath)
+        + "/(\\d{4}-\\d{2}-\\d{2})(?:/" + Pattern.quote(hourPath) + "/(\\d{1,2}))?");
+    Set<String> dateArchives = new HashSet<>();
+    Set<String> hourArchives = new HashSet<>();
+    for (String objectName : objectNames) {
+      Matcher matcher = archivePattern.matcher(objectName);
+      if (!matcher.matches()) {
+        continue;
+      }
+      String date = matcher.group(1) + "/" + matcher.group(2);
+      if (matcher.group(3) == null) {
+        dateArchives.add(date);
+      } else {
+        hourArchives.add(date + "/" + Integer.parseInt(matcher.group(3)));
+      }
+    }
+    return new PublishedDiagnosisKeyArchives(true, dateArchives, hourArchives);
+  }
+
+  /**
+   * Indicates whether the given date may be indexed, i.e. whether its date archive or any of its hour archives has been
+   * published.
+   *
+   * @param country the country of the archives
+   * @param date    the date of the archives
+   * @return {@code true} if the date may be indexed
+   */
+  public boolean includesDate(String country, LocalDate date) {
+    if (!restricted) {
+      return true;
+    }
+    String key = country + "/" + date;
+    return dateArchives.contains(key) || hourArchives.stream().anyMatch(hour -> hour.startsWith(key + "/"));
+  }
+
+  /**
+   * Indicates whether the given hour may be indexed, i.e. whether its hour archive has been published.
+   *
+   * @param country the country of the archive
+   * @param hour    the hour of the archive
+   * @return {@code true} if the hour may be indexed
+   */
+  public boolean includesHour(String country, LocalDateTime hour) {
+    return !restricted || hourArchives.contains(country + "/" + hour.toLocalDate() + "/" + hour.getHour());
+  }
+}
@@ -24,7 +24,9 @@ import static java.lang.Boolean.FALSE;
 
 import app.coronawarn.server.common.persistence.domain.DiagnosisKey;
 import app.coronawarn.server.services.distribution.assembly.component.CryptoProvider;
+import app.coronawarn.server.services.distribution.assembly.diagnosiskeys.DiagnosisKeyBundleFingerprints;
 import app.coronawarn.server.services.distribution.assembly.diagnosiskeys.DiagnosisKeyBundler;
+import app.coronawarn.server.services.distribution.assembly.diagnosiskeys.DistributableKeyBatch;
 import app.coronawarn.server.services.distribution.assembly.diagnosiskeys.structure.directory.decorator.HourIndexingDecorator;
 import app.coronawarn.server.services.distribution.assembly.diagnosiskeys.structure.file.TemporaryExposureKeyExportFile;
 import app.coronawarn.server.services.distribution.assembly.structure.Writable;
@@ -38,10 +40,10 @@ import app.coronawarn.server.services.distribution.assembly.structure.file.File;
 import app.coronawarn.server.services.distribution.assembly.structure.util.ImmutableStack;
 import app.coronawarn.server.services.distribution.assembly.structure.util.TimeUtils;
 import app.coronawarn.server.services.distribution.config.DistributionServiceConfig;
+import app.coronawarn.server.services.distribution.config.DistributionShard;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
-import java.util.List;
 import java.util.Optional;
 
 public class DiagnosisKeysDateDirectory extends IndexDirectoryOnDisk<LocalDate> {
@@ -51,6 +53,8 @@ public class DiagnosisKeysDateDirectory extends IndexDirectoryOnDisk<LocalDate>
   private final DiagnosisKeyBundler diagnosisKeyBundler;
   private final CryptoProvider cryptoProvider;
   private final DistributionServiceConfig distributionServiceConfig;
+  private final DiagnosisKeyBundleFingerprints fingerprints;
+  private final DistributionShard shard;
   private final LocalDate cutOffDate;
 
   /**
@@ -60,9 +64,11 @@ public class DiagnosisKeysDateDirectory extends IndexDirectoryOnDisk<LocalDate>
    * @param diagnosisKeyBundler A {@link DiagnosisKeyBundler} containing the {@link DiagnosisKey DiagnosisKeys}.
    * @param cryptoProvider      The {@link CryptoProvider} used for payload signing.
    * @param distributionServiceConfig The {@link DistributionServiceConfig} config attributes
+   * @param fingerprints        The {@link DiagnosisKeyBundleFingerprints} used to skip unchanged archives.
    */
   public DiagnosisKeysDateDirectory(DiagnosisKeyBundler diagnosisKeyBundler,
-      CryptoProvider cryptoProvider, DistributionServiceConfig distributionServiceConfig) {
+      CryptoProvider cryptoProvider, DistributionServiceConfig distributionServiceConfig,
+      DiagnosisKeyBundleFingerprints fingerprints) {
     super(distributionServiceConfig.getApi().getDatePath(),
         indices -> {
           String country = (String) indices.peek();
@@ -71,6 +77,8 @@ public class DiagnosisKeysDateDirectory extends IndexDirectoryOnDisk<LocalDate>
     this.cryptoProvider = cryptoProvider;
     this.diagnosisKeyBundler = diagnosisKeyBundler;
     this.distributionServiceConfig = distributionServiceConfig;
+    this.fingerprints = fingerprints;
+    this.shard = new DistributionShard(distributionServiceConfig);
 
     int hourRetentionDays = distributionServiceConfig.getObjectStore().getHourFileRetentionDays();
     this.cutOffDate = TimeUtils.getUtcDate().minusDays(hourRetentionDays);
@@ -80,7 +88,7 @@ public class DiagnosisKeysDateDirectory extends IndexDirectoryOnDisk<LocalDate>
     LocalDate currentDate = (LocalDate) indices.peek();
     if (currentDate.isAfter(cutOffDate)) {
       DiagnosisKeysHourDirectory hourDirectory =
-          new DiagnosisKeysHourDirectory(diagnosisKeyBundler, cryptoProvider, distributionServiceConfig);
+          new DiagnosisKeysHourDirectory(diagnosisKeyBundler, cryptoProvider, distributionServiceConfig, fingerprints);
       return Optional.of(decorateHourDirectory(hourDirectory));
     } else {
       return Optional.empty();
@@ -100,14 +108,20 @@ public class DiagnosisKeysDateDirectory extends IndexDirectoryOnDisk<LocalDate>
       return Optional.empty();
     }
     String country = (String) currentIndices.pop().peek();
+    if (!shard.includesArchive(country, currentDate)) {
+      return Optional.empty();
+    }
 
-    List<DiagnosisKey> diagnosisKeysForCurrentHour =
-        this.diagnosisKeyBundler.getDiagnosisKeysForDate(currentDate, country);
+    DistributableKeyBatch diagnosisKeysForCurrentHour =
+        this.diagnosisKeyBundler.getDistributableKeyBatchForDate(currentDate, country);
+    if (fingerprints.isUnchanged(country, currentDate, diagnosisKeysForCurrentHour)) {
+      return Optional.empty();
+    }
 
     long startTimestamp = currentDate.atStartOfDay().toEpochSecond(ZoneOffset.UTC);
     long endTimestamp = currentDate.plusDays(1).atStartOfDay().toEpochSecond(ZoneOffset.UTC);
 
-    File<WritableOnDisk> temporaryExposureKeyExportFile = TemporaryExposureKeyExportFile.fromDiagnosisKeys(
+    File<WritableOnDisk> temporaryExposureKeyExportFile = TemporaryExposureKeyExportFile.fromDistributableKeyBatch(
         diagnosisKeysForCurrentHour, country, startTimestamp, endTimestamp, distributionServiceConfig);
 
     Archive<WritableOnDisk> dateArchive = new ArchiveOnDisk(distributionServiceConfig.getOutputFileName());
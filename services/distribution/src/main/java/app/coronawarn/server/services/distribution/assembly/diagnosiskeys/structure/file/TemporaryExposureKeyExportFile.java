@@ -23,99 +23,110 @@ package app.coronawarn.server.services.distribution.assembly.diagnosiskeys.struc
 import app.coronawarn.server.common.persistence.domain.DiagnosisKey;
 import app.coronawarn.server.common.protocols.external.exposurenotification.TemporaryExposureKey;
 import app.coronawarn.server.common.protocols.external.exposurenotification.TemporaryExposureKeyExport;
-import app.coronawarn.server.services.distribution.assembly.structure.file.FileOnDiskWithChecksum;
+import app.coronawarn.server.services.distribution.assembly.diagnosiskeys.DistributableKeyBatch;
+import app.coronawarn.server.services.distribution.assembly.structure.file.StreamedFileOnDisk;
 import app.coronawarn.server.services.distribution.assembly.structure.util.ImmutableStack;
 import app.coronawarn.server.services.distribution.config.DistributionServiceConfig;
-import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 /**
  * A {@link app.coronawarn.server.services.distribution.assembly.structure.file.File} containing a {@link
- * TemporaryExposureKeyExport}.
+ * TemporaryExposureKeyExport}. The export is streamed key by key, so that neither the {@link TemporaryExposureKey
+ * TemporaryExposureKeys} nor the serialized export need to be kept in memory as a whole. The keys are released once
+ * the export has been spooled on {@link #prepare}, so that a prepared directory tree does not hold a copy of them per
+ * file.
  */
-public class TemporaryExposureKeyExportFile extends FileOnDiskWithChecksum {
+public class TemporaryExposureKeyExportFile extends StreamedFileOnDisk {
 
-  private final List<TemporaryExposureKey> temporaryExposureKeys;
+  private DistributableKeyBatch diagnosisKeys;
   private final String region;
   private final long startTimestamp;
   private final long endTimestamp;
   private final DistributionServiceConfig distributionServiceConfig;
 
-  private TemporaryExposureKeyExportFile(List<TemporaryExposureKey> temporaryExposureKeys, String region,
+  private TemporaryExposureKeyExportFile(DistributableKeyBatch diagnosisKeys, String region,
       long startTimestamp, long endTimestamp, DistributionServiceConfig distributionServiceConfig) {
-    super(distributionServiceConfig.getTekExport().getFileName(), new byte[0]);
+    super(distributionServiceConfig.getTekExport().getFileName());
     this.region = region;
     this.startTimestamp = startTimestamp;
     this.endTimestamp = endTimestamp;
     this.distributionServiceConfig = distributionServiceConfig;
 
-    this.temporaryExposureKeys = temporaryExposureKeys
-        .stream()
-        .sorted(new TemporaryExposureKeyComparator())
-        .collect(Collectors.toList());
+    this.diagnosisKeys = diagnosisKeys.sortedByKeyData();
   }
 
   /**
-   * Constructs a {@link TemporaryExposureKeyExportFile} from {@link TemporaryExposureKey TemporaryExposureKeys}.
+   * Constructs a {@link TemporaryExposureKeyExportFile} from {@link DiagnosisKey DiagnosisKeys}.
    *
-   * @param temporaryExposureKeys The {@link TemporaryExposureKey TemporaryExposureKeys} to bundle into the {@link
-   *                              TemporaryExposureKeyExport}.
-   * @param region                The region that the {@link TemporaryExposureKey TemporaryExposureKeys} are from.
-   * @param startTimestamp        The start of the time window covered by the {@link TemporaryExposureKeyExport}, in UTC
-   *                              seconds since epoch.
-   * @param endTimestamp          The end of the time window covered by the {@link TemporaryExposureKeyExport}, in UTC *
-   *                              seconds since epoch.
+   * @param diagnosisKeys  The {@link DiagnosisKey DiagnosisKeys} to bundle into the {@link
+   *                       TemporaryExposureKeyExport}.
+   * @param region         The region that the {@link TemporaryExposureKey TemporaryExposureKeys} are from.
+   * @param startTimestamp The start of the time window covered by the {@link TemporaryExposureKeyExport}, in UTC
+   *                       seconds since epoch.
+   * @param endTimestamp   The end of the time window covered by the {@link TemporaryExposureKeyExport}, in UTC *
+   *                       seconds since epoch.
+   * @param distributionServiceConfig The distribution service configuration {@link DistributionServiceConfig}
    * @return A new {@link TemporaryExposureKeyExportFile}.
    */
-  public static TemporaryExposureKeyExportFile fromTemporaryExposureKeys(
-      List<TemporaryExposureKey> temporaryExposureKeys, String region, long startTimestamp, long endTimestamp,
-      DistributionServiceConfig distributionServiceConfig) {
-    return new TemporaryExposureKeyExportFile(temporaryExposureKeys, region, startTimestamp, endTimestamp,
+  public static TemporaryExposureKeyExportFile fromDiagnosisKeys(List<DiagnosisKey> diagnosisKeys, String region,
+      long startTimestamp, long endTimestamp, DistributionServiceConfig distributionServiceConfig) {
+    return fromDistributableKeyBatch(DistributableKeyBatch.of(diagnosisKeys), region, startTimestamp, endTimestamp,
         distributionServiceConfig);
   }
 
   /**
-   * Constructs a {@link TemporaryExposureKeyExportFile} from {@link DiagnosisKey DiagnosisKeys}.
+   * Constructs a {@link TemporaryExposureKeyExportFile} from a {@link DistributableKeyBatch}.
    *
-   * @param diagnosisKeys  The {@link DiagnosisKey DiagnosisKeys} to bundle into the {@link
-   *                       TemporaryExposureKeyExport}.
+   * @param diagnosisKeys  The {@link DistributableKeyBatch} to bundle into the {@link TemporaryExposureKeyExport}.
    * @param region         The region that the {@link TemporaryExposureKey TemporaryExposureKeys} are from.
    * @param startTimestamp The start of the time window covered by the {@link TemporaryExposureKeyExport}, in UTC
    *                       seconds since epoch.
-   * @param endTimestamp   The end of the time window covered by the {@link TemporaryExposureKeyExport}, in UTC *
+   * @param endTimestamp   The end of the time window covered by the {@link TemporaryExposureKeyExport}, in UTC
    *                       seconds since epoch.
    * @param distributionServiceConfig The distribution service configuration {@link DistributionServiceConfig}
    * @return A new {@link TemporaryExposureKeyExportFile}.
    */
-  public static TemporaryExposureKeyExportFile fromDiagnosisKeys(List<DiagnosisKey> diagnosisKeys, String region,
-      long startTimestamp, long endTimestamp, DistributionServiceConfig distributionServiceConfig) {
-    return new TemporaryExposureKeyExportFile(getTemporaryExposureKeysFromDiagnosisKeys(diagnosisKeys), region,
-        startTimestamp, endTimestamp, distributionServiceConfig);
+  public static TemporaryExposureKeyExportFile fromDistributableKeyBatch(DistributableKeyBatch diagnosisKeys,
+      String region, long startTimestamp, long endTimestamp, DistributionServiceConfig distributionServiceConfig) {
+    return new TemporaryExposureKeyExportFile(diagnosisKeys, region, startTimestamp, endTimestamp,
+        distributionServiceConfig);
   }
 
+  /**
+   * Spools the export and releases the keys afterwards. The content can still be read from the spool file until it
+   * has been written.
+   */
   @Override
   public void prepare(ImmutableStack<Object> indices) {
-    this.setBytes(createKeyExportBytesWithHeader());
     super.prepare(indices);
+    this.diagnosisKeys = null;
   }
 
-  private byte[] createKeyExportBytesWithHeader() {
-    byte[] headerBytes = this.getHeaderBytes();
-    byte[] temporaryExposureKeyExportBytes = createTemporaryExposureKeyExportBytes();
-    return concatenate(headerBytes, temporaryExposureKeyExportBytes);
-  }
+  /**
+   * Writes the header, followed by the {@link TemporaryExposureKeyExport}. The export attributes are serialized first
+   * and the keys (the last field of the message) are appended one by one, which results in the same bytes as
+   * serializing the complete message.
+   */
+  @Override
+  protected void writeContent(OutputStream outputStream) throws IOException {
+    if (diagnosisKeys == null) {
+      throw new IllegalStateException("The diagnosis keys of " + getName() + " have already been released.");
+    }
+    outputStream.write(getHeaderBytes());
 
-  private byte[] concatenate(byte[] arr1, byte[] arr2) {
-    var concatenatedBytes = Arrays.copyOf(arr1, arr1.length + arr2.length);
-    System.arraycopy(arr2, 0, concatenatedBytes, arr1.length, arr2.length);
-    return concatenatedBytes;
+    CodedOutputStream codedOutputStream = CodedOutputStream.newInstance(outputStream);
+    createTemporaryExposureKeyExportWithoutKeys().writeTo(codedOutputStream);
+    diagnosisKeys.writeTemporaryExposureKeys(codedOutputStream, TemporaryExposureKeyExport.KEYS_FIELD_NUMBER);
+    codedOutputStream.flush();
   }
 
-  private byte[] createTemporaryExposureKeyExportBytes() {
+  private TemporaryExposureKeyExport createTemporaryExposureKeyExportWithoutKeys() {
     return TemporaryExposureKeyExport.newBuilder()
         .setStartTimestamp(this.startTimestamp)
         .setEndTimestamp(this.endTimestamp)
@@ -123,22 +134,7 @@ public class TemporaryExposureKeyExportFile extends FileOnDiskWithChecksum {
         .setBatchNum(1)
         .setBatchSize(1)
         .addAllSignatureInfos(Set.of(distributionServiceConfig.getSignature().getSignatureInfo()))
-        .addAllKeys(this.temporaryExposureKeys)
-        .build()
-        .toByteArray();
-  }
-
-  private static List<TemporaryExposureKey> getTemporaryExposureKeysFromDiagnosisKeys(
-      List<DiagnosisKey> diagnosisKeys) {
-    return diagnosisKeys.stream().map(diagnosisKey -> TemporaryExposureKey.newBuilder()
-        .setKeyData(ByteString.copyFrom(diagnosisKey.getKeyData()))
-        .setTransmissionRiskLevel(diagnosisKey.getTransmissionRiskLevel())
-        .setRollingStartIntervalNumber(diagnosisKey.getRollingStartIntervalNumber())
-        .setRollingPeriod(diagnosisKey.getRollingPeriod())
-        .setReportType(diagnosisKey.getReportType())
-        .setDaysSinceOnsetOfSymptoms(diagnosisKey.getDaysSinceOnsetOfSymptoms())
-        .build())
-        .collect(Collectors.toList());
+        .build();
   }
 
   private byte[] getHeaderBytes() {
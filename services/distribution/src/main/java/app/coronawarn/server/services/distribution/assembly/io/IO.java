@@ -20,10 +20,14 @@
 
 package app.coronawarn.server.services.distribution.assembly.io;
 
+import app.coronawarn.server.services.distribution.assembly.structure.util.functional.CheckedConsumer;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UncheckedIOException;
+import java.nio.file.Files;
 
 /**
  * A class containing helper functions for general purpose file IO.
@@ -76,4 +80,30 @@ public class IO {
       throw new UncheckedIOException("Could not write file " + outputFile, e);
     }
   }
+
+  /**
+   * Streams content into a file. If the resulting file exceeds the specified maximum file size, it is removed.
+   *
+   * @param content    The function writing the content into the given stream
+   * @param outputFile The file to write the content into.
+   */
+  public static void writeToFile(CheckedConsumer<OutputStream, IOException> content, File outputFile) {
+    try (OutputStream outputFileStream = new BufferedOutputStream(new FileOutputStream(outputFile))) {
+      content.apply(outputFileStream);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not write file " + outputFile, e);
+    }
+
+    long fileSize = outputFile.length();
+    if (fileSize > MAXIMUM_FILE_SIZE) {
+      String fileName = outputFile.getName();
+      try {
+        Files.delete(outputFile.toPath());
+      } catch (IOException e) {
+        throw new UncheckedIOException("Could not delete file " + outputFile, e);
+      }
+      throw new UncheckedIOException(
+          new IOException("File size of " + fileSize + " bytes exceeds the maximum file size. Deleted " + fileName));
+    }
+  }
 }
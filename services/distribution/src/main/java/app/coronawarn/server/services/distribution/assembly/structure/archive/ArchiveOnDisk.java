@@ -29,26 +29,56 @@ import app.coronawarn.server.services.distribution.assembly.structure.directory.
 import app.coronawarn.server.services.distribution.assembly.structure.file.File;
 import app.coronawarn.server.services.distribution.assembly.structure.file.FileOnDisk;
 import app.coronawarn.server.services.distribution.assembly.structure.file.FileOnDiskWithChecksum;
+import app.coronawarn.server.services.distribution.assembly.structure.file.StreamedFileOnDisk;
 import app.coronawarn.server.services.distribution.assembly.structure.util.ImmutableStack;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UncheckedIOException;
 import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.Comparator;
 import java.util.Set;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.springframework.util.StreamUtils;
 
 /**
  * An {@link Archive} that can be written to disk as a ZIP archive.
  */
 public class ArchiveOnDisk extends FileOnDiskWithChecksum implements Archive<WritableOnDisk> {
 
+  /**
+   * The name of the timer recording the time spent zipping archives.
+   */
+  public static final String ZIP_TIMER_NAME = "distribution_archive.zip";
+
+  /**
+   * The name of the distribution summary recording the size of zipped archives, in bytes.
+   */
+  public static final String ZIP_SIZE_SUMMARY_NAME = "distribution_archive.zip.size";
+
+  /**
+   * The modification time set on all ZIP entries, so that archives with the same content are byte-identical,
+   * regardless of when they are assembled.
+   */
+  private static final LocalDateTime ZIP_ENTRY_TIME = LocalDateTime.of(1980, 1, 1, 0, 0);
+
   private DirectoryOnDisk tempDirectory;
 
   /**
-   * The checksum-relevant content of this {@link ArchiveOnDisk}.
+   * The checksum of the checksum-relevant content of this {@link ArchiveOnDisk}.
    */
-  private byte[] bytesForChecksum;
+  private String checksum;
+
+  /**
+   * The zip file this archive has been written to, which is reused instead of zipping the content again. Reset whenever
+   * the content may change (see {@link #addWritable} and {@link #prepare}).
+   */
+  private java.io.File zippedFile;
 
   /**
    * Constructs an {@link Archive} with an internal, temporary directory to store writables in.
@@ -72,6 +102,7 @@ public class ArchiveOnDisk extends FileOnDiskWithChecksum implements Archive<Wri
 
   @Override
   public void addWritable(Writable<WritableOnDisk> writable) {
+    this.zippedFile = null;
     this.tempDirectory.addWritable(writable);
   }
 
@@ -82,29 +113,75 @@ public class ArchiveOnDisk extends FileOnDiskWithChecksum implements Archive<Wri
 
   @Override
   public void prepare(ImmutableStack<Object> indices) {
+    this.zippedFile = null;
     this.tempDirectory.prepare(indices);
 
-    updateBytesForChecksum();
+    updateChecksum();
   }
 
+  /**
+   * Returns the content of this archive. Once the archive has been written, the written zip file is read, otherwise
+   * the archive is zipped in memory. The archive is written via {@link #writeTo} instead, so this is not needed to
+   * distribute it.
+   *
+   * @return the zipped content
+   */
   @Override
   public byte[] getBytes() {
     ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+    try {
+      writeTo(byteArrayOutputStream);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to create zip archive.", e);
+    }
+    return byteArrayOutputStream.toByteArray();
+  }
+
+  /**
+   * Copies the written zip file into the given stream, if this archive has already been written. Otherwise, the
+   * contained files are zipped straight into the stream, without materializing their content.
+   */
+  @Override
+  public void writeTo(OutputStream outputStream) throws IOException {
+    if (this.zippedFile != null && this.zippedFile.isFile()) {
+      Files.copy(this.zippedFile.toPath(), outputStream);
+    } else {
+      zip(outputStream);
+    }
+  }
 
-    try (ZipOutputStream zipOutputStream = new ZipOutputStream(byteArrayOutputStream)) {
+  private void zip(OutputStream outputStream) throws IOException {
+    CountingOutputStream countingOutputStream = new CountingOutputStream(StreamUtils.nonClosing(outputStream));
+    Timer.Sample sample = Timer.start(Metrics.globalRegistry);
+    try (ZipOutputStream zipOutputStream = new ZipOutputStream(countingOutputStream)) {
       this.getWritables().stream()
           .filter(writable -> writable instanceof File)
           .map(FileOnDisk.class::cast)
+          .sorted(Comparator.comparing(FileOnDisk::getName))
           .forEach(uncheckedConsumer(file -> {
-            String pathInZip = file.getName();
-            zipOutputStream.putNextEntry(new ZipEntry(pathInZip));
-            byte[] bytes = file.getBytes();
-            zipOutputStream.write(bytes, 0, bytes.length);
+            ZipEntry zipEntry = new ZipEntry(file.getName());
+            zipEntry.setTimeLocal(ZIP_ENTRY_TIME);
+            zipOutputStream.putNextEntry(zipEntry);
+            file.writeTo(zipOutputStream);
           }));
-    } catch (IOException e) {
-      throw new UncheckedIOException("Failed to close zip archive output stream.", e);
     }
-    return byteArrayOutputStream.toByteArray();
+    sample.stop(Metrics.timer(ZIP_TIMER_NAME));
+    Metrics.summary(ZIP_SIZE_SUMMARY_NAME).record(countingOutputStream.getByteCount());
+  }
+
+  /**
+   * Writes the archive and releases the spool files of the contained {@link StreamedFileOnDisk streamed files}. The
+   * written zip file is reused if the content is requested again.
+   */
+  @Override
+  public void write() {
+    this.zippedFile = null;
+    super.write();
+    this.zippedFile = this.getFileOnDisk();
+    this.getWritables().stream()
+        .filter(writable -> writable instanceof StreamedFileOnDisk)
+        .map(StreamedFileOnDisk.class::cast)
+        .forEach(StreamedFileOnDisk::discard);
   }
 
   @Override
@@ -112,18 +189,20 @@ public class ArchiveOnDisk extends FileOnDiskWithChecksum implements Archive<Wri
     throw new UnsupportedOperationException("Can not set bytes on an archive.");
   }
 
-  private void updateBytesForChecksum() {
+  private void updateChecksum() {
     var targetFile = this.getWritables().stream()
         .filter(Writable::isFile)
         .map(FileOnDisk.class::cast)
         .findFirst()
         .orElseThrow();
 
-    this.bytesForChecksum = targetFile.getBytes();
+    this.checksum = targetFile instanceof FileOnDiskWithChecksum
+        ? ((FileOnDiskWithChecksum) targetFile).getChecksum()
+        : computeChecksum(targetFile.getBytes());
   }
 
   @Override
-  protected byte[] getBytesForChecksum() {
-    return this.bytesForChecksum;
+  public String getChecksum() {
+    return this.checksum;
   }
 }
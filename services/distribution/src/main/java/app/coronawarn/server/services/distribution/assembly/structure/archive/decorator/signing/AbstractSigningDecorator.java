@@ -29,8 +29,11 @@ import app.coronawarn.server.services.distribution.assembly.structure.archive.de
 import app.coronawarn.server.services.distribution.assembly.structure.util.ImmutableStack;
 import app.coronawarn.server.services.distribution.config.DistributionServiceConfig;
 import com.google.protobuf.ByteString;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.security.GeneralSecurityException;
 import java.security.Signature;
+import java.security.SignatureException;
 
 public abstract class AbstractSigningDecorator<W extends Writable<W>> extends ArchiveDecorator<W>
     implements SigningDecorator<W> {
@@ -38,6 +41,12 @@ public abstract class AbstractSigningDecorator<W extends Writable<W>> extends Ar
   protected final CryptoProvider cryptoProvider;
   private final DistributionServiceConfig distributionServiceConfig;
 
+  /**
+   * The signature that has been updated with the bytes to sign while the archive content was prepared, if supported
+   * (see {@link #streamBytesToSign}).
+   */
+  private Signature streamedSignature;
+
   /**
    * Creates an AbstractSigningDecorator.
    *
@@ -54,10 +63,25 @@ public abstract class AbstractSigningDecorator<W extends Writable<W>> extends Ar
 
   @Override
   public void prepare(ImmutableStack<Object> indices) {
+    Signature signature = createPayloadSignature();
+    if (streamBytesToSign(new SignatureOutputStream(signature))) {
+      this.streamedSignature = signature;
+    }
     super.prepare(indices);
     this.addWritable(this.getSignatureFile(distributionServiceConfig.getSignature().getFileName()));
   }
 
+  /**
+   * Registers the given stream to receive the bytes to sign while the archive content is prepared, so that the
+   * content does not need to be read again for signing. Does nothing by default.
+   *
+   * @param signatureStream The stream that updates the signature.
+   * @return {@code true} if the stream has been registered, {@code false} if {@link #getBytesToSign} shall be signed
+   */
+  protected boolean streamBytesToSign(OutputStream signatureStream) {
+    return false;
+  }
+
   protected TEKSignatureList createTemporaryExposureKeySignatureList() {
     return TEKSignatureList.newBuilder()
         .addSignatures(TEKSignature.newBuilder()
@@ -70,14 +94,57 @@ public abstract class AbstractSigningDecorator<W extends Writable<W>> extends Ar
   }
 
   private byte[] createSignature(CryptoProvider cryptoProvider) {
+    try {
+      Signature payloadSignature = this.streamedSignature;
+      this.streamedSignature = null;
+      if (payloadSignature == null) {
+        payloadSignature = createPayloadSignature();
+        payloadSignature.update(this.getBytesToSign());
+      }
+      return payloadSignature.sign();
+    } catch (GeneralSecurityException e) {
+      throw new RuntimeException("Failed to sign archive.", e);
+    }
+  }
+
+  private Signature createPayloadSignature() {
     try {
       Signature payloadSignature = Signature.getInstance(distributionServiceConfig.getSignature().getAlgorithmName(),
           distributionServiceConfig.getSignature().getSecurityProvider());
       payloadSignature.initSign(cryptoProvider.getPrivateKey());
-      payloadSignature.update(this.getBytesToSign());
-      return payloadSignature.sign();
+      return payloadSignature;
     } catch (GeneralSecurityException e) {
       throw new RuntimeException("Failed to sign archive.", e);
     }
   }
+
+  /**
+   * Updates a {@link Signature} with all bytes written to this stream.
+   */
+  private static class SignatureOutputStream extends OutputStream {
+
+    private final Signature signature;
+
+    SignatureOutputStream(Signature signature) {
+      this.signature = signature;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      try {
+        signature.update((byte) b);
+      } catch (SignatureException e) {
+        throw new IOException("Failed to update signature.", e);
+      }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      try {
+        signature.update(b, off, len);
+      } catch (SignatureException e) {
+        throw new IOException("Failed to update signature.", e);
+      }
+    }
+  }
 }
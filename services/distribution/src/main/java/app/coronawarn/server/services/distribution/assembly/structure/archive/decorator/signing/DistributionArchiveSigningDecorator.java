@@ -8,7 +8,9 @@ import app.coronawarn.server.services.distribution.assembly.structure.WritableOn
 import app.coronawarn.server.services.distribution.assembly.structure.archive.Archive;
 import app.coronawarn.server.services.distribution.assembly.structure.file.File;
 import app.coronawarn.server.services.distribution.assembly.structure.file.FileOnDisk;
+import app.coronawarn.server.services.distribution.assembly.structure.file.StreamedFileOnDisk;
 import app.coronawarn.server.services.distribution.config.DistributionServiceConfig;
+import java.io.OutputStream;
 
 public class DistributionArchiveSigningDecorator extends SigningDecoratorOnDisk {
 
@@ -19,10 +21,26 @@ public class DistributionArchiveSigningDecorator extends SigningDecoratorOnDisk
 
   @Override
   public byte[] getBytesToSign() {
+    return getFileToSign().getBytes();
+  }
+
+  /**
+   * Signs a {@link StreamedFileOnDisk} while it is serialized, instead of reading its content again.
+   */
+  @Override
+  protected boolean streamBytesToSign(OutputStream signatureStream) {
+    File<?> fileToSign = getFileToSign();
+    if (fileToSign instanceof StreamedFileOnDisk) {
+      ((StreamedFileOnDisk) fileToSign).addContentObserver(signatureStream);
+      return true;
+    }
+    return false;
+  }
+
+  private File<?> getFileToSign() {
     Writable<?> archiveContent = this.getWritables().stream().findFirst().orElseThrow(
         () -> new RuntimeException("Archive must contain exactly one file for signing"));
-    File<?> fileToSign = (FileOnDisk) archiveContent;
-    return fileToSign.getBytes();
+    return (FileOnDisk) archiveContent;
   }
 
   @Override
@@ -20,6 +20,7 @@
 
 package app.coronawarn.server.services.distribution.assembly.structure.directory;
 
+import static app.coronawarn.server.services.distribution.assembly.structure.util.WritableStreams.streamOf;
 import static app.coronawarn.server.services.distribution.assembly.structure.util.functional.CheckedConsumer.uncheckedConsumer;
 
 import app.coronawarn.server.services.distribution.assembly.structure.Writable;
@@ -69,10 +70,12 @@ public class DirectoryOnDisk extends WritableOnDisk implements Directory<Writabl
 
   /**
    * Delegates the {@link Writable#prepare} call to all contained {@link DirectoryOnDisk#getWritables()} writables}.
+   * The writables are independent of each other and are prepared in parallel, if called from within a {@link
+   * java.util.concurrent.ForkJoinPool}.
    */
   @Override
   public void prepare(ImmutableStack<Object> indices) {
-    this.getWritables().forEach(writable -> writable.prepare(indices));
+    streamOf(this.getWritables()).forEach(writable -> writable.prepare(indices));
   }
 
   /**
@@ -90,6 +93,6 @@ public class DirectoryOnDisk extends WritableOnDisk implements Directory<Writabl
   }
 
   private void writeContainedWritables() {
-    this.getWritables().forEach(uncheckedConsumer(Writable::write));
+    streamOf(this.getWritables()).forEach(uncheckedConsumer(Writable::write));
   }
 }
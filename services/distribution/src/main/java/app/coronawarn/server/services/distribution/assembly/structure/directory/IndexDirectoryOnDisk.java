@@ -20,13 +20,17 @@
 
 package app.coronawarn.server.services.distribution.assembly.structure.directory;
 
+import static app.coronawarn.server.services.distribution.assembly.structure.util.WritableStreams.streamOf;
+
 import app.coronawarn.server.services.distribution.assembly.structure.Writable;
 import app.coronawarn.server.services.distribution.assembly.structure.WritableOnDisk;
 import app.coronawarn.server.services.distribution.assembly.structure.util.ImmutableStack;
 import app.coronawarn.server.services.distribution.assembly.structure.util.functional.Formatter;
 import app.coronawarn.server.services.distribution.assembly.structure.util.functional.IndexFunction;
 import app.coronawarn.server.services.distribution.assembly.structure.util.functional.WritableFunction;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
@@ -89,12 +93,15 @@ public class IndexDirectoryOnDisk<T> extends DirectoryOnDisk implements IndexDir
     this.prepareIndex(indices);
   }
 
+  /**
+   * Creates the subdirectories for all elements of the index first, so that the subsequent preparation of their meta
+   * writables, which may run in parallel, only modifies the respective subdirectory.
+   */
   private void prepareIndex(ImmutableStack<Object> indices) {
-    this.getIndex(indices).forEach(currentIndex -> {
-      ImmutableStack<Object> newIndices = indices.push(currentIndex);
-      DirectoryOnDisk subDirectory = makeSubDirectory(currentIndex);
-      prepareMetaWritables(newIndices, subDirectory);
-    });
+    Map<T, DirectoryOnDisk> subDirectories = new HashMap<>();
+    this.getIndex(indices).forEach(currentIndex -> subDirectories.put(currentIndex, makeSubDirectory(currentIndex)));
+    streamOf(subDirectories.entrySet())
+        .forEach(subDirectory -> prepareMetaWritables(indices.push(subDirectory.getKey()), subDirectory.getValue()));
   }
 
   private DirectoryOnDisk makeSubDirectory(T index) {
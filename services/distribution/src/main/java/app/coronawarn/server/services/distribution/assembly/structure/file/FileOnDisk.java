@@ -24,6 +24,8 @@ import app.coronawarn.server.services.distribution.assembly.io.IO;
 import app.coronawarn.server.services.distribution.assembly.structure.Writable;
 import app.coronawarn.server.services.distribution.assembly.structure.WritableOnDisk;
 import app.coronawarn.server.services.distribution.assembly.structure.util.ImmutableStack;
+import java.io.IOException;
+import java.io.OutputStream;
 
 /**
  * A {@link File} that can be written to disk.
@@ -38,13 +40,24 @@ public class FileOnDisk extends WritableOnDisk implements File<WritableOnDisk> {
   }
 
   /**
-   * Creates a {@link java.io.File} with name {@link Writable#getName} on disk and writes the {@link File#getBytes
-   * bytes} of this {@link File} into that {@link java.io.File}.
+   * Creates a {@link java.io.File} with name {@link Writable#getName} on disk and writes the content of this {@link
+   * File} into that {@link java.io.File} (see {@link #writeTo}).
    */
   @Override
   public void write() {
     IO.makeNewFile(getRoot(), this.getName());
-    IO.writeBytesToFile(this.getBytes(), this.getFileOnDisk());
+    IO.writeToFile(this::writeTo, this.getFileOnDisk());
+  }
+
+  /**
+   * Writes the content of this {@link File} into the given stream. Subclasses may stream their content instead of
+   * materializing it as {@link File#getBytes bytes}.
+   *
+   * @param outputStream The stream to write the content into.
+   * @throws IOException if the content could not be written.
+   */
+  public void writeTo(OutputStream outputStream) throws IOException {
+    outputStream.write(this.getBytes());
   }
 
   protected java.io.File getRoot() {
@@ -23,7 +23,6 @@ package app.coronawarn.server.services.distribution.assembly.structure.file;
 import app.coronawarn.server.services.distribution.assembly.io.IO;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
-import org.bouncycastle.util.encoders.Hex;
 import org.springframework.util.DigestUtils;
 
 /**
@@ -57,12 +56,21 @@ public class FileOnDiskWithChecksum extends FileOnDisk {
 
   private void writeChecksumFile() {
     var checksumFile = getRoot().toPath().resolve(super.getName() + CHECKSUM_FILE_SUFFIX);
-    byte[] checksum = computeChecksum(this.getBytesForChecksum()).getBytes(StandardCharsets.UTF_8);
+    byte[] checksum = getChecksum().getBytes(StandardCharsets.UTF_8);
 
     IO.makeNewFile(checksumFile.getParent().toFile(), checksumFile.getFileName().toString());
     IO.writeBytesToFile(checksum, checksumFile.toFile());
   }
 
+  /**
+   * Returns the CWA-hash value of the checksum-relevant content of this file.
+   *
+   * @return the checksum
+   */
+  public String getChecksum() {
+    return computeChecksum(this.getBytesForChecksum());
+  }
+
   /**
    * Fetches the target bytes for computation of the checksum. Will take the bytes of its {@link FileOnDisk}.
    *
@@ -85,11 +93,19 @@ public class FileOnDiskWithChecksum extends FileOnDisk {
    * @param fileContent the binary file content
    * @return the calculated hash value
    */
-  private static String computeChecksum(byte[] fileContent) {
-    String md5 = DigestUtils.md5DigestAsHex(fileContent);
-    byte[] raw = Hex.decode(md5.toUpperCase());
+  protected static String computeChecksum(byte[] fileContent) {
+    return toChecksum(DigestUtils.md5Digest(fileContent));
+  }
 
-    return DigestUtils.md5DigestAsHex(raw);
+  /**
+   * Calculates the CWA-hash value from the MD5 digest of the binary file content, e.g. if the digest has been computed
+   * while streaming the content.
+   *
+   * @param md5Digest the raw MD5 digest of the binary file content
+   * @return the calculated hash value
+   */
+  protected static String toChecksum(byte[] md5Digest) {
+    return DigestUtils.md5DigestAsHex(md5Digest);
   }
 
   /**
@@ -0,0 +1,210 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App
+ * ---
+ * Copyright (C) 2020 SAP SE and all other contributors
+ * All modifications are copyright (c) 2020 Devside SRL.
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.server.services.distribution.assembly.structure.file;
+
+import app.coronawarn.server.services.distribution.assembly.structure.util.ImmutableStack;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link FileOnDiskWithChecksum} whose content is serialized exactly once on {@link #prepare}, straight into a
+ * temporary spool file instead of a byte array. The checksum and all registered content observers (e.g. a signature)
+ * are computed in the same pass, so that the memory needed does not depend on the size of the content. The spool file
+ * is removed once the content has been written, or right away if it could not be written completely.
+ */
+public abstract class StreamedFileOnDisk extends FileOnDiskWithChecksum {
+
+  private final List<OutputStream> contentObservers = new ArrayList<>();
+  private Path spoolFile;
+  private String checksum;
+
+  protected StreamedFileOnDisk(String name) {
+    super(name, new byte[0]);
+  }
+
+  /**
+   * Serializes the content of this file into the given stream. Must produce the same content on every call.
+   *
+   * @param outputStream The stream to write the content into.
+   * @throws IOException if the content could not be written.
+   */
+  protected abstract void writeContent(OutputStream outputStream) throws IOException;
+
+  /**
+   * Registers a stream, which receives the content of this file on the next {@link #prepare}, either while it is
+   * serialized or, if it has already been spooled, from the spool file. Each observer receives the content once. The
+   * stream is not closed afterwards.
+   *
+   * @param contentObserver The stream to additionally write the content into.
+   */
+  public void addContentObserver(OutputStream contentObserver) {
+    this.contentObservers.add(contentObserver);
+  }
+
+  /**
+   * Spools the content of this file and passes it to the registered content observers. Preparing a file which has
+   * already been spooled does not serialize its content again, but only passes the spooled content to the observers
+   * registered since.
+   */
+  @Override
+  public void prepare(ImmutableStack<Object> indices) {
+    try {
+      if (spoolFile == null) {
+        spool();
+      } else if (!contentObservers.isEmpty()) {
+        try (OutputStream outputStream = new ObservedOutputStream(OutputStream.nullOutputStream(), contentObservers)) {
+          Files.copy(spoolFile, outputStream);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to spool content of " + getName(), e);
+    } finally {
+      contentObservers.clear();
+    }
+  }
+
+  private void spool() throws IOException {
+    MessageDigest md5 = md5();
+    Path file = Files.createTempFile(getName(), ".spool");
+    try (OutputStream outputStream = new ObservedOutputStream(
+        new DigestOutputStream(new BufferedOutputStream(Files.newOutputStream(file)), md5), contentObservers)) {
+      writeContent(outputStream);
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(file);
+      throw e;
+    }
+    spoolFile = file;
+    checksum = toChecksum(md5.digest());
+  }
+
+  /**
+   * Returns the content of this file. Only meant for small files and tests, as the content is loaded into memory.
+   *
+   * @return the content of this file
+   */
+  @Override
+  public byte[] getBytes() {
+    try {
+      if (spoolFile != null) {
+        return Files.readAllBytes(spoolFile);
+      }
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      writeContent(outputStream);
+      return outputStream.toByteArray();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read content of " + getName(), e);
+    }
+  }
+
+  @Override
+  public void setBytes(byte[] bytes) {
+    throw new UnsupportedOperationException("Can not set bytes on a streamed file.");
+  }
+
+  @Override
+  public void writeTo(OutputStream outputStream) throws IOException {
+    if (spoolFile != null) {
+      Files.copy(spoolFile, outputStream);
+    } else {
+      writeContent(outputStream);
+    }
+  }
+
+  @Override
+  public void write() {
+    super.write();
+    discard();
+  }
+
+  @Override
+  public String getChecksum() {
+    return checksum != null ? checksum : super.getChecksum();
+  }
+
+  @Override
+  protected byte[] getBytesForChecksum() {
+    return getBytes();
+  }
+
+  /**
+   * Removes the spool file. The content will be serialized again, if it is needed afterwards.
+   */
+  public void discard() {
+    if (spoolFile == null) {
+      return;
+    }
+    try {
+      Files.deleteIfExists(spoolFile);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to delete spool file of " + getName(), e);
+    }
+    spoolFile = null;
+  }
+
+  private static MessageDigest md5() {
+    try {
+      return MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("MD5 is not supported.", e);
+    }
+  }
+
+  /**
+   * Writes all content to the underlying stream and to the given observers.
+   */
+  private static class ObservedOutputStream extends FilterOutputStream {
+
+    private final List<OutputStream> observers;
+
+    ObservedOutputStream(OutputStream outputStream, List<OutputStream> observers) {
+      super(outputStream);
+      this.observers = observers;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      for (OutputStream observer : observers) {
+        observer.write(b);
+      }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      for (OutputStream observer : observers) {
+        observer.write(b, off, len);
+      }
+    }
+  }
+}
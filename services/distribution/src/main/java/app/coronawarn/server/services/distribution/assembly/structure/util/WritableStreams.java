@@ -0,0 +1,51 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App
+ * ---
+ * Copyright (C) 2020 SAP SE and all other contributors
+ * All modifications are copyright (c) 2020 Devside SRL.
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.server.services.distribution.assembly.structure.util;
+
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Stream;
+
+/**
+ * Streams the elements of a {@link app.coronawarn.server.services.distribution.assembly.structure.Writable} tree.
+ * When called from within a {@link ForkJoinPool} (as done by the assembly runner), the returned stream is parallel and
+ * is executed by that pool, so that independent subtrees are processed concurrently with the parallelism of the pool.
+ * Otherwise, the returned stream is sequential.
+ */
+public final class WritableStreams {
+
+  private WritableStreams() {
+  }
+
+  /**
+   * Returns a stream over the given elements, which is parallel if called from within a {@link ForkJoinPool}.
+   *
+   * @param elements the elements to stream
+   * @param <T>      the type of the elements
+   * @return a parallel or sequential stream of the given elements
+   */
+  public static <T> Stream<T> streamOf(Collection<T> elements) {
+    Stream<T> stream = elements.stream();
+    return ForkJoinTask.inForkJoinPool() ? stream.parallel() : stream;
+  }
+}
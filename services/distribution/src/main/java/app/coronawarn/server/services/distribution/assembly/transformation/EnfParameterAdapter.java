@@ -33,10 +33,16 @@ public class EnfParameterAdapter {
    * @return updated collection of DiagnosisKey
    */
   public Collection<DiagnosisKey> adaptKeys(Collection<DiagnosisKey> diagnosisKeys) {
-    return diagnosisKeys.stream().map(this::adapt).collect(Collectors.toList());
+    return diagnosisKeys.stream().map(this::adaptKey).collect(Collectors.toList());
   }
 
-  private DiagnosisKey adapt(DiagnosisKey diagnosisKey) {
+  /**
+   * Create a copy of the given key with ENF related content transformations applied.
+   *
+   * @param diagnosisKey DiagnosisKey to adapt
+   * @return adapted copy of the DiagnosisKey
+   */
+  public DiagnosisKey adaptKey(DiagnosisKey diagnosisKey) {
     return DiagnosisKey.builder()
         .withKeyData(diagnosisKey.getKeyData())
         .withRollingStartIntervalNumber(diagnosisKey.getRollingStartIntervalNumber())
@@ -74,6 +74,10 @@ public class DistributionServiceConfig {
   private Boolean includeIncompleteHours;
   private String euPackageName;
   private Boolean applyPoliciesForAllCountries;
+  @Min(1)
+  @Max(64)
+  private Integer assemblyParallelism;
+  private Boolean incrementalDistribution;
   @NotNull
   private String privateKeyContent;
   private String cardIdSequence;
@@ -81,6 +85,7 @@ public class DistributionServiceConfig {
   private Signature signature;
   private Api api;
   private ObjectStore objectStore;
+  private Shard shard;
   private List<AppFeature> appFeatures;
   @NotEmpty
   private String[] supportedCountries;
@@ -187,6 +192,22 @@ public class DistributionServiceConfig {
     this.applyPoliciesForAllCountries = applyPoliciesForAllCountries;
   }
 
+  public Integer getAssemblyParallelism() {
+    return assemblyParallelism;
+  }
+
+  public void setAssemblyParallelism(Integer assemblyParallelism) {
+    this.assemblyParallelism = assemblyParallelism;
+  }
+
+  public Boolean getIncrementalDistribution() {
+    return incrementalDistribution;
+  }
+
+  public void setIncrementalDistribution(Boolean incrementalDistribution) {
+    this.incrementalDistribution = incrementalDistribution;
+  }
+
   public String getCardIdSequence() {
     return cardIdSequence;
   }
@@ -236,6 +257,14 @@ public class DistributionServiceConfig {
     this.objectStore = objectStore;
   }
 
+  public Shard getShard() {
+    return shard;
+  }
+
+  public void setShard(Shard shard) {
+    this.shard = shard;
+  }
+
   public QrCodePosterTemplate getIosQrCodePosterTemplate() {
     return iosQrCodePosterTemplate;
   }
@@ -889,6 +918,78 @@ public class DistributionServiceConfig {
   }
 
 
+  public static class Shard {
+
+    /**
+     * The part a distribution process plays in a sharded distribution run.
+     */
+    public enum Role {
+      /**
+       * Assembles and publishes everything (no sharding).
+       */
+      STANDALONE,
+      /**
+       * Assembles and publishes only the diagnosis key archives of its countries and dates.
+       */
+      WORKER,
+      /**
+       * Runs after all workers, applies the retention policies and publishes indexes and all other files.
+       */
+      COORDINATOR
+    }
+
+    @NotNull
+    private Role role;
+    private String[] countries;
+    @Min(1)
+    @Max(366)
+    private Integer dateShardCount;
+    @Min(0)
+    @Max(365)
+    private Integer dateShardIndex;
+    private String distributionTime;
+
+    public Role getRole() {
+      return role;
+    }
+
+    public void setRole(Role role) {
+      this.role = role;
+    }
+
+    public String[] getCountries() {
+      return countries;
+    }
+
+    public void setCountries(String[] countries) {
+      this.countries = countries;
+    }
+
+    public Integer getDateShardCount() {
+      return dateShardCount;
+    }
+
+    public void setDateShardCount(Integer dateShardCount) {
+      this.dateShardCount = dateShardCount;
+    }
+
+    public Integer getDateShardIndex() {
+      return dateShardIndex;
+    }
+
+    public void setDateShardIndex(Integer dateShardIndex) {
+      this.dateShardIndex = dateShardIndex;
+    }
+
+    public String getDistributionTime() {
+      return distributionTime;
+    }
+
+    public void setDistributionTime(String distributionTime) {
+      this.distributionTime = distributionTime;
+    }
+  }
+
   public static class ObjectStore {
 
     @Pattern(regexp = NO_WHITESPACE_REGEX)
@@ -912,6 +1013,20 @@ public class DistributionServiceConfig {
     private Boolean forceUpdateKeyfiles;
     @Max(Integer.MAX_VALUE)
     private Integer hourFileRetentionDays;
+    private String publishedManifestKey;
+    private String bundleFingerprintsKey;
+    @Min(5 * 1024 * 1024)
+    private Long multipartUploadThreshold;
+    @Min(5 * 1024 * 1024)
+    private Integer multipartUploadPartSize;
+    @Min(1)
+    private Integer retryAttempts;
+    @Min(0)
+    private Long retryBackoff;
+    private Boolean asyncClient;
+    @Min(1)
+    @Max(1024)
+    private Integer asyncMaxConcurrency;
 
     public String getAccessKey() {
       return accessKey;
@@ -992,6 +1107,70 @@ public class DistributionServiceConfig {
     public void setHourFileRetentionDays(Integer hourFileRetentionDays) {
       this.hourFileRetentionDays = hourFileRetentionDays;
     }
+
+    public String getPublishedManifestKey() {
+      return publishedManifestKey;
+    }
+
+    public void setPublishedManifestKey(String publishedManifestKey) {
+      this.publishedManifestKey = publishedManifestKey;
+    }
+
+    public String getBundleFingerprintsKey() {
+      return bundleFingerprintsKey;
+    }
+
+    public void setBundleFingerprintsKey(String bundleFingerprintsKey) {
+      this.bundleFingerprintsKey = bundleFingerprintsKey;
+    }
+
+    public Long getMultipartUploadThreshold() {
+      return multipartUploadThreshold;
+    }
+
+    public void setMultipartUploadThreshold(Long multipartUploadThreshold) {
+      this.multipartUploadThreshold = multipartUploadThreshold;
+    }
+
+    public Integer getMultipartUploadPartSize() {
+      return multipartUploadPartSize;
+    }
+
+    public void setMultipartUploadPartSize(Integer multipartUploadPartSize) {
+      this.multipartUploadPartSize = multipartUploadPartSize;
+    }
+
+    public Integer getRetryAttempts() {
+      return retryAttempts;
+    }
+
+    public void setRetryAttempts(Integer retryAttempts) {
+      this.retryAttempts = retryAttempts;
+    }
+
+    public Long getRetryBackoff() {
+      return retryBackoff;
+    }
+
+    public void setRetryBackoff(Long retryBackoff) {
+      this.retryBackoff = retryBackoff;
+    }
+
+    public Boolean isAsyncClient() {
+      return asyncClient;
+    }
+
+    public void setAsyncClient(Boolean asyncClient) {
+      this.asyncClient = asyncClient;
+    }
+
+    public Integer getAsyncMaxConcurrency() {
+      return asyncMaxConcurrency;
+    }
+
+    public void setAsyncMaxConcurrency(Integer asyncMaxConcurrency) {
+      this.asyncMaxConcurrency = asyncMaxConcurrency;
+    }
   }
 
   public static class AppFeature {
@@ -2,6 +2,8 @@
 
 package app.coronawarn.server.services.distribution.config;
 
+import app.coronawarn.server.common.persistence.domain.CountryRegistry;
+import app.coronawarn.server.services.distribution.config.DistributionServiceConfig.Shard;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
@@ -29,6 +31,16 @@ public class DistributionServiceConfigValidator implements Validator {
     checkSupportedCountries(errors, properties);
     checkAndroidVersionCodes(errors, properties);
     checkAProbabilitiesToSubmit(errors, properties);
+    checkShard(errors, properties);
+  }
+
+  private void checkShard(Errors errors, DistributionServiceConfig properties) {
+    Shard shard = properties.getShard();
+    if (shard != null && shard.getDateShardIndex() != null && shard.getDateShardCount() != null
+        && shard.getDateShardIndex() >= shard.getDateShardCount()) {
+      errors.rejectValue("shard.dateShardIndex", "",
+          "Date shard index must be lower than the date shard count");
+    }
   }
 
   private void checkAndroidVersionCodes(Errors errors, DistributionServiceConfig properties) {
@@ -48,6 +60,9 @@ public class DistributionServiceConfigValidator implements Validator {
       if (!ISO_COUNTRIES.contains(country)) {
         errors.rejectValue("supportedCountries",
             "[" + country + "]: Country code isn't compliant to ISO 3166.");
+      } else if (!CountryRegistry.isRegistered(country)) {
+        errors.rejectValue("supportedCountries",
+            "[" + country + "]: Country code isn't registered in the country registry.");
       }
     });
   }
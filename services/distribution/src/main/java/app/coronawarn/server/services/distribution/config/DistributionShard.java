@@ -0,0 +1,119 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App
+ * ---
+ * Copyright (C) 2020 SAP SE and all other contributors
+ * All modifications are copyright (c) 2020 Devside SRL.
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.server.services.distribution.config;
+
+import app.coronawarn.server.services.distribution.config.DistributionServiceConfig.Shard;
+import app.coronawarn.server.services.distribution.config.DistributionServiceConfig.Shard.Role;
+import app.coronawarn.server.services.distribution.objectstore.publish.LocalFile;
+import java.time.LocalDate;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The share of a distribution run that is handled by this process, as configured by
+ * <code>services.distribution.shard</code>. A sharded run consists of any number of {@link Role#WORKER workers},
+ * which assemble and publish the diagnosis key archives of their countries and dates in parallel, followed by a
+ * single {@link Role#COORDINATOR coordinator}, which publishes the indexes and all other files once all archives are
+ * available. The coordinator indexes the dates and hours with distributable keys in the database only if their
+ * archives are on the object store, so that its indexes never refer to an archive which a worker did not publish.
+ */
+public class DistributionShard {
+
+  private final Role role;
+  private final Set<String> countries;
+  private final int dateShardCount;
+  private final int dateShardIndex;
+
+  /**
+   * Creates the {@link DistributionShard} of this process. If no shard is configured, the process is
+   * {@link Role#STANDALONE standalone}.
+   *
+   * @param distributionServiceConfig The {@link DistributionServiceConfig} containing the shard configuration.
+   */
+  public DistributionShard(DistributionServiceConfig distributionServiceConfig) {
+    Shard shard = distributionServiceConfig.getShard();
+    if (shard == null) {
+      this.role = Role.STANDALONE;
+      this.countries = Set.of();
+      this.dateShardCount = 1;
+      this.dateShardIndex = 0;
+    } else {
+      this.role = shard.getRole();
+      this.countries = shard.getCountries() == null ? Set.of() : Set.of(shard.getCountries());
+      this.dateShardCount = shard.getDateShardCount();
+      this.dateShardIndex = shard.getDateShardIndex();
+    }
+  }
+
+  public boolean isWorker() {
+    return role == Role.WORKER;
+  }
+
+  public boolean isCoordinator() {
+    return role == Role.COORDINATOR;
+  }
+
+  /**
+   * Indicates whether the diagnosis key archive of the given country and date (or hour of the date) is assembled by
+   * this process.
+   *
+   * @param country the country of the archive
+   * @param date    the date of the archive
+   * @return {@code true} if the archive is assembled by this process
+   */
+  public boolean includesArchive(String country, LocalDate date) {
+    switch (role) {
+      case WORKER:
+        return (countries.isEmpty() || countries.contains(country))
+            && Math.floorMod(date.toEpochDay(), dateShardCount) == dateShardIndex;
+      case COORDINATOR:
+        return false;
+      default:
+        return true;
+    }
+  }
+
+  /**
+   * Indicates whether the given file is published by this process. Workers only publish diagnosis key archives, as
+   * indexes must not reference archives of other workers before these have been published.
+   *
+   * @param file the file to be published
+   * @return {@code true} if the file is published by this process
+   */
+  public boolean includesFile(LocalFile file) {
+    return !isWorker() || file.isKeyFile();
+  }
+
+  /**
+   * Returns a name which is unique among all workers of a sharded distribution run, e.g. for the object keys of state
+   * that is maintained per process.
+   *
+   * @return the name of this shard, or an empty string if this process is not a worker
+   */
+  public String getName() {
+    if (!isWorker()) {
+      return "";
+    }
+    String countryPart = countries.isEmpty() ? "all" : String.join(".", new TreeSet<>(countries));
+    return countryPart + "-" + dateShardIndex + "-of-" + dateShardCount;
+  }
+}
@@ -0,0 +1,103 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App
+ * ---
+ * Copyright (C) 2020 SAP SE and all other contributors
+ * All modifications are copyright (c) 2020 Devside SRL.
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.server.services.distribution.objectstore;
+
+import app.coronawarn.server.services.distribution.assembly.diagnosiskeys.DiagnosisKeyBundleFingerprints;
+import app.coronawarn.server.services.distribution.config.DistributionServiceConfig;
+import app.coronawarn.server.services.distribution.config.DistributionShard;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ObjectUtils;
+
+/**
+ * Persists the {@link DiagnosisKeyBundleFingerprints} of the distributed diagnosis key bundles on the object store, so
+ * that the next distribution run can skip the assembly of unchanged bundles. Only active, if
+ * <code>services.distribution.incremental-distribution</code> is enabled. In a sharded distribution run, every worker
+ * maintains its own fingerprints, while the coordinator does not assemble any bundles. If
+ * <code>services.distribution.objectstore.force-update-keyfiles</code> is enabled, the fingerprints of the previous
+ * run are ignored, so that all bundles are assembled and published again.
+ */
+@Component
+public class DiagnosisKeyBundleFingerprintStore {
+
+  private static final Logger logger = LoggerFactory.getLogger(DiagnosisKeyBundleFingerprintStore.class);
+
+  private final ObjectStoreAccess objectStoreAccess;
+  private final String fingerprintsKey;
+  private final boolean isIncrementalDistribution;
+  private final boolean isForceUpdateKeyfiles;
+
+  private DiagnosisKeyBundleFingerprints fingerprints;
+
+  /**
+   * Creates a {@link DiagnosisKeyBundleFingerprintStore}.
+   *
+   * @param objectStoreAccess         The {@link ObjectStoreAccess} used to load and store the fingerprints.
+   * @param distributionServiceConfig The {@link DistributionServiceConfig} used for distribution service
+   *                                  configuration.
+   */
+  public DiagnosisKeyBundleFingerprintStore(ObjectStoreAccess objectStoreAccess,
+      DistributionServiceConfig distributionServiceConfig) {
+    this.objectStoreAccess = objectStoreAccess;
+    DistributionShard shard = new DistributionShard(distributionServiceConfig);
+    String configuredKey = distributionServiceConfig.getObjectStore().getBundleFingerprintsKey();
+    this.fingerprintsKey = shard.isWorker() ? configuredKey + "-" + shard.getName() : configuredKey;
+    this.isIncrementalDistribution = Boolean.TRUE.equals(distributionServiceConfig.getIncrementalDistribution())
+        && !ObjectUtils.isEmpty(configuredKey) && !shard.isCoordinator();
+    this.isForceUpdateKeyfiles = Boolean.TRUE.equals(
+        distributionServiceConfig.getObjectStore().getForceUpdateKeyfiles());
+  }
+
+  /**
+   * Loads the fingerprints of the previous distribution run. The returned instance records the fingerprints of the
+   * current run, which are persisted by {@link #save()}.
+   *
+   * @return the fingerprints, {@link DiagnosisKeyBundleFingerprints#empty()} if key files are force updated, or
+   *         {@link DiagnosisKeyBundleFingerprints#disabled()} if incremental distribution is disabled
+   */
+  public synchronized DiagnosisKeyBundleFingerprints load() {
+    if (!isIncrementalDistribution) {
+      fingerprints = DiagnosisKeyBundleFingerprints.disabled();
+    } else if (isForceUpdateKeyfiles) {
+      logger.info("Ignoring diagnosis key bundle fingerprints, as key files are force updated");
+      fingerprints = DiagnosisKeyBundleFingerprints.empty();
+    } else {
+      fingerprints = objectStoreAccess.getObjectContent(fingerprintsKey)
+          .map(DiagnosisKeyBundleFingerprints::parse)
+          .orElseGet(DiagnosisKeyBundleFingerprints::empty);
+    }
+    return fingerprints;
+  }
+
+  /**
+   * Persists the fingerprints of the current distribution run. Must only be called after all assembled bundles have
+   * been published successfully, as unchanged bundles will not be assembled and published again.
+   */
+  public synchronized void save() {
+    if (fingerprints == null || !fingerprints.isEnabled()) {
+      return;
+    }
+    logger.info("Storing diagnosis key bundle fingerprints in {}", fingerprintsKey);
+    objectStoreAccess.putObject(fingerprintsKey, fingerprints.toBytes());
+  }
+}
@@ -55,4 +55,13 @@ public class FailedObjectStoreOperationsCounter {
       throw cause;
     }
   }
+
+  /**
+   * Indicates whether any object store operation failed so far.
+   *
+   * @return true, if at least one failed operation was counted
+   */
+  public boolean hasFailedOperations() {
+    return failedOperationsCounter.get() > 0;
+  }
 }
@@ -21,13 +21,19 @@
 package app.coronawarn.server.services.distribution.objectstore;
 
 import app.coronawarn.server.services.distribution.config.DistributionServiceConfig;
+import app.coronawarn.server.services.distribution.objectstore.client.AsyncObjectStoreClient;
 import app.coronawarn.server.services.distribution.objectstore.client.ObjectStoreClient;
 import app.coronawarn.server.services.distribution.objectstore.client.ObjectStoreClient.HeaderKey;
 import app.coronawarn.server.services.distribution.objectstore.client.S3Object;
 import app.coronawarn.server.services.distribution.objectstore.publish.LocalFile;
+import app.coronawarn.server.services.distribution.objectstore.publish.PublishedManifest;
 import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,6 +53,10 @@ import org.springframework.util.ObjectUtils;
  * <li>services.distribution.objectstore.secretKey</li>
  * <li>services.distribution.objectstore.port</li>
  * </ul>
+ * <br>
+ * If <code>services.distribution.objectstore.published-manifest-key</code> is set, the CWA hashes of published objects
+ * are read from a single {@link PublishedManifest} object instead of being fetched for each listed object. Objects,
+ * which are missing from the manifest or have been modified since it was written, fall back to a metadata request.
  */
 @Component
 public class ObjectStoreAccess {
@@ -65,6 +75,14 @@ public class ObjectStoreAccess {
 
   private final ObjectStoreClient client;
 
+  private final String publishedManifestKey;
+
+  /**
+   * The objects known to be published, with the S3 object name as the key component of the map. Loaded from the
+   * published manifest on first access and kept up to date with listings, uploads and deletions of this run.
+   */
+  private Map<String, S3Object> publishedObjects;
+
   /**
    * Constructs an {@link ObjectStoreAccess} instance for communication with the specified object store endpoint and
    * bucket.
@@ -77,6 +95,7 @@ public class ObjectStoreAccess {
     this.client = objectStoreClient;
     this.bucket = distributionServiceConfig.getObjectStore().getBucket();
     this.isSetPublicReadAclOnPutObject = distributionServiceConfig.getObjectStore().isSetPublicReadAclOnPutObject();
+    this.publishedManifestKey = distributionServiceConfig.getObjectStore().getPublishedManifestKey();
 
     if (!this.client.bucketExists(this.bucket)) {
       throw new IllegalArgumentException("No bucket with the specified name exists: " + bucket);
@@ -105,6 +124,47 @@ public class ObjectStoreAccess {
 
     logger.info("... uploading {}", s3Key);
     this.client.putObject(bucket, s3Key, localFile.getFile(), headers);
+    recordPublishedObject(s3Key, headers);
+  }
+
+  /**
+   * Stores the given content under the given object name. The object is meant for internal use by the distribution
+   * service, so neither a public read ACL nor a cache duration is set.
+   *
+   * @param objectName the name of the object
+   * @param content    the content to store
+   */
+  public void putObject(String objectName, byte[] content) {
+    this.client.putObject(bucket, objectName, content,
+        Map.of(HeaderKey.CACHE_CONTROL, "no-cache", HeaderKey.CONTENT_TYPE, "text/plain"));
+  }
+
+  /**
+   * Stores the target file on the S3 without blocking the calling thread and sets cache control headers according to
+   * the default maximum age value. Only supported if {@link #isNonBlocking()}.
+   *
+   * @param localFile The file to be published.
+   * @return A future, which completes once the file has been stored.
+   */
+  public CompletableFuture<Void> putObjectAsync(LocalFile localFile) {
+    if (!isNonBlocking()) {
+      throw new UnsupportedOperationException("The object store client does not support non-blocking uploads.");
+    }
+    String s3Key = localFile.getS3Key();
+    Map<HeaderKey, String> headers = createHeaders(DEFAULT_MAX_CACHE_AGE, localFile);
+
+    logger.info("... uploading {}", s3Key);
+    return ((AsyncObjectStoreClient) this.client).putObjectAsync(bucket, s3Key, localFile.getFile(), headers)
+        .thenRun(() -> recordPublishedObject(s3Key, headers));
+  }
+
+  /**
+   * Indicates whether objects can be uploaded without blocking a thread per upload (see {@link #putObjectAsync}).
+   *
+   * @return <code>true</code> if the object store client is an {@link AsyncObjectStoreClient}
+   */
+  public boolean isNonBlocking() {
+    return this.client instanceof AsyncObjectStoreClient;
   }
 
   /**
@@ -120,6 +180,9 @@ public class ObjectStoreAccess {
 
     logger.info("Deleting {} entries with prefix {}", toDelete.size(), prefix);
     this.client.removeObjects(bucket, toDelete);
+    if (isPublishedManifestEnabled()) {
+      getPublishedObjects().keySet().removeAll(toDelete);
+    }
   }
 
   /**
@@ -129,7 +192,63 @@ public class ObjectStoreAccess {
    * @return the list of objects
    */
   public List<S3Object> getObjectsWithPrefix(String prefix) {
-    return client.getObjects(bucket, prefix);
+    if (!isPublishedManifestEnabled()) {
+      return client.getObjects(bucket, prefix);
+    }
+
+    Map<String, S3Object> known = getPublishedObjects();
+    List<S3Object> s3Objects = client.getObjects(bucket, prefix, known);
+    Set<String> listedNames = s3Objects.stream().map(S3Object::getObjectName).collect(Collectors.toSet());
+    known.keySet().removeIf(name -> name.startsWith(prefix) && !listedNames.contains(name));
+    s3Objects.forEach(s3Object -> known.put(s3Object.getObjectName(), s3Object));
+    return s3Objects;
+  }
+
+  /**
+   * Rewrites the published manifest with the current state of all objects with the given prefix. Does nothing if no
+   * published manifest key is configured.
+   *
+   * @param prefix the prefix of all published objects, e.g. version/
+   */
+  public void updatePublishedManifest(String prefix) {
+    if (!isPublishedManifestEnabled()) {
+      return;
+    }
+
+    PublishedManifest manifest = PublishedManifest.of(getObjectsWithPrefix(prefix));
+    logger.info("Updating published manifest {} with {} entries", publishedManifestKey, manifest.getEntries().size());
+    putObject(publishedManifestKey, manifest.toBytes());
+  }
+
+  /**
+   * Fetches the content of the object with the given name.
+   *
+   * @param objectName the name of the object
+   * @return the content of the object, or an empty {@link Optional} if no such object exists
+   */
+  public Optional<byte[]> getObjectContent(String objectName) {
+    return client.getObjectContent(bucket, objectName);
+  }
+
+  private void recordPublishedObject(String s3Key, Map<HeaderKey, String> headers) {
+    if (isPublishedManifestEnabled() && headers.containsKey(HeaderKey.CWA_HASH)) {
+      getPublishedObjects().put(s3Key, new S3Object(s3Key, headers.get(HeaderKey.CWA_HASH)));
+    }
+  }
+
+  private boolean isPublishedManifestEnabled() {
+    return !ObjectUtils.isEmpty(publishedManifestKey);
+  }
+
+  private synchronized Map<String, S3Object> getPublishedObjects() {
+    if (publishedObjects == null) {
+      publishedObjects = new ConcurrentHashMap<>(getObjectContent(publishedManifestKey)
+          .map(PublishedManifest::parse)
+          .map(PublishedManifest::getEntries)
+          .orElse(Map.of()));
+      logger.info("Loaded {} entries from published manifest {}", publishedObjects.size(), publishedManifestKey);
+    }
+    return publishedObjects;
   }
 
   private Map<HeaderKey, String> createHeaders(int maxAge, LocalFile file) {
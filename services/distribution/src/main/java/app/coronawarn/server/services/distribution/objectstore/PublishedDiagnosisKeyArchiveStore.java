@@ -0,0 +1,82 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App
+ * ---
+ * Copyright (C) 2020 SAP SE and all other contributors
+ * All modifications are copyright (c) 2020 Devside SRL.
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.server.services.distribution.objectstore;
+
+import app.coronawarn.server.services.distribution.assembly.diagnosiskeys.PublishedDiagnosisKeyArchives;
+import app.coronawarn.server.services.distribution.config.DistributionServiceConfig;
+import app.coronawarn.server.services.distribution.config.DistributionServiceConfig.Api;
+import app.coronawarn.server.services.distribution.config.DistributionShard;
+import app.coronawarn.server.services.distribution.objectstore.client.S3Object;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Determines the {@link PublishedDiagnosisKeyArchives} the coordinator of a sharded distribution run may index. The
+ * archives are listed on the object store after all workers have published them, so that the indexes of the
+ * coordinator only refer to archives which actually exist. All other processes index the archives they assemble
+ * themselves.
+ */
+@Component
+public class PublishedDiagnosisKeyArchiveStore {
+
+  private static final Logger logger = LoggerFactory.getLogger(PublishedDiagnosisKeyArchiveStore.class);
+
+  private final ObjectStoreAccess objectStoreAccess;
+  private final Api api;
+  private final boolean isCoordinator;
+
+  /**
+   * Creates a {@link PublishedDiagnosisKeyArchiveStore}.
+   *
+   * @param objectStoreAccess         The {@link ObjectStoreAccess} used to list the published archives.
+   * @param distributionServiceConfig The {@link DistributionServiceConfig} used for distribution service
+   *                                  configuration.
+   */
+  public PublishedDiagnosisKeyArchiveStore(ObjectStoreAccess objectStoreAccess,
+      DistributionServiceConfig distributionServiceConfig) {
+    this.objectStoreAccess = objectStoreAccess;
+    this.api = distributionServiceConfig.getApi();
+    this.isCoordinator = new DistributionShard(distributionServiceConfig).isCoordinator();
+  }
+
+  /**
+   * Loads the published diagnosis key archives.
+   *
+   * @return the archives on the object store if this process is the coordinator of a sharded distribution run, or
+   *         {@link PublishedDiagnosisKeyArchives#all()} otherwise
+   */
+  public PublishedDiagnosisKeyArchives load() {
+    if (!isCoordinator) {
+      return PublishedDiagnosisKeyArchives.all();
+    }
+    String countryPrefix = api.getVersionPath() + "/" + api.getVersionV1() + "/" + api.getDiagnosisKeysPath() + "/"
+        + api.getCountryPath() + "/";
+    List<String> objectNames = objectStoreAccess.getObjectsWithPrefix(countryPrefix).stream()
+        .map(S3Object::getObjectName)
+        .collect(Collectors.toList());
+    logger.info("Indexing the diagnosis key archives among {} published objects", objectNames.size());
+    return PublishedDiagnosisKeyArchives.of(objectNames, countryPrefix, api.getDatePath(), api.getHourPath());
+  }
+}
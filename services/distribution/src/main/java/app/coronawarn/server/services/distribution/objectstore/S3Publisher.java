@@ -21,15 +21,24 @@
 package app.coronawarn.server.services.distribution.objectstore;
 
 import app.coronawarn.server.services.distribution.config.DistributionServiceConfig;
+import app.coronawarn.server.services.distribution.config.DistributionShard;
 import app.coronawarn.server.services.distribution.objectstore.client.ObjectStoreOperationFailedException;
 import app.coronawarn.server.services.distribution.objectstore.publish.LocalFile;
+import app.coronawarn.server.services.distribution.objectstore.publish.LocalIndexFile;
 import app.coronawarn.server.services.distribution.objectstore.publish.PublishFileSet;
 import app.coronawarn.server.services.distribution.objectstore.publish.PublishedFileSet;
+import io.micrometer.core.instrument.Metrics;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
 import java.util.List;
+import java.util.TreeMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,19 +56,37 @@ import org.springframework.stereotype.Component;
  *   <li>Only performs the upload for files, which do not yet exist on the object store, and
  *   checks whether the existing files hash differ from the to-be-uploaded files hash. Only if the
  *   hash differs, the file will ultimately be uploaded</li>
+ *   <li>Rewrites the published manifest after the upload, so that the next run can determine the hashes of all
+ *   published files without requesting the metadata of each file.</li>
+ *   <li>Publishes only the diagnosis key archives and leaves the published manifest untouched, if running as a
+ *   worker of a sharded distribution run (see {@link DistributionShard}).</li>
+ *   <li>Uploads the files in parallel, with at most as many uploads in flight as the executor has threads, or as the
+ *   configured maximum concurrency of a non-blocking object store client. Files are published in stages (see {@link
+ *   #groupByPublicationStage}), so that an index never refers to a file which has not been published yet.</li>
+ *   <li>Records the latency and throughput of each upload.</li>
  *   <li>Currently not implemented: Set cache control headers</li>
- *   <li>Currently not implemented: Supports multi threaded upload of files.</li>
  * </ul>
  */
 @Component
 public class S3Publisher {
 
+  /**
+   * The name of the timer recording the latency of each file upload.
+   */
+  public static final String UPLOAD_TIMER_NAME = "distribution_upload";
+
+  /**
+   * The name of the distribution summary recording the throughput of each file upload, in bytes per second.
+   */
+  public static final String UPLOAD_THROUGHPUT_SUMMARY_NAME = "distribution_upload.throughput";
+
   private static final Logger logger = LoggerFactory.getLogger(S3Publisher.class);
 
   private final ObjectStoreAccess objectStoreAccess;
   private final FailedObjectStoreOperationsCounter failedOperationsCounter;
   private final ThreadPoolTaskExecutor executor;
   private final DistributionServiceConfig distributionServiceConfig;
+  private final DistributionShard shard;
 
   /**
    * Creates an {@link S3Publisher} instance that attempts to publish the files at the specified location to an object
@@ -78,6 +105,7 @@ public class S3Publisher {
     this.failedOperationsCounter = failedOperationsCounter;
     this.executor = executor;
     this.distributionServiceConfig = distributionServiceConfig;
+    this.shard = new DistributionShard(distributionServiceConfig);
   }
 
   /**
@@ -92,31 +120,115 @@ public class S3Publisher {
    */
   public void publish(Path root) throws IOException {
     List<LocalFile> toPublish = new PublishFileSet(root).getFiles();
+    String versionPath = distributionServiceConfig.getApi().getVersionPath();
 
     PublishedFileSet published = new PublishedFileSet(
-        objectStoreAccess.getObjectsWithPrefix(distributionServiceConfig.getApi().getVersionPath()),
+        objectStoreAccess.getObjectsWithPrefix(versionPath),
         distributionServiceConfig.getObjectStore().getForceUpdateKeyfiles());
     List<LocalFile> diff = toPublish
         .stream()
+        .filter(shard::includesFile)
         .filter(published::shouldPublish)
         .collect(Collectors.toList());
 
     logger.info("Beginning upload of {} files... ", diff.size());
+    AtomicLong uploadedBytes = new AtomicLong();
+    long start = System.nanoTime();
     try {
-      diff.stream()
-          .map(file -> executor.submit(() -> objectStoreAccess.putObject(file)))
-          .forEach(this::awaitThread);
+      for (List<LocalFile> stage : groupByPublicationStage(diff)) {
+        if (!uploadStage(stage, uploadedBytes)) {
+          logger.error("Skipping upload of the remaining indexes, as not all files they refer to have been uploaded.");
+          break;
+        }
+      }
     } finally {
       executor.shutdown();
     }
-    logger.info("Upload completed.");
+    long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    logger.info("Upload completed: {} bytes in {} ms ({} KiB/s).", uploadedBytes.get(), elapsedMillis,
+        uploadedBytes.get() * 1000 / 1024 / elapsedMillis);
+    if (!shard.isWorker()) {
+      objectStoreAccess.updatePublishedManifest(versionPath);
+    }
+  }
+
+  /**
+   * Groups the files into stages, which have to be published one after the other: all files that are not indexes
+   * (e.g. diagnosis key archives and configuration files) come first, followed by the indexes from the deepest to the
+   * topmost level of the directory structure. This way, an index is only published after everything it refers to.
+   */
+  static Collection<List<LocalFile>> groupByPublicationStage(List<LocalFile> files) {
+    return files.stream()
+        .collect(Collectors.groupingBy(S3Publisher::getPublicationStage, TreeMap::new, Collectors.toList()))
+        .values();
+  }
+
+  private static int getPublicationStage(LocalFile file) {
+    if (!(file instanceof LocalIndexFile) || file.isKeyFile()) {
+      return Integer.MIN_VALUE;
+    }
+    return -file.getS3Key().split("/").length;
+  }
+
+  /**
+   * Uploads the files of one publication stage in parallel. At most as many uploads as the executor has threads are in
+   * flight at any time, and failures are handled in the order the files have been submitted.
+   *
+   * @param stage         The files to upload.
+   * @param uploadedBytes The counter of uploaded bytes to add the size of each uploaded file to.
+   * @return <code>true</code> if all files have been uploaded successfully
+   */
+  private boolean uploadStage(List<LocalFile> stage, AtomicLong uploadedBytes) {
+    int maxInFlight = objectStoreAccess.isNonBlocking()
+        ? distributionServiceConfig.getObjectStore().getAsyncMaxConcurrency()
+        : Math.max(1, executor.getMaxPoolSize());
+    Deque<Future<?>> inFlight = new ArrayDeque<>();
+    boolean successful = true;
+    for (LocalFile file : stage) {
+      if (inFlight.size() >= maxInFlight) {
+        successful &= awaitThread(inFlight.poll());
+      }
+      inFlight.add(submitUpload(file, uploadedBytes));
+    }
+    while (!inFlight.isEmpty()) {
+      successful &= awaitThread(inFlight.poll());
+    }
+    return successful;
+  }
+
+  /**
+   * Starts the upload of the given file, either without blocking a thread if the object store client supports it, or
+   * on a thread of the executor.
+   */
+  private Future<?> submitUpload(LocalFile file, AtomicLong uploadedBytes) {
+    if (objectStoreAccess.isNonBlocking()) {
+      long start = System.nanoTime();
+      return objectStoreAccess.putObjectAsync(file)
+          .thenRun(() -> uploadedBytes.addAndGet(recordUpload(file, start)));
+    }
+    return executor.submit(() -> {
+      long start = System.nanoTime();
+      objectStoreAccess.putObject(file);
+      uploadedBytes.addAndGet(recordUpload(file, start));
+    });
+  }
+
+  private long recordUpload(LocalFile file, long start) {
+    long elapsedNanos = Math.max(1, System.nanoTime() - start);
+    long size = file.getFile().toFile().length();
+
+    Metrics.timer(UPLOAD_TIMER_NAME).record(elapsedNanos, TimeUnit.NANOSECONDS);
+    Metrics.summary(UPLOAD_THROUGHPUT_SUMMARY_NAME).record(size * 1e9 / elapsedNanos);
+    return size;
   }
 
-  private void awaitThread(Future<?> result) {
+  private boolean awaitThread(Future<?> result) {
     try {
       result.get();
+      return true;
     } catch (ExecutionException e) {
       failedOperationsCounter.incrementAndCheckThreshold(new ObjectStoreOperationFailedException(e.getMessage(), e));
+      return false;
     } catch (InterruptedException e) {
       Thread.currentThread().interrupt();
       throw new ObjectStoreOperationFailedException(e.getMessage(), e);
@@ -0,0 +1,45 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App
+ * ---
+ * Copyright (C) 2020 SAP SE and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.server.services.distribution.objectstore.client;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An {@link ObjectStoreClient}, which performs its operations without blocking a thread per request. The blocking
+ * operations of {@link ObjectStoreClient} wait for the completion of the respective non-blocking operation.
+ */
+public interface AsyncObjectStoreClient extends ObjectStoreClient {
+
+  /**
+   * Uploads data from the specified file to an object with the specified name, without blocking the calling thread.
+   *
+   * @param bucket     The name of the object store bucket.
+   * @param objectName The name of the target object.
+   * @param filePath   The path associated with the file to upload.
+   * @param headers    The headers to be used during upload.
+   * @return A future, which completes once the object has been uploaded, or completes exceptionally with an {@link
+   *         ObjectStoreOperationFailedException} if the upload failed after all retries.
+   */
+  CompletableFuture<Void> putObjectAsync(String bucket, String objectName, Path filePath,
+      Map<HeaderKey, String> headers);
+}
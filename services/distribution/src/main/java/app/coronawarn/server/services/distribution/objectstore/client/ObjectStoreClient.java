@@ -23,6 +23,7 @@ package app.coronawarn.server.services.distribution.objectstore.client;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 /**
  * Simple Storage Service (aka S3) client to perform bucket and object operations.
@@ -39,6 +40,29 @@ public interface ObjectStoreClient {
    */
   List<S3Object> getObjects(String bucket, String prefix);
 
+  /**
+   * Downloads the all objects that match the specified prefix from the specified object store bucket. The CWA hash of
+   * a listed object is taken from the given known objects, if an entry with the same name and entity tag exists there.
+   * Only the remaining objects have their metadata fetched individually.
+   *
+   * @param bucket       The name of the object store bucket.
+   * @param prefix       The prefix that the names of the returned objects start with.
+   * @param knownObjects Previously published objects with their CWA hashes, mapped by object name.
+   * @return A list of objects from the object store that match the specified parameters.
+   * @throws ObjectStoreOperationFailedException if the operation could not be performed.
+   */
+  List<S3Object> getObjects(String bucket, String prefix, Map<String, S3Object> knownObjects);
+
+  /**
+   * Downloads the content of the object with the specified name.
+   *
+   * @param bucket     The name of the object store bucket.
+   * @param objectName The name of the object.
+   * @return The content of the object, or an empty {@link Optional} if no such object exists.
+   * @throws ObjectStoreOperationFailedException if the operation could not be performed.
+   */
+  Optional<byte[]> getObjectContent(String bucket, String objectName);
+
   /**
    * Uploads data from the specified file to an object with the specified name.
    *
@@ -50,6 +74,17 @@ public interface ObjectStoreClient {
    */
   void putObject(String bucket, String objectName, Path filePath, Map<HeaderKey, String> headers);
 
+  /**
+   * Uploads the specified content to an object with the specified name.
+   *
+   * @param bucket     The name of the object store bucket.
+   * @param objectName The name of the target object.
+   * @param content    The content to upload.
+   * @param headers    The headers to be used during upload.
+   * @throws ObjectStoreOperationFailedException if the operation could not be performed.
+   */
+  void putObject(String bucket, String objectName, byte[] content, Map<HeaderKey, String> headers);
+
   /**
    * Removes all the specified objects from the specified object store bucket.
    *
@@ -24,6 +24,7 @@ package app.coronawarn.server.services.distribution.objectstore.client;
 import app.coronawarn.server.services.distribution.config.DistributionServiceConfig;
 import app.coronawarn.server.services.distribution.config.DistributionServiceConfig.ObjectStore;
 import java.net.URI;
+import java.util.Objects;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.retry.annotation.EnableRetry;
@@ -32,11 +33,15 @@ import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.AwsCredentialsProviderChain;
 import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
 
 /**
- * Manages the instantiation of the {@link ObjectStoreClient} bean.
+ * Manages the instantiation of the {@link ObjectStoreClient} bean. Depending on
+ * <code>services.distribution.objectstore.async-client</code>, either the blocking {@link S3ClientWrapper} or the
+ * non-blocking {@link S3AsyncClientWrapper} is used.
  */
 @Configuration
 @EnableRetry
@@ -59,11 +64,23 @@ public class ObjectStorePublishingConfig {
 
     String endpoint = removeTrailingSlash(objectStore.getEndpoint()) + ":" + objectStore.getPort();
 
+    if (Boolean.TRUE.equals(objectStore.isAsyncClient())) {
+      return new S3AsyncClientWrapper(S3AsyncClient.builder()
+          .region(DEFAULT_REGION)
+          .endpointOverride(URI.create(endpoint))
+          .credentialsProvider(credentialsProvider)
+          .httpClientBuilder(NettyNioAsyncHttpClient.builder().maxConcurrency(objectStore.getAsyncMaxConcurrency()))
+          .build(),
+          objectStore.getRetryAttempts(), objectStore.getRetryBackoff(), objectStore.getAsyncMaxConcurrency());
+    }
+
     return new S3ClientWrapper(S3Client.builder()
         .region(DEFAULT_REGION)
         .endpointOverride(URI.create(endpoint))
         .credentialsProvider(credentialsProvider)
-        .build());
+        .build(),
+        Objects.requireNonNullElse(objectStore.getMultipartUploadThreshold(), Long.MAX_VALUE),
+        Objects.requireNonNullElse(objectStore.getMultipartUploadPartSize(), Integer.MAX_VALUE));
   }
 
   private String removeTrailingSlash(String string) {
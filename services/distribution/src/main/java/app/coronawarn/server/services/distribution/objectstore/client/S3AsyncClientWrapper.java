@@ -0,0 +1,322 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App
+ * ---
+ * Copyright (C) 2020 SAP SE and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.server.services.distribution.objectstore.client;
+
+import static java.lang.Boolean.TRUE;
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+
+/**
+ * Implementation of {@link ObjectStoreClient} that encapsulates an {@link S3AsyncClient}. Requests are sent without
+ * blocking a thread per request, which suits the upload of many small objects. Failed requests are retried with the
+ * configured number of attempts and backoff, without blocking a thread while waiting for the next attempt. Requests
+ * issued per listed object are limited to the configured number of concurrent requests, so that listing a large prefix
+ * does not queue an unbounded number of requests in the HTTP client.
+ */
+public class S3AsyncClientWrapper implements AsyncObjectStoreClient {
+
+  private static final Logger logger = LoggerFactory.getLogger(S3AsyncClientWrapper.class);
+
+  private final S3AsyncClient s3AsyncClient;
+
+  private final int retryAttempts;
+
+  private final long retryBackoff;
+
+  private final int maxConcurrentRequests;
+
+  /**
+   * Creates an {@link S3AsyncClientWrapper}.
+   *
+   * @param s3AsyncClient         The client to encapsulate.
+   * @param retryAttempts         The maximum number of attempts of each operation.
+   * @param retryBackoff          The time to wait between two attempts, in milliseconds.
+   * @param maxConcurrentRequests The maximum number of requests per listed object in flight at the same time.
+   */
+  public S3AsyncClientWrapper(S3AsyncClient s3AsyncClient, int retryAttempts, long retryBackoff,
+      int maxConcurrentRequests) {
+    this.s3AsyncClient = s3AsyncClient;
+    this.retryAttempts = retryAttempts;
+    this.retryBackoff = retryBackoff;
+    this.maxConcurrentRequests = maxConcurrentRequests;
+  }
+
+  @Override
+  public boolean bucketExists(String bucketName) {
+    try {
+      // using listObjectsV2 instead of listBuckets/headBucket in order to limit required permissions
+      s3AsyncClient.listObjectsV2(ListObjectsV2Request.builder().bucket(bucketName).maxKeys(1).build()).join();
+      return true;
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof NoSuchBucketException) {
+        return false;
+      }
+      throw new ObjectStoreOperationFailedException("Failed to determine if bucket exists.", e.getCause());
+    }
+  }
+
+  @Override
+  public List<S3Object> getObjects(String bucket, String prefix) {
+    return getObjects(bucket, prefix, Map.of());
+  }
+
+  @Override
+  public List<S3Object> getObjects(String bucket, String prefix, Map<String, S3Object> knownObjects) {
+    return join(listObjects(bucket, prefix, null, knownObjects, new BoundedRequests(maxConcurrentRequests)),
+        "Failed to get objects from object store");
+  }
+
+  /**
+   * Lists the objects page by page. Each page and each HEAD request is retried on its own, so that a single failed
+   * request does not repeat the whole listing.
+   */
+  private CompletableFuture<List<S3Object>> listObjects(String bucket, String prefix, String continuationToken,
+      Map<String, S3Object> knownObjects, BoundedRequests headRequests) {
+    ListObjectsV2Request request =
+        ListObjectsV2Request.builder().prefix(prefix).bucket(bucket).continuationToken(continuationToken).build();
+    return withRetries("object listing", () -> s3AsyncClient.listObjectsV2(request)).thenCompose(response -> {
+      List<CompletableFuture<S3Object>> s3Objects = response.contents().stream()
+          .map(s3Object -> buildS3Object(s3Object, bucket, knownObjects.get(s3Object.key()), headRequests))
+          .collect(Collectors.toList());
+      CompletableFuture<List<S3Object>> remainingS3Objects = TRUE.equals(response.isTruncated())
+          ? listObjects(bucket, prefix, response.nextContinuationToken(), knownObjects, headRequests)
+          : CompletableFuture.completedFuture(Collections.emptyList());
+
+      return CompletableFuture.allOf(s3Objects.toArray(CompletableFuture[]::new))
+          .thenCombine(remainingS3Objects, (ignored, remaining) -> {
+            List<S3Object> allS3Objects = s3Objects.stream().map(CompletableFuture::join)
+                .collect(Collectors.toCollection(ArrayList::new));
+            allS3Objects.addAll(remaining);
+            return allS3Objects;
+          });
+    });
+  }
+
+  /**
+   * Builds the {@link S3Object} for a listed object. The CWA hash is reused from the known object if that one is
+   * still current, otherwise it is fetched with a HEAD request, once one of the bounded request slots is free.
+   */
+  private CompletableFuture<S3Object> buildS3Object(software.amazon.awssdk.services.s3.model.S3Object s3Object,
+      String bucket, S3Object knownObject, BoundedRequests headRequests) {
+    if (S3ClientWrapper.isCurrent(knownObject, s3Object)) {
+      return CompletableFuture.completedFuture(
+          new S3Object(s3Object.key(), knownObject.getCwaHash(), s3Object.eTag()));
+    }
+    HeadObjectRequest request = HeadObjectRequest.builder().bucket(bucket).key(s3Object.key()).build();
+    return headRequests.submit(() -> withRetries("object metadata download", () -> s3AsyncClient.headObject(request)))
+        .thenApply(result -> new S3Object(s3Object.key(), result.metadata().get(HeaderKey.CWA_HASH.keyValue),
+            s3Object.eTag()));
+  }
+
+  @Override
+  public Optional<byte[]> getObjectContent(String bucket, String objectName) {
+    return join(withRetries("object content download", () -> s3AsyncClient
+            .getObject(GetObjectRequest.builder().bucket(bucket).key(objectName).build(),
+                AsyncResponseTransformer.toBytes())
+            .handle((response, exception) -> {
+              if (exception == null) {
+                return Optional.of(response.asByteArray());
+              }
+              if (unwrap(exception) instanceof NoSuchKeyException) {
+                return Optional.<byte[]>empty();
+              }
+              throw new CompletionException(unwrap(exception));
+            })),
+        "Failed to get object content from object store");
+  }
+
+  @Override
+  public void putObject(String bucket, String objectName, Path filePath, Map<HeaderKey, String> headers) {
+    join(putObjectAsync(bucket, objectName, filePath, headers), "Failed to modify objects on object store.");
+  }
+
+  @Override
+  public void putObject(String bucket, String objectName, byte[] content, Map<HeaderKey, String> headers) {
+    join(withRetries("object upload", () -> s3AsyncClient.putObject(
+            S3ClientWrapper.buildPutObjectRequest(bucket, objectName, headers), AsyncRequestBody.fromBytes(content))),
+        "Failed to modify objects on object store.");
+  }
+
+  @Override
+  public CompletableFuture<Void> putObjectAsync(String bucket, String objectName, Path filePath,
+      Map<HeaderKey, String> headers) {
+    return withRetries("object upload", () -> s3AsyncClient.putObject(
+        S3ClientWrapper.buildPutObjectRequest(bucket, objectName, headers), AsyncRequestBody.fromFile(filePath)))
+        .handle((response, exception) -> {
+          if (exception != null) {
+            throw new ObjectStoreOperationFailedException("Failed to upload object " + objectName, unwrap(exception));
+          }
+          return null;
+        });
+  }
+
+  @Override
+  public void removeObjects(String bucket, List<String> objectNames) {
+    if (objectNames.isEmpty()) {
+      return;
+    }
+    join(withRetries("object deletion", () -> {
+      List<CompletableFuture<DeleteObjectsResponse>> responses = S3ClientWrapper.split(objectNames).stream()
+          .map(identifiers -> s3AsyncClient.deleteObjects(DeleteObjectsRequest.builder()
+              .bucket(bucket).delete(Delete.builder().objects(identifiers).build()).build()))
+          .collect(Collectors.toList());
+      return CompletableFuture.allOf(responses.toArray(CompletableFuture[]::new))
+          .thenAccept(ignored -> {
+            if (responses.stream().map(CompletableFuture::join).anyMatch(DeleteObjectsResponse::hasErrors)) {
+              throw new ObjectStoreOperationFailedException("Failed to remove objects from object store.");
+            }
+          });
+    }), "Failed to modify objects on object store.");
+  }
+
+  /**
+   * Performs the given operation and retries it after the configured backoff, if it fails with an {@link
+   * SdkException} or an {@link ObjectStoreOperationFailedException}, until the configured number of attempts is
+   * reached.
+   */
+  private <T> CompletableFuture<T> withRetries(String action, Supplier<CompletableFuture<T>> operation) {
+    return attempt(action, operation, 1);
+  }
+
+  private <T> CompletableFuture<T> attempt(String action, Supplier<CompletableFuture<T>> operation, int attempt) {
+    CompletableFuture<T> result;
+    try {
+      result = operation.get();
+    } catch (RuntimeException e) {
+      result = CompletableFuture.failedFuture(e);
+    }
+    return result.handle((value, exception) -> {
+      if (exception == null) {
+        return CompletableFuture.completedFuture(value);
+      }
+      Throwable cause = unwrap(exception);
+      if (attempt >= retryAttempts
+          || !(cause instanceof SdkException || cause instanceof ObjectStoreOperationFailedException)) {
+        return CompletableFuture.<T>failedFuture(cause);
+      }
+      logger.warn("Retrying {} after {} failed attempt(s).", action, attempt);
+      return CompletableFuture
+          .runAsync(() -> { }, CompletableFuture.delayedExecutor(retryBackoff, TimeUnit.MILLISECONDS))
+          .thenCompose(ignored -> attempt(action, operation, attempt + 1));
+    }).thenCompose(future -> future);
+  }
+
+  private static <T> T join(CompletableFuture<T> future, String failureMessage) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      Throwable cause = unwrap(e);
+      if (cause instanceof ObjectStoreOperationFailedException) {
+        throw (ObjectStoreOperationFailedException) cause;
+      }
+      throw new ObjectStoreOperationFailedException(failureMessage, cause);
+    }
+  }
+
+  private static Throwable unwrap(Throwable throwable) {
+    return throwable instanceof CompletionException && throwable.getCause() != null
+        ? throwable.getCause()
+        : throwable;
+  }
+
+  /**
+   * Limits the number of requests in flight at the same time. Requests exceeding the limit are started as soon as
+   * another one completes, without blocking a thread in the meantime.
+   */
+  private static final class BoundedRequests {
+
+    private final int maxInFlight;
+    private final Queue<Runnable> pending = new ArrayDeque<>();
+    private int inFlight;
+
+    BoundedRequests(int maxInFlight) {
+      this.maxInFlight = maxInFlight;
+    }
+
+    <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> request) {
+      CompletableFuture<T> result = new CompletableFuture<>();
+      Runnable start = () -> {
+        CompletableFuture<T> response;
+        try {
+          response = request.get();
+        } catch (RuntimeException e) {
+          response = CompletableFuture.failedFuture(e);
+        }
+        response.whenComplete((value, exception) -> {
+          release();
+          if (exception == null) {
+            result.complete(value);
+          } else {
+            result.completeExceptionally(unwrap(exception));
+          }
+        });
+      };
+      synchronized (this) {
+        if (inFlight >= maxInFlight) {
+          pending.add(start);
+          return result;
+        }
+        inFlight++;
+      }
+      start.run();
+      return result;
+    }
+
+    private void release() {
+      Runnable next;
+      synchronized (this) {
+        next = pending.poll();
+        if (next == null) {
+          inFlight--;
+        }
+      }
+      if (next != null) {
+        next.run();
+      }
+    }
+  }
+}
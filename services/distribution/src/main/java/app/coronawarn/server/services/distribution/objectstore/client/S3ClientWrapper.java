@@ -23,16 +23,22 @@ package app.coronawarn.server.services.distribution.objectstore.client;
 import static java.lang.Boolean.TRUE;
 import static java.util.stream.Collectors.toList;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.retry.RetryContext;
 import org.springframework.retry.annotation.Backoff;
 import org.springframework.retry.annotation.Recover;
 import org.springframework.retry.annotation.Retryable;
@@ -40,15 +46,24 @@ import org.springframework.retry.support.RetrySynchronizationManager;
 import software.amazon.awssdk.core.exception.SdkException;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
 import software.amazon.awssdk.services.s3.model.Delete;
 import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
 import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
 import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
 
 /**
  * Implementation of {@link ObjectStoreClient} that encapsulates an {@link S3Client}.
@@ -61,8 +76,30 @@ public class S3ClientWrapper implements ObjectStoreClient {
 
   private final S3Client s3Client;
 
+  private final long multipartUploadThreshold;
+
+  private final int multipartUploadPartSize;
+
+  /**
+   * Creates an {@link S3ClientWrapper}, which uploads every file in a single request.
+   *
+   * @param s3Client The client to encapsulate.
+   */
   public S3ClientWrapper(S3Client s3Client) {
+    this(s3Client, Long.MAX_VALUE, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Creates an {@link S3ClientWrapper}, which uploads files of at least the given threshold size as multipart uploads.
+   *
+   * @param s3Client                 The client to encapsulate.
+   * @param multipartUploadThreshold The minimum size in bytes of files to upload in multiple parts.
+   * @param multipartUploadPartSize  The size in bytes of each part of a multipart upload, except for the last one.
+   */
+  public S3ClientWrapper(S3Client s3Client, long multipartUploadThreshold, int multipartUploadPartSize) {
     this.s3Client = s3Client;
+    this.multipartUploadThreshold = multipartUploadThreshold;
+    this.multipartUploadPartSize = multipartUploadPartSize;
   }
 
   @Override
@@ -85,6 +122,20 @@ public class S3ClientWrapper implements ObjectStoreClient {
       backoff = @Backoff(delayExpression = "${services.distribution.objectstore.retry-backoff}"))
   public List<S3Object> getObjects(String bucket, String prefix) {
     logRetryStatus("object download");
+    return listObjects(bucket, prefix, Map.of());
+  }
+
+  @Override
+  @Retryable(
+      value = SdkException.class,
+      maxAttemptsExpression = "${services.distribution.objectstore.retry-attempts}",
+      backoff = @Backoff(delayExpression = "${services.distribution.objectstore.retry-backoff}"))
+  public List<S3Object> getObjects(String bucket, String prefix, Map<String, S3Object> knownObjects) {
+    logRetryStatus("object download");
+    return listObjects(bucket, prefix, knownObjects);
+  }
+
+  private List<S3Object> listObjects(String bucket, String prefix, Map<String, S3Object> knownObjects) {
     List<S3Object> allS3Objects = new ArrayList<>();
     String continuationToken = null;
 
@@ -93,7 +144,7 @@ public class S3ClientWrapper implements ObjectStoreClient {
           ListObjectsV2Request.builder().prefix(prefix).bucket(bucket).continuationToken(continuationToken).build();
       ListObjectsV2Response response = s3Client.listObjectsV2(request);
       response.contents().stream()
-          .map(s3Object -> buildS3Object(s3Object, bucket))
+          .map(s3Object -> buildS3Object(s3Object, bucket, knownObjects.get(s3Object.key())))
           .forEach(allS3Objects::add);
       continuationToken = TRUE.equals(response.isTruncated()) ? response.nextContinuationToken() : null;
     } while (continuationToken != null);
@@ -106,6 +157,26 @@ public class S3ClientWrapper implements ObjectStoreClient {
     throw new ObjectStoreOperationFailedException("Failed to get objects from object store", cause);
   }
 
+  @Override
+  @Retryable(
+      value = SdkException.class,
+      maxAttemptsExpression = "${services.distribution.objectstore.retry-attempts}",
+      backoff = @Backoff(delayExpression = "${services.distribution.objectstore.retry-backoff}"))
+  public Optional<byte[]> getObjectContent(String bucket, String objectName) {
+    logRetryStatus("object content download");
+    try {
+      return Optional.of(
+          s3Client.getObjectAsBytes(GetObjectRequest.builder().bucket(bucket).key(objectName).build()).asByteArray());
+    } catch (NoSuchKeyException e) {
+      return Optional.empty();
+    }
+  }
+
+  @Recover
+  public Optional<byte[]> skipContentReadOperation(Throwable cause) {
+    throw new ObjectStoreOperationFailedException("Failed to get object content from object store", cause);
+  }
+
   @Override
   @Retryable(
       value = SdkException.class,
@@ -113,6 +184,76 @@ public class S3ClientWrapper implements ObjectStoreClient {
       backoff = @Backoff(delayExpression = "${services.distribution.objectstore.retry-backoff}"))
   public void putObject(String bucket, String objectName, Path filePath, Map<HeaderKey, String> headers) {
     logRetryStatus("object upload");
+    PutObjectRequest putObjectRequest = buildPutObjectRequest(bucket, objectName, headers);
+    if (filePath.toFile().length() >= multipartUploadThreshold) {
+      putObjectInParts(putObjectRequest, filePath);
+    } else {
+      s3Client.putObject(putObjectRequest, RequestBody.fromFile(filePath));
+    }
+  }
+
+  @Override
+  @Retryable(
+      value = SdkException.class,
+      maxAttemptsExpression = "${services.distribution.objectstore.retry-attempts}",
+      backoff = @Backoff(delayExpression = "${services.distribution.objectstore.retry-backoff}"))
+  public void putObject(String bucket, String objectName, byte[] content, Map<HeaderKey, String> headers) {
+    logRetryStatus("object upload");
+    s3Client.putObject(buildPutObjectRequest(bucket, objectName, headers), RequestBody.fromBytes(content));
+  }
+
+  /**
+   * Uploads the given file in parts of the configured part size, so that large files are neither sent in a single
+   * request nor held in memory as a whole. The multipart upload is aborted if any part fails.
+   */
+  private void putObjectInParts(PutObjectRequest putObjectRequest, Path filePath) {
+    String bucket = putObjectRequest.bucket();
+    String objectName = putObjectRequest.key();
+    String uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+        .bucket(bucket)
+        .key(objectName)
+        .acl(putObjectRequest.aclAsString())
+        .cacheControl(putObjectRequest.cacheControl())
+        .metadata(putObjectRequest.metadata())
+        .contentType(putObjectRequest.contentType())
+        .build()).uploadId();
+
+    try (InputStream inputStream = Files.newInputStream(filePath)) {
+      List<CompletedPart> completedParts = new ArrayList<>();
+      byte[] buffer = new byte[multipartUploadPartSize];
+      int length = inputStream.readNBytes(buffer, 0, buffer.length);
+      while (length > 0) {
+        int partNumber = completedParts.size() + 1;
+        UploadPartResponse response = s3Client.uploadPart(UploadPartRequest.builder()
+                .bucket(bucket).key(objectName).uploadId(uploadId).partNumber(partNumber).build(),
+            RequestBody.fromByteBuffer(ByteBuffer.wrap(buffer, 0, length)));
+        completedParts.add(CompletedPart.builder().partNumber(partNumber).eTag(response.eTag()).build());
+        length = inputStream.readNBytes(buffer, 0, buffer.length);
+      }
+
+      s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+          .bucket(bucket).key(objectName).uploadId(uploadId)
+          .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build())
+          .build());
+    } catch (IOException e) {
+      abortMultipartUpload(bucket, objectName, uploadId);
+      throw new ObjectStoreOperationFailedException("Failed to read file for multipart upload: " + filePath, e);
+    } catch (RuntimeException e) {
+      abortMultipartUpload(bucket, objectName, uploadId);
+      throw e;
+    }
+  }
+
+  private void abortMultipartUpload(String bucket, String objectName, String uploadId) {
+    try {
+      s3Client.abortMultipartUpload(
+          AbortMultipartUploadRequest.builder().bucket(bucket).key(objectName).uploadId(uploadId).build());
+    } catch (SdkException e) {
+      logger.warn("Failed to abort multipart upload of {}.", objectName, e);
+    }
+  }
+
+  static PutObjectRequest buildPutObjectRequest(String bucket, String objectName, Map<HeaderKey, String> headers) {
     var requestBuilder = PutObjectRequest.builder().bucket(bucket).key(objectName);
     if (headers.containsKey(HeaderKey.AMZ_ACL)) {
       requestBuilder.acl(headers.get(HeaderKey.AMZ_ACL));
@@ -126,9 +267,7 @@ public class S3ClientWrapper implements ObjectStoreClient {
     if (headers.containsKey(HeaderKey.CONTENT_TYPE)) {
       requestBuilder.contentType(headers.get(HeaderKey.CONTENT_TYPE));
     }
-
-    RequestBody bodyFile = RequestBody.fromFile(filePath);
-    s3Client.putObject(requestBuilder.build(), bodyFile);
+    return requestBuilder.build();
   }
 
   @Override
@@ -158,7 +297,7 @@ public class S3ClientWrapper implements ObjectStoreClient {
         DeleteObjectsRequest.builder().bucket(bucket).delete(Delete.builder().objects(identifiers).build()).build());
   }
 
-  private Collection<List<ObjectIdentifier>> split(List<String> objectNames) {
+  static Collection<List<ObjectIdentifier>> split(List<String> objectNames) {
     AtomicInteger counter = new AtomicInteger();
     return objectNames.stream().map(key -> ObjectIdentifier.builder().key(key).build())
         .collect(toList())
@@ -186,13 +325,31 @@ public class S3ClientWrapper implements ObjectStoreClient {
     return result.metadata().get(HeaderKey.CWA_HASH.keyValue);
   }
 
-  private S3Object buildS3Object(software.amazon.awssdk.services.s3.model.S3Object s3Object, String bucket) {
+  /**
+   * Builds the {@link S3Object} for a listed object. The CWA hash is reused from the known object if that one is
+   * still current, i.e. it has either been uploaded in this run (no entity tag recorded yet) or its entity tag matches
+   * the listed one. Otherwise, the CWA hash is fetched with a HEAD request.
+   */
+  private S3Object buildS3Object(software.amazon.awssdk.services.s3.model.S3Object s3Object, String bucket,
+      S3Object knownObject) {
+    if (isCurrent(knownObject, s3Object)) {
+      return new S3Object(s3Object.key(), knownObject.getCwaHash(), s3Object.eTag());
+    }
     String cwaHash = fetchCwaHash(s3Object, bucket);
-    return new S3Object(s3Object.key(), cwaHash);
+    return new S3Object(s3Object.key(), cwaHash, s3Object.eTag());
+  }
+
+  /**
+   * Checks whether the CWA hash of the known object can be reused for the listed object.
+   */
+  static boolean isCurrent(S3Object knownObject, software.amazon.awssdk.services.s3.model.S3Object s3Object) {
+    return knownObject != null && knownObject.getCwaHash() != null
+        && (knownObject.getEtag() == null || knownObject.getEtag().equals(s3Object.eTag()));
   }
 
   private void logRetryStatus(String action) {
-    int retryCount = RetrySynchronizationManager.getContext().getRetryCount();
+    RetryContext retryContext = RetrySynchronizationManager.getContext();
+    int retryCount = retryContext == null ? 0 : retryContext.getRetryCount();
     if (retryCount > 0) {
       logger.warn("Retrying {} after {} failed attempt(s).", action, retryCount);
     }
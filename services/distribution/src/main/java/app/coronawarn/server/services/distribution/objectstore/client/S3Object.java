@@ -35,6 +35,9 @@ public class S3Object {
   /** The cwaHash of this S3 Object. */
   private String cwaHash;
 
+  /** The entity tag reported by the object store for this S3 Object. */
+  private String etag;
+
   /**
    * Constructs a new S3Object for the given object name.
    *
@@ -55,6 +58,18 @@ public class S3Object {
     this.cwaHash = cwaHash;
   }
 
+  /**
+   * Constructs a new S3Object for the given object name.
+   *
+   * @param objectName the target object name
+   * @param cwaHash the checksum for that file
+   * @param etag the entity tag of the object, as reported by the object store listing
+   */
+  public S3Object(String objectName, String cwaHash, String etag) {
+    this(objectName, cwaHash);
+    this.etag = etag;
+  }
+
   public String getObjectName() {
     return objectName;
   }
@@ -63,6 +78,10 @@ public class S3Object {
     return cwaHash;
   }
 
+  public String getEtag() {
+    return etag;
+  }
+
   /**
    * Indicates if the S3 object is a file with diagnosis key content.
    * The evaluation is based on the distribution logic which implies that such files are generated
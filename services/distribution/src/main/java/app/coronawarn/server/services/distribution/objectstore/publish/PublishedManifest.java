@@ -0,0 +1,132 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App
+ * ---
+ * Copyright (C) 2020 SAP SE and all other contributors
+ * All modifications are copyright (c) 2020 Devside SRL.
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.server.services.distribution.objectstore.publish;
+
+import app.coronawarn.server.services.distribution.objectstore.client.S3Object;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import org.bouncycastle.util.encoders.Hex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The published manifest lists all objects which have been published to the object store together with their entity
+ * tag and CWA hash. It is stored as a single object, so that the CWA hashes of all published files can be obtained
+ * with one download instead of one metadata request per object.
+ * <br>
+ * The manifest is a UTF-8 text with one tab-separated <code>name, entity tag, CWA hash</code> line per object. The
+ * first line holds the SHA-256 checksum of all following lines, so that a truncated or otherwise corrupt manifest is
+ * discarded instead of being trusted.
+ */
+public class PublishedManifest {
+
+  private static final Logger logger = LoggerFactory.getLogger(PublishedManifest.class);
+
+  private static final String CHECKSUM_PREFIX = "sha256:";
+  private static final String LINE_SEPARATOR = "\n";
+  private static final String FIELD_SEPARATOR = "\t";
+
+  /**
+   * the manifest entries with the S3 object name as the key component of the map.
+   */
+  private final Map<String, S3Object> entries;
+
+  private PublishedManifest(Map<String, S3Object> entries) {
+    this.entries = entries;
+  }
+
+  /**
+   * Creates a manifest for the given S3 objects. Objects without entity tag or CWA hash are omitted, as their CWA hash
+   * has to be fetched from the object store anyway.
+   *
+   * @param s3Objects the published objects
+   * @return the manifest
+   */
+  public static PublishedManifest of(Collection<S3Object> s3Objects) {
+    return new PublishedManifest(s3Objects.stream()
+        .filter(s3Object -> Objects.nonNull(s3Object.getEtag()) && Objects.nonNull(s3Object.getCwaHash()))
+        .collect(Collectors.toMap(S3Object::getObjectName, s3Object -> s3Object, (first, second) -> second)));
+  }
+
+  /**
+   * Parses the given manifest content. If the content is malformed or its checksum does not match, an empty manifest
+   * is returned, which causes all CWA hashes to be fetched from the object store.
+   *
+   * @param content the manifest as downloaded from the object store
+   * @return the parsed manifest, or an empty manifest if the content could not be verified
+   */
+  public static PublishedManifest parse(byte[] content) {
+    String manifest = new String(content, StandardCharsets.UTF_8);
+    int headerEnd = manifest.indexOf(LINE_SEPARATOR);
+    if (headerEnd < 0 || !manifest.startsWith(CHECKSUM_PREFIX)) {
+      logger.warn("Discarding published manifest without checksum header.");
+      return new PublishedManifest(new HashMap<>());
+    }
+
+    String body = manifest.substring(headerEnd + LINE_SEPARATOR.length());
+    if (!manifest.substring(CHECKSUM_PREFIX.length(), headerEnd).equals(checksum(body))) {
+      logger.warn("Discarding published manifest with checksum mismatch.");
+      return new PublishedManifest(new HashMap<>());
+    }
+
+    Map<String, S3Object> entries = new HashMap<>();
+    for (String line : body.split(LINE_SEPARATOR)) {
+      String[] fields = line.split(FIELD_SEPARATOR);
+      if (fields.length == 3) {
+        entries.put(fields[0], new S3Object(fields[0], fields[2], fields[1]));
+      }
+    }
+    return new PublishedManifest(entries);
+  }
+
+  /**
+   * Serializes this manifest, including its checksum header.
+   *
+   * @return the manifest content to upload
+   */
+  public byte[] toBytes() {
+    String body = entries.values().stream()
+        .sorted((first, second) -> first.getObjectName().compareTo(second.getObjectName()))
+        .map(s3Object -> String.join(FIELD_SEPARATOR, s3Object.getObjectName(), s3Object.getEtag(),
+            s3Object.getCwaHash()) + LINE_SEPARATOR)
+        .collect(Collectors.joining());
+    return (CHECKSUM_PREFIX + checksum(body) + LINE_SEPARATOR + body).getBytes(StandardCharsets.UTF_8);
+  }
+
+  public Map<String, S3Object> getEntries() {
+    return entries;
+  }
+
+  private static String checksum(String body) {
+    try {
+      return Hex.toHexString(MessageDigest.getInstance("SHA-256").digest(body.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not supported.", e);
+    }
+  }
+}
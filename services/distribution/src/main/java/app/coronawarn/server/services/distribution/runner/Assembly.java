@@ -24,8 +24,16 @@ import app.coronawarn.server.services.distribution.Application;
 import app.coronawarn.server.services.distribution.assembly.component.CwaApiStructureProvider;
 import app.coronawarn.server.services.distribution.assembly.component.OutputDirectoryProvider;
 import app.coronawarn.server.services.distribution.assembly.structure.WritableOnDisk;
+import app.coronawarn.server.services.distribution.assembly.structure.archive.ArchiveOnDisk;
 import app.coronawarn.server.services.distribution.assembly.structure.directory.Directory;
 import app.coronawarn.server.services.distribution.assembly.structure.util.ImmutableStack;
+import app.coronawarn.server.services.distribution.config.DistributionServiceConfig;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.ApplicationArguments;
@@ -35,7 +43,9 @@ import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 
 /**
- * This runner assembles and writes diagnosis key bundles and the parameter configuration.
+ * This runner assembles and writes diagnosis key bundles and the parameter configuration. Preparing and writing is
+ * done within a {@link ForkJoinPool} with the configured assembly parallelism, so that independent parts of the
+ * directory tree (e.g. countries, dates and hours) are signed, zipped and written concurrently.
  */
 @Component
 @Order(2)
@@ -49,15 +59,19 @@ public class Assembly implements ApplicationRunner {
 
   private final ApplicationContext applicationContext;
 
+  private final int parallelism;
+
   /**
-   * Creates an Assembly, using {@link OutputDirectoryProvider}, {@link CwaApiStructureProvider} and
-   * {@link ApplicationContext}.
+   * Creates an Assembly, using {@link OutputDirectoryProvider}, {@link CwaApiStructureProvider},
+   * {@link ApplicationContext} and {@link DistributionServiceConfig}.
    */
   Assembly(OutputDirectoryProvider outputDirectoryProvider,
-      CwaApiStructureProvider cwaApiStructureProvider, ApplicationContext applicationContext) {
+      CwaApiStructureProvider cwaApiStructureProvider, ApplicationContext applicationContext,
+      DistributionServiceConfig distributionServiceConfig) {
     this.outputDirectoryProvider = outputDirectoryProvider;
     this.cwaApiStructureProvider = cwaApiStructureProvider;
     this.applicationContext = applicationContext;
+    this.parallelism = distributionServiceConfig.getAssemblyParallelism();
   }
 
   @Override
@@ -67,11 +81,12 @@ public class Assembly implements ApplicationRunner {
       outputDirectory.addWritable(cwaApiStructureProvider.getDirectory());
       outputDirectory.addWritable(cwaApiStructureProvider.getDirectoryV2());
       this.outputDirectoryProvider.clear();
-      logger.debug("Preparing files...");
-      logger.info("Start signing...");
-      outputDirectory.prepare(new ImmutableStack<>());
-      logger.debug("Writing files...");
-      outputDirectory.write();
+      prepareAndWrite(outputDirectory);
+      logZipStatistics();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      logger.error("Distribution data assembly was interrupted.", e);
+      Application.killApplication(applicationContext);
     } catch (Exception e) {
       logger.error("Distribution data assembly failed.", e);
       Application.killApplication(applicationContext);
@@ -79,4 +94,29 @@ public class Assembly implements ApplicationRunner {
 
     logger.debug("Distribution data assembled successfully.");
   }
+
+  private void logZipStatistics() {
+    Timer zipTimer = Metrics.globalRegistry.find(ArchiveOnDisk.ZIP_TIMER_NAME).timer();
+    DistributionSummary zipSizes = Metrics.globalRegistry.find(ArchiveOnDisk.ZIP_SIZE_SUMMARY_NAME).summary();
+    if (zipTimer != null && zipSizes != null) {
+      logger.info("Zipped {} archives with {} bytes in {} ms.", zipTimer.count(), (long) zipSizes.totalAmount(),
+          (long) zipTimer.totalTime(TimeUnit.MILLISECONDS));
+    }
+  }
+
+  private void prepareAndWrite(Directory<WritableOnDisk> outputDirectory)
+      throws ExecutionException, InterruptedException {
+    ForkJoinPool forkJoinPool = new ForkJoinPool(parallelism);
+    try {
+      forkJoinPool.submit(() -> {
+        logger.debug("Preparing files...");
+        logger.info("Start signing with parallelism {}...", parallelism);
+        outputDirectory.prepare(new ImmutableStack<>());
+        logger.debug("Writing files...");
+        outputDirectory.write();
+      }).get();
+    } finally {
+      forkJoinPool.shutdown();
+    }
+  }
 }
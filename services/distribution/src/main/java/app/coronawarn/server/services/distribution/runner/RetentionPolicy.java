@@ -23,6 +23,7 @@ package app.coronawarn.server.services.distribution.runner;
 import app.coronawarn.server.common.persistence.service.DiagnosisKeyService;
 import app.coronawarn.server.services.distribution.Application;
 import app.coronawarn.server.services.distribution.config.DistributionServiceConfig;
+import app.coronawarn.server.services.distribution.config.DistributionShard;
 import app.coronawarn.server.services.distribution.objectstore.S3RetentionPolicy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,6 +35,7 @@ import org.springframework.stereotype.Component;
 
 /**
  * This runner removes any diagnosis keys from the database that were submitted before a configured threshold of days.
+ * In a sharded distribution run, the retention policies are applied by the coordinator only.
  */
 @Component
 @Order(1)
@@ -52,6 +54,8 @@ public class RetentionPolicy implements ApplicationRunner {
 
   private final Integer hourFileRetentionDays;
 
+  private final DistributionShard shard;
+
   /**
    * Creates a new RetentionPolicy.
    *
@@ -70,10 +74,15 @@ public class RetentionPolicy implements ApplicationRunner {
     this.retentionDays = distributionServiceConfig.getRetentionDays();
     this.hourFileRetentionDays = distributionServiceConfig.getObjectStore().getHourFileRetentionDays();
     this.s3RetentionPolicy = s3RetentionPolicy;
+    this.shard = new DistributionShard(distributionServiceConfig);
   }
 
   @Override
   public void run(ApplicationArguments args) {
+    if (shard.isWorker()) {
+      logger.debug("Retention policy is applied by the coordinator.");
+      return;
+    }
     try {
       diagnosisKeyService.applyRetentionPolicy(retentionDays);
       s3RetentionPolicy.applyDiagnosisKeyDayRetentionPolicy(retentionDays);
@@ -22,6 +22,8 @@ package app.coronawarn.server.services.distribution.runner;
 
 import app.coronawarn.server.services.distribution.Application;
 import app.coronawarn.server.services.distribution.assembly.component.OutputDirectoryProvider;
+import app.coronawarn.server.services.distribution.objectstore.DiagnosisKeyBundleFingerprintStore;
+import app.coronawarn.server.services.distribution.objectstore.FailedObjectStoreOperationsCounter;
 import app.coronawarn.server.services.distribution.objectstore.S3Publisher;
 import app.coronawarn.server.services.distribution.objectstore.client.ObjectStoreOperationFailedException;
 import java.io.IOException;
@@ -46,12 +48,17 @@ public class S3Distribution implements ApplicationRunner {
   private final OutputDirectoryProvider outputDirectoryProvider;
   private final S3Publisher s3Publisher;
   private final ApplicationContext applicationContext;
+  private final DiagnosisKeyBundleFingerprintStore fingerprintStore;
+  private final FailedObjectStoreOperationsCounter failedObjectStoreOperationsCounter;
 
   S3Distribution(OutputDirectoryProvider outputDirectoryProvider, S3Publisher s3Publisher,
-      ApplicationContext applicationContext) {
+      ApplicationContext applicationContext, DiagnosisKeyBundleFingerprintStore fingerprintStore,
+      FailedObjectStoreOperationsCounter failedObjectStoreOperationsCounter) {
     this.outputDirectoryProvider = outputDirectoryProvider;
     this.s3Publisher = s3Publisher;
     this.applicationContext = applicationContext;
+    this.fingerprintStore = fingerprintStore;
+    this.failedObjectStoreOperationsCounter = failedObjectStoreOperationsCounter;
   }
 
   @Override
@@ -61,6 +68,11 @@ public class S3Distribution implements ApplicationRunner {
 
       s3Publisher.publish(pathToDistribute);
       logger.info("Data pushed to Object Store successfully.");
+      if (failedObjectStoreOperationsCounter.hasFailedOperations()) {
+        logger.warn("Diagnosis key bundle fingerprints not stored, as not all files could be published.");
+      } else {
+        fingerprintStore.save();
+      }
     } catch (UnsupportedOperationException | ObjectStoreOperationFailedException | IOException e) {
       logger.error("Distribution failed.", e);
       Application.killApplication(applicationContext);
@@ -0,0 +1,73 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App
+ * ---
+ * Copyright (C) 2020 SAP SE and all other contributors
+ * All modifications are copyright (c) 2020 Devside SRL.
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.server.services.distribution.runner;
+
+import app.coronawarn.server.services.distribution.Application;
+import app.coronawarn.server.services.distribution.assembly.structure.util.TimeUtils;
+import app.coronawarn.server.services.distribution.config.DistributionServiceConfig;
+import app.coronawarn.server.services.distribution.config.DistributionServiceConfig.Shard;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ObjectUtils;
+
+/**
+ * This runner pins the current time of the distribution run to the configured distribution time, so that all workers
+ * and the coordinator of a sharded distribution run agree on the distributed dates and hours, even if they are not
+ * started within the same hour.
+ */
+@Component
+@Order(0)
+public class ShardedDistribution implements ApplicationRunner {
+
+  private static final Logger logger = LoggerFactory.getLogger(ShardedDistribution.class);
+
+  private final DistributionServiceConfig distributionServiceConfig;
+  private final ApplicationContext applicationContext;
+
+  ShardedDistribution(DistributionServiceConfig distributionServiceConfig, ApplicationContext applicationContext) {
+    this.distributionServiceConfig = distributionServiceConfig;
+    this.applicationContext = applicationContext;
+  }
+
+  @Override
+  public void run(ApplicationArguments args) {
+    Shard shard = distributionServiceConfig.getShard();
+    if (shard == null || ObjectUtils.isEmpty(shard.getDistributionTime())) {
+      return;
+    }
+    try {
+      Instant distributionTime = Instant.parse(shard.getDistributionTime());
+      TimeUtils.setNow(distributionTime);
+      logger.info("Running {} distribution for {}.", shard.getRole(), distributionTime);
+    } catch (DateTimeParseException e) {
+      logger.error("Invalid distribution time.", e);
+      Application.killApplication(applicationContext);
+    }
+  }
+}
@@ -25,21 +25,29 @@ import static app.coronawarn.server.services.distribution.common.Helpers.buildDi
 import app.coronawarn.server.common.persistence.domain.DiagnosisKey;
 import app.coronawarn.server.common.persistence.service.DiagnosisKeyService;
 import app.coronawarn.server.common.persistence.service.common.KeySharingPoliciesChecker;
+import app.coronawarn.server.services.distribution.assembly.diagnosiskeys.DiagnosisKeyBundleFingerprints;
 import app.coronawarn.server.services.distribution.assembly.diagnosiskeys.DiagnosisKeyBundler;
 import app.coronawarn.server.services.distribution.assembly.diagnosiskeys.ProdDiagnosisKeyBundler;
+import app.coronawarn.server.services.distribution.assembly.diagnosiskeys.PublishedDiagnosisKeyArchives;
 import app.coronawarn.server.services.distribution.assembly.structure.WritableOnDisk;
 import app.coronawarn.server.services.distribution.assembly.structure.directory.Directory;
+import app.coronawarn.server.services.distribution.assembly.structure.util.TimeUtils;
 import app.coronawarn.server.services.distribution.assembly.transformation.EnfParameterAdapter;
 import app.coronawarn.server.services.distribution.config.DistributionServiceConfig;
 import app.coronawarn.server.services.distribution.config.TransmissionRiskLevelEncoding;
+import app.coronawarn.server.services.distribution.objectstore.DiagnosisKeyBundleFingerprintStore;
+import app.coronawarn.server.services.distribution.objectstore.PublishedDiagnosisKeyArchiveStore;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -70,6 +78,12 @@ class DiagnosisKeysStructureProviderTest {
 
   @Mock
   DiagnosisKeyService diagnosisKeyService;
+
+  @Mock
+  DiagnosisKeyBundleFingerprintStore fingerprintStore;
+
+  @Mock
+  PublishedDiagnosisKeyArchiveStore publishedArchiveStore;
   List<DiagnosisKey> diagnosisKeys;
 
   @BeforeEach
@@ -78,15 +92,54 @@ class DiagnosisKeysStructureProviderTest {
         .mapToObj(currentHour -> buildDiagnosisKeys(6, LocalDateTime.of(1970, 1, 3, 0, 0).plusHours(currentHour), 5))
         .flatMap(List::stream)
         .collect(Collectors.toList());
-    Mockito.when(diagnosisKeyService.getDiagnosisKeys()).thenReturn(diagnosisKeys);
+    Mockito.doAnswer(invocation -> {
+      Consumer<DiagnosisKey> consumer = invocation.getArgument(2);
+      diagnosisKeys.forEach(consumer);
+      return null;
+    }).when(diagnosisKeyService).forEachDiagnosisKey(Mockito.anyInt(), Mockito.any(), Mockito.any());
+    Mockito.when(fingerprintStore.load()).thenReturn(DiagnosisKeyBundleFingerprints.disabled());
+    Mockito.when(publishedArchiveStore.load()).thenReturn(PublishedDiagnosisKeyArchives.all());
   }
 
   @Test
   void testGetDiagnosisKeysReturnsCorrectDirectoryName() {
     DiagnosisKeyBundler bundler = new ProdDiagnosisKeyBundler(distributionServiceConfig, sharingPoliciesChecker);
     DiagnosisKeysStructureProvider diagnosisKeysStructureProvider = new DiagnosisKeysStructureProvider(
-        diagnosisKeyService, cryptoProvider, distributionServiceConfig, bundler, enfParameterAdapter);
+        diagnosisKeyService, cryptoProvider, distributionServiceConfig, bundler, enfParameterAdapter,
+        fingerprintStore, publishedArchiveStore);
     Directory<WritableOnDisk> diagnosisKeys = diagnosisKeysStructureProvider.getDiagnosisKeys();
     Assertions.assertEquals("diagnosis-keys", diagnosisKeys.getName());
   }
+
+  @Test
+  void testGetDiagnosisKeysStreamsAllKeysIntoBundler() {
+    DiagnosisKeyBundler bundler = Mockito.spy(
+        new ProdDiagnosisKeyBundler(distributionServiceConfig, sharingPoliciesChecker));
+    DiagnosisKeysStructureProvider diagnosisKeysStructureProvider = new DiagnosisKeysStructureProvider(
+        diagnosisKeyService, cryptoProvider, distributionServiceConfig, bundler, enfParameterAdapter,
+        fingerprintStore, publishedArchiveStore);
+    diagnosisKeysStructureProvider.getDiagnosisKeys();
+
+    InOrder inOrder = Mockito.inOrder(bundler);
+    inOrder.verify(bundler).beginBundling(Mockito.any());
+    inOrder.verify(bundler, Mockito.times(diagnosisKeys.size())).addDiagnosisKey(Mockito.any());
+    inOrder.verify(bundler).completeBundling();
+    inOrder.verify(bundler).setPublishedArchives(Mockito.any());
+  }
+
+  @Test
+  void testGetDiagnosisKeysReadsKeysWithinRetentionPeriodOfDistributionTime() {
+    Instant distributionTime = Instant.parse("2020-10-01T10:15:00Z");
+    TimeUtils.setNow(distributionTime);
+    try {
+      new DiagnosisKeysStructureProvider(diagnosisKeyService, cryptoProvider, distributionServiceConfig,
+          new ProdDiagnosisKeyBundler(distributionServiceConfig, sharingPoliciesChecker), enfParameterAdapter,
+          fingerprintStore, publishedArchiveStore).getDiagnosisKeys();
+
+      Mockito.verify(diagnosisKeyService).forEachDiagnosisKey(
+          Mockito.eq(distributionServiceConfig.getRetentionDays()), Mockito.eq(distributionTime), Mockito.any());
+    } finally {
+      TimeUtils.setNow(null);
+    }
+  }
 }
@@ -0,0 +1,143 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App
+ * ---
+ * Copyright (C) 2020 SAP SE and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+
+package app.coronawarn.server.services.distribution.assembly.diagnosiskeys;
+
+import static app.coronawarn.server.services.distribution.common.Helpers.buildDiagnosisKeys;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import app.coronawarn.server.common.persistence.domain.CountryRegistry;
+import app.coronawarn.server.common.persistence.domain.DiagnosisKey;
+import app.coronawarn.server.common.protocols.external.exposurenotification.ReportType;
+import app.coronawarn.server.services.distribution.config.DistributionServiceConfig;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * Compares the routing of diagnosis keys to the country buckets by their visited countries as strings (as done before
+ * the {@link CountryRegistry} was introduced) with the bitmask routing of the {@link DiagnosisKeyBundler}, for the
+ * supported countries and the origin country of the distribution service configuration. Not part of the regular test
+ * run; execute explicitly with logging enabled, e.g.
+ * {@code mvn -Dtest=CountryRoutingBenchmarkIT -Dlogging.level.app.coronawarn=info test}.
+ */
+@EnableConfigurationProperties(value = DistributionServiceConfig.class)
+@SpringBootTest(classes = DistributionServiceConfig.class)
+class CountryRoutingBenchmarkIT {
+
+  private static final Logger logger = LoggerFactory.getLogger(CountryRoutingBenchmarkIT.class);
+
+  private static final int NUMBER_OF_KEYS = 1_000_000;
+  private static final int ITERATIONS = 5;
+  private static final List<String> ALL_COUNTRIES = List.of("BE", "DE", "FR", "NL", "IE", "IT", "ES", "PL", "AT",
+      "DK", "TR", "US");
+
+  @Autowired
+  private DistributionServiceConfig distributionServiceConfig;
+
+  private List<String> supportedCountries;
+  private String originCountry;
+
+  @BeforeEach
+  void setUp() {
+    supportedCountries = List.of(distributionServiceConfig.getSupportedCountries());
+    originCountry = distributionServiceConfig.getApi().getOriginCountry();
+  }
+
+  @Test
+  void benchmarkCountryRouting() {
+    List<DiagnosisKey> diagnosisKeys = buildDiagnosisKeysWithRandomCountries();
+    long supportedCountriesMask = CountryRegistry.maskOf(supportedCountries);
+    long originCountryMask = CountryRegistry.maskOf(originCountry);
+
+    for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+      long stringRoutes = measure("String", iteration, diagnosisKeys, this::routeByStrings);
+      long maskRoutes = measure("Bitmask", iteration, diagnosisKeys,
+          diagnosisKey -> routeByMask(diagnosisKey, supportedCountriesMask, originCountryMask));
+      assertThat(maskRoutes).isEqualTo(stringRoutes);
+    }
+  }
+
+  private static long measure(String path, int iteration, List<DiagnosisKey> diagnosisKeys,
+      ToLongFunction<DiagnosisKey> routing) {
+    long start = System.nanoTime();
+    long routes = 0;
+    for (DiagnosisKey diagnosisKey : diagnosisKeys) {
+      routes += routing.applyAsLong(diagnosisKey);
+    }
+    logger.info("Iteration {}: {} routing of {} keys took {} ms (checksum {}).", iteration, path,
+        diagnosisKeys.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), routes);
+    return routes;
+  }
+
+  /**
+   * Returns a checksum of the target buckets, as computed by the string based routing.
+   */
+  private long routeByStrings(DiagnosisKey diagnosisKey) {
+    return diagnosisKey.getVisitedCountries().stream()
+        .filter(supportedCountries::contains)
+        .filter(visitedCountry -> !(diagnosisKey.getOriginCountry().equals(originCountry)
+            && !visitedCountry.equals(originCountry)))
+        .filter(visitedCountry -> !(!diagnosisKey.getOriginCountry().equals(originCountry)
+            && !visitedCountry.equals(originCountry) && diagnosisKey.getVisitedCountries().contains(originCountry)))
+        .mapToLong(CountryRegistry::maskOf)
+        .sum();
+  }
+
+  /**
+   * Returns a checksum of the target buckets, as computed by the bitmask based routing.
+   */
+  private long routeByMask(DiagnosisKey diagnosisKey, long supportedCountriesMask, long originCountryMask) {
+    long targetCountries = diagnosisKey.getVisitedCountriesMask() & supportedCountriesMask;
+    if ((diagnosisKey.getVisitedCountriesMask() & originCountryMask) != 0
+        || diagnosisKey.getOriginCountry().equals(originCountry)) {
+      targetCountries &= originCountryMask;
+    }
+    return targetCountries;
+  }
+
+  private static List<DiagnosisKey> buildDiagnosisKeysWithRandomCountries() {
+    Random random = new Random(42);
+    List<DiagnosisKey> diagnosisKeys = new ArrayList<>(NUMBER_OF_KEYS);
+    while (diagnosisKeys.size() < NUMBER_OF_KEYS) {
+      Set<String> visitedCountries = new HashSet<>();
+      int numberOfVisitedCountries = 1 + random.nextInt(5);
+      while (visitedCountries.size() < numberOfVisitedCountries) {
+        visitedCountries.add(ALL_COUNTRIES.get(random.nextInt(ALL_COUNTRIES.size())));
+      }
+      String originCountry = visitedCountries.iterator().next();
+      diagnosisKeys.addAll(buildDiagnosisKeys(6, 50L, 1000, originCountry, visitedCountries,
+          ReportType.CONFIRMED_TEST, 1));
+    }
+    return diagnosisKeys;
+  }
+}
@@ -0,0 +1,88 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App
+ * ---
+ * Copyright (C) 2020 SAP SE and all other contributors
+ * All modifications are copyright (c) 2020 Devside SRL.
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.server.services.distribution.assembly.diagnosiskeys;
+
+import static app.coronawarn.server.services.distribution.common.Helpers.buildDiagnosisKeys;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import app.coronawarn.server.common.persistence.domain.DiagnosisKey;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class DiagnosisKeyBundleFingerprintsTest {
+
+  private static final LocalDateTime HOUR = LocalDateTime.of(1970, 1, 3, 0, 0);
+
+  @Test
+  void testDisabledFingerprintsNeverReportUnchangedBundles() {
+    List<DiagnosisKey> keys = buildDiagnosisKeys(6, HOUR, 5);
+    DiagnosisKeyBundleFingerprints fingerprints = DiagnosisKeyBundleFingerprints.disabled();
+
+    assertThat(fingerprints.isUnchanged("BE", HOUR, DistributableKeyBatch.of(keys))).isFalse();
+    assertThat(fingerprints.isUnchanged("BE", HOUR, DistributableKeyBatch.of(keys))).isFalse();
+    assertThat(fingerprints.isEnabled()).isFalse();
+    assertThat(fingerprints.toBytes()).isEmpty();
+  }
+
+  @Test
+  void testUnchangedBundleIsDetectedAfterRoundTrip() {
+    List<DiagnosisKey> keys = buildDiagnosisKeys(6, HOUR, 5);
+    DiagnosisKeyBundleFingerprints previous = DiagnosisKeyBundleFingerprints.empty();
+    assertThat(previous.isUnchanged("BE", HOUR, DistributableKeyBatch.of(keys))).isFalse();
+
+    DiagnosisKeyBundleFingerprints current = DiagnosisKeyBundleFingerprints.parse(previous.toBytes());
+    List<DiagnosisKey> reorderedKeys = new ArrayList<>(keys);
+    Collections.reverse(reorderedKeys);
+
+    assertThat(current.isUnchanged("BE", HOUR, DistributableKeyBatch.of(reorderedKeys))).isTrue();
+    assertThat(current.isUnchanged("EUR", HOUR, DistributableKeyBatch.of(keys))).isFalse();
+    assertThat(current.isUnchanged("BE", HOUR.toLocalDate(), DistributableKeyBatch.of(keys))).isFalse();
+  }
+
+  @Test
+  void testChangedBundleIsDetected() {
+    List<DiagnosisKey> keys = buildDiagnosisKeys(6, HOUR, 5);
+    DiagnosisKeyBundleFingerprints previous = DiagnosisKeyBundleFingerprints.empty();
+    previous.isUnchanged("BE", HOUR, DistributableKeyBatch.of(keys));
+
+    List<DiagnosisKey> changedKeys = new ArrayList<>(keys.subList(1, keys.size()));
+    DiagnosisKeyBundleFingerprints current = DiagnosisKeyBundleFingerprints.parse(previous.toBytes());
+
+    assertThat(current.isUnchanged("BE", HOUR, DistributableKeyBatch.of(changedKeys))).isFalse();
+    assertThat(DiagnosisKeyBundleFingerprints.parse(current.toBytes())
+        .isUnchanged("BE", HOUR, DistributableKeyBatch.of(changedKeys))).isTrue();
+  }
+
+  @Test
+  void testMalformedContentIsIgnored() {
+    List<DiagnosisKey> keys = buildDiagnosisKeys(6, HOUR, 5);
+    DiagnosisKeyBundleFingerprints fingerprints = DiagnosisKeyBundleFingerprints
+        .parse("garbage\nBE/1970-01-03T00:00\n".getBytes(StandardCharsets.UTF_8));
+
+    assertThat(fingerprints.isEnabled()).isTrue();
+    assertThat(fingerprints.isUnchanged("BE", HOUR, DistributableKeyBatch.of(keys))).isFalse();
+  }
+}
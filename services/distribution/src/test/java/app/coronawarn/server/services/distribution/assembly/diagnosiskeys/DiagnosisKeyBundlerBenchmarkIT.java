@@ -0,0 +1,97 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App
+ * ---
+ * Copyright (C) 2020 SAP SE and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+
+package app.coronawarn.server.services.distribution.assembly.diagnosiskeys;
+
+import static app.coronawarn.server.services.distribution.common.Helpers.buildDiagnosisKeys;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import app.coronawarn.server.common.persistence.domain.DiagnosisKey;
+import app.coronawarn.server.common.persistence.service.common.KeySharingPoliciesChecker;
+import app.coronawarn.server.services.distribution.config.DistributionServiceConfig;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * Measures the date and hour lookups of the {@link DiagnosisKeyBundler} on 2 million diagnosis keys, the way the
+ * directory structure of a distribution run queries them. Not part of the regular test run; execute explicitly with
+ * logging enabled, e.g. {@code mvn -Dtest=DiagnosisKeyBundlerBenchmarkIT -Dlogging.level.app.coronawarn=info test}.
+ */
+@EnableConfigurationProperties(value = DistributionServiceConfig.class)
+@SpringBootTest(classes = {DistributionServiceConfig.class, KeySharingPoliciesChecker.class})
+class DiagnosisKeyBundlerBenchmarkIT {
+
+  private static final Logger logger = LoggerFactory.getLogger(DiagnosisKeyBundlerBenchmarkIT.class);
+
+  private static final int NUMBER_OF_KEYS = 2_000_000;
+  private static final int NUMBER_OF_DAYS = 14;
+  private static final int ITERATIONS = 5;
+  private static final LocalDateTime FIRST_SUBMISSION = LocalDateTime.of(1970, 1, 3, 0, 0);
+
+  @Autowired
+  DistributionServiceConfig distributionServiceConfig;
+
+  @Autowired
+  KeySharingPoliciesChecker sharingPoliciesChecker;
+
+  @Test
+  void benchmarkDateAndHourLookups() {
+    long numberOfHours = NUMBER_OF_DAYS * 24L;
+    long firstSubmissionHour = FIRST_SUBMISSION.toEpochSecond(ZoneOffset.UTC) / 3600;
+    List<DiagnosisKey> diagnosisKeys = LongStream.range(0, numberOfHours)
+        .mapToObj(hour -> buildDiagnosisKeys(6, firstSubmissionHour + hour, (int) (NUMBER_OF_KEYS / numberOfHours)))
+        .flatMap(List::stream)
+        .collect(Collectors.toList());
+    DiagnosisKeyBundler bundler = new ProdDiagnosisKeyBundler(distributionServiceConfig, sharingPoliciesChecker);
+
+    long start = System.nanoTime();
+    bundler.setDiagnosisKeys(diagnosisKeys, FIRST_SUBMISSION.plusDays(NUMBER_OF_DAYS + 1L));
+    logger.info("Bundled {} diagnosis keys in {} ms.", diagnosisKeys.size(), elapsedMillis(start));
+
+    for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+      start = System.nanoTime();
+      long numberOfDistributedKeys = 0;
+      for (LocalDate date : bundler.getDatesWithDistributableDiagnosisKeys("BE")) {
+        numberOfDistributedKeys += bundler.getDiagnosisKeysForDate(date, "BE").size();
+        for (LocalDateTime hour : bundler.getHoursWithDistributableDiagnosisKeys(date, "BE")) {
+          numberOfDistributedKeys += bundler.getDiagnosisKeysForHour(hour, "BE").size();
+        }
+      }
+      logger.info("Iteration {}: looked up all dates and hours in {} ms.", iteration, elapsedMillis(start));
+      assertThat(numberOfDistributedKeys).isEqualTo(2L * bundler.getAllDiagnosisKeys("BE").size());
+    }
+  }
+
+  private static long elapsedMillis(long startNanos) {
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+  }
+}
@@ -0,0 +1,126 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App
+ * ---
+ * Copyright (C) 2020 SAP SE and all other contributors
+ * All modifications are copyright (c) 2020 Devside SRL.
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.server.services.distribution.assembly.diagnosiskeys;
+
+import static app.coronawarn.server.services.distribution.common.Helpers.buildDiagnosisKeys;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import app.coronawarn.server.common.persistence.domain.DiagnosisKey;
+import app.coronawarn.server.common.protocols.external.exposurenotification.ReportType;
+import app.coronawarn.server.common.protocols.external.exposurenotification.TemporaryExposureKey;
+import app.coronawarn.server.common.protocols.external.exposurenotification.TemporaryExposureKeyExport;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+class DistributableKeyBatchTest {
+
+  private static final List<DiagnosisKey> DIAGNOSIS_KEYS = Stream.of(
+      buildDiagnosisKeys(6, 50L, 20, "BE", Set.of("BE"), ReportType.CONFIRMED_TEST, -14, 1),
+      buildDiagnosisKeys(144, 51L, 20, "FR", Set.of("FR"), ReportType.SELF_REPORT, 4000, 8),
+      buildDiagnosisKeys(2654208, 52L, 20, "DE", Set.of("DE"), ReportType.RECURSIVE, 0, 5),
+      List.of(DiagnosisKey.builder()
+          .withKeyData(new byte[DiagnosisKey.KEY_DATA_LENGTH])
+          .withRollingStartIntervalNumber(6)
+          .withTransmissionRiskLevel(2)
+          .withSubmissionTimestamp(53L)
+          .withRollingPeriod(100)
+          .withCountryCode("BE")
+          .withVisitedCountries(Set.of("BE"))
+          .withReportType(ReportType.CONFIRMED_CLINICAL_DIAGNOSIS)
+          .withDaysSinceOnsetOfSymptoms(1)
+          .build()))
+      .flatMap(List::stream)
+      .collect(Collectors.toList());
+
+  @Test
+  void testBatchContainsTheDistributedAttributesOfAllKeys() {
+    DistributableKeyBatch batch = DistributableKeyBatch.of(DIAGNOSIS_KEYS);
+
+    assertThat(batch.size()).isEqualTo(DIAGNOSIS_KEYS.size());
+    for (int index = 0; index < batch.size(); index++) {
+      DiagnosisKey diagnosisKey = DIAGNOSIS_KEYS.get(index);
+      assertThat(batch.getKeyData(index)).isEqualTo(ByteBuffer.wrap(diagnosisKey.getKeyData()));
+      assertThat(batch.getRollingStartIntervalNumber(index)).isEqualTo(diagnosisKey.getRollingStartIntervalNumber());
+      assertThat(batch.getRollingPeriod(index)).isEqualTo(diagnosisKey.getRollingPeriod());
+      assertThat(batch.getTransmissionRiskLevel(index)).isEqualTo(diagnosisKey.getTransmissionRiskLevel());
+      assertThat(batch.getReportType(index)).isEqualTo(diagnosisKey.getReportType());
+      assertThat(batch.getDaysSinceOnsetOfSymptoms(index)).isEqualTo(diagnosisKey.getDaysSinceOnsetOfSymptoms());
+      assertThat(batch.getSubmissionTimestamp(index)).isEqualTo(diagnosisKey.getSubmissionTimestamp());
+    }
+  }
+
+  @Test
+  void testBuilderGrowsBeyondTheExpectedSize() {
+    DistributableKeyBatch.Builder builder = DistributableKeyBatch.builder(0);
+    DIAGNOSIS_KEYS.forEach(builder::add);
+    DistributableKeyBatch batch = builder.addAll(DistributableKeyBatch.of(DIAGNOSIS_KEYS)).build();
+
+    assertThat(batch.size()).isEqualTo(2 * DIAGNOSIS_KEYS.size());
+    assertThat(batch.getKeyData(DIAGNOSIS_KEYS.size())).isEqualTo(batch.getKeyData(0));
+    assertThat(DistributableKeyBatch.empty().isEmpty()).isTrue();
+  }
+
+  @Test
+  void testKeyDataIsReadOnly() {
+    DistributableKeyBatch batch = DistributableKeyBatch.of(DIAGNOSIS_KEYS);
+
+    assertThat(batch.getKeyData(0).isReadOnly()).isTrue();
+    assertThat(batch.getKeyData(0).remaining()).isEqualTo(DiagnosisKey.KEY_DATA_LENGTH);
+    assertThatExceptionOfType(IndexOutOfBoundsException.class).isThrownBy(() -> batch.getKeyData(batch.size()));
+  }
+
+  @Test
+  void testWrittenKeysEqualSerializedSortedTemporaryExposureKeys() throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    CodedOutputStream codedOutputStream = CodedOutputStream.newInstance(outputStream);
+    DistributableKeyBatch.of(DIAGNOSIS_KEYS).sortedByKeyData()
+        .writeTemporaryExposureKeys(codedOutputStream, TemporaryExposureKeyExport.KEYS_FIELD_NUMBER);
+    codedOutputStream.flush();
+
+    TemporaryExposureKeyExport expected = TemporaryExposureKeyExport.newBuilder()
+        .addAllKeys(DIAGNOSIS_KEYS.stream()
+            .sorted(Comparator.comparing(DiagnosisKey::getKeyData, Arrays::compareUnsigned))
+            .map(diagnosisKey -> TemporaryExposureKey.newBuilder()
+                .setKeyData(ByteString.copyFrom(diagnosisKey.getKeyData()))
+                .setTransmissionRiskLevel(diagnosisKey.getTransmissionRiskLevel())
+                .setRollingStartIntervalNumber(diagnosisKey.getRollingStartIntervalNumber())
+                .setRollingPeriod(diagnosisKey.getRollingPeriod())
+                .setReportType(diagnosisKey.getReportType())
+                .setDaysSinceOnsetOfSymptoms(diagnosisKey.getDaysSinceOnsetOfSymptoms())
+                .build())
+            .collect(Collectors.toList()))
+        .build();
+
+    assertThat(outputStream.toByteArray()).isEqualTo(expected.toByteArray());
+  }
+}
@@ -135,6 +135,26 @@ class ProdDiagnosisKeyBundlerKeyRetrievalTest {
     ));
   }
 
+  @Test
+  void testGetsOnlyDatesAndHoursOfPublishedArchives() {
+    List<DiagnosisKey> diagnosisKeys = Stream
+        .of(buildDiagnosisKeys(6, 26L, 5),
+            buildDiagnosisKeys(6, 74L, 5))
+        .flatMap(List::stream)
+        .collect(Collectors.toList());
+    bundler.setDiagnosisKeys(diagnosisKeys, LocalDateTime.of(1970, 1, 5, 0, 0));
+    LocalDate publishedDate = LocalDate.of(1970, 1, 4);
+    LocalDateTime publishedHour = bundler.getHoursWithDistributableDiagnosisKeys(publishedDate, "BE").iterator().next();
+
+    bundler.setPublishedArchives(PublishedDiagnosisKeyArchives.of(
+        List.of("version/v1/diagnosis-keys/country/BE/date/1970-01-04/hour/" + publishedHour.getHour()),
+        "version/v1/diagnosis-keys/country/", "date", "hour"));
+
+    assertThat(bundler.getDatesWithDistributableDiagnosisKeys("BE")).containsExactly(publishedDate);
+    assertThat(bundler.getHoursWithDistributableDiagnosisKeys(publishedDate, "BE")).containsExactly(publishedHour);
+    assertThat(bundler.getHoursWithDistributableDiagnosisKeys(LocalDate.of(1970, 1, 2), "BE")).isEmpty();
+  }
+
   @ParameterizedTest
   @MethodSource("createDiagnosisKeysForEpochDay0")
   void testGetDatesForEpochDay0(Collection<DiagnosisKey> diagnosisKeys) {
@@ -176,6 +196,30 @@ class ProdDiagnosisKeyBundlerKeyRetrievalTest {
     assertThat(bundler.getHoursWithDistributableDiagnosisKeys(LocalDate.of(1970, 1, 3), "BE")).isEmpty();
   }
 
+  @Test
+  void testGetHoursForInvalidCountry() {
+    bundler.setDiagnosisKeys(emptySet(), LocalDateTime.of(1970, 1, 5, 0, 0));
+    assertThat(bundler.getHoursWithDistributableDiagnosisKeys(LocalDate.of(1970, 1, 3), INVALID_COUNTRY)).isEmpty();
+  }
+
+  @Test
+  void testDiagnosisKeysForDateEqualDiagnosisKeysForItsHours() {
+    List<DiagnosisKey> diagnosisKeys = IntStream.range(0, 72).mapToObj(hour ->
+        buildDiagnosisKeys(6, LocalDateTime.of(1970, 1, 2, 0, 0).plusHours(hour), 1 + hour % 4))
+        .flatMap(List::stream)
+        .collect(Collectors.toList());
+    bundler.setDiagnosisKeys(diagnosisKeys, LocalDateTime.of(1970, 1, 5, 0, 0));
+
+    assertThat(bundler.getDatesWithDistributableDiagnosisKeys("BE")).containsExactly(
+        LocalDate.of(1970, 1, 2), LocalDate.of(1970, 1, 3), LocalDate.of(1970, 1, 4));
+    bundler.getDatesWithDistributableDiagnosisKeys("BE").forEach(date -> {
+      List<DiagnosisKey> diagnosisKeysForHours = bundler.getHoursWithDistributableDiagnosisKeys(date, "BE").stream()
+          .flatMap(hour -> bundler.getDiagnosisKeysForHour(hour, "BE").stream())
+          .collect(Collectors.toList());
+      assertThat(bundler.getDiagnosisKeysForDate(date, "BE")).containsExactlyElementsOf(diagnosisKeysForHours);
+    });
+  }
+
   @Test
   void testGetsHoursWithDistributableDiagnosisKeys() {
     List<DiagnosisKey> diagnosisKeys = Stream
@@ -319,6 +363,21 @@ class ProdDiagnosisKeyBundlerKeyRetrievalTest {
     assertThat(bundler.getAllDiagnosisKeys("EUR")).hasSize(30);
   }
 
+  @Test
+  void testEfgsKeysOfMultipleVisitedCountriesAreContainedOnceInEuPackage() {
+    List<DiagnosisKey> diagnosisKeys = Stream
+        .of(buildDiagnosisKeys(6, 50L, 10, "BE", Set.of("BE"), ReportType.CONFIRMED_TEST, 0),
+            buildDiagnosisKeys(6, 50L, 10, "FR", Set.of("FR", "DE", "NL"), ReportType.CONFIRMED_TEST, 0))
+        .flatMap(List::stream)
+        .collect(Collectors.toList());
+    bundler.setDiagnosisKeys(diagnosisKeys, LocalDateTime.of(1970, 1, 3, 3, 0));
+    assertThat(bundler.getAllDiagnosisKeys("FR")).hasSize(10);
+    assertThat(bundler.getAllDiagnosisKeys("DE")).hasSize(10);
+    assertThat(bundler.getAllDiagnosisKeys("NL")).hasSize(10);
+    assertThat(bundler.getAllDiagnosisKeys("EUR")).hasSize(20).doesNotHaveDuplicates()
+        .containsExactlyInAnyOrderElementsOf(diagnosisKeys);
+  }
+
   @Test
   void testOriginCountryKeysAndEfgsKeysWithValidDistribution() {
     List<DiagnosisKey> diagnosisKeys = Stream
@@ -0,0 +1,51 @@
+package app.coronawarn.server.services.distribution.assembly.diagnosiskeys;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class PublishedDiagnosisKeyArchivesTest {
+
+  private static final String COUNTRY_PREFIX = "version/v1/diagnosis-keys/country/";
+  private static final LocalDate DATE = LocalDate.of(2020, 10, 1);
+
+  @Test
+  void testAllIncludesEveryArchive() {
+    PublishedDiagnosisKeyArchives archives = PublishedDiagnosisKeyArchives.all();
+
+    assertThat(archives.includesDate("BE", DATE)).isTrue();
+    assertThat(archives.includesHour("BE", DATE.atTime(5, 0))).isTrue();
+  }
+
+  @Test
+  void testIncludesDatesAndHoursOfPublishedArchives() {
+    PublishedDiagnosisKeyArchives archives = of(
+        COUNTRY_PREFIX + "BE/date/2020-10-01",
+        COUNTRY_PREFIX + "EUR/date/2020-10-02/hour/5");
+
+    assertThat(archives.includesDate("BE", DATE)).isTrue();
+    assertThat(archives.includesHour("BE", DATE.atTime(5, 0))).isFalse();
+    assertThat(archives.includesDate("EUR", DATE.plusDays(1))).isTrue();
+    assertThat(archives.includesHour("EUR", DATE.plusDays(1).atTime(5, 0))).isTrue();
+    assertThat(archives.includesHour("EUR", DATE.plusDays(1).atTime(15, 0))).isFalse();
+    assertThat(archives.includesDate("EUR", DATE)).isFalse();
+    assertThat(archives.includesDate("BE", DATE.plusDays(1))).isFalse();
+  }
+
+  @Test
+  void testIgnoresObjectsOtherThanArchives() {
+    PublishedDiagnosisKeyArchives archives = of(
+        COUNTRY_PREFIX + "BE/date",
+        COUNTRY_PREFIX + "BE/date/2020-10-01/hour",
+        "version/v1/configuration/country/BE/app_config");
+
+    assertThat(archives.includesDate("BE", DATE)).isFalse();
+    assertThat(archives.includesHour("BE", DATE.atStartOfDay())).isFalse();
+  }
+
+  private static PublishedDiagnosisKeyArchives of(String... objectNames) {
+    return PublishedDiagnosisKeyArchives.of(List.of(objectNames), COUNTRY_PREFIX, "date", "hour");
+  }
+}
@@ -28,6 +28,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import app.coronawarn.server.common.persistence.domain.DiagnosisKey;
 import app.coronawarn.server.common.persistence.service.common.KeySharingPoliciesChecker;
 import app.coronawarn.server.services.distribution.assembly.component.CryptoProvider;
+import app.coronawarn.server.services.distribution.assembly.diagnosiskeys.DiagnosisKeyBundleFingerprints;
 import app.coronawarn.server.services.distribution.assembly.diagnosiskeys.DiagnosisKeyBundler;
 import app.coronawarn.server.services.distribution.assembly.diagnosiskeys.ProdDiagnosisKeyBundler;
 import app.coronawarn.server.services.distribution.assembly.structure.WritableOnDisk;
@@ -100,7 +101,7 @@ class DiagnosisKeysDateDirectoryTest {
     bundler
         .setDiagnosisKeys(diagnosisKeys, distributionTime);
     DiagnosisKeysDateDirectory dateDirectory = new DiagnosisKeysDateDirectory(bundler, cryptoProvider,
-        distributionServiceConfig);
+        distributionServiceConfig, DiagnosisKeyBundleFingerprints.disabled());
     Directory<WritableOnDisk> outputDirectory = new DirectoryOnDisk(outputFile);
     outputDirectory.addWritable(dateDirectory);
     dateDirectory.prepare(new ImmutableStack<>()
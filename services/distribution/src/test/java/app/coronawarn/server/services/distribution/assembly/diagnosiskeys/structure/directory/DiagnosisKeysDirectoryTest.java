@@ -34,6 +34,7 @@ import app.coronawarn.server.common.persistence.domain.DiagnosisKey;
 import app.coronawarn.server.common.persistence.service.common.KeySharingPoliciesChecker;
 import app.coronawarn.server.common.protocols.external.exposurenotification.ReportType;
 import app.coronawarn.server.services.distribution.assembly.component.CryptoProvider;
+import app.coronawarn.server.services.distribution.assembly.diagnosiskeys.DiagnosisKeyBundleFingerprints;
 import app.coronawarn.server.services.distribution.assembly.diagnosiskeys.DiagnosisKeyBundler;
 import app.coronawarn.server.services.distribution.assembly.diagnosiskeys.ProdDiagnosisKeyBundler;
 import app.coronawarn.server.services.distribution.assembly.structure.WritableOnDisk;
@@ -43,18 +44,27 @@ import app.coronawarn.server.services.distribution.assembly.structure.file.FileO
 import app.coronawarn.server.services.distribution.assembly.structure.util.ImmutableStack;
 import app.coronawarn.server.services.distribution.assembly.structure.util.TimeUtils;
 import app.coronawarn.server.services.distribution.config.DistributionServiceConfig;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 import org.assertj.core.util.Sets;
+import org.bouncycastle.util.encoders.Hex;
 import org.junit.Rule;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -206,14 +216,65 @@ class DiagnosisKeysDirectoryTest {
     return directories;
   }
 
+  @Test
+  void checkParallelAssemblyProducesSameOutputAsSequentialAssembly() throws Exception {
+    Collection<DiagnosisKey> diagnosisKeys =
+        buildDiagnosisKeys(6, LocalDateTime.of(1970, 1, 3, 0, 0), 5, "FR", Set.of("FR", "BE"),
+            ReportType.CONFIRMED_TEST, 1);
+    diagnosisKeys.addAll(buildDiagnosisKeys(6, LocalDateTime.of(1970, 1, 3, 0, 0), 5));
+    File parallelOutputFile = outputFolder.newFolder();
+
+    buildDirectoryStructure(diagnosisKeys, "BE", "FR");
+    ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+    try {
+      forkJoinPool.submit(() -> buildDirectoryStructure(new DirectoryOnDisk(parallelOutputFile), diagnosisKeys,
+          "BE", "FR")).get();
+    } finally {
+      forkJoinPool.shutdown();
+    }
+
+    Set<String> sequentialFiles = getFilePaths(outputFile, outputFile.getAbsolutePath());
+    assertThat(getFilePaths(parallelOutputFile, parallelOutputFile.getAbsolutePath())).isEqualTo(sequentialFiles);
+    for (String file : sequentialFiles) {
+      assertThat(readContentWithoutSignature(parallelOutputFile.toPath().resolve(file)))
+          .as(file)
+          .isEqualTo(readContentWithoutSignature(outputFile.toPath().resolve(file)));
+    }
+  }
+
+  /**
+   * Reads the given file. The ECDSA signature of archives is randomized, so the signature entry is skipped for them.
+   */
+  private Map<String, String> readContentWithoutSignature(Path file) throws IOException {
+    byte[] content = Files.readAllBytes(file);
+    Map<String, String> entries = new TreeMap<>();
+    try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(content))) {
+      for (ZipEntry entry = zipInputStream.getNextEntry(); entry != null; entry = zipInputStream.getNextEntry()) {
+        if (!entry.getName().equals(distributionServiceConfig.getSignature().getFileName())) {
+          entries.put(entry.getName(), Hex.toHexString(zipInputStream.readAllBytes()));
+        }
+      }
+    }
+    if (entries.isEmpty()) {
+      entries.put(file.getFileName().toString(), Hex.toHexString(content));
+    }
+    return entries;
+  }
+
   private void buildDirectoryStructure(Collection<DiagnosisKey> keys, String... supportedCountries) {
+    buildDirectoryStructure(parentDirectory, keys, supportedCountries);
+  }
+
+  private void buildDirectoryStructure(Directory<WritableOnDisk> parentDirectory, Collection<DiagnosisKey> keys,
+      String... supportedCountries) {
     DistributionServiceConfig serviceConfigSpy = spy(distributionServiceConfig);
     when(serviceConfigSpy.getSupportedCountries()).thenReturn(supportedCountries);
 
     DiagnosisKeyBundler bundler = new ProdDiagnosisKeyBundler(serviceConfigSpy, sharingPolicyChecker);
     bundler.setDiagnosisKeys(keys, LocalDateTime.of(1970, 1, 5, 0, 0));
 
-    Directory<WritableOnDisk> directory = new DiagnosisKeysDirectory(bundler, cryptoProvider, serviceConfigSpy);
+    Directory<WritableOnDisk> directory = new DiagnosisKeysDirectory(bundler, cryptoProvider, serviceConfigSpy,
+        DiagnosisKeyBundleFingerprints.disabled());
     parentDirectory.addWritable(directory);
     directory.prepare(new ImmutableStack<>());
     directory.write();
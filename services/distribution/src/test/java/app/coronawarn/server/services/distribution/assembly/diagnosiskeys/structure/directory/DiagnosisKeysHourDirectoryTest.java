@@ -28,6 +28,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import app.coronawarn.server.common.persistence.domain.DiagnosisKey;
 import app.coronawarn.server.common.persistence.service.common.KeySharingPoliciesChecker;
 import app.coronawarn.server.services.distribution.assembly.component.CryptoProvider;
+import app.coronawarn.server.services.distribution.assembly.diagnosiskeys.DiagnosisKeyBundleFingerprints;
 import app.coronawarn.server.services.distribution.assembly.diagnosiskeys.DiagnosisKeyBundler;
 import app.coronawarn.server.services.distribution.assembly.diagnosiskeys.ProdDiagnosisKeyBundler;
 import app.coronawarn.server.services.distribution.assembly.structure.WritableOnDisk;
@@ -36,10 +37,12 @@ import app.coronawarn.server.services.distribution.assembly.structure.directory.
 import app.coronawarn.server.services.distribution.assembly.structure.util.ImmutableStack;
 import app.coronawarn.server.services.distribution.assembly.structure.util.TimeUtils;
 import app.coronawarn.server.services.distribution.config.DistributionServiceConfig;
+import app.coronawarn.server.services.distribution.config.DistributionServiceConfig.Shard.Role;
 import java.io.File;
 import java.io.IOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
@@ -83,10 +86,15 @@ class DiagnosisKeysHourDirectoryTest {
 
   private void runHourDistribution(Collection<DiagnosisKey> diagnosisKeys, LocalDateTime distributionTime,
       LocalDate keysSubmissionDate) {
+    runHourDistribution(diagnosisKeys, distributionTime, keysSubmissionDate, DiagnosisKeyBundleFingerprints.disabled());
+  }
+
+  private void runHourDistribution(Collection<DiagnosisKey> diagnosisKeys, LocalDateTime distributionTime,
+      LocalDate keysSubmissionDate, DiagnosisKeyBundleFingerprints fingerprints) {
     DiagnosisKeyBundler bundler = new ProdDiagnosisKeyBundler(distributionServiceConfig, sharingPoliciesChecker);
     bundler.setDiagnosisKeys(diagnosisKeys, distributionTime);
     DiagnosisKeysHourDirectory hourDirectory = new DiagnosisKeysHourDirectory(bundler, cryptoProvider,
-        distributionServiceConfig);
+        distributionServiceConfig, fingerprints);
     Directory<WritableOnDisk> outputDirectory = new DirectoryOnDisk(outputFile);
     outputDirectory.addWritable(hourDirectory);
     hourDirectory.prepare(new ImmutableStack<>()
@@ -157,4 +165,39 @@ class DiagnosisKeysHourDirectoryTest {
         String.valueOf(nowUtc.minusHours(1).getHour())
     )));
   }
+
+  @Test
+  void testSkipsHoursWithUnchangedKeys() throws IOException {
+    List<DiagnosisKey> diagnosisKeys = IntStream.range(0, 5)
+        .mapToObj(currentHour -> buildDiagnosisKeys(6, LocalDateTime.of(1970, 1, 3, 0, 0).plusHours(currentHour), 5))
+        .flatMap(List::stream)
+        .collect(Collectors.toList());
+    DiagnosisKeyBundleFingerprints previousFingerprints = DiagnosisKeyBundleFingerprints.empty();
+    runHourDistribution(diagnosisKeys, LocalDateTime.of(1970, 1, 3, 4, 0),
+        LocalDate.of(1970, 1, 3), previousFingerprints);
+
+    outputFile = outputFolder.newFolder();
+    List<DiagnosisKey> changedDiagnosisKeys = new ArrayList<>(diagnosisKeys);
+    changedDiagnosisKeys.addAll(buildDiagnosisKeys(6, LocalDateTime.of(1970, 1, 3, 2, 0), 5));
+    runHourDistribution(changedDiagnosisKeys, LocalDateTime.of(1970, 1, 3, 4, 0),
+        LocalDate.of(1970, 1, 3), DiagnosisKeyBundleFingerprints.parse(previousFingerprints.toBytes()));
+    Set<String> actualFiles = getFilePaths(outputFile, outputFile.getAbsolutePath());
+    assertThat(actualFiles).isEqualTo(getExpectedHourFiles(Set.of("2")));
+  }
+
+  @Test
+  void testCoordinatorDoesNotAssembleArchives() {
+    Collection<DiagnosisKey> diagnosisKeys = IntStream.range(0, 5)
+        .mapToObj(currentHour -> buildDiagnosisKeys(6, LocalDateTime.of(1970, 1, 3, 0, 0).plusHours(currentHour), 5))
+        .flatMap(List::stream)
+        .collect(Collectors.toList());
+    distributionServiceConfig.getShard().setRole(Role.COORDINATOR);
+    try {
+      runHourDistribution(diagnosisKeys, LocalDateTime.of(1970, 1, 3, 4, 0), LocalDate.of(1970, 1, 3));
+    } finally {
+      distributionServiceConfig.getShard().setRole(Role.STANDALONE);
+    }
+    Set<String> actualFiles = getFilePaths(outputFile, outputFile.getAbsolutePath());
+    assertThat(actualFiles).isEmpty();
+  }
 }
@@ -22,18 +22,27 @@
 package app.coronawarn.server.services.distribution.assembly.diagnosiskeys.structure.file;
 
 import static app.coronawarn.server.services.distribution.common.Helpers.buildDiagnosisKeyForSubmissionTimestamp;
+import static app.coronawarn.server.services.distribution.common.Helpers.buildDiagnosisKeys;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 
+import app.coronawarn.server.common.persistence.domain.DiagnosisKey;
+import app.coronawarn.server.common.protocols.external.exposurenotification.TemporaryExposureKey;
+import app.coronawarn.server.common.protocols.external.exposurenotification.TemporaryExposureKeyExport;
 import app.coronawarn.server.services.distribution.assembly.structure.WritableOnDisk;
 import app.coronawarn.server.services.distribution.assembly.structure.directory.Directory;
 import app.coronawarn.server.services.distribution.assembly.structure.directory.DirectoryOnDisk;
 import app.coronawarn.server.services.distribution.assembly.structure.util.ImmutableStack;
 import app.coronawarn.server.services.distribution.config.DistributionServiceConfig;
 import app.coronawarn.server.services.distribution.config.DistributionServiceConfig.Signature;
+import com.google.protobuf.ByteString;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.stream.Collectors;
 import org.junit.Rule;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -92,6 +101,52 @@ class TemporaryExposureKeyExportFileTest {
     assertThat(checksum1).isNotEqualTo(checksum2);
   }
 
+  @Test
+  void testStreamedExportEqualsSerializedExport() throws IOException {
+    List<DiagnosisKey> diagnosisKeys = buildDiagnosisKeys(6, 1L, 10);
+    TemporaryExposureKeyExportFile tekExportFile = TemporaryExposureKeyExportFile.fromDiagnosisKeys(
+        diagnosisKeys, "BE", 0, 10, distributionServiceConfig);
+    tekExportFile.prepare(new ImmutableStack<>());
+
+    TemporaryExposureKeyExport expected = TemporaryExposureKeyExport.newBuilder()
+        .setStartTimestamp(0)
+        .setEndTimestamp(10)
+        .setRegion("BE")
+        .setBatchNum(1)
+        .setBatchSize(1)
+        .addSignatureInfos(distributionServiceConfig.getSignature().getSignatureInfo())
+        .addAllKeys(diagnosisKeys.stream()
+            .sorted(Comparator.comparing(DiagnosisKey::getKeyData, Arrays::compareUnsigned))
+            .map(diagnosisKey -> TemporaryExposureKey.newBuilder()
+                .setKeyData(ByteString.copyFrom(diagnosisKey.getKeyData()))
+                .setTransmissionRiskLevel(diagnosisKey.getTransmissionRiskLevel())
+                .setRollingStartIntervalNumber(diagnosisKey.getRollingStartIntervalNumber())
+                .setRollingPeriod(diagnosisKey.getRollingPeriod())
+                .setReportType(diagnosisKey.getReportType())
+                .setDaysSinceOnsetOfSymptoms(diagnosisKey.getDaysSinceOnsetOfSymptoms())
+                .build())
+            .collect(Collectors.toList()))
+        .build();
+
+    assertThat(tekExportFile.getBytesWithoutHeader()).isEqualTo(expected.toByteArray());
+    assertThat(TemporaryExposureKeyExport.parseFrom(tekExportFile.getBytesWithoutHeader())).isEqualTo(expected);
+    tekExportFile.discard();
+  }
+
+  @Test
+  void testKeysAreReleasedOncePrepared() throws IOException {
+    TemporaryExposureKeyExportFile tekExportFile = createTemporaryExposureKeyExportFile();
+    Directory<WritableOnDisk> directory = new DirectoryOnDisk(outputFolder.newFolder());
+    directory.addWritable(tekExportFile);
+    directory.prepare(new ImmutableStack<>());
+
+    byte[] spooledBytes = tekExportFile.getBytes();
+    directory.write();
+
+    assertThat(Files.readAllBytes(tekExportFile.getFileOnDisk().toPath())).isEqualTo(spooledBytes);
+    assertThatExceptionOfType(IllegalStateException.class).isThrownBy(tekExportFile::getBytes);
+  }
+
   private TemporaryExposureKeyExportFile createTemporaryExposureKeyExportFile() {
     return TemporaryExposureKeyExportFile.fromDiagnosisKeys(
         List.of(
@@ -0,0 +1,110 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App
+ * ---
+ * Copyright (C) 2020 SAP SE and all other contributors
+ * All modifications are copyright (c) 2020 Devside SRL.
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.server.services.distribution.assembly.structure.archive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import app.coronawarn.server.services.distribution.assembly.structure.WritableOnDisk;
+import app.coronawarn.server.services.distribution.assembly.structure.directory.Directory;
+import app.coronawarn.server.services.distribution.assembly.structure.directory.DirectoryOnDisk;
+import app.coronawarn.server.services.distribution.assembly.structure.file.FileOnDisk;
+import app.coronawarn.server.services.distribution.assembly.structure.util.ImmutableStack;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.rules.TemporaryFolder;
+
+class ArchiveOnDiskTest {
+
+  private static final String ARCHIVE_NAME = "index";
+
+  @Rule
+  private final TemporaryFolder outputFolder = new TemporaryFolder();
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  @BeforeEach
+  void setup() throws IOException {
+    outputFolder.create();
+    Metrics.addRegistry(meterRegistry);
+  }
+
+  @AfterEach
+  void tearDown() {
+    Metrics.removeRegistry(meterRegistry);
+  }
+
+  @Test
+  void testWritingZipsOnceAndRecordsMetrics() throws IOException {
+    Directory<WritableOnDisk> directory = new DirectoryOnDisk(outputFolder.newFolder());
+    ArchiveOnDisk archive = createArchive();
+    directory.addWritable(archive);
+    directory.prepare(new ImmutableStack<>());
+    directory.write();
+
+    assertThat(meterRegistry.get(ArchiveOnDisk.ZIP_TIMER_NAME).timer().count()).isEqualTo(1);
+    assertThat(meterRegistry.get(ArchiveOnDisk.ZIP_SIZE_SUMMARY_NAME).summary().totalAmount())
+        .isEqualTo(Files.size(archive.getFileOnDisk().toPath()));
+  }
+
+  @Test
+  void testStreamedArchiveIsByteIdenticalToZippedBytes() throws IOException {
+    File outputDirectory = outputFolder.newFolder();
+    Directory<WritableOnDisk> directory = new DirectoryOnDisk(outputDirectory);
+    directory.addWritable(createArchive());
+    directory.prepare(new ImmutableStack<>());
+    directory.write();
+
+    ArchiveOnDisk archive = createArchive();
+    archive.prepare(new ImmutableStack<>());
+
+    assertThat(Files.readAllBytes(outputDirectory.toPath().resolve(ARCHIVE_NAME))).isEqualTo(archive.getBytes());
+  }
+
+  @Test
+  void testWrittenArchiveIsReusedInsteadOfZippedAgain() throws IOException {
+    Directory<WritableOnDisk> directory = new DirectoryOnDisk(outputFolder.newFolder());
+    ArchiveOnDisk archive = createArchive();
+    directory.addWritable(archive);
+    directory.prepare(new ImmutableStack<>());
+    directory.write();
+
+    assertThat(archive.getBytes()).isEqualTo(Files.readAllBytes(archive.getFileOnDisk().toPath()));
+    assertThat(meterRegistry.get(ArchiveOnDisk.ZIP_TIMER_NAME).timer().count()).isEqualTo(1);
+
+    archive.addWritable(new FileOnDisk("other.bin", new byte[]{4, 5, 6}));
+    assertThat(archive.getBytes()).isNotEqualTo(Files.readAllBytes(archive.getFileOnDisk().toPath()));
+    assertThat(meterRegistry.get(ArchiveOnDisk.ZIP_TIMER_NAME).timer().count()).isEqualTo(2);
+  }
+
+  private ArchiveOnDisk createArchive() {
+    ArchiveOnDisk archive = new ArchiveOnDisk(ARCHIVE_NAME);
+    archive.addWritable(new FileOnDisk("export.bin", new byte[]{1, 2, 3}));
+    return archive;
+  }
+}
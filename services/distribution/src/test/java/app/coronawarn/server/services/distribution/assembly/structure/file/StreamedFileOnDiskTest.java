@@ -0,0 +1,69 @@
+package app.coronawarn.server.services.distribution.assembly.structure.file;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import app.coronawarn.server.services.distribution.assembly.structure.util.ImmutableStack;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+class StreamedFileOnDiskTest {
+
+  private static final byte[] CONTENT = "Hello World".getBytes();
+
+  @Test
+  void testPrepareSerializesContentOnce() {
+    CountingFile file = new CountingFile("file");
+    ByteArrayOutputStream firstObserver = new ByteArrayOutputStream();
+    ByteArrayOutputStream secondObserver = new ByteArrayOutputStream();
+
+    file.addContentObserver(firstObserver);
+    file.prepare(new ImmutableStack<>());
+    file.addContentObserver(secondObserver);
+    file.prepare(new ImmutableStack<>());
+    file.discard();
+
+    assertThat(file.serializations).isEqualTo(1);
+    assertThat(firstObserver.toByteArray()).isEqualTo(CONTENT);
+    assertThat(secondObserver.toByteArray()).isEqualTo(CONTENT);
+  }
+
+  @Test
+  void testPrepareDeletesSpoolFileOnFailure() throws IOException {
+    String name = "failing-" + UUID.randomUUID();
+    StreamedFileOnDisk file = new StreamedFileOnDisk(name) {
+      @Override
+      protected void writeContent(OutputStream outputStream) throws IOException {
+        outputStream.write(CONTENT);
+        throw new IOException("Serialization failed");
+      }
+    };
+
+    assertThatThrownBy(() -> file.prepare(new ImmutableStack<>())).isInstanceOf(UncheckedIOException.class);
+    try (Stream<Path> spoolFiles = Files.list(Path.of(System.getProperty("java.io.tmpdir")))) {
+      assertThat(spoolFiles.filter(path -> path.getFileName().toString().startsWith(name))).isEmpty();
+    }
+  }
+
+  private static class CountingFile extends StreamedFileOnDisk {
+
+    private int serializations;
+
+    CountingFile(String name) {
+      super(name);
+    }
+
+    @Override
+    protected void writeContent(OutputStream outputStream) throws IOException {
+      serializations++;
+      outputStream.write(CONTENT);
+    }
+  }
+}
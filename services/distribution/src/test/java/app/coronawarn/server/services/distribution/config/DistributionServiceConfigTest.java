@@ -61,7 +61,7 @@ class DistributionServiceConfigTest {
   class SupportedCountriesTest {
 
     @ParameterizedTest
-    @ValueSource(strings = {"DE,FRE", "DE, ", " "})
+    @ValueSource(strings = {"DE,FRE", "DE, ", " ", "DE,TR"})
     void failsOnInvalidSupportedCountries(String supportedCountries) {
       String[] supportedCountriesList = supportedCountries.split(",");
       when(distributionServiceConfig.getSupportedCountries()).thenReturn(supportedCountriesList);
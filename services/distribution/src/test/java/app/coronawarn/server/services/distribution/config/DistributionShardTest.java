@@ -0,0 +1,104 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App
+ * ---
+ * Copyright (C) 2020 SAP SE and all other contributors
+ * All modifications are copyright (c) 2020 Devside SRL.
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.server.services.distribution.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import app.coronawarn.server.services.distribution.config.DistributionServiceConfig.Shard;
+import app.coronawarn.server.services.distribution.config.DistributionServiceConfig.Shard.Role;
+import app.coronawarn.server.services.distribution.objectstore.publish.LocalFile;
+import java.time.LocalDate;
+import org.junit.jupiter.api.Test;
+
+class DistributionShardTest {
+
+  private static final LocalDate DATE = LocalDate.of(2021, 5, 1);
+
+  @Test
+  void testStandaloneIncludesEverything() {
+    DistributionShard shard = new DistributionShard(configFor(Role.STANDALONE, null, 1, 0));
+
+    assertThat(shard.includesArchive("BE", DATE)).isTrue();
+    assertThat(shard.includesArchive("EUR", DATE.plusDays(1))).isTrue();
+    assertThat(shard.includesFile(fileWithKeyFlag(false))).isTrue();
+    assertThat(shard.getName()).isEmpty();
+  }
+
+  @Test
+  void testMissingShardConfigurationIsStandalone() {
+    DistributionShard shard = new DistributionShard(new DistributionServiceConfig());
+
+    assertThat(shard.isWorker()).isFalse();
+    assertThat(shard.isCoordinator()).isFalse();
+    assertThat(shard.includesArchive("BE", DATE)).isTrue();
+  }
+
+  @Test
+  void testWorkerIncludesOwnCountriesAndDatesOnly() {
+    DistributionShard shard = new DistributionShard(configFor(Role.WORKER, new String[]{"EUR"}, 2, 1));
+    boolean isOddEpochDay = DATE.toEpochDay() % 2 == 1;
+
+    assertThat(shard.includesArchive("EUR", DATE)).isEqualTo(isOddEpochDay);
+    assertThat(shard.includesArchive("EUR", DATE.plusDays(1))).isEqualTo(!isOddEpochDay);
+    assertThat(shard.includesArchive("BE", DATE)).isFalse();
+    assertThat(shard.includesArchive("BE", DATE.plusDays(1))).isFalse();
+    assertThat(shard.getName()).isEqualTo("EUR-1-of-2");
+  }
+
+  @Test
+  void testWorkerPublishesKeyFilesOnly() {
+    DistributionShard shard = new DistributionShard(configFor(Role.WORKER, new String[0], 1, 0));
+
+    assertThat(shard.includesArchive("BE", DATE)).isTrue();
+    assertThat(shard.includesFile(fileWithKeyFlag(true))).isTrue();
+    assertThat(shard.includesFile(fileWithKeyFlag(false))).isFalse();
+    assertThat(shard.getName()).isEqualTo("all-0-of-1");
+  }
+
+  @Test
+  void testCoordinatorIncludesNoArchivesButPublishesAllFiles() {
+    DistributionShard shard = new DistributionShard(configFor(Role.COORDINATOR, null, 1, 0));
+
+    assertThat(shard.includesArchive("BE", DATE)).isFalse();
+    assertThat(shard.includesFile(fileWithKeyFlag(false))).isTrue();
+  }
+
+  private static DistributionServiceConfig configFor(Role role, String[] countries, int dateShardCount,
+      int dateShardIndex) {
+    Shard shard = new Shard();
+    shard.setRole(role);
+    shard.setCountries(countries);
+    shard.setDateShardCount(dateShardCount);
+    shard.setDateShardIndex(dateShardIndex);
+    DistributionServiceConfig config = new DistributionServiceConfig();
+    config.setShard(shard);
+    return config;
+  }
+
+  private static LocalFile fileWithKeyFlag(boolean isKeyFile) {
+    LocalFile file = mock(LocalFile.class);
+    when(file.isKeyFile()).thenReturn(isKeyFile);
+    return file;
+  }
+}
@@ -0,0 +1,100 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App
+ * ---
+ * Copyright (C) 2020 SAP SE and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.server.services.distribution.objectstore;
+
+import static app.coronawarn.server.services.distribution.common.Helpers.buildDiagnosisKeys;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import app.coronawarn.server.common.persistence.domain.DiagnosisKey;
+import app.coronawarn.server.services.distribution.assembly.diagnosiskeys.DiagnosisKeyBundleFingerprints;
+import app.coronawarn.server.services.distribution.assembly.diagnosiskeys.DistributableKeyBatch;
+import app.coronawarn.server.services.distribution.config.DistributionServiceConfig;
+import app.coronawarn.server.services.distribution.config.DistributionServiceConfig.ObjectStore;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class DiagnosisKeyBundleFingerprintStoreTest {
+
+  private static final String FINGERPRINTS_KEY = "bundle-fingerprints";
+  private static final LocalDateTime HOUR = LocalDateTime.of(1970, 1, 3, 0, 0);
+
+  private final List<DiagnosisKey> keys = buildDiagnosisKeys(6, HOUR, 5);
+  private ObjectStoreAccess objectStoreAccess;
+  private DistributionServiceConfig distributionServiceConfig;
+  private ObjectStore objectStore;
+
+  @BeforeEach
+  void setup() {
+    objectStoreAccess = mock(ObjectStoreAccess.class);
+    distributionServiceConfig = mock(DistributionServiceConfig.class);
+    objectStore = new ObjectStore();
+    objectStore.setBundleFingerprintsKey(FINGERPRINTS_KEY);
+    objectStore.setForceUpdateKeyfiles(false);
+    when(distributionServiceConfig.getObjectStore()).thenReturn(objectStore);
+    when(distributionServiceConfig.getIncrementalDistribution()).thenReturn(true);
+
+    DiagnosisKeyBundleFingerprints previous = DiagnosisKeyBundleFingerprints.empty();
+    previous.isUnchanged("BE", HOUR, DistributableKeyBatch.of(keys));
+    when(objectStoreAccess.getObjectContent(FINGERPRINTS_KEY)).thenReturn(Optional.of(previous.toBytes()));
+  }
+
+  @Test
+  void unchangedBundlesAreSkippedWithIncrementalDistribution() {
+    DiagnosisKeyBundleFingerprints fingerprints =
+        new DiagnosisKeyBundleFingerprintStore(objectStoreAccess, distributionServiceConfig).load();
+
+    assertThat(fingerprints.isUnchanged("BE", HOUR, DistributableKeyBatch.of(keys))).isTrue();
+  }
+
+  @Test
+  void previousFingerprintsAreIgnoredIfKeyfilesAreForceUpdated() {
+    objectStore.setForceUpdateKeyfiles(true);
+    DiagnosisKeyBundleFingerprintStore store =
+        new DiagnosisKeyBundleFingerprintStore(objectStoreAccess, distributionServiceConfig);
+
+    assertThat(store.load().isUnchanged("BE", HOUR, DistributableKeyBatch.of(keys))).isFalse();
+    store.save();
+
+    ArgumentCaptor<byte[]> savedFingerprints = ArgumentCaptor.forClass(byte[].class);
+    verify(objectStoreAccess).putObject(eq(FINGERPRINTS_KEY), savedFingerprints.capture());
+    assertThat(DiagnosisKeyBundleFingerprints.parse(savedFingerprints.getValue())
+        .isUnchanged("BE", HOUR, DistributableKeyBatch.of(keys))).isTrue();
+  }
+
+  @Test
+  void allBundlesAreAssembledWithoutIncrementalDistribution() {
+    when(distributionServiceConfig.getIncrementalDistribution()).thenReturn(false);
+
+    DiagnosisKeyBundleFingerprints fingerprints =
+        new DiagnosisKeyBundleFingerprintStore(objectStoreAccess, distributionServiceConfig).load();
+
+    assertThat(fingerprints.isEnabled()).isFalse();
+    assertThat(fingerprints.isUnchanged("BE", HOUR, DistributableKeyBatch.of(keys))).isFalse();
+  }
+}
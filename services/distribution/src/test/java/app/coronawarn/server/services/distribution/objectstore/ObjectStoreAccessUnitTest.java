@@ -27,6 +27,7 @@ import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -36,10 +37,13 @@ import app.coronawarn.server.services.distribution.objectstore.client.ObjectStor
 import app.coronawarn.server.services.distribution.objectstore.client.ObjectStoreClient.HeaderKey;
 import app.coronawarn.server.services.distribution.objectstore.client.S3Object;
 import app.coronawarn.server.services.distribution.objectstore.publish.LocalFile;
+import app.coronawarn.server.services.distribution.objectstore.publish.PublishedManifest;
 import java.io.File;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -57,6 +61,7 @@ import org.springframework.test.context.junit.jupiter.SpringExtension;
 class ObjectStoreAccessUnitTest {
 
   private static final String EXP_S3_KEY = "fooS3Key";
+  private static final String MANIFEST_KEY = "published-manifest";
 
   private final DistributionServiceConfig distributionServiceConfig;
   private final String expBucketName;
@@ -80,6 +85,18 @@ class ObjectStoreAccessUnitTest {
     this.testLocalFile = setUpLocalFileMock();
   }
 
+  @AfterEach
+  public void resetPublishedManifestKey() {
+    distributionServiceConfig.getObjectStore().setPublishedManifestKey(null);
+  }
+
+  private ObjectStoreAccess createObjectStoreAccessWithPublishedManifest(List<S3Object> manifestEntries) {
+    distributionServiceConfig.getObjectStore().setPublishedManifestKey(MANIFEST_KEY);
+    when(objectStoreClient.getObjectContent(expBucketName, MANIFEST_KEY))
+        .thenReturn(Optional.of(PublishedManifest.of(manifestEntries).toBytes()));
+    return new ObjectStoreAccess(distributionServiceConfig, objectStoreClient);
+  }
+
   private LocalFile setUpLocalFileMock() {
     var testLocalFile = mock(LocalFile.class);
     expPath = mock(Path.class);
@@ -155,4 +172,49 @@ class ObjectStoreAccessUnitTest {
 
     verify(objectStoreClient, times(1)).removeObjects(eq(expBucketName), eq(filesToDeleteObjectName));
   }
+
+  @Test
+  void getObjectsWithPrefixPassesPublishedManifestToClient() {
+    var manifestEntry = new S3Object("version/file", "hash", "etag");
+    var objectStoreAccess = createObjectStoreAccessWithPublishedManifest(List.of(manifestEntry));
+    when(objectStoreClient.getObjects(eq(expBucketName), eq("version"), any())).thenReturn(List.of(manifestEntry));
+
+    objectStoreAccess.getObjectsWithPrefix("version");
+    objectStoreAccess.getObjectsWithPrefix("version");
+
+    verify(objectStoreClient, times(1)).getObjectContent(expBucketName, MANIFEST_KEY);
+    verify(objectStoreClient, times(2))
+        .getObjects(expBucketName, "version", Map.of(manifestEntry.getObjectName(), manifestEntry));
+    verify(objectStoreClient, never()).getObjects(any(), any());
+  }
+
+  @Test
+  void updatePublishedManifestContainsUploadedAndRemainingObjects() {
+    var unchanged = new S3Object("version/unchanged", "hash1", "etag1");
+    var deleted = new S3Object("version/deleted", "hash2", "etag2");
+    var objectStoreAccess = createObjectStoreAccessWithPublishedManifest(List.of(unchanged, deleted));
+    when(testLocalFile.getChecksum()).thenReturn("hash3");
+    when(objectStoreClient.getObjects(eq(expBucketName), eq("version"), any())).thenAnswer(invocation -> {
+      Map<String, S3Object> known = invocation.getArgument(2);
+      assertThat(known).containsKeys(unchanged.getObjectName(), deleted.getObjectName(), EXP_S3_KEY);
+      return List.of(unchanged, new S3Object(EXP_S3_KEY, known.get(EXP_S3_KEY).getCwaHash(), "etag3"));
+    });
+
+    objectStoreAccess.putObject(testLocalFile);
+    objectStoreAccess.updatePublishedManifest("version");
+
+    ArgumentCaptor<byte[]> content = ArgumentCaptor.forClass(byte[].class);
+    verify(objectStoreClient, times(1)).putObject(eq(expBucketName), eq(MANIFEST_KEY), content.capture(), any());
+    assertThat(PublishedManifest.parse(content.getValue()).getEntries())
+        .containsOnlyKeys(unchanged.getObjectName(), EXP_S3_KEY)
+        .containsEntry(EXP_S3_KEY, new S3Object(EXP_S3_KEY, "hash3"));
+  }
+
+  @Test
+  void updatePublishedManifestDoesNothingIfDisabled() {
+    objectStoreAccess.updatePublishedManifest("version");
+
+    verify(objectStoreClient, never()).getObjectContent(any(), any());
+    verify(objectStoreClient, never()).putObject(any(), any(), any(byte[].class), any());
+  }
 }
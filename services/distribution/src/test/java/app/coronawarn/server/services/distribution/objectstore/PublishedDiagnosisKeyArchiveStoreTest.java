@@ -0,0 +1,69 @@
+package app.coronawarn.server.services.distribution.objectstore;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import app.coronawarn.server.services.distribution.assembly.diagnosiskeys.PublishedDiagnosisKeyArchives;
+import app.coronawarn.server.services.distribution.config.DistributionServiceConfig;
+import app.coronawarn.server.services.distribution.config.DistributionServiceConfig.Api;
+import app.coronawarn.server.services.distribution.config.DistributionServiceConfig.Shard;
+import app.coronawarn.server.services.distribution.config.DistributionServiceConfig.Shard.Role;
+import app.coronawarn.server.services.distribution.objectstore.client.S3Object;
+import java.time.LocalDate;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PublishedDiagnosisKeyArchiveStoreTest {
+
+  private static final String COUNTRY_PREFIX = "version/v1/diagnosis-keys/country/";
+  private static final LocalDate DATE = LocalDate.of(2020, 10, 1);
+
+  private ObjectStoreAccess objectStoreAccess;
+  private DistributionServiceConfig distributionServiceConfig;
+
+  @BeforeEach
+  void setup() {
+    objectStoreAccess = mock(ObjectStoreAccess.class);
+    distributionServiceConfig = mock(DistributionServiceConfig.class);
+    Api api = new Api();
+    api.setVersionPath("version");
+    api.setVersionV1("v1");
+    api.setDiagnosisKeysPath("diagnosis-keys");
+    api.setCountryPath("country");
+    api.setDatePath("date");
+    api.setHourPath("hour");
+    when(distributionServiceConfig.getApi()).thenReturn(api);
+  }
+
+  @Test
+  void coordinatorIndexesOnlyArchivesOnObjectStore() {
+    Shard shard = new Shard();
+    shard.setRole(Role.COORDINATOR);
+    shard.setDateShardCount(1);
+    shard.setDateShardIndex(0);
+    when(distributionServiceConfig.getShard()).thenReturn(shard);
+    when(objectStoreAccess.getObjectsWithPrefix(COUNTRY_PREFIX)).thenReturn(List.of(
+        new S3Object(COUNTRY_PREFIX + "BE/date/2020-10-01"),
+        new S3Object(COUNTRY_PREFIX + "BE/date/2020-10-01/hour/3")));
+
+    PublishedDiagnosisKeyArchives archives =
+        new PublishedDiagnosisKeyArchiveStore(objectStoreAccess, distributionServiceConfig).load();
+
+    assertThat(archives.includesDate("BE", DATE)).isTrue();
+    assertThat(archives.includesHour("BE", DATE.atTime(3, 0))).isTrue();
+    assertThat(archives.includesHour("BE", DATE.atTime(4, 0))).isFalse();
+    assertThat(archives.includesDate("BE", DATE.plusDays(1))).isFalse();
+  }
+
+  @Test
+  void standaloneProcessIndexesAllArchives() {
+    PublishedDiagnosisKeyArchives archives =
+        new PublishedDiagnosisKeyArchiveStore(objectStoreAccess, distributionServiceConfig).load();
+
+    assertThat(archives.includesDate("BE", DATE)).isTrue();
+    verifyNoInteractions(objectStoreAccess);
+  }
+}
@@ -20,12 +20,15 @@
 
 package app.coronawarn.server.services.distribution.objectstore;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.util.Lists.emptyList;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -33,17 +36,24 @@ import static org.mockito.Mockito.when;
 
 import app.coronawarn.server.services.distribution.config.DistributionServiceConfig;
 import app.coronawarn.server.services.distribution.config.DistributionServiceConfig.Api;
+import app.coronawarn.server.services.distribution.config.DistributionServiceConfig.Shard.Role;
 import app.coronawarn.server.services.distribution.objectstore.client.ObjectStoreOperationFailedException;
 import app.coronawarn.server.services.distribution.objectstore.client.S3Object;
+import app.coronawarn.server.services.distribution.objectstore.publish.LocalFile;
+import app.coronawarn.server.services.distribution.objectstore.publish.LocalGenericFile;
+import app.coronawarn.server.services.distribution.objectstore.publish.LocalIndexFile;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.test.context.ConfigDataApplicationContextInitializer;
@@ -99,6 +109,60 @@ class S3PublisherTest {
     verify(objectStoreAccess, times(3)).putObject(any());
   }
 
+  @Test
+  void publishedManifestGetsUpdatedAfterUpload() throws IOException {
+    when(objectStoreAccess.getObjectsWithPrefix("version")).thenReturn(emptyList());
+
+    s3Publisher.publish(publishingPath);
+
+    InOrder inOrder = inOrder(objectStoreAccess);
+    inOrder.verify(objectStoreAccess, times(3)).putObject(any());
+    inOrder.verify(objectStoreAccess, times(1)).updatePublishedManifest("version");
+  }
+
+  @Test
+  void workerPublishesKeyFilesOnlyAndLeavesPublishedManifestUntouched() throws IOException {
+    when(objectStoreAccess.getObjectsWithPrefix("version")).thenReturn(emptyList());
+    distributionServiceConfig.getShard().setRole(Role.WORKER);
+    try {
+      s3Publisher = new S3Publisher(objectStoreAccess, failedObjectStoreOperationsCounter, executor,
+          distributionServiceConfig);
+
+      s3Publisher.publish(publishingPath);
+    } finally {
+      distributionServiceConfig.getShard().setRole(Role.STANDALONE);
+    }
+
+    verify(objectStoreAccess, never()).putObject(any());
+    verify(objectStoreAccess, never()).updatePublishedManifest(any());
+  }
+
+  @Test
+  void nonBlockingUploadsDoNotUseTheExecutor() throws IOException {
+    when(objectStoreAccess.getObjectsWithPrefix("version")).thenReturn(emptyList());
+    when(objectStoreAccess.isNonBlocking()).thenReturn(true);
+    when(objectStoreAccess.putObjectAsync(any())).thenReturn(CompletableFuture.completedFuture(null));
+
+    s3Publisher.publish(publishingPath);
+
+    verify(objectStoreAccess, times(3)).putObjectAsync(any());
+    verify(objectStoreAccess, never()).putObject(any());
+    verify(executor, never()).submit(any(Runnable.class));
+  }
+
+  @Test
+  void failedNonBlockingUploadsAreCounted() throws IOException {
+    when(objectStoreAccess.getObjectsWithPrefix("version")).thenReturn(emptyList());
+    when(objectStoreAccess.isNonBlocking()).thenReturn(true);
+    when(objectStoreAccess.putObjectAsync(any()))
+        .thenReturn(CompletableFuture.failedFuture(new ObjectStoreOperationFailedException("failed")));
+
+    s3Publisher.publish(publishingPath);
+
+    verify(failedObjectStoreOperationsCounter, times(3))
+        .incrementAndCheckThreshold(any(ObjectStoreOperationFailedException.class));
+  }
+
   @Test
   void noUploadsDueToAlreadyExist() throws IOException {
     when(objectStoreAccess.getObjectsWithPrefix("version")).thenReturn(allExistAllSame());
@@ -179,6 +243,29 @@ class S3PublisherTest {
     verify(executor, times(1)).shutdown();
   }
 
+  @Test
+  void indexesArePublishedAfterTheFilesTheyReferTo() {
+    Path root = Path.of("/root");
+    LocalFile rootIndex = new LocalIndexFile(root.resolve("version/index"), root);
+    LocalFile dateIndex = new LocalIndexFile(root.resolve("version/v1/diagnosis-keys/country/BE/date/index"), root);
+    LocalFile hourIndex = new LocalIndexFile(
+        root.resolve("version/v1/diagnosis-keys/country/BE/date/2020-06-11/hour/index"), root);
+    LocalFile hourArchive = new LocalIndexFile(
+        root.resolve("version/v1/diagnosis-keys/country/BE/date/2020-06-11/hour/23/index"), root);
+    LocalFile dateArchive = new LocalIndexFile(
+        root.resolve("version/v1/diagnosis-keys/country/BE/date/2020-06-11/index"), root);
+    LocalFile appConfig = new LocalGenericFile(root.resolve("version/v1/configuration/country/BE/app_config"), root);
+
+    Collection<List<LocalFile>> stages = S3Publisher.groupByPublicationStage(
+        List.of(rootIndex, hourArchive, dateIndex, appConfig, hourIndex, dateArchive));
+
+    assertThat(stages).containsExactly(
+        List.of(hourArchive, appConfig, dateArchive),
+        List.of(hourIndex),
+        List.of(dateIndex),
+        List.of(rootIndex));
+  }
+
   private List<S3Object> otherExisting() {
     return List.of(
         new S3Object("some_old_file.txt", "1fb772815c837b6294d9f163db89e962"),
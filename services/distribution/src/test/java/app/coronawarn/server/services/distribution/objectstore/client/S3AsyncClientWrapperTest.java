@@ -0,0 +1,219 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App
+ * ---
+ * Copyright (C) 2020 SAP SE and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.server.services.distribution.objectstore.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Error;
+
+class S3AsyncClientWrapperTest {
+
+  private static final String BUCKET = "myBucket";
+  private static final String NAME = "object key";
+  private static final int RETRY_ATTEMPTS = 3;
+  private static final int MAX_CONCURRENT_REQUESTS = 2;
+
+  private S3AsyncClient s3AsyncClient;
+  private S3AsyncClientWrapper s3AsyncClientWrapper;
+
+  @BeforeEach
+  void setUp() {
+    s3AsyncClient = mock(S3AsyncClient.class);
+    s3AsyncClientWrapper = new S3AsyncClientWrapper(s3AsyncClient, RETRY_ATTEMPTS, 1, MAX_CONCURRENT_REQUESTS);
+  }
+
+  @Test
+  void testBucketExists() {
+    when(s3AsyncClient.listObjectsV2(any(ListObjectsV2Request.class)))
+        .thenReturn(CompletableFuture.completedFuture(ListObjectsV2Response.builder().build()));
+    assertThat(s3AsyncClientWrapper.bucketExists(BUCKET)).isTrue();
+  }
+
+  @Test
+  void testBucketDoesNotExist() {
+    when(s3AsyncClient.listObjectsV2(any(ListObjectsV2Request.class)))
+        .thenReturn(CompletableFuture.failedFuture(NoSuchBucketException.builder().build()));
+    assertThat(s3AsyncClientWrapper.bucketExists(BUCKET)).isFalse();
+  }
+
+  @Test
+  void testGetObjectsFollowsContinuationTokenAndFetchesUnknownCwaHashes() {
+    when(s3AsyncClient.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(
+        CompletableFuture.completedFuture(ListObjectsV2Response.builder()
+            .contents(s3Object("known", "etag1"), s3Object("changed", "etag2"))
+            .isTruncated(true).nextContinuationToken("token").build()),
+        CompletableFuture.completedFuture(ListObjectsV2Response.builder()
+            .contents(s3Object("new", "etag3"))
+            .isTruncated(false).build()));
+    when(s3AsyncClient.headObject(any(HeadObjectRequest.class))).thenReturn(CompletableFuture.completedFuture(
+        HeadObjectResponse.builder().metadata(Map.of("cwa-hash", "fetched")).build()));
+
+    List<S3Object> s3Objects = s3AsyncClientWrapper.getObjects(BUCKET, "prefix", Map.of(
+        "known", new S3Object("known", "hash", "etag1"),
+        "changed", new S3Object("changed", "hash", "etag0")));
+
+    assertThat(s3Objects).containsExactly(
+        new S3Object("known", "hash", "etag1"),
+        new S3Object("changed", "fetched", "etag2"),
+        new S3Object("new", "fetched", "etag3"));
+    verify(s3AsyncClient, times(2)).headObject(any(HeadObjectRequest.class));
+  }
+
+  @Test
+  void testGetObjectsLimitsConcurrentHeadRequests() {
+    when(s3AsyncClient.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(
+        CompletableFuture.completedFuture(ListObjectsV2Response.builder()
+            .contents(IntStream.range(0, 5).mapToObj(i -> s3Object("key" + i, "etag" + i)).collect(Collectors.toList()))
+            .isTruncated(false).build()));
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxInFlight = new AtomicInteger();
+    when(s3AsyncClient.headObject(any(HeadObjectRequest.class))).thenAnswer(invocation -> {
+      maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+      return CompletableFuture.supplyAsync(() -> {
+        inFlight.decrementAndGet();
+        return HeadObjectResponse.builder().metadata(Map.of("cwa-hash", "fetched")).build();
+      }, CompletableFuture.delayedExecutor(10, TimeUnit.MILLISECONDS));
+    });
+
+    assertThat(s3AsyncClientWrapper.getObjects(BUCKET, "prefix")).hasSize(5);
+    assertThat(maxInFlight).hasValue(MAX_CONCURRENT_REQUESTS);
+    verify(s3AsyncClient, times(5)).headObject(any(HeadObjectRequest.class));
+  }
+
+  @Test
+  void testGetObjectsRetriesFailedHeadRequestWithoutListingAgain() {
+    when(s3AsyncClient.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(
+        CompletableFuture.completedFuture(ListObjectsV2Response.builder()
+            .contents(s3Object("first", "etag1"), s3Object("second", "etag2"))
+            .isTruncated(false).build()));
+    when(s3AsyncClient.headObject(any(HeadObjectRequest.class))).thenReturn(
+        CompletableFuture.failedFuture(SdkClientException.create("failed")),
+        CompletableFuture.completedFuture(HeadObjectResponse.builder().metadata(Map.of("cwa-hash", "h")).build()));
+
+    assertThat(s3AsyncClientWrapper.getObjects(BUCKET, "prefix")).containsExactly(
+        new S3Object("first", "h", "etag1"),
+        new S3Object("second", "h", "etag2"));
+    verify(s3AsyncClient, times(1)).listObjectsV2(any(ListObjectsV2Request.class));
+    verify(s3AsyncClient, times(3)).headObject(any(HeadObjectRequest.class));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void testGetObjectContentIsEmptyIfObjectDoesNotExist() {
+    when(s3AsyncClient.getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class)))
+        .thenReturn(CompletableFuture.failedFuture(NoSuchKeyException.builder().build()));
+
+    assertThat(s3AsyncClientWrapper.getObjectContent(BUCKET, NAME)).isEmpty();
+    verify(s3AsyncClient, times(1)).getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void testGetObjectContent() {
+    ResponseBytes<GetObjectResponse> content =
+        ResponseBytes.fromByteArray(GetObjectResponse.builder().build(), new byte[]{1, 2});
+    when(s3AsyncClient.getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class)))
+        .thenReturn(CompletableFuture.completedFuture(content));
+
+    Optional<byte[]> result = s3AsyncClientWrapper.getObjectContent(BUCKET, NAME);
+
+    assertThat(result).hasValueSatisfying(bytes -> assertThat(bytes).containsExactly(1, 2));
+  }
+
+  @Test
+  void testPutObjectAsyncRetriesFailedUploads() {
+    when(s3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class))).thenReturn(
+        CompletableFuture.failedFuture(SdkClientException.create("failed")),
+        CompletableFuture.completedFuture(PutObjectResponse.builder().build()));
+
+    s3AsyncClientWrapper.putObjectAsync(BUCKET, NAME, Path.of(""), Map.of()).join();
+
+    verify(s3AsyncClient, times(2)).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
+  }
+
+  @Test
+  void testPutObjectThrowsAfterAllRetries() {
+    when(s3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+        .thenReturn(CompletableFuture.failedFuture(SdkClientException.create("failed")));
+
+    assertThatExceptionOfType(ObjectStoreOperationFailedException.class)
+        .isThrownBy(() -> s3AsyncClientWrapper.putObject(BUCKET, NAME, Path.of(""), Map.of()));
+
+    verify(s3AsyncClient, times(RETRY_ATTEMPTS)).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
+  }
+
+  @Test
+  void testRemoveObjectsThrowsOnDeletionErrors() {
+    when(s3AsyncClient.deleteObjects(any(DeleteObjectsRequest.class))).thenReturn(CompletableFuture.completedFuture(
+        DeleteObjectsResponse.builder().errors(S3Error.builder().build()).build()));
+
+    assertThatExceptionOfType(ObjectStoreOperationFailedException.class)
+        .isThrownBy(() -> s3AsyncClientWrapper.removeObjects(BUCKET, List.of(NAME)));
+
+    verify(s3AsyncClient, times(RETRY_ATTEMPTS)).deleteObjects(any(DeleteObjectsRequest.class));
+  }
+
+  @Test
+  void testRemoveObjectsDoesNothingForNoObjects() {
+    s3AsyncClientWrapper.removeObjects(BUCKET, List.of());
+
+    verify(s3AsyncClient, never()).deleteObjects(any(DeleteObjectsRequest.class));
+  }
+
+  private static software.amazon.awssdk.services.s3.model.S3Object s3Object(String key, String etag) {
+    return software.amazon.awssdk.services.s3.model.S3Object.builder().key(key).eTag(etag).build();
+  }
+}
@@ -27,6 +27,7 @@ import static org.assertj.core.util.Maps.newHashMap;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -34,8 +35,12 @@ import static org.mockito.Mockito.when;
 
 import app.coronawarn.server.services.distribution.config.DistributionServiceConfig;
 import app.coronawarn.server.services.distribution.objectstore.client.ObjectStoreClient.HeaderKey;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.assertj.core.util.Lists;
@@ -58,22 +63,34 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.retry.annotation.EnableRetry;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import software.amazon.awssdk.core.ResponseBytes;
 import software.amazon.awssdk.core.exception.SdkClientException;
 import software.amazon.awssdk.core.exception.SdkException;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
 import software.amazon.awssdk.services.s3.model.Delete;
 import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
 import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
 import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
 import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.model.S3Error;
 import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
 import software.amazon.awssdk.utils.builder.SdkBuilder;
 
 @ExtendWith(SpringExtension.class)
@@ -208,6 +225,54 @@ class S3ClientWrapperTest {
     verify(s3Client, times(configuredNumberOfRetries)).listObjectsV2(any(ListObjectsV2Request.class));
   }
 
+  @Test
+  void getObjectsReusesKnownCwaHashIfEtagMatches() {
+    when(s3Client.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(buildListObjectsResponse("objName", "e1"));
+    var knownObjects = Map.of("objName", new S3Object("objName", "knownHash", "e1"));
+
+    List<S3Object> actResult = s3ClientWrapper.getObjects(VALID_BUCKET_NAME, VALID_PREFIX, knownObjects);
+
+    assertThat(actResult).containsExactly(new S3Object("objName", "knownHash"));
+    verify(s3Client, never()).headObject(any(HeadObjectRequest.class));
+  }
+
+  @Test
+  void getObjectsFetchesCwaHashIfEtagDiffers() {
+    when(s3Client.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(buildListObjectsResponse("objName", "e2"));
+    when(s3Client.headObject(any(HeadObjectRequest.class))).thenReturn(
+        HeadObjectResponse.builder().metadata(Map.of(HeaderKey.CWA_HASH.keyValue, "currentHash")).build());
+    var knownObjects = Map.of("objName", new S3Object("objName", "knownHash", "e1"));
+
+    List<S3Object> actResult = s3ClientWrapper.getObjects(VALID_BUCKET_NAME, VALID_PREFIX, knownObjects);
+
+    assertThat(actResult).containsExactly(new S3Object("objName", "currentHash"));
+    assertThat(actResult.get(0).getEtag()).isEqualTo("e2");
+    verify(s3Client, times(1)).headObject(any(HeadObjectRequest.class));
+  }
+
+  private ListObjectsV2Response buildListObjectsResponse(String key, String etag) {
+    return ListObjectsV2Response.builder()
+        .contents(software.amazon.awssdk.services.s3.model.S3Object.builder().key(key).eTag(etag).build())
+        .build();
+  }
+
+  @Test
+  void testGetObjectContent() {
+    byte[] content = "content".getBytes(StandardCharsets.UTF_8);
+    when(s3Client.getObjectAsBytes(any(GetObjectRequest.class)))
+        .thenReturn(ResponseBytes.fromByteArray(GetObjectResponse.builder().build(), content));
+
+    assertThat(s3ClientWrapper.getObjectContent(VALID_BUCKET_NAME, VALID_NAME)).contains(content);
+  }
+
+  @Test
+  void getObjectContentIsEmptyIfObjectDoesNotExist() {
+    when(s3Client.getObjectAsBytes(any(GetObjectRequest.class))).thenThrow(NoSuchKeyException.class);
+
+    assertThat(s3ClientWrapper.getObjectContent(VALID_BUCKET_NAME, VALID_NAME)).isEmpty();
+    verify(s3Client, times(1)).getObjectAsBytes(any(GetObjectRequest.class));
+  }
+
   @Test
   void testPutObjectForNoHeaders() {
     s3ClientWrapper.putObject(VALID_BUCKET_NAME, VALID_NAME, VALID_PATH, EMPTY_MAP);
@@ -248,6 +313,61 @@ class S3ClientWrapperTest {
     verify(s3Client, atLeastOnce()).putObject(eq(expRequest), any(RequestBody.class));
   }
 
+  @Test
+  void testPutObjectForContent() {
+    var expCacheControl = "foo-cache-control";
+    s3ClientWrapper.putObject(VALID_BUCKET_NAME, VALID_NAME, "content".getBytes(StandardCharsets.UTF_8),
+        newHashMap(HeaderKey.CACHE_CONTROL, expCacheControl));
+
+    PutObjectRequest expRequest =
+        PutObjectRequest.builder().bucket(VALID_BUCKET_NAME).key(VALID_NAME).cacheControl(expCacheControl).build();
+    verify(s3Client, atLeastOnce()).putObject(eq(expRequest), any(RequestBody.class));
+  }
+
+  @Test
+  void testPutObjectUploadsLargeFilesInParts() throws IOException {
+    Path file = createFileWithSize(10);
+    when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+        .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload").build());
+    when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+        .thenReturn(UploadPartResponse.builder().eTag("etag").build());
+
+    new S3ClientWrapper(s3Client, 10, 4).putObject(VALID_BUCKET_NAME, VALID_NAME, file, EMPTY_MAP);
+
+    verify(s3Client, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+    verify(s3Client, times(3)).uploadPart(any(UploadPartRequest.class), any(RequestBody.class));
+    CompleteMultipartUploadRequest expRequest = CompleteMultipartUploadRequest.builder()
+        .bucket(VALID_BUCKET_NAME).key(VALID_NAME).uploadId("upload")
+        .multipartUpload(CompletedMultipartUpload.builder().parts(
+            CompletedPart.builder().partNumber(1).eTag("etag").build(),
+            CompletedPart.builder().partNumber(2).eTag("etag").build(),
+            CompletedPart.builder().partNumber(3).eTag("etag").build()).build())
+        .build();
+    verify(s3Client).completeMultipartUpload(expRequest);
+  }
+
+  @Test
+  void testPutObjectAbortsMultipartUploadIfPartFails() throws IOException {
+    Path file = createFileWithSize(10);
+    when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+        .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload").build());
+    when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class))).thenThrow(S3Exception.class);
+    S3ClientWrapper multipartClientWrapper = new S3ClientWrapper(s3Client, 10, 4);
+
+    assertThatExceptionOfType(S3Exception.class)
+        .isThrownBy(() -> multipartClientWrapper.putObject(VALID_BUCKET_NAME, VALID_NAME, file, EMPTY_MAP));
+
+    verify(s3Client).abortMultipartUpload(AbortMultipartUploadRequest.builder()
+        .bucket(VALID_BUCKET_NAME).key(VALID_NAME).uploadId("upload").build());
+    verify(s3Client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+  }
+
+  private Path createFileWithSize(int size) throws IOException {
+    Path file = Files.createTempFile("upload", ".bin");
+    file.toFile().deleteOnExit();
+    return Files.write(file, new byte[size]);
+  }
+
   @ParameterizedTest
   @ValueSource(classes = {NoSuchBucketException.class, S3Exception.class, SdkClientException.class, SdkException.class})
   void putObjectsThrowsObjectStoreOperationFailedExceptionIfClientThrows(Class<Exception> cause) {
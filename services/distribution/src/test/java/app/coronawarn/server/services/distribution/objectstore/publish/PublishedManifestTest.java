@@ -0,0 +1,83 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App
+ * ---
+ * Copyright (C) 2020 SAP SE and all other contributors
+ * All modifications are copyright (c) 2020 Devside SRL.
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.server.services.distribution.objectstore.publish;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import app.coronawarn.server.services.distribution.objectstore.client.S3Object;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class PublishedManifestTest {
+
+  private static final List<S3Object> S3_OBJECTS = List.of(
+      new S3Object("version/v1/diagnosis-keys/country/BE/date", "hash1", "etag1"),
+      new S3Object("version/v1/diagnosis-keys/country/BE/date/2020-06-11", "hash2", "etag2"));
+
+  @Test
+  void testSerializedManifestCanBeParsed() {
+    byte[] content = PublishedManifest.of(S3_OBJECTS).toBytes();
+
+    var entries = PublishedManifest.parse(content).getEntries();
+
+    assertThat(entries).hasSize(2);
+    S3_OBJECTS.forEach(expected -> {
+      S3Object actual = entries.get(expected.getObjectName());
+      assertThat(actual).isEqualTo(expected);
+      assertThat(actual.getEtag()).isEqualTo(expected.getEtag());
+    });
+  }
+
+  @Test
+  void testObjectsWithoutEtagOrHashAreOmitted() {
+    var manifest = PublishedManifest.of(List.of(
+        new S3Object("no-etag", "hash"),
+        new S3Object("no-hash", null, "etag"),
+        new S3Object("complete", "hash", "etag")));
+
+    assertThat(manifest.getEntries()).containsOnlyKeys("complete");
+  }
+
+  @Test
+  void testEmptyManifestCanBeParsed() {
+    byte[] content = PublishedManifest.of(List.of()).toBytes();
+
+    assertThat(PublishedManifest.parse(content).getEntries()).isEmpty();
+  }
+
+  @Test
+  void testTamperedManifestIsDiscarded() {
+    String content = new String(PublishedManifest.of(S3_OBJECTS).toBytes(), StandardCharsets.UTF_8);
+    byte[] tampered = content.replace("hash2", "hash3").getBytes(StandardCharsets.UTF_8);
+
+    assertThat(PublishedManifest.parse(tampered).getEntries()).isEmpty();
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"", "garbage", "sha256:1234"})
+  void testMalformedManifestIsDiscarded(String content) {
+    assertThat(PublishedManifest.parse(content.getBytes(StandardCharsets.UTF_8)).getEntries()).isEmpty();
+  }
+}
@@ -20,12 +20,15 @@
 
 package app.coronawarn.server.services.distribution.runner;
 
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import app.coronawarn.server.services.distribution.assembly.component.OutputDirectoryProvider;
 import app.coronawarn.server.services.distribution.config.DistributionServiceConfig;
+import app.coronawarn.server.services.distribution.objectstore.DiagnosisKeyBundleFingerprintStore;
+import app.coronawarn.server.services.distribution.objectstore.FailedObjectStoreOperationsCounter;
 import app.coronawarn.server.services.distribution.objectstore.S3Publisher;
 import java.io.IOException;
 import java.nio.file.Paths;
@@ -49,6 +52,12 @@ class S3DistributionRunnerTest {
   @MockBean
   S3Publisher s3Publisher;
 
+  @MockBean
+  DiagnosisKeyBundleFingerprintStore fingerprintStore;
+
+  @MockBean
+  FailedObjectStoreOperationsCounter failedObjectStoreOperationsCounter;
+
   @Autowired
   S3Distribution s3Distribution;
 
@@ -63,4 +72,24 @@ class S3DistributionRunnerTest {
 
     verify(s3Publisher, times(1)).publish(outputPath.toAbsolutePath());
   }
+
+  @Test
+  void shouldStoreFingerprintsAfterSuccessfulPublishing() throws IOException {
+    when(outputDirectoryProvider.getFileOnDisk()).thenReturn(new java.io.File("test"));
+    when(failedObjectStoreOperationsCounter.hasFailedOperations()).thenReturn(false);
+
+    s3Distribution.run(null);
+
+    verify(fingerprintStore, times(1)).save();
+  }
+
+  @Test
+  void shouldNotStoreFingerprintsIfPublishingPartiallyFailed() throws IOException {
+    when(outputDirectoryProvider.getFileOnDisk()).thenReturn(new java.io.File("test"));
+    when(failedObjectStoreOperationsCounter.hasFailedOperations()).thenReturn(true);
+
+    s3Distribution.run(null);
+
+    verify(fingerprintStore, never()).save();
+  }
 }
@@ -2,6 +2,7 @@
 
 package app.coronawarn.server.services.download.runner;
 
+import app.coronawarn.server.common.persistence.service.DiagnosisKeyService;
 import app.coronawarn.server.common.persistence.service.FederationBatchInfoService;
 import app.coronawarn.server.services.download.config.DownloadServiceConfig;
 import org.slf4j.Logger;
@@ -13,7 +14,7 @@ import org.springframework.stereotype.Component;
 
 /**
  * This runner removes any batch information from the database that were submitted before a configured threshold of
- * days.
+ * days, and creates the daily partitions of the key tables for the downloaded keys.
  */
 @Component
 @Order(1)
@@ -22,14 +23,16 @@ public class RetentionPolicy implements ApplicationRunner {
   private static final Logger logger = LoggerFactory.getLogger(RetentionPolicy.class);
 
   private final FederationBatchInfoService federationBatchInfoService;
+  private final DiagnosisKeyService diagnosisKeyService;
   private final Integer retentionDays;
 
   /**
    * Creates a new RetentionPolicy.
    */
   public RetentionPolicy(FederationBatchInfoService federationBatchInfoService,
-      DownloadServiceConfig downloadServiceConfig) {
+      DiagnosisKeyService diagnosisKeyService, DownloadServiceConfig downloadServiceConfig) {
     this.federationBatchInfoService = federationBatchInfoService;
+    this.diagnosisKeyService = diagnosisKeyService;
     this.retentionDays = downloadServiceConfig.getRetentionDays();
   }
 
@@ -41,5 +44,11 @@ public class RetentionPolicy implements ApplicationRunner {
       logger.error("Application of retention policy failed.", e);
     }
     logger.debug("Retention policy applied successfully.");
+
+    try {
+      diagnosisKeyService.createKeyPartitions();
+    } catch (Exception e) {
+      logger.error("Creation of key partitions failed.", e);
+    }
   }
 }
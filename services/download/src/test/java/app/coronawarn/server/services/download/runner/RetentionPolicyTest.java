@@ -5,6 +5,7 @@ package app.coronawarn.server.services.download.runner;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import app.coronawarn.server.common.persistence.domain.config.TekFieldDerivations;
+import app.coronawarn.server.common.persistence.service.DiagnosisKeyService;
 import app.coronawarn.server.common.persistence.service.FederationBatchInfoService;
 import app.coronawarn.server.services.download.config.DownloadServiceConfig;
 import org.junit.jupiter.api.Test;
@@ -26,6 +27,9 @@ class RetentionPolicyTest {
   @MockBean
   FederationBatchInfoService federationBatchInfoService;
 
+  @MockBean
+  DiagnosisKeyService diagnosisKeyService;
+
   @Autowired
   DownloadServiceConfig downloadServiceConfig;
 
@@ -37,5 +41,6 @@ class RetentionPolicyTest {
     retentionPolicy.run(null);
 
     verify(federationBatchInfoService, times(1)).applyRetentionPolicy(downloadServiceConfig.getRetentionDays());
+    verify(diagnosisKeyService, times(1)).createKeyPartitions();
   }
 }
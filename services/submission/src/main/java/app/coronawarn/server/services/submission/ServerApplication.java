@@ -21,6 +21,7 @@
 
 package app.coronawarn.server.services.submission;
 
+import app.coronawarn.server.services.submission.config.SubmissionServiceConfig;
 import app.coronawarn.server.services.submission.config.SubmissionServiceConfigValidator;
 import io.micrometer.core.aop.TimedAspect;
 import io.micrometer.core.instrument.MeterRegistry;
@@ -39,10 +40,13 @@ import org.springframework.cloud.openfeign.EnableFeignClients;
 import org.springframework.context.EnvironmentAware;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Profile;
 import org.springframework.core.env.Environment;
 import org.springframework.data.jdbc.repository.config.EnableJdbcRepositories;
 import org.springframework.http.converter.protobuf.ProtobufHttpMessageConverter;
+import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.validation.Validator;
 
 @SpringBootApplication(exclude = {UserDetailsServiceAutoConfiguration.class})
@@ -52,9 +56,15 @@ import org.springframework.validation.Validator;
     "app.coronawarn.server.services.submission"})
 @EnableConfigurationProperties
 @EnableScheduling
+@EnableAsync
 @EnableFeignClients
 public class ServerApplication implements EnvironmentAware, DisposableBean {
 
+  /**
+   * The name of the executor verifying received ACs and submitted TEKs as they arrive.
+   */
+  public static final String VERIFICATION_EXECUTOR = "verificationExecutor";
+
   private static final Logger logger = LoggerFactory.getLogger(ServerApplication.class);
 
   public static void main(String[] args) {
@@ -74,6 +84,28 @@ public class ServerApplication implements EnvironmentAware, DisposableBean {
     LogManager.shutdown();
   }
 
+  /**
+   * Creates a {@link ThreadPoolTaskExecutor}, which is used to verify received ACs and submitted TEKs as they arrive.
+   * A single worker is sufficient, as the verifications are serialized anyway. Events exceeding the queue capacity are
+   * dropped, as their ACs and TEKs are verified by the next scheduled run. Only created along with the verifier.
+   *
+   * @param submissionServiceConfig SubmissionServiceConfig containing the verification attributes
+   * @return ThreadPoolTaskExecutor
+   */
+  @Bean(VERIFICATION_EXECUTOR)
+  @Profile("ac-verification")
+  public ThreadPoolTaskExecutor createVerificationExecutor(SubmissionServiceConfig submissionServiceConfig) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(1);
+    executor.setMaxPoolSize(1);
+    executor.setQueueCapacity(submissionServiceConfig.getVerification().getQueueCapacity());
+    executor.setRejectedExecutionHandler((task, threadPoolExecutor) -> logger.warn(
+        "Dropping a verification, as the verification queue is full. It is left to the next scheduled run."));
+    executor.setThreadNamePrefix("verification-worker-");
+    executor.initialize();
+    return executor;
+  }
+
   @Bean
   ProtobufHttpMessageConverter protobufHttpMessageConverter() {
     return new ProtobufHttpMessageConverter();
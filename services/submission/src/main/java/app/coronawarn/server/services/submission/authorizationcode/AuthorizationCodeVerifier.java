@@ -22,23 +22,37 @@
 package app.coronawarn.server.services.submission.authorizationcode;
 
 import static app.coronawarn.server.common.persistence.utils.CryptoUtils.verifySignature;
+import static app.coronawarn.server.services.submission.ServerApplication.VERIFICATION_EXECUTOR;
 
 import app.coronawarn.server.common.persistence.domain.DiagnosisKey;
 import app.coronawarn.server.common.persistence.domain.authorizationcode.AuthorizationCode;
 import app.coronawarn.server.common.persistence.repository.AuthorizationCodeRepository;
 import app.coronawarn.server.common.persistence.repository.DiagnosisKeyRepository;
+import app.coronawarn.server.common.persistence.utils.PemUtils;
 import app.coronawarn.server.services.submission.config.SubmissionServiceConfig;
 import app.coronawarn.server.services.submission.monitoring.SubmissionMonitor;
+import java.io.IOException;
+import java.security.PublicKey;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.StreamSupport;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
@@ -49,125 +63,337 @@ import org.springframework.transaction.annotation.Transactional;
  */
 @Component
 @Profile("ac-verification")
-public class AuthorizationCodeVerifier {
+public class AuthorizationCodeVerifier implements DisposableBean {
 
   private static final Logger logger = LoggerFactory.getLogger(AuthorizationCodeVerifier.class);
 
   private final AuthorizationCodeRepository authorizationCodeRepository;
   private final DiagnosisKeyRepository diagnosisKeyRepository;
-  private final SubmissionServiceConfig submissionServiceConfig;
   private final SubmissionMonitor submissionMonitor;
-
+  private final PublicKey publicKey;
+  private final int pageSize;
+  private final int parallelism;
+  /**
+   * The pool verifying the signatures. It lives as long as this component, so that its workers keep their thread-local
+   * {@link java.security.Signature} instances across runs.
+   */
+  private final ForkJoinPool verificationPool;
+  /**
+   * Serializes the scheduled verification of all ACs with the verifications of ACs and TEKs as they arrive, so that
+   * no TEK is verified and no AC is removed by two runs at once.
+   */
+  private final Lock verificationLock = new ReentrantLock();
 
   /**
    * Creates the authorization code verifier.
+   *
+   * @throws IOException if the configured public key cannot be parsed.
    */
   public AuthorizationCodeVerifier(AuthorizationCodeRepository authorizationCodeRepository,
       DiagnosisKeyRepository diagnosisKeyRepository, SubmissionServiceConfig submissionServiceConfig,
-      SubmissionMonitor submissionMonitor) {
+      SubmissionMonitor submissionMonitor) throws IOException {
     this.authorizationCodeRepository = authorizationCodeRepository;
     this.diagnosisKeyRepository = diagnosisKeyRepository;
-    this.submissionServiceConfig = submissionServiceConfig;
     this.submissionMonitor = submissionMonitor;
+    this.publicKey = PemUtils.getPublicKeyFromString(submissionServiceConfig.getPublicKeyContent());
+    this.pageSize = submissionServiceConfig.getVerification().getPageSize();
+    this.parallelism = submissionServiceConfig.getVerification().getParallelism();
+    this.verificationPool = new ForkJoinPool(parallelism);
   }
 
   /**
-   * Fetch all ACs and transfer them to the submission server.
+   * Shuts down the verification pool once the application context is closed.
+   */
+  @Override
+  public void destroy() {
+    verificationPool.shutdown();
+  }
+
+  /**
+   * Fetch all ACs page by page and verify the TEKs of each page. The unverified TEKs of a page are fetched with a
+   * single query, their signatures are verified in parallel by a pool of {@code services.submission.verification
+   * .parallelism} workers and the TEKs verified by the page are flagged with set-based updates issued by the scheduler
+   * thread only. The verified ACs are removed in bulk once all pages have been processed. As ACs and TEKs are matched
+   * as soon as they arrive, this run only serves as a safety net for matches which could not be completed at that time.
+   * It waits for a verification of arriving ACs or TEKs, which may be in progress.
    */
   @Scheduled(fixedDelayString = "${services.submission.verification.rate}")
   public void verifyTekKeys() {
+    verificationLock.lock();
+    try {
+      runVerification(this::verifyAllAuthorizationCodes);
+    } finally {
+      verificationLock.unlock();
+    }
+  }
 
-    logger.info("Fetching al authorizationCodes....");
-
-    final LocalDateTime now = LocalDateTime.now();
-
-    Iterable<AuthorizationCode> authorizationCodes = authorizationCodeRepository.findAll();
-
-    logger.info("Fetched {} acs", StreamSupport.stream(authorizationCodes.spliterator(), false).count());
-
-    Map<String,AuthorizationCode> verifiedAcs = new HashMap<>();
+  /**
+   * Verifies the pending TEKs of the ACs which have just been persisted, instead of waiting for the next scheduled run.
+   *
+   * @param event the event carrying the received ACs.
+   */
+  @Async(VERIFICATION_EXECUTOR)
+  @EventListener
+  public void onAuthorizationCodesReceived(AuthorizationCodesReceivedEvent event) {
+    verifyIncrementally(event.getAuthorizationCodes());
+  }
 
-    authorizationCodes.iterator().forEachRemaining(authorizationCode -> {
+  /**
+   * Verifies the TEKs which have just been submitted against the ACs received before the submission, instead of
+   * waiting for the next scheduled run.
+   *
+   * @param event the event describing the submission.
+   */
+  @Async(VERIFICATION_EXECUTOR)
+  @EventListener
+  public void onDiagnosisKeysSubmitted(DiagnosisKeysSubmittedEvent event) {
+    List<String> mobileTestIds = Stream.of(event.getMobileTestId(), event.getMobileTestId2())
+        .filter(Objects::nonNull)
+        .distinct()
+        .collect(Collectors.toList());
+    verifyIncrementally(authorizationCodeRepository.findByMobileTestIdsAndDatePatientInfectious(
+        mobileTestIds, event.getDatePatientInfectious()));
+  }
 
-      List<DiagnosisKey> diagnosisKeys = diagnosisKeyRepository
-          .findByMobileTestIdOrMobileTestId2AndDatePatientInfectiousAndVerified(
-              authorizationCode.getMobileTestId(),
-              authorizationCode.getDatePatientInfectious(),
-              false);
+  /**
+   * Verifies the given ACs, unless a verification of all ACs is in progress. In that case the ACs are left to the next
+   * scheduled run, instead of holding up the verification of the events queued behind them.
+   */
+  private void verifyIncrementally(List<AuthorizationCode> authorizationCodes) {
+    if (authorizationCodes.isEmpty()) {
+      return;
+    }
+    if (!verificationLock.tryLock()) {
+      logger.warn("Skipping verification of {} arriving authorizationCodes, as all of them are being verified.",
+          authorizationCodes.size());
+      return;
+    }
+    try {
+      runVerification(() -> verifyAuthorizationCodes(authorizationCodes));
+    } finally {
+      verificationLock.unlock();
+    }
+  }
 
-      logger.debug("Fetched keys for AC mobileTestId id {} = {}",
-            authorizationCode.getMobileTestId(), diagnosisKeys.size());
+  private void runVerification(VerificationTask verificationTask) {
+    try {
+      verificationTask.run();
+    } catch (ExecutionException e) {
+      logger.error("Unable to verify authorizationCodes due to {}", e.getMessage(), e);
+    } catch (InterruptedException e) {
+      logger.error("Verification of authorizationCodes was interrupted.", e);
+      Thread.currentThread().interrupt();
+    }
+  }
 
-      diagnosisKeys.iterator().forEachRemaining(diagnosisKey -> {
-        try {
-          boolean verified1 = verifySignature(
-              submissionServiceConfig.getPublicKeyContent(),
-              diagnosisKey.getSignatureData(),
-              authorizationCode.getSignature());
+  private void verifyAllAuthorizationCodes() throws ExecutionException, InterruptedException {
 
-          boolean verified2 = verifySignature(
-              submissionServiceConfig.getPublicKeyContent(),
-              diagnosisKey.getSignatureData2(),
-              authorizationCode.getSignature());
+    logger.info("Fetching al authorizationCodes....");
 
-          boolean verified = verified1 || verified2;
+    final LocalDateTime now = LocalDateTime.now();
 
-          if (!verified) {
-            logger.warn("DiagnosisKey for mobileTestId {} verification result = {}",
-                diagnosisKey.getMobileTestId(), verified);
-          }
+    Map<String, AuthorizationCode> verifiedAcs = new HashMap<>();
+    int numberOfAcs = 0;
+    int numberOfSignatureVerifications = 0;
+    List<AuthorizationCode> authorizationCodes;
+    String lastSignature = "";
+
+    do {
+      authorizationCodes = authorizationCodeRepository.findPageAfterSignature(lastSignature, pageSize);
+      if (authorizationCodes.isEmpty()) {
+        break;
+      }
+      numberOfAcs += authorizationCodes.size();
+      numberOfSignatureVerifications += verifyPage(authorizationCodes, verifiedAcs);
+      lastSignature = authorizationCodes.get(authorizationCodes.size() - 1).getSignature();
+    } while (authorizationCodes.size() == pageSize);
+
+    logger.info("Fetched {} acs", numberOfAcs);
+    completeVerification(numberOfSignatureVerifications, verifiedAcs);
 
-          if (verified) {
-            verifiedAcs.put(authorizationCode.getSignature(),authorizationCode);
-            submissionMonitor.incrementRealRequestCounter();
-            verifyDiagnosisKey(diagnosisKey);
-          }
+    LocalDateTime end = LocalDateTime.now();
 
-        } catch (Exception e) {
-          logger.error("Unable to verify TEK {} due to {}", diagnosisKey.getMobileTestId(), e.getMessage(), e);
-        }
-      });
+    logger.info("Duration = {}", ChronoUnit.SECONDS.between(now, end));
+  }
 
+  private void verifyAuthorizationCodes(List<AuthorizationCode> authorizationCodes)
+      throws ExecutionException, InterruptedException {
+    Map<String, AuthorizationCode> verifiedAcs = new HashMap<>();
+    int numberOfSignatureVerifications = 0;
+    for (int from = 0; from < authorizationCodes.size(); from += pageSize) {
+      numberOfSignatureVerifications += verifyPage(
+          authorizationCodes.subList(from, Math.min(from + pageSize, authorizationCodes.size())), verifiedAcs);
+    }
+    completeVerification(numberOfSignatureVerifications, verifiedAcs);
+  }
 
-    });
+  private void completeVerification(int numberOfSignatureVerifications, Map<String, AuthorizationCode> verifiedAcs) {
+    logger.info("Performed {} signature verifications with parallelism {}", numberOfSignatureVerifications,
+        parallelism);
+    submissionMonitor.recordSignatureVerifications(numberOfSignatureVerifications);
 
     verifiedAcs.keySet().forEach(ac -> submissionMonitor.incrementAcVerified());
 
     logger.info("Removing {} verified ACs", verifiedAcs.size());
     removeVerifiedAcs(verifiedAcs);
+  }
 
-    LocalDateTime end = LocalDateTime.now();
+  /**
+   * Verifies the unverified TEKs of the given page of ACs against the signatures of their ACs and marks the verified
+   * TEKs as verified. All TEKs of one submission share the same signature data, so each signature is verified only once
+   * per distinct signature data and the result is reused for the other TEKs of the group. The distinct verifications
+   * are spread across the verification pool, while the results are evaluated and persisted by the calling thread.
+   *
+   * @param authorizationCodes the page of ACs.
+   * @param verifiedAcs        the ACs which verified at least one TEK, keyed by their signature.
+   * @return the number of signature verifications performed.
+   */
+  private int verifyPage(List<AuthorizationCode> authorizationCodes, Map<String, AuthorizationCode> verifiedAcs)
+      throws ExecutionException, InterruptedException {
+    List<String> signatures = authorizationCodes.stream()
+        .map(AuthorizationCode::getSignature)
+        .collect(Collectors.toList());
+    Map<String, List<AuthorizationCode>> acsByMobileTestId = authorizationCodes.stream()
+        .collect(Collectors.groupingBy(AuthorizationCode::getMobileTestId));
+
+    List<DiagnosisKey> diagnosisKeys = diagnosisKeyRepository
+        .findUnverifiedByAuthorizationCodeSignatures(signatures);
+
+    logger.debug("Fetched {} keys for {} ACs", diagnosisKeys.size(), authorizationCodes.size());
+
+    Map<String, SignatureVerification> verifications = new HashMap<>();
+    diagnosisKeys.forEach(diagnosisKey -> getAuthorizationCodes(diagnosisKey, acsByMobileTestId)
+        .forEach(authorizationCode -> {
+          verifications.computeIfAbsent(getVerificationKey(diagnosisKey.getSignatureData(), authorizationCode),
+              key -> new SignatureVerification(diagnosisKey.getSignatureData(), authorizationCode.getSignature()));
+          verifications.computeIfAbsent(getVerificationKey(diagnosisKey.getSignatureData2(), authorizationCode),
+              key -> new SignatureVerification(diagnosisKey.getSignatureData2(), authorizationCode.getSignature()));
+        }));
+
+    verificationPool.submit(() -> verifications.values().parallelStream().forEach(this::verify)).get();
+
+    List<byte[]> verifiedKeyData = new ArrayList<>();
+    diagnosisKeys.forEach(diagnosisKey -> getAuthorizationCodes(diagnosisKey, acsByMobileTestId)
+        .forEach(authorizationCode -> {
+          if (isVerified(diagnosisKey, authorizationCode, verifications)) {
+            verifiedAcs.put(authorizationCode.getSignature(), authorizationCode);
+            submissionMonitor.incrementRealRequestCounter();
+            verifiedKeyData.add(diagnosisKey.getKeyData());
+          }
+        }));
 
-    logger.info("Duration = {}", ChronoUnit.SECONDS.between(now, end));
+    verifyDiagnosisKeys(verifiedKeyData);
+    return verifications.size();
   }
 
+  /**
+   * Returns the ACs of the given page which the diagnosis key belongs to, i.e. whose mobile test id matches one of the
+   * mobile test ids of the key and whose date of infectiousness matches the one of the key.
+   */
+  private static List<AuthorizationCode> getAuthorizationCodes(DiagnosisKey diagnosisKey,
+      Map<String, List<AuthorizationCode>> acsByMobileTestId) {
+    List<AuthorizationCode> authorizationCodes = new ArrayList<>(
+        acsByMobileTestId.getOrDefault(diagnosisKey.getMobileTestId(), Collections.emptyList()));
+    if (!Objects.equals(diagnosisKey.getMobileTestId(), diagnosisKey.getMobileTestId2())) {
+      authorizationCodes.addAll(
+          acsByMobileTestId.getOrDefault(diagnosisKey.getMobileTestId2(), Collections.emptyList()));
+    }
+    authorizationCodes.removeIf(
+        ac -> !ac.getDatePatientInfectious().equals(diagnosisKey.getDatePatientInfectious()));
+    return authorizationCodes;
+  }
+
+  private boolean isVerified(DiagnosisKey diagnosisKey, AuthorizationCode authorizationCode,
+      Map<String, SignatureVerification> verifications) {
+    SignatureVerification verification1 = verifications.get(
+        getVerificationKey(diagnosisKey.getSignatureData(), authorizationCode));
+    SignatureVerification verification2 = verifications.get(
+        getVerificationKey(diagnosisKey.getSignatureData2(), authorizationCode));
+
+    Exception failure = verification1.failure != null ? verification1.failure : verification2.failure;
+    if (failure != null) {
+      logger.error("Unable to verify TEK {} due to {}", diagnosisKey.getMobileTestId(), failure.getMessage(), failure);
+      return false;
+    }
+
+    boolean verified = verification1.verified || verification2.verified;
+
+    if (!verified) {
+      logger.warn("DiagnosisKey for mobileTestId {} verification result = {}",
+          diagnosisKey.getMobileTestId(), verified);
+    }
+    return verified;
+  }
+
+  private static String getVerificationKey(String signatureData, AuthorizationCode authorizationCode) {
+    return authorizationCode.getSignature() + '\n' + signatureData;
+  }
+
+  /**
+   * Verifies the signature of the given verification and stores the result in it. Called by the workers of the
+   * verification pool.
+   */
+  private void verify(SignatureVerification verification) {
+    try {
+      verification.verified = verifySignature(publicKey, verification.signatureData, verification.signature);
+    } catch (Exception e) {
+      verification.failure = e;
+    }
+  }
 
   /**
-   * Mark the diagnosiskey as verified and persist it.
+   * Mark the diagnosiskeys as verified and persist them.
    *
-   * @param diagnosisKey The diagnosiskey to verify
+   * @param keyData The key data of the diagnosiskeys to verify
    */
   @Transactional
-  public void verifyDiagnosisKey(DiagnosisKey diagnosisKey) {
-    diagnosisKey.setVerified(true);
-    diagnosisKeyRepository.save(diagnosisKey);
+  public void verifyDiagnosisKeys(List<byte[]> keyData) {
+    if (!keyData.isEmpty()) {
+      diagnosisKeyRepository.updateVerified(keyData);
+    }
   }
 
   /**
-   * Remove the verified ACs.
+   * Remove the verified ACs by their signatures. ACs of the same mobile test ids which did not verify any TEK, e.g.
+   * because they are for another date of infectiousness, are kept.
    *
-   * @param verifiedAcs the list of verified ACs we need to remove.
+   * @param verifiedAcs the verified ACs we need to remove, keyed by their signature.
    */
   @Transactional
   public void removeVerifiedAcs(Map<String, AuthorizationCode> verifiedAcs) {
-    AtomicInteger count = new AtomicInteger(0);
-    verifiedAcs.values().forEach(ac -> {
-      logger.info("Removing AC for {}", ac.getMobileTestId());
-      count.getAndIncrement();
-      authorizationCodeRepository.deleteAuthorizationCodeForMobileTestId(ac.getMobileTestId());
-    });
+    List<String> signatures = new ArrayList<>(verifiedAcs.keySet());
+    int count = 0;
+    for (int from = 0; from < signatures.size(); from += pageSize) {
+      count += authorizationCodeRepository.deleteAuthorizationCodesBySignatures(
+          signatures.subList(from, Math.min(from + pageSize, signatures.size())));
+    }
+
+    logger.info("Removed {} ACs", count);
+  }
 
-    logger.info("Removed {} ACs",count.get());
+  /**
+   * The verification of an AC signature for one distinct signature data. The result is written by exactly one worker of
+   * the verification pool and read by the scheduler thread after the pool has completed the page.
+   */
+  private static final class SignatureVerification {
+
+    private final String signatureData;
+    private final String signature;
+    private boolean verified;
+    private Exception failure;
+
+    private SignatureVerification(String signatureData, String signature) {
+      this.signatureData = signatureData;
+      this.signature = signature;
+    }
   }
 
+  /**
+   * A verification which is run with the verification pool.
+   */
+  @FunctionalInterface
+  private interface VerificationTask {
+
+    void run() throws ExecutionException, InterruptedException;
+  }
 }
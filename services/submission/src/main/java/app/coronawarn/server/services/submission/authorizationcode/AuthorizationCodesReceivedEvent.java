@@ -0,0 +1,42 @@
+/*
+ * Coronalert / cwa-server
+ *
+ * (c) 2020 Devside SRL
+ *
+ * Deutsche Telekom AG and all other contributors /
+ * copyright owners license this file to you under the Apache
+ * License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package app.coronawarn.server.services.submission.authorizationcode;
+
+import app.coronawarn.server.common.persistence.domain.authorizationcode.AuthorizationCode;
+import java.util.List;
+
+/**
+ * Published once received ACs have been persisted, so that the TEKs already submitted for them can be verified right
+ * away.
+ */
+public class AuthorizationCodesReceivedEvent {
+
+  private final List<AuthorizationCode> authorizationCodes;
+
+  public AuthorizationCodesReceivedEvent(List<AuthorizationCode> authorizationCodes) {
+    this.authorizationCodes = authorizationCodes;
+  }
+
+  public List<AuthorizationCode> getAuthorizationCodes() {
+    return authorizationCodes;
+  }
+}
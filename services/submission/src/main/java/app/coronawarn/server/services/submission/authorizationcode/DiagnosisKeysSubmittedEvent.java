@@ -0,0 +1,60 @@
+/*
+ * Coronalert / cwa-server
+ *
+ * (c) 2020 Devside SRL
+ *
+ * Deutsche Telekom AG and all other contributors /
+ * copyright owners license this file to you under the Apache
+ * License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package app.coronawarn.server.services.submission.authorizationcode;
+
+import java.time.LocalDate;
+
+/**
+ * Published once the unverified TEKs of a submission have been persisted, so that they can be verified right away if
+ * the corresponding AC has already been received.
+ */
+public class DiagnosisKeysSubmittedEvent {
+
+  private final String mobileTestId;
+  private final String mobileTestId2;
+  private final LocalDate datePatientInfectious;
+
+  /**
+   * Creates the event for a submission.
+   *
+   * @param mobileTestId          The mobile test id of the submitted TEKs.
+   * @param mobileTestId2         The alternative mobile test id of the submitted TEKs.
+   * @param datePatientInfectious The date the patient was infectious.
+   */
+  public DiagnosisKeysSubmittedEvent(String mobileTestId, String mobileTestId2, LocalDate datePatientInfectious) {
+    this.mobileTestId = mobileTestId;
+    this.mobileTestId2 = mobileTestId2;
+    this.datePatientInfectious = datePatientInfectious;
+  }
+
+  public String getMobileTestId() {
+    return mobileTestId;
+  }
+
+  public String getMobileTestId2() {
+    return mobileTestId2;
+  }
+
+  public LocalDate getDatePatientInfectious() {
+    return datePatientInfectious;
+  }
+}
@@ -195,6 +195,10 @@ public class SubmissionServiceConfig {
     }
   }
 
+  public Verification getVerification() {
+    return verification;
+  }
+
   public void setVerification(Verification verification) {
     this.verification = verification;
   }
@@ -291,6 +295,7 @@ public class SubmissionServiceConfig {
   public static class Tek {
 
     private Dummy dummy;
+    private Partitions partitions;
 
     public Dummy getDummy() {
       return dummy;
@@ -299,6 +304,27 @@ public class SubmissionServiceConfig {
     public void setDummy(Dummy dummy) {
       this.dummy = dummy;
     }
+
+    public Partitions getPartitions() {
+      return partitions;
+    }
+
+    public void setPartitions(Partitions partitions) {
+      this.partitions = partitions;
+    }
+  }
+
+  public static class Partitions {
+
+    private Integer rate;
+
+    public Integer getRate() {
+      return rate;
+    }
+
+    public void setRate(Integer rate) {
+      this.rate = rate;
+    }
   }
 
   public static class Dummy {
@@ -335,6 +361,15 @@ public class SubmissionServiceConfig {
   public static class Verification {
 
     private Integer rate;
+    @Min(1)
+    @Max(10000)
+    private Integer pageSize;
+    @Min(1)
+    @Max(64)
+    private Integer parallelism;
+    @Min(1)
+    @Max(10000)
+    private Integer queueCapacity;
 
     public Integer getRate() {
       return rate;
@@ -343,6 +378,30 @@ public class SubmissionServiceConfig {
     public void setRate(Integer rate) {
       this.rate = rate;
     }
+
+    public Integer getPageSize() {
+      return pageSize;
+    }
+
+    public void setPageSize(Integer pageSize) {
+      this.pageSize = pageSize;
+    }
+
+    public Integer getParallelism() {
+      return parallelism;
+    }
+
+    public void setParallelism(Integer parallelism) {
+      this.parallelism = parallelism;
+    }
+
+    public Integer getQueueCapacity() {
+      return queueCapacity;
+    }
+
+    public void setQueueCapacity(Integer queueCapacity) {
+      this.queueCapacity = queueCapacity;
+    }
   }
 
   private static class Monitoring {
@@ -24,10 +24,12 @@ package app.coronawarn.server.services.submission.controller;
 import app.coronawarn.server.common.persistence.domain.authorizationcode.AuthorizationCode;
 import app.coronawarn.server.common.persistence.domain.authorizationcode.AuthorizationCodeRequest;
 import app.coronawarn.server.common.persistence.service.AuthorizationCodeService;
+import app.coronawarn.server.services.submission.authorizationcode.AuthorizationCodesReceivedEvent;
 import app.coronawarn.server.services.submission.monitoring.SubmissionMonitor;
 import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Profile;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -46,10 +48,13 @@ public class AuthorizationCodeController {
 
   private AuthorizationCodeService authorizationCodeService;
   private SubmissionMonitor submissionMonitor;
+  private ApplicationEventPublisher applicationEventPublisher;
 
-  AuthorizationCodeController(AuthorizationCodeService authorizationCodeService,SubmissionMonitor submissionMonitor) {
+  AuthorizationCodeController(AuthorizationCodeService authorizationCodeService,SubmissionMonitor submissionMonitor,
+      ApplicationEventPublisher applicationEventPublisher) {
     this.authorizationCodeService = authorizationCodeService;
     this.submissionMonitor = submissionMonitor;
+    this.applicationEventPublisher = applicationEventPublisher;
   }
 
   /**
@@ -68,6 +73,7 @@ public class AuthorizationCodeController {
       submissionMonitor.incrementAcs();
     });
     authorizationCodeService.saveAuthorizationCodes(authorizationCodeEntities);
+    applicationEventPublisher.publishEvent(new AuthorizationCodesReceivedEvent(authorizationCodeEntities));
     return ResponseEntity.noContent().build();
   }
 }
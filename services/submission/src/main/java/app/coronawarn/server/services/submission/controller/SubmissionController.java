@@ -33,6 +33,7 @@ import app.coronawarn.server.common.persistence.utils.CryptoUtils;
 import app.coronawarn.server.common.protocols.external.exposurenotification.TemporaryExposureKey;
 import app.coronawarn.server.common.protocols.internal.SubmissionPayload;
 import app.coronawarn.server.services.submission.R1Calculator;
+import app.coronawarn.server.services.submission.authorizationcode.DiagnosisKeysSubmittedEvent;
 import app.coronawarn.server.services.submission.config.SubmissionServiceConfig;
 import app.coronawarn.server.services.submission.monitoring.SubmissionMonitor;
 import app.coronawarn.server.services.submission.normalization.SubmissionKeyNormalizer;
@@ -52,6 +53,7 @@ import java.util.stream.IntStream;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.format.annotation.DateTimeFormat.ISO;
 import org.springframework.http.HttpStatus;
@@ -85,17 +87,19 @@ public class SubmissionController {
   private final FakeDelayManager fakeDelayManager;
   private final SubmissionServiceConfig submissionServiceConfig;
   private final CoviCodeRepository coviCodeRepository;
+  private final ApplicationEventPublisher applicationEventPublisher;
 
 
   SubmissionController(
       DiagnosisKeyService diagnosisKeyService, FakeDelayManager fakeDelayManager,
       SubmissionServiceConfig submissionServiceConfig, SubmissionMonitor submissionMonitor,
-      CoviCodeRepository coviCodeRepository) {
+      CoviCodeRepository coviCodeRepository, ApplicationEventPublisher applicationEventPublisher) {
     this.diagnosisKeyService = diagnosisKeyService;
     this.submissionMonitor = submissionMonitor;
     this.fakeDelayManager = fakeDelayManager;
     this.submissionServiceConfig = submissionServiceConfig;
     this.coviCodeRepository = coviCodeRepository;
+    this.applicationEventPublisher = applicationEventPublisher;
     retentionDays = submissionServiceConfig.getRetentionDays();
     randomKeyPaddingMultiplier = submissionServiceConfig.getRandomKeyPaddingMultiplier();
   }
@@ -191,6 +195,8 @@ public class SubmissionController {
             resultChannel,
             false); // wait for the authorization code verification process
 
+        applicationEventPublisher.publishEvent(
+            new DiagnosisKeysSubmittedEvent(mobileTestId, mobileTestId2, datePatientInfectious));
       }
 
       deferredResult.setResult(ResponseEntity.ok().build());
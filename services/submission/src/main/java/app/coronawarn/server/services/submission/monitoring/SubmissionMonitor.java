@@ -23,6 +23,7 @@ package app.coronawarn.server.services.submission.monitoring;
 
 import app.coronawarn.server.services.submission.config.SubmissionServiceConfig;
 import app.coronawarn.server.services.submission.controller.FakeDelayManager;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.boot.context.properties.ConfigurationProperties;
@@ -36,6 +37,7 @@ import org.springframework.stereotype.Component;
 public class SubmissionMonitor {
 
   private static final String SUBMISSION_CONTROLLER_CURRENT_FAKE_DELAY = "submission_controller.fake_delay_seconds";
+  private static final String AC_VERIFIER_SIGNATURE_VERIFICATIONS = "ac_verifier.signature_verifications";
 
   private final MeterRegistry meterRegistry;
   private final long batchSize;
@@ -50,6 +52,8 @@ public class SubmissionMonitor {
   private CoviCodeCounter validcoviCodeCounter;
   private CoviCodeCounter invalidcoviCodeCounter;
 
+  private DistributionSummary signatureVerifications;
+
   /**
    * Constructor for {@link SubmissionMonitor}. Initializes all counters to 0 upon being called.
    *
@@ -83,6 +87,9 @@ public class SubmissionMonitor {
     validcoviCodeCounter = new CoviCodeCounter(meterRegistry, batchSize, "valid");
     invalidcoviCodeCounter = new CoviCodeCounter(meterRegistry, batchSize, "invalid");
 
+    signatureVerifications = DistributionSummary.builder(AC_VERIFIER_SIGNATURE_VERIFICATIONS)
+        .description("The number of signature verifications performed per authorization code verification run.")
+        .register(meterRegistry);
   }
 
   /**
@@ -126,4 +133,8 @@ public class SubmissionMonitor {
     invalidcoviCodeCounter.increment();
   }
 
+  public void recordSignatureVerifications(long numberOfSignatureVerifications) {
+    signatureVerifications.record(numberOfSignatureVerifications);
+  }
+
 }
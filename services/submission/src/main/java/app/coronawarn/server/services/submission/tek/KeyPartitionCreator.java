@@ -0,0 +1,51 @@
+/*
+ * Coronalert / cwa-server
+ *
+ * (c) 2020 Devside SRL
+ *
+ * Deutsche Telekom AG and all other contributors /
+ * copyright owners license this file to you under the Apache
+ * License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package app.coronawarn.server.services.submission.tek;
+
+import app.coronawarn.server.common.persistence.service.DiagnosisKeyService;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * This component creates the daily partitions of the key tables at startup and then regularly, so that submitted keys
+ * are stored in their daily partition even if the distribution service, which creates them as well, does not run.
+ */
+@Component
+public class KeyPartitionCreator {
+
+  private final DiagnosisKeyService diagnosisKeyService;
+
+  /**
+   * Creates the key partition creator.
+   */
+  public KeyPartitionCreator(DiagnosisKeyService diagnosisKeyService) {
+    this.diagnosisKeyService = diagnosisKeyService;
+  }
+
+  /**
+   * Create the missing daily partitions for the upcoming days and for the keys stored in the default partitions.
+   */
+  @Scheduled(fixedDelayString = "${services.submission.tek.partitions.rate}")
+  public void createKeyPartitions() {
+    diagnosisKeyService.createKeyPartitions();
+  }
+}
@@ -0,0 +1,163 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App
+ * ---
+ * Copyright (C) 2020 SAP SE and all other contributors
+ * All modifications are copyright (c) 2020 Devside SRL.
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.server.services.submission;
+
+import static java.time.ZoneOffset.UTC;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import app.coronawarn.server.common.persistence.domain.DiagnosisKey;
+import app.coronawarn.server.common.persistence.service.DiagnosisKeyService;
+import app.coronawarn.server.common.protocols.external.exposurenotification.ReportType;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Compares the throughput of persisting padded submissions with the statement level trigger replicating uploadable
+ * keys against the former row level trigger. Half of the submissions consent to federation. The triggers are replaced
+ * while the benchmark runs, so the database user has to own the key tables, as with the default test database. Not
+ * part of the regular test run; execute explicitly with logging enabled, e.g.
+ * {@code mvn -Dtest=SubmissionThroughputBenchmarkIT -Dlogging.level.app.coronawarn=info test}.
+ */
+@SpringBootTest
+class SubmissionThroughputBenchmarkIT {
+
+  private static final Logger logger = LoggerFactory.getLogger(SubmissionThroughputBenchmarkIT.class);
+
+  private static final int NUMBER_OF_SUBMISSIONS = 1_000;
+  private static final int KEYS_PER_SUBMISSION = 14;
+
+  private static final String CREATE_ROW_LEVEL_MIRROR_TRIGGER = "CREATE OR REPLACE FUNCTION "
+      + "mirror_uploadable_keys_per_row() RETURNS TRIGGER AS $$ BEGIN "
+      + "IF (NEW.consent_to_federation = TRUE) THEN INSERT INTO federation_upload_key (key_data, rolling_period, "
+      + "rolling_start_interval_number, submission_timestamp, transmission_risk_level, consent_to_federation, "
+      + "origin_country, visited_countries, report_type, days_since_onset_of_symptoms, expiry_interval_number) "
+      + "VALUES (NEW.key_data, NEW.rolling_period, NEW.rolling_start_interval_number, NEW.submission_timestamp, "
+      + "NEW.transmission_risk_level, NEW.consent_to_federation, NEW.origin_country, NEW.visited_countries, "
+      + "NEW.report_type, NEW.days_since_onset_of_symptoms, NEW.expiry_interval_number); END IF; RETURN NEW; END; $$ "
+      + "LANGUAGE plpgsql; "
+      + "DROP TRIGGER mirror_uploadable_keys_trigger ON diagnosis_key; "
+      + "CREATE TRIGGER mirror_uploadable_keys_per_row_trigger AFTER INSERT ON diagnosis_key "
+      + "FOR EACH ROW EXECUTE PROCEDURE mirror_uploadable_keys_per_row()";
+
+  private static final String DROP_ROW_LEVEL_MIRROR_TRIGGER =
+      "DROP TRIGGER IF EXISTS mirror_uploadable_keys_per_row_trigger ON diagnosis_key; "
+      + "DROP FUNCTION IF EXISTS mirror_uploadable_keys_per_row(); "
+      + "DROP TRIGGER IF EXISTS mirror_uploadable_keys_trigger ON diagnosis_key; "
+      + "CREATE TRIGGER mirror_uploadable_keys_trigger AFTER INSERT ON diagnosis_key "
+      + "REFERENCING NEW TABLE AS inserted_keys FOR EACH STATEMENT EXECUTE PROCEDURE mirror_uploadable_keys()";
+
+  private final Random random = new Random();
+
+  @Autowired
+  private DiagnosisKeyService diagnosisKeyService;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @MockBean
+  private TestRestTemplate testRestTemplate;
+
+  @AfterEach
+  public void tearDown() {
+    jdbcTemplate.execute(DROP_ROW_LEVEL_MIRROR_TRIGGER);
+    jdbcTemplate.execute("TRUNCATE diagnosis_key, federation_upload_key, diagnosis_key_data");
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {1, 5, 10})
+  void compareRowLevelAndStatementLevelMirroring(int randomKeyPaddingMultiplier) {
+    List<List<DiagnosisKey>> submissions = generateSubmissions(randomKeyPaddingMultiplier);
+    long statementLevelMillis = measure(submissions);
+    jdbcTemplate.execute("TRUNCATE diagnosis_key, federation_upload_key, diagnosis_key_data");
+
+    jdbcTemplate.execute(CREATE_ROW_LEVEL_MIRROR_TRIGGER);
+    long rowLevelMillis = measure(generateSubmissions(randomKeyPaddingMultiplier));
+
+    logger.info("Persisting {} submissions with a key padding multiplier of {} took {} ms ({} submissions/s) "
+            + "with the row level trigger and {} ms ({} submissions/s) with the statement level trigger.",
+        NUMBER_OF_SUBMISSIONS, randomKeyPaddingMultiplier, rowLevelMillis, getThroughput(rowLevelMillis),
+        statementLevelMillis, getThroughput(statementLevelMillis));
+  }
+
+  private long measure(List<List<DiagnosisKey>> submissions) {
+    long start = System.nanoTime();
+    submissions.forEach(diagnosisKeyService::saveDiagnosisKeys);
+    long durationMillis = (System.nanoTime() - start) / 1_000_000;
+
+    int expectedUploadKeys = submissions.stream()
+        .filter(submission -> submission.get(0).isConsentToFederation())
+        .mapToInt(List::size)
+        .sum();
+    assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM federation_upload_key", Integer.class))
+        .isEqualTo(expectedUploadKeys);
+    return durationMillis;
+  }
+
+  private static long getThroughput(long durationMillis) {
+    return NUMBER_OF_SUBMISSIONS * 1000L / Math.max(durationMillis, 1);
+  }
+
+  private List<List<DiagnosisKey>> generateSubmissions(int randomKeyPaddingMultiplier) {
+    int rollingStartIntervalNumber = (int) (LocalDate.now(UTC).minusDays(1).toEpochDay() * 144);
+    List<List<DiagnosisKey>> submissions = new ArrayList<>(NUMBER_OF_SUBMISSIONS);
+    for (int submission = 0; submission < NUMBER_OF_SUBMISSIONS; submission++) {
+      boolean consentToFederation = submission % 2 == 0;
+      List<DiagnosisKey> keys = new ArrayList<>(KEYS_PER_SUBMISSION * randomKeyPaddingMultiplier);
+      for (int key = 0; key < KEYS_PER_SUBMISSION * randomKeyPaddingMultiplier; key++) {
+        keys.add(buildDiagnosisKey(rollingStartIntervalNumber, consentToFederation));
+      }
+      submissions.add(keys);
+    }
+    return submissions;
+  }
+
+  private DiagnosisKey buildDiagnosisKey(int rollingStartIntervalNumber, boolean consentToFederation) {
+    byte[] keyData = new byte[16];
+    random.nextBytes(keyData);
+    return DiagnosisKey.builder()
+        .withKeyData(keyData)
+        .withRollingStartIntervalNumber(rollingStartIntervalNumber)
+        .withTransmissionRiskLevel(2)
+        .withMobileTestId("123456789012345")
+        .withDatePatientInfectious(LocalDate.now(UTC).minusDays(2))
+        .withDateTestCommunicated(LocalDate.now(UTC))
+        .withResultChannel(1)
+        .withCountryCode("BE")
+        .withVisitedCountries(Set.of("BE"))
+        .withReportType(ReportType.CONFIRMED_TEST)
+        .withConsentToFederation(consentToFederation)
+        .build();
+  }
+}
@@ -0,0 +1,162 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App
+ * ---
+ * Copyright (C) 2020 SAP SE and all other contributors
+ * All modifications are copyright (c) 2020 Devside SRL.
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.server.services.submission.authorizationcode;
+
+import static app.coronawarn.server.common.persistence.utils.CryptoUtils.SIGNATURE_ALGORITHM;
+import static java.time.ZoneOffset.UTC;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import app.coronawarn.server.common.persistence.domain.DiagnosisKey;
+import app.coronawarn.server.common.persistence.service.DiagnosisKeyService;
+import app.coronawarn.server.common.protocols.external.exposurenotification.ReportType;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+/**
+ * Measures the duration of one verification cycle of the {@link AuthorizationCodeVerifier} with
+ * {@value #NUMBER_OF_AUTHORIZATION_CODES} pending ACs, each of which verifies one diagnosis key. Not part of the regular
+ * test run; execute explicitly with logging enabled, e.g.
+ * {@code mvn -Dtest=AuthorizationCodeVerifierBenchmarkIT -Dlogging.level.app.coronawarn=info test}.
+ */
+@SpringBootTest(properties = "services.submission.verification.rate=86400000")
+@ActiveProfiles("ac-verification")
+class AuthorizationCodeVerifierBenchmarkIT {
+
+  private static final Logger logger = LoggerFactory.getLogger(AuthorizationCodeVerifierBenchmarkIT.class);
+
+  private static final int NUMBER_OF_AUTHORIZATION_CODES = 100_000;
+  private static final KeyPair KEY_PAIR = generateKeyPair();
+
+  private final Random random = new Random();
+
+  @Autowired
+  private AuthorizationCodeVerifier authorizationCodeVerifier;
+
+  @Autowired
+  private DiagnosisKeyService diagnosisKeyService;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @MockBean
+  private TestRestTemplate testRestTemplate;
+
+  @DynamicPropertySource
+  static void publicKeyContent(DynamicPropertyRegistry registry) {
+    registry.add("services.submission.public-key-content", () -> "-----BEGIN PUBLIC KEY-----\n"
+        + Base64.getMimeEncoder().encodeToString(KEY_PAIR.getPublic().getEncoded())
+        + "\n-----END PUBLIC KEY-----\n");
+  }
+
+  @AfterEach
+  public void tearDown() {
+    jdbcTemplate.execute("TRUNCATE authorization_code, diagnosis_key, federation_upload_key, diagnosis_key_data");
+  }
+
+  @Test
+  void measureVerificationCycle() throws GeneralSecurityException {
+    LocalDate datePatientInfectious = LocalDate.now(UTC).minusDays(2);
+    LocalDate dateTestCommunicated = LocalDate.now(UTC);
+    List<Object[]> authorizationCodes = new ArrayList<>(NUMBER_OF_AUTHORIZATION_CODES);
+    List<DiagnosisKey> diagnosisKeys = new ArrayList<>(NUMBER_OF_AUTHORIZATION_CODES);
+    for (int i = 0; i < NUMBER_OF_AUTHORIZATION_CODES; i++) {
+      DiagnosisKey diagnosisKey = buildDiagnosisKey(String.format("%015d", i), datePatientInfectious,
+          dateTestCommunicated);
+      diagnosisKeys.add(diagnosisKey);
+      authorizationCodes.add(new Object[]{sign(diagnosisKey.getSignatureData()), diagnosisKey.getMobileTestId(),
+          datePatientInfectious, dateTestCommunicated});
+    }
+    diagnosisKeyService.saveDiagnosisKeys(diagnosisKeys);
+    jdbcTemplate.batchUpdate("INSERT INTO authorization_code "
+        + "(signature, mobile_test_id, date_patient_infectious, date_test_communicated) VALUES (?, ?, ?, ?)",
+        authorizationCodes);
+
+    long start = System.nanoTime();
+    authorizationCodeVerifier.verifyTekKeys();
+    long durationMillis = (System.nanoTime() - start) / 1_000_000;
+
+    assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM diagnosis_key WHERE verified", Integer.class))
+        .isEqualTo(NUMBER_OF_AUTHORIZATION_CODES);
+    assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM authorization_code", Integer.class)).isZero();
+    logger.info("Verifying {} pending ACs took {} ms.", NUMBER_OF_AUTHORIZATION_CODES, durationMillis);
+  }
+
+  private DiagnosisKey buildDiagnosisKey(String mobileTestId, LocalDate datePatientInfectious,
+      LocalDate dateTestCommunicated) {
+    byte[] keyData = new byte[16];
+    random.nextBytes(keyData);
+    return DiagnosisKey.builder()
+        .withKeyData(keyData)
+        .withRollingStartIntervalNumber((int) (LocalDate.now(UTC).minusDays(1).toEpochDay() * 144))
+        .withTransmissionRiskLevel(2)
+        .withMobileTestId(mobileTestId)
+        .withDatePatientInfectious(datePatientInfectious)
+        .withDateTestCommunicated(dateTestCommunicated)
+        .withResultChannel(1)
+        .withCountryCode("BE")
+        .withVisitedCountries(Set.of("BE"))
+        .withReportType(ReportType.CONFIRMED_TEST)
+        .build();
+  }
+
+  private static String sign(String data) throws GeneralSecurityException {
+    Signature signature = Signature.getInstance(SIGNATURE_ALGORITHM);
+    signature.initSign(KEY_PAIR.getPrivate());
+    signature.update(data.getBytes());
+    StringBuilder hex = new StringBuilder();
+    for (byte b : signature.sign()) {
+      hex.append(String.format("%02x", b));
+    }
+    return hex.toString();
+  }
+
+  private static KeyPair generateKeyPair() {
+    try {
+      KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+      generator.initialize(new ECGenParameterSpec("secp256r1"));
+      return generator.generateKeyPair();
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
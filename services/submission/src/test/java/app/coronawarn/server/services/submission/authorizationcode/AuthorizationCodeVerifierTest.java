@@ -0,0 +1,329 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App
+ * ---
+ * Copyright (C) 2020 SAP SE and all other contributors
+ * All modifications are copyright (c) 2020 Devside SRL.
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.server.services.submission.authorizationcode;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import app.coronawarn.server.common.persistence.domain.DiagnosisKey;
+import app.coronawarn.server.common.persistence.domain.authorizationcode.AuthorizationCode;
+import app.coronawarn.server.common.persistence.repository.AuthorizationCodeRepository;
+import app.coronawarn.server.common.persistence.repository.DiagnosisKeyRepository;
+import app.coronawarn.server.common.persistence.utils.CryptoUtils;
+import app.coronawarn.server.services.submission.config.SubmissionServiceConfig;
+import app.coronawarn.server.services.submission.monitoring.SubmissionMonitor;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.bouncycastle.util.encoders.Hex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class AuthorizationCodeVerifierTest {
+
+  private static final String MOBILE_TEST_ID = "123456789012345";
+  private static final String MOBILE_TEST_ID_2 = "543210987654321";
+  private static final LocalDate DATE_PATIENT_INFECTIOUS = LocalDate.parse("2020-10-01");
+  private static final int PAGE_SIZE = 2;
+
+  private static KeyPair keyPair;
+
+  private final AuthorizationCodeRepository authorizationCodeRepository = mock(AuthorizationCodeRepository.class);
+  private final DiagnosisKeyRepository diagnosisKeyRepository = mock(DiagnosisKeyRepository.class);
+  private final SubmissionServiceConfig submissionServiceConfig = mock(SubmissionServiceConfig.class);
+  private final SubmissionMonitor submissionMonitor = mock(SubmissionMonitor.class);
+  private AuthorizationCodeVerifier verifier;
+
+  @BeforeAll
+  static void generateKeyPair() throws GeneralSecurityException {
+    KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("EC");
+    keyPairGenerator.initialize(new ECGenParameterSpec("secp256r1"));
+    keyPair = keyPairGenerator.generateKeyPair();
+  }
+
+  @BeforeEach
+  void setup() throws Exception {
+    SubmissionServiceConfig.Verification verification = new SubmissionServiceConfig.Verification();
+    verification.setPageSize(PAGE_SIZE);
+    verification.setParallelism(2);
+    when(submissionServiceConfig.getVerification()).thenReturn(verification);
+    when(submissionServiceConfig.getPublicKeyContent()).thenReturn("-----BEGIN PUBLIC KEY-----\n"
+        + Base64.getMimeEncoder().encodeToString(keyPair.getPublic().getEncoded())
+        + "\n-----END PUBLIC KEY-----\n");
+    verifier = new AuthorizationCodeVerifier(authorizationCodeRepository, diagnosisKeyRepository,
+        submissionServiceConfig, submissionMonitor);
+  }
+
+  @AfterEach
+  void tearDown() {
+    verifier.destroy();
+  }
+
+  @Test
+  void testVerifiesKeysOfReceivedAuthorizationCodes() throws Exception {
+    DiagnosisKey diagnosisKey = buildDiagnosisKey(1, MOBILE_TEST_ID, MOBILE_TEST_ID_2);
+    AuthorizationCode authorizationCode = buildAuthorizationCode(MOBILE_TEST_ID, diagnosisKey.getSignatureData());
+    when(diagnosisKeyRepository.findUnverifiedByAuthorizationCodeSignatures(List.of(authorizationCode.getSignature())))
+        .thenReturn(List.of(diagnosisKey));
+
+    verifier.onAuthorizationCodesReceived(new AuthorizationCodesReceivedEvent(List.of(authorizationCode)));
+
+    assertThat(getVerifiedKeyData()).containsExactly(diagnosisKey.getKeyData());
+    verify(authorizationCodeRepository).deleteAuthorizationCodesBySignatures(List.of(authorizationCode.getSignature()));
+  }
+
+  @Test
+  void testIgnoresEmptyEvents() {
+    verifier.onAuthorizationCodesReceived(new AuthorizationCodesReceivedEvent(List.of()));
+
+    verifyNoInteractions(authorizationCodeRepository, diagnosisKeyRepository);
+  }
+
+  @Test
+  void testVerifiesSubmittedKeysAgainstAuthorizationCodesOfBothMobileTestIds() throws Exception {
+    DiagnosisKey diagnosisKey = buildDiagnosisKey(1, MOBILE_TEST_ID, MOBILE_TEST_ID_2);
+    AuthorizationCode authorizationCode = buildAuthorizationCode(MOBILE_TEST_ID_2, diagnosisKey.getSignatureData2());
+    when(authorizationCodeRepository.findByMobileTestIdsAndDatePatientInfectious(
+        List.of(MOBILE_TEST_ID, MOBILE_TEST_ID_2), DATE_PATIENT_INFECTIOUS)).thenReturn(List.of(authorizationCode));
+    when(diagnosisKeyRepository.findUnverifiedByAuthorizationCodeSignatures(List.of(authorizationCode.getSignature())))
+        .thenReturn(List.of(diagnosisKey));
+
+    verifier.onDiagnosisKeysSubmitted(
+        new DiagnosisKeysSubmittedEvent(MOBILE_TEST_ID, MOBILE_TEST_ID_2, DATE_PATIENT_INFECTIOUS));
+
+    assertThat(getVerifiedKeyData()).containsExactly(diagnosisKey.getKeyData());
+    verify(authorizationCodeRepository).deleteAuthorizationCodesBySignatures(List.of(authorizationCode.getSignature()));
+  }
+
+  @Test
+  void testLooksUpSubmittedKeysByDistinctMobileTestIds() {
+    verifier.onDiagnosisKeysSubmitted(new DiagnosisKeysSubmittedEvent(MOBILE_TEST_ID, null, DATE_PATIENT_INFECTIOUS));
+    verifier.onDiagnosisKeysSubmitted(
+        new DiagnosisKeysSubmittedEvent(MOBILE_TEST_ID, MOBILE_TEST_ID, DATE_PATIENT_INFECTIOUS));
+
+    verify(authorizationCodeRepository, times(2))
+        .findByMobileTestIdsAndDatePatientInfectious(List.of(MOBILE_TEST_ID), DATE_PATIENT_INFECTIOUS);
+    verifyNoInteractions(diagnosisKeyRepository);
+  }
+
+  @Test
+  void testDropsEventsWhileAllAuthorizationCodesAreVerified() throws Exception {
+    CountDownLatch scanStarted = new CountDownLatch(1);
+    CountDownLatch eventHandled = new CountDownLatch(1);
+    when(authorizationCodeRepository.findPageAfterSignature(anyString(), anyInt())).thenAnswer(invocation -> {
+      scanStarted.countDown();
+      eventHandled.await(10, TimeUnit.SECONDS);
+      return List.of();
+    });
+    CompletableFuture<Void> scan = CompletableFuture.runAsync(verifier::verifyTekKeys);
+    assertThat(scanStarted.await(10, TimeUnit.SECONDS)).isTrue();
+
+    AuthorizationCode authorizationCode = buildAuthorizationCode(MOBILE_TEST_ID, "signature data");
+    verifier.onAuthorizationCodesReceived(new AuthorizationCodesReceivedEvent(List.of(authorizationCode)));
+    eventHandled.countDown();
+    scan.get(10, TimeUnit.SECONDS);
+
+    verify(diagnosisKeyRepository, never()).findUnverifiedByAuthorizationCodeSignatures(any());
+    verify(diagnosisKeyRepository, never()).updateVerified(anyList());
+  }
+
+  @Test
+  void testVerifiesKeyBySecondMobileTestId() throws Exception {
+    DiagnosisKey diagnosisKey = buildDiagnosisKey(1, MOBILE_TEST_ID, MOBILE_TEST_ID_2);
+    AuthorizationCode authorizationCode = buildAuthorizationCode(MOBILE_TEST_ID_2, diagnosisKey.getSignatureData2());
+    mockPage("", authorizationCode);
+    mockKeys(List.of(authorizationCode), diagnosisKey);
+
+    verifier.verifyTekKeys();
+
+    assertThat(getVerifiedKeyData()).containsExactly(diagnosisKey.getKeyData());
+    verify(authorizationCodeRepository).deleteAuthorizationCodesBySignatures(List.of(authorizationCode.getSignature()));
+    verify(submissionMonitor).incrementAcVerified();
+  }
+
+  @Test
+  void testDoesNotVerifyKeyOfOtherDatePatientInfectious() throws Exception {
+    DiagnosisKey diagnosisKey = buildDiagnosisKey(1, MOBILE_TEST_ID, MOBILE_TEST_ID_2);
+    AuthorizationCode authorizationCode = buildAuthorizationCode(MOBILE_TEST_ID, diagnosisKey.getSignatureData());
+    authorizationCode.setDatePatientInfectious(DATE_PATIENT_INFECTIOUS.minusDays(1));
+    mockPage("", authorizationCode);
+    mockKeys(List.of(authorizationCode), diagnosisKey);
+
+    verifier.verifyTekKeys();
+
+    verify(diagnosisKeyRepository, never()).updateVerified(anyList());
+    verify(authorizationCodeRepository, never()).deleteAuthorizationCodesBySignatures(anyList());
+  }
+
+  @Test
+  void testKeepsUnmatchedAuthorizationCodeOfSameMobileTestIdForOtherDate() throws Exception {
+    DiagnosisKey diagnosisKey = buildDiagnosisKey(1, MOBILE_TEST_ID, MOBILE_TEST_ID_2);
+    AuthorizationCode authorizationCode = buildAuthorizationCode(MOBILE_TEST_ID, diagnosisKey.getSignatureData());
+    AuthorizationCode otherDateAuthorizationCode = buildAuthorizationCode(MOBILE_TEST_ID, "other signature data");
+    otherDateAuthorizationCode.setDatePatientInfectious(DATE_PATIENT_INFECTIOUS.plusDays(1));
+    mockPage("", authorizationCode, otherDateAuthorizationCode);
+    mockPage(otherDateAuthorizationCode.getSignature());
+    mockKeys(List.of(authorizationCode, otherDateAuthorizationCode), diagnosisKey);
+
+    verifier.verifyTekKeys();
+
+    assertThat(getVerifiedKeyData()).containsExactly(diagnosisKey.getKeyData());
+    verify(authorizationCodeRepository).deleteAuthorizationCodesBySignatures(List.of(authorizationCode.getSignature()));
+  }
+
+  @Test
+  void testFailingSignatureVerificationDoesNotAffectOtherAuthorizationCodes() throws Exception {
+    DiagnosisKey diagnosisKey1 = buildDiagnosisKey(1, MOBILE_TEST_ID, MOBILE_TEST_ID);
+    DiagnosisKey diagnosisKey2 = buildDiagnosisKey(2, MOBILE_TEST_ID_2, MOBILE_TEST_ID_2);
+    AuthorizationCode malformedAuthorizationCode = buildAuthorizationCode(MOBILE_TEST_ID, "signature data");
+    malformedAuthorizationCode.setSignature("abc");
+    AuthorizationCode authorizationCode = buildAuthorizationCode(MOBILE_TEST_ID_2, diagnosisKey2.getSignatureData());
+    mockPage("", malformedAuthorizationCode, authorizationCode);
+    mockPage(authorizationCode.getSignature());
+    mockKeys(List.of(malformedAuthorizationCode, authorizationCode), diagnosisKey1, diagnosisKey2);
+
+    verifier.verifyTekKeys();
+
+    assertThat(getVerifiedKeyData()).containsExactly(diagnosisKey2.getKeyData());
+    verify(authorizationCodeRepository).deleteAuthorizationCodesBySignatures(List.of(authorizationCode.getSignature()));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void testRemovesAuthorizationCodesVerifiedOnDifferentPagesAtOnce() throws Exception {
+    DiagnosisKey diagnosisKey1 = buildDiagnosisKey(1, MOBILE_TEST_ID, MOBILE_TEST_ID);
+    DiagnosisKey diagnosisKey2 = buildDiagnosisKey(2, MOBILE_TEST_ID_2, MOBILE_TEST_ID_2);
+    AuthorizationCode authorizationCode1 = buildAuthorizationCode(MOBILE_TEST_ID, diagnosisKey1.getSignatureData());
+    AuthorizationCode unmatchedAuthorizationCode = buildAuthorizationCode("000000000000000", "signature data");
+    AuthorizationCode authorizationCode2 = buildAuthorizationCode(MOBILE_TEST_ID_2, diagnosisKey2.getSignatureData());
+    mockPage("", authorizationCode1, unmatchedAuthorizationCode);
+    mockPage(unmatchedAuthorizationCode.getSignature(), authorizationCode2);
+    mockKeys(List.of(authorizationCode1, unmatchedAuthorizationCode), diagnosisKey1);
+    mockKeys(List.of(authorizationCode2), diagnosisKey2);
+
+    verifier.verifyTekKeys();
+
+    ArgumentCaptor<List<byte[]>> keyData = ArgumentCaptor.forClass(List.class);
+    verify(diagnosisKeyRepository, times(2)).updateVerified(keyData.capture());
+    assertThat(keyData.getAllValues().get(0)).containsExactly(diagnosisKey1.getKeyData());
+    assertThat(keyData.getAllValues().get(1)).containsExactly(diagnosisKey2.getKeyData());
+    ArgumentCaptor<List<String>> signatures = ArgumentCaptor.forClass(List.class);
+    verify(authorizationCodeRepository).deleteAuthorizationCodesBySignatures(signatures.capture());
+    assertThat(signatures.getValue())
+        .containsExactlyInAnyOrder(authorizationCode1.getSignature(), authorizationCode2.getSignature());
+  }
+
+  @Test
+  void testFetchesNextPageOnlyAfterFullPage() throws Exception {
+    AuthorizationCode authorizationCode1 = buildAuthorizationCode(MOBILE_TEST_ID, "signature data");
+    AuthorizationCode authorizationCode2 = buildAuthorizationCode(MOBILE_TEST_ID_2, "signature data");
+    mockPage("", authorizationCode1, authorizationCode2);
+    mockPage(authorizationCode2.getSignature());
+
+    verifier.verifyTekKeys();
+
+    verify(authorizationCodeRepository).findPageAfterSignature("", PAGE_SIZE);
+    verify(authorizationCodeRepository).findPageAfterSignature(authorizationCode2.getSignature(), PAGE_SIZE);
+    verify(authorizationCodeRepository, times(2)).findPageAfterSignature(anyString(), anyInt());
+    verify(diagnosisKeyRepository).findUnverifiedByAuthorizationCodeSignatures(any());
+  }
+
+  @Test
+  void testStopsAfterPartialPage() throws Exception {
+    mockPage("", buildAuthorizationCode(MOBILE_TEST_ID, "signature data"));
+
+    verifier.verifyTekKeys();
+
+    verify(authorizationCodeRepository, times(1)).findPageAfterSignature(anyString(), anyInt());
+  }
+
+  private void mockPage(String lastSignature, AuthorizationCode... authorizationCodes) {
+    when(authorizationCodeRepository.findPageAfterSignature(lastSignature, PAGE_SIZE))
+        .thenReturn(List.of(authorizationCodes));
+  }
+
+  private void mockKeys(List<AuthorizationCode> authorizationCodes, DiagnosisKey... diagnosisKeys) {
+    List<String> signatures = authorizationCodes.stream()
+        .map(AuthorizationCode::getSignature)
+        .collect(Collectors.toList());
+    when(diagnosisKeyRepository.findUnverifiedByAuthorizationCodeSignatures(signatures))
+        .thenReturn(List.of(diagnosisKeys));
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<byte[]> getVerifiedKeyData() {
+    ArgumentCaptor<List<byte[]>> keyData = ArgumentCaptor.forClass(List.class);
+    verify(diagnosisKeyRepository).updateVerified(keyData.capture());
+    return keyData.getValue();
+  }
+
+  private static DiagnosisKey buildDiagnosisKey(int keyNumber, String mobileTestId, String mobileTestId2) {
+    byte[] keyData = new byte[16];
+    keyData[0] = (byte) keyNumber;
+    return DiagnosisKey.builder()
+        .withKeyData(keyData)
+        .withRollingStartIntervalNumber(2668032)
+        .withTransmissionRiskLevel(1)
+        .withMobileTestId(mobileTestId)
+        .withMobileTestId2(mobileTestId2)
+        .withDatePatientInfectious(DATE_PATIENT_INFECTIOUS)
+        .withDateTestCommunicated(DATE_PATIENT_INFECTIOUS)
+        .withResultChannel(1)
+        .withCountryCode("BE")
+        .build();
+  }
+
+  private static AuthorizationCode buildAuthorizationCode(String mobileTestId, String signatureData)
+      throws GeneralSecurityException {
+    Signature signature = Signature.getInstance(CryptoUtils.SIGNATURE_ALGORITHM);
+    signature.initSign(keyPair.getPrivate());
+    signature.update(signatureData.getBytes());
+
+    AuthorizationCode authorizationCode = new AuthorizationCode();
+    authorizationCode.setSignature(Hex.toHexString(signature.sign()));
+    authorizationCode.setMobileTestId(mobileTestId);
+    authorizationCode.setDatePatientInfectious(DATE_PATIENT_INFECTIOUS);
+    authorizationCode.setDateTestCommunicated(DATE_PATIENT_INFECTIOUS);
+    return authorizationCode;
+  }
+}
@@ -21,6 +21,7 @@
 
 package app.coronawarn.server.services.submission.monitoring;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.anyDouble;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.reset;
@@ -32,6 +33,7 @@ import static org.mockito.Mockito.when;
 import app.coronawarn.server.services.submission.config.SubmissionServiceConfig;
 import app.coronawarn.server.services.submission.controller.FakeDelayManager;
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.MeterRegistryMock;
 import org.junit.jupiter.api.BeforeEach;
@@ -70,4 +72,14 @@ class SubmissionMonitorTest {
     submissionMonitor.incrementRequestCounter();
     verify(meterCounter, times(1)).increment(anyDouble());
   }
+
+  @Test
+  void recordSignatureVerificationsRecordsOneSamplePerRun() {
+    submissionMonitor.recordSignatureVerifications(3);
+    submissionMonitor.recordSignatureVerifications(5);
+
+    DistributionSummary summary = meterRegistry.get("ac_verifier.signature_verifications").summary();
+    assertThat(summary.count()).isEqualTo(2);
+    assertThat(summary.totalAmount()).isEqualTo(8);
+  }
 }
@@ -21,16 +21,12 @@
 
 package app.coronawarn.server.services.submission.tek;
 
-import static app.coronawarn.server.common.persistence.domain.validation.ValidSubmissionTimestampValidator.SECONDS_PER_HOUR;
-import static java.time.ZoneOffset.UTC;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.test.annotation.DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD;
 
 import app.coronawarn.server.common.persistence.domain.DiagnosisKey;
 import app.coronawarn.server.common.persistence.repository.DiagnosisKeyRepository;
 import io.reactivex.Single;
-import java.time.Instant;
-import java.time.LocalDateTime;
 import java.util.concurrent.TimeUnit;
 import org.assertj.core.util.IterableUtil;
 import org.junit.jupiter.api.Disabled;
@@ -71,11 +67,7 @@ public class DummyTekGenerationTest {
     assertThat(IterableUtil.sizeOf(allKeys)).isEqualTo(2);
 
     // cleanup
-    long threshold = LocalDateTime
-        .ofInstant(Instant.now(), UTC)
-        .plusHours(1)
-        .toEpochSecond(UTC) / SECONDS_PER_HOUR;
-    diagnosisKeyRepository.deleteOlderThan(threshold);
+    diagnosisKeyRepository.deleteAll();
 
     allKeys = diagnosisKeyRepository.findAll();
     assertThat(IterableUtil.sizeOf(allKeys)).isEqualTo(0);
@@ -0,0 +1,52 @@
+/*
+ * Coronalert / cwa-server
+ *
+ * (c) 2020 Devside SRL
+ *
+ * Deutsche Telekom AG and all other contributors /
+ * copyright owners license this file to you under the Apache
+ * License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package app.coronawarn.server.services.submission.tek;
+
+import static java.time.ZoneOffset.UTC;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class KeyPartitionCreatorTest {
+
+  @Autowired
+  private KeyPartitionCreator keyPartitionCreator;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @ParameterizedTest
+  @ValueSource(strings = {"diagnosis_key", "federation_upload_key", "diagnosis_key_data"})
+  void shouldCreatePartitionsOfUpcomingDays(String table) {
+    keyPartitionCreator.createKeyPartitions();
+
+    String partition = table + "_p" + LocalDate.now(UTC).plusDays(7).format(DateTimeFormatter.BASIC_ISO_DATE);
+    assertThat(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, partition)).isTrue();
+  }
+}
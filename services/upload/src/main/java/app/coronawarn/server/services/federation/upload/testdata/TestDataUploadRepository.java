@@ -17,9 +17,11 @@ public interface TestDataUploadRepository
   @Modifying
   @Query("INSERT INTO federation_upload_key "
       + "(key_data, rolling_start_interval_number, rolling_period, submission_timestamp, transmission_risk_level, "
-      + "origin_country, visited_countries, report_type, days_since_onset_of_symptoms, consent_to_federation) "
+      + "origin_country, visited_countries, report_type, days_since_onset_of_symptoms, consent_to_federation, "
+      + "expiry_interval_number) "
       + "VALUES (:keyData, :rollingStartIntervalNumber, :rollingPeriod, :submissionTimestamp, :transmissionRisk, "
-      + ":origin_country, :visited_countries, :report_type, :days_since_onset_of_symptoms, :consent_to_federation) "
+      + ":origin_country, :visited_countries, :report_type, :days_since_onset_of_symptoms, :consent_to_federation, "
+      + ":rollingStartIntervalNumber + :rollingPeriod) "
       + "ON CONFLICT DO NOTHING")
   void storeUploadKey(
       @Param("keyData") byte[] keyData,